@@ -0,0 +1,12 @@
+package in.project.computers.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * เปิดใช้งาน @Async สำหรับ Event Listener ที่ไม่ควรบล็อก Request ของผู้ใช้
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+}
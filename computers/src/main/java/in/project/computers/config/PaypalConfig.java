@@ -4,6 +4,7 @@ import com.paypal.base.rest.APIContext;
 import com.paypal.base.rest.OAuthTokenCredential;
 import com.paypal.base.rest.PayPalRESTException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -22,22 +23,42 @@ public class PaypalConfig {
     @Value("${paypal.mode}")
     private String mode;
 
+    // Socket Timeout ของ SDK เป็นด่านสุดท้าย กัน Virtual Thread ค้างไปตลอดหลัง Deadline ของ PaypalCallGuard หมด
+    @Value("${paypal.http.connect-timeout-millis:5000}")
+    private int connectTimeoutMillis;
+
+    @Value("${paypal.http.read-timeout-millis:30000}")
+    private int readTimeoutMillis;
+
+    // ทับ Endpoint ที่ได้จาก paypal.mode (เช่น Proxy ภายใน หรือ HTTP Stub ตอนทดสอบ) ค่าว่างคือใช้ตาม mode
+    @Value("${paypal.endpoint:}")
+    private String endpoint;
+
 
     @Bean
     public Map<String, String> paypalSdkConfig() {
         Map<String, String> configMap = new HashMap<>();
         configMap.put("mode", mode);
+        configMap.put("http.ConnectionTimeOut", String.valueOf(connectTimeoutMillis));
+        configMap.put("http.ReadTimeOut", String.valueOf(readTimeoutMillis));
+        if (!endpoint.isBlank()) {
+            configMap.put("service.EndPoint", endpoint);
+            configMap.put("oauth.EndPoint", endpoint);
+        }
         return configMap;
     }
 
 
+    // เมื่อเปิด paypal.stub.enabled จะไม่ขอ Access Token จาก PayPal ตอนสตาร์ท
     @Bean
+    @ConditionalOnProperty(name = "paypal.stub.enabled", havingValue = "false", matchIfMissing = true)
     public OAuthTokenCredential oAuthTokenCredential() {
         return new OAuthTokenCredential(clientId, clientSecret, paypalSdkConfig());
     }
 
 
     @Bean
+    @ConditionalOnProperty(name = "paypal.stub.enabled", havingValue = "false", matchIfMissing = true)
     public APIContext apiContext() throws PayPalRESTException {
 
         APIContext context = new APIContext(oAuthTokenCredential().getAccessToken());
@@ -0,0 +1,12 @@
+package in.project.computers.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * เปิดใช้งาน @Scheduled สำหรับงานเบื้องหลัง (Background Jobs) ของระบบ
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
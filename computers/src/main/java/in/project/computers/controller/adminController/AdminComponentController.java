@@ -4,7 +4,11 @@ package in.project.computers.controller.adminController;
 import in.project.computers.dto.component.componentRequest.ComponentRequest;
 import in.project.computers.dto.component.componentRequest.StockAdjustmentRequest;
 import in.project.computers.dto.component.componentResponse.ComponentResponse;
+import in.project.computers.dto.component.componentResponse.InventoryReconciliationReport;
+import in.project.computers.dto.component.componentResponse.LookupUsageReport;
 import in.project.computers.service.componentService.ComponentService;
+import in.project.computers.service.componentService.InventoryReconciliationService;
+import in.project.computers.service.componentService.LookupUsageService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +28,8 @@ import java.util.List;
 public class AdminComponentController {
 
     private final ComponentService componentService;
+    private final InventoryReconciliationService inventoryReconciliationService;
+    private final LookupUsageService lookupUsageService;
 
 
     @GetMapping
@@ -83,4 +89,20 @@ public class AdminComponentController {
         log.info("Admin action: Deleting component with ID: {}", id);
         componentService.deleteComponent(id);
     }
-}
\ No newline at end of file
+
+    @PostMapping("/reconcile-inventory")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<InventoryReconciliationReport> reconcileInventory(
+            @RequestParam(value = "dryRun", defaultValue = "false") boolean dryRun) {
+        log.info("Admin action: Running inventory reconciliation. Dry run: {}", dryRun);
+        return ResponseEntity.ok(inventoryReconciliationService.reconcile(dryRun));
+    }
+
+    @PostMapping("/rebuild-lookup-usage")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<LookupUsageReport> rebuildLookupUsage(
+            @RequestParam(value = "dryRun", defaultValue = "false") boolean dryRun) {
+        log.info("Admin action: Rebuilding lookup usage counters. Dry run: {}", dryRun);
+        return ResponseEntity.ok(lookupUsageService.rebuild(dryRun));
+    }
+}
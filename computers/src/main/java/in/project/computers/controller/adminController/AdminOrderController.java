@@ -1,20 +1,35 @@
 package in.project.computers.controller.adminController;
 
 import com.paypal.base.rest.PayPalRESTException;
+import in.project.computers.dto.order.BulkOrderActionRequest;
+import in.project.computers.dto.order.BulkOrderExportResponse;
+import in.project.computers.dto.order.BulkOrderResult;
+import in.project.computers.dto.order.BulkShipOrderRequest;
+import in.project.computers.dto.order.OrderLookupField;
+import in.project.computers.dto.order.OrderPageResponse;
 import in.project.computers.dto.order.OrderResponse;
+import in.project.computers.dto.order.OrderSearchCriteria;
+import in.project.computers.dto.order.OrderSummaryResponse;
 import in.project.computers.dto.order.ShipOrderRequest;
 import in.project.computers.dto.order.UpdateOrderStatusRequest;
 import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.PaymentMethod;
+import in.project.computers.entity.order.PaymentStatus;
+import in.project.computers.service.orderService.OrderBulkService;
+import in.project.computers.service.orderService.OrderQueryService;
 import in.project.computers.service.orderService.OrderService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +49,8 @@ import java.util.stream.Collectors;
 public class AdminOrderController {
 
     private final OrderService orderService;
+    private final OrderQueryService orderQueryService;
+    private final OrderBulkService orderBulkService;
 
     /**
      * <h4>[GET] /api/admin/orders</h4>
@@ -48,6 +65,52 @@ public class AdminOrderController {
         return ResponseEntity.ok(orders);
     }
 
+    /**
+     * <h4>[GET] /api/admin/orders?limit=...</h4>
+     * <p>Endpoint สำหรับ Admin เพื่อดึงรายการ Order แบบแบ่งหน้า (Keyset Pagination) พร้อมตัวกรองที่ทำงานฝั่งฐานข้อมูล</p>
+     * <p><b>การทำงาน:</b> ส่ง {@code cursor} จาก {@code nextCursor} ของหน้าก่อนหน้าเพื่อดึงหน้าถัดไป
+     * รายการที่ได้เป็นแบบย่อ (ไม่มี lineItems)</p>
+     * @return ResponseEntity ที่มี OrderPageResponse
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<OrderPageResponse> getOrdersPage(
+            @RequestParam int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) OrderStatus orderStatus,
+            @RequestParam(required = false) PaymentStatus paymentStatus,
+            @RequestParam(required = false) PaymentMethod paymentMethod,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String email,
+            @RequestParam(defaultValue = "DESC") Sort.Direction sort) {
+        log.info("Admin action: Fetching orders page. Limit: {}, status: {}, sort: {}", limit, orderStatus, sort);
+        OrderSearchCriteria criteria = OrderSearchCriteria.builder()
+                .orderStatus(orderStatus)
+                .paymentStatus(paymentStatus)
+                .paymentMethod(paymentMethod)
+                .from(from)
+                .to(to)
+                .email(email)
+                .direction(sort)
+                .build();
+        return ResponseEntity.ok(orderQueryService.findOrders(criteria, cursor, limit));
+    }
+
+    /**
+     * <h4>[GET] /api/admin/orders/search?field=...&q=...</h4>
+     * <p>Endpoint สำหรับ Admin เพื่อค้นหา Order จากอีเมลลูกค้า, หมายเลขพัสดุ, Transaction ID ของ PayPal หรือ MPN ของชิ้นส่วน</p>
+     * <p><b>การทำงาน:</b> จับคู่ค่าแบบตรงตัวด้วยหนึ่ง Query บน Index ของ Field นั้น ผลลัพธ์เรียงจากใหม่ไปเก่า</p>
+     * @return ResponseEntity ที่มี List ของ OrderSummaryResponse
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<OrderSummaryResponse>> searchOrders(
+            @RequestParam OrderLookupField field,
+            @RequestParam("q") String value,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("Admin action: Searching orders by {}", field);
+        return ResponseEntity.ok(orderQueryService.searchOrders(field, value, limit));
+    }
+
     /**
      * <h4>[GET] /api/admin/orders/{orderId}</h4>
      * <p>Endpoint สำหรับ Admin เพื่อดูรายละเอียด Order ใดๆ ก็ได้ในระบบ</p>
@@ -166,6 +229,62 @@ public class AdminOrderController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * <h4>[POST] /api/admin/orders/bulk/ship</h4>
+     * <p>Endpoint สำหรับ Admin เพื่อจัดส่งหลาย Order พร้อมกัน (แต่ละรายการมีบริษัทขนส่งและหมายเลขพัสดุของตัวเอง)</p>
+     * <p><b>การทำงาน:</b> เปลี่ยนสถานะทุกรายการที่ผ่านการตรวจสอบใน Bulk Write เดียว และรายงานผลแยกต่อ Order</p>
+     * @return ResponseEntity ที่มี BulkOrderResult
+     */
+    @PostMapping("/bulk/ship")
+    public ResponseEntity<BulkOrderResult> bulkShipOrders(@Valid @RequestBody BulkShipOrderRequest request) {
+        log.info("Admin action: Bulk shipping {} order(s)", request.getOrders().size());
+        return ResponseEntity.ok(orderBulkService.shipOrders(request));
+    }
+
+    /**
+     * <h4>[POST] /api/admin/orders/bulk/approve-slip</h4>
+     * <p>Endpoint สำหรับ Admin เพื่ออนุมัติสลิปโอนเงินหลาย Order พร้อมกัน</p>
+     * @return ResponseEntity ที่มี BulkOrderResult
+     */
+    @PostMapping("/bulk/approve-slip")
+    public ResponseEntity<BulkOrderResult> bulkApprovePaymentSlips(@Valid @RequestBody BulkOrderActionRequest request) {
+        log.info("Admin action: Bulk approving payment slips for {} order(s)", request.getOrderIds().size());
+        return ResponseEntity.ok(orderBulkService.approvePaymentSlips(request.getOrderIds()));
+    }
+
+    /**
+     * <h4>[POST] /api/admin/orders/bulk/reject-slip</h4>
+     * <p>Endpoint สำหรับ Admin เพื่อปฏิเสธสลิปโอนเงินหลาย Order ด้วยเหตุผลเดียวกัน ({@code reason} จำเป็น)</p>
+     * @return ResponseEntity ที่มี BulkOrderResult
+     */
+    @PostMapping("/bulk/reject-slip")
+    public ResponseEntity<BulkOrderResult> bulkRejectPaymentSlips(@Valid @RequestBody BulkOrderActionRequest request) {
+        log.info("Admin action: Bulk rejecting payment slips for {} order(s)", request.getOrderIds().size());
+        return ResponseEntity.ok(orderBulkService.rejectPaymentSlips(request.getOrderIds(), request.getReason()));
+    }
+
+    /**
+     * <h4>[POST] /api/admin/orders/bulk/status</h4>
+     * <p>Endpoint สำหรับ Admin เพื่อเปลี่ยนสถานะหลาย Order ไปยัง {@code newStatus} เดียวกัน (ตรวจสอบ Flow ต่อรายการ)</p>
+     * @return ResponseEntity ที่มี BulkOrderResult
+     */
+    @PostMapping("/bulk/status")
+    public ResponseEntity<BulkOrderResult> bulkUpdateOrderStatus(@Valid @RequestBody BulkOrderActionRequest request) {
+        log.info("Admin action: Bulk updating {} order(s) to {}", request.getOrderIds().size(), request.getNewStatus());
+        return ResponseEntity.ok(orderBulkService.updateOrderStatuses(request.getOrderIds(), request.getNewStatus()));
+    }
+
+    /**
+     * <h4>[POST] /api/admin/orders/bulk/export</h4>
+     * <p>Endpoint สำหรับ Admin เพื่อดึงรายละเอียดเต็มของหลาย Order ในครั้งเดียว (เช่น สำหรับพิมพ์ใบปะหน้า)</p>
+     * @return ResponseEntity ที่มี BulkOrderExportResponse
+     */
+    @PostMapping("/bulk/export")
+    public ResponseEntity<BulkOrderExportResponse> bulkExportOrders(@Valid @RequestBody BulkOrderActionRequest request) {
+        log.info("Admin action: Bulk exporting {} order(s)", request.getOrderIds().size());
+        return ResponseEntity.ok(orderBulkService.exportOrders(request.getOrderIds()));
+    }
+
     /**
      * <h4>[PUT] /api/admin/orders/update-shipping/{orderId}</h4>
      * <p>Endpoint สำหรับ Admin เพื่อแก้ไขข้อมูลการจัดส่งของ Order ที่จัดส่งไปแล้ว</p>
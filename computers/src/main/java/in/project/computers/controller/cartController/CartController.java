@@ -50,4 +50,11 @@ public class CartController {
         log.info("Request received to remove cart item {}.", cartItemId);
         return ResponseEntity.ok(cartService.removeItemFromCart(cartItemId));
     }
+
+
+    @PostMapping("/acknowledge-price-changes")
+    public ResponseEntity<CartResponse> acknowledgePriceChanges() {
+        log.info("Request received to acknowledge price changes in cart.");
+        return ResponseEntity.ok(cartService.acknowledgePriceChanges());
+    }
 }
\ No newline at end of file
@@ -1,22 +1,37 @@
 package in.project.computers.controller.pageController;
 
 import in.project.computers.dto.dashboard.DashboardResponse;
+import in.project.computers.dto.dashboard.OrderExportFormat;
+import in.project.computers.dto.dashboard.TopSellerResponse;
 import in.project.computers.service.dashboard.DashboardService;
+import in.project.computers.service.dashboard.DashboardStreamService;
+import in.project.computers.service.dashboard.OrderExportService;
+import in.project.computers.service.dashboard.SalesRollupService;
+import in.project.computers.service.dashboard.TopSellersService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin/dashboard")
@@ -26,6 +41,10 @@ import java.util.List;
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final SalesRollupService salesRollupService;
+    private final TopSellersService topSellersService;
+    private final DashboardStreamService dashboardStreamService;
+    private final OrderExportService orderExportService;
 
     @GetMapping
     public ResponseEntity<DashboardResponse> getDashboardData(
@@ -39,6 +58,15 @@ public class DashboardController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Server-Sent Events ของการเปลี่ยนแปลง Dashboard (Event "dashboard-delta") ใช้แทนการ Poll {@code GET /api/admin/dashboard}
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDashboard() {
+        log.info("Admin subscribed to dashboard stream");
+        return dashboardStreamService.subscribe();
+    }
+
     @GetMapping("/export")
     public ResponseEntity<List<DashboardResponse.RecentOrder>> exportOrders(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
@@ -50,4 +78,65 @@ public class DashboardController {
         List<DashboardResponse.RecentOrder> ordersToExport = dashboardService.getOrdersForExport(startInstant, endInstant);
         return ResponseEntity.ok(ordersToExport);
     }
-}
\ No newline at end of file
+
+    /**
+     * Export Order พร้อมรายการสินค้าเป็นไฟล์ CSV หรือ NDJSON แบบ Streaming (หน่วยความจำคงที่ ไม่จำกัดช่วงวันที่)
+     */
+    @GetMapping("/export/stream")
+    public ResponseEntity<StreamingResponseBody> streamOrderExport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "CSV") OrderExportFormat format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+
+        log.info("Admin request for streamed {} order export from {} to {} (gzip: {})", format, startDate, endDate, gzip);
+        Instant startInstant = startDate.atStartOfDay().toInstant(ZoneOffset.UTC);
+        Instant endInstant = endDate.atTime(LocalTime.MAX).toInstant(ZoneOffset.UTC);
+        StreamingResponseBody body = orderExportService.openExport(startInstant, endInstant, format, gzip);
+
+        String filename = "orders-" + startDate + "-to-" + endDate + "." + format.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
+    /**
+     * สินค้าขายดี K อันดับแรกตาม Component ID (ช่วงที่ยาวมากจะเป็นค่าประมาณ ดู {@code estimated})
+     */
+    @GetMapping("/top-sellers")
+    public ResponseEntity<List<TopSellerResponse>> getTopSellers(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Integer k) {
+        log.info("Admin request for top {} sellers from {} to {}", k, startDate, endDate);
+        return ResponseEntity.ok(topSellersService.topSellers(startDate, endDate, k));
+    }
+
+    /**
+     * สินค้าขายดี K อันดับแรกแยกตามประเภท Component เช่น CPU และ GPU ขายดี
+     */
+    @GetMapping("/top-sellers/by-category")
+    public ResponseEntity<Map<String, List<TopSellerResponse>>> getTopSellersByCategory(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Integer k) {
+        log.info("Admin request for top {} sellers per category from {} to {}", k, startDate, endDate);
+        return ResponseEntity.ok(topSellersService.topSellersByCategory(startDate, endDate, k));
+    }
+
+    /**
+     * คำนวณยอดขายรายวัน (sales_daily) ของช่วงวันที่ใหม่จาก Order ทั้งหมด ใช้สำหรับ Backfill ข้อมูลย้อนหลัง
+     */
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSalesRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endDate must not be before startDate.");
+        }
+        log.info("Admin request to rebuild sales rollups from {} to {}", startDate, endDate);
+        int days = salesRollupService.rebuild(startDate, endDate);
+        return ResponseEntity.ok(Map.of("startDate", startDate, "endDate", endDate, "days", days));
+    }
+}
@@ -3,8 +3,11 @@ package in.project.computers.controller.pageController;
 import in.project.computers.dto.lookup.*;
 import in.project.computers.entity.lookup.*;
 import in.project.computers.service.componentService.LookupService;
+import in.project.computers.service.componentService.LookupSnapshot;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -13,7 +16,6 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin/lookups")
@@ -21,12 +23,31 @@ import java.util.Map;
 @PreAuthorize("hasRole('ADMIN')")
 public class LookupController {
 
+    private static final String LOOKUP_VERSION_HEADER = "X-Lookup-Version";
+
     private final LookupService lookupService;
 
 
+    /**
+     * ส่ง Snapshot ที่ Serialize ไว้แล้วพร้อม Strong ETag: ถ้า {@code If-None-Match} ตรงกันตอบ 304 โดยไม่แตะฐานข้อมูล
+     * {@code no-cache} ให้ Browser เก็บไว้แต่ต้อง Revalidate ทุกครั้ง การแก้ไข Lookup จึงเห็นผลทันที
+     */
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllLookupsForFormComponent() {
-        return ResponseEntity.ok(lookupService.getAllLookups());
+    public ResponseEntity<byte[]> getAllLookupsForFormComponent(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        LookupSnapshot snapshot = lookupService.getLookupSnapshot();
+        if (snapshot.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.etag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .header(LOOKUP_VERSION_HEADER, String.valueOf(snapshot.version()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.body());
     }
 
     // --- Sockets Management ---
@@ -18,6 +18,8 @@ public class CartItemResponse {
     private BigDecimal unitPrice;
     private String imageUrl;
     private BigDecimal lineTotal;
+    private BigDecimal previousUnitPrice;
+    private boolean priceChanged;
 
     private List<OrderItemSnapshot> containedItemsSnapshot;
 }
\ No newline at end of file
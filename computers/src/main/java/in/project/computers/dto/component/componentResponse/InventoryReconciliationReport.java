@@ -0,0 +1,26 @@
+package in.project.computers.dto.component.componentResponse;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * สรุปผลการตรวจสอบความสอดคล้องระหว่าง Collection "component" และ "inventories"
+ */
+@Data
+@Builder
+public class InventoryReconciliationReport {
+    private Instant startedAt;
+    private Instant finishedAt;
+    private long durationMs;
+    private boolean dryRun;
+
+    private long componentsScanned;
+    private long inventoriesScanned;
+
+    private long orphanInventoriesRemoved;
+    private long missingInventoriesCreated;
+    private long activeFlagsCorrected;
+    private long skippedRecentlyCreated;
+}
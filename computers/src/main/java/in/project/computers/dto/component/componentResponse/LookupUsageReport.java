@@ -0,0 +1,24 @@
+package in.project.computers.dto.component.componentResponse;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * สรุปผลการตรวจสอบตัวนับการใช้งาน Lookup (Collection "lookup_usage") เทียบกับ Collection "component"
+ */
+@Data
+@Builder
+public class LookupUsageReport {
+    private Instant startedAt;
+    private Instant finishedAt;
+    private long durationMs;
+    private boolean dryRun;
+
+    private long componentsScanned;
+    private long lookupsReferenced;
+
+    private long countsCorrected;
+    private long skippedConcurrentlyChanged;
+}
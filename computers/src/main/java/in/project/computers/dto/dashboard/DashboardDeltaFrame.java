@@ -0,0 +1,44 @@
+package in.project.computers.dto.dashboard;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * การเปลี่ยนแปลงของ Dashboard ที่ถูกรวมไว้ในหนึ่ง Frame ของ Server-Sent Events
+ * ส่วนที่ไม่มีการเปลี่ยนแปลงจะเป็นรายการว่าง (หรือ null สำหรับ revenue)
+ */
+@Data
+@Builder
+public class DashboardDeltaFrame {
+    private Instant sentAt;
+    private List<DashboardResponse.RecentOrder> newOrders;
+    private List<StatusChange> statusChanges;
+    private List<DashboardResponse.LowStockProduct> lowStockAlerts;
+    private RevenueTick revenue;
+
+    @Data
+    @Builder
+    public static class StatusChange {
+        private String orderId;
+        // null เมื่อไม่ทราบสถานะเดิม (เช่น Order ที่หมดเวลาชำระเงินถูกยกเลิกเป็นชุด)
+        private String fromStatus;
+        private String toStatus;
+        private String paymentStatus;
+        private Instant changedAt;
+    }
+
+    @Data
+    @Builder
+    public static class RevenueTick {
+        // วันที่ตาม Time Zone ของ Rollup (yyyy-MM-dd)
+        private String day;
+        private BigDecimal revenue;
+        private long orders;
+        private long paidOrders;
+        private long pending;
+    }
+}
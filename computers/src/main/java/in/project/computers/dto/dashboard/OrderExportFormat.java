@@ -0,0 +1,21 @@
+package in.project.computers.dto.dashboard;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * รูปแบบไฟล์ของการ Export Order แบบ Streaming
+ * <ul>
+ *   <li>CSV: หนึ่งแถวต่อรายการสินค้า (ชิ้นส่วนใน Build เป็นแถวแยกที่อ้างถึงบรรทัดของ Build)</li>
+ *   <li>NDJSON: หนึ่ง JSON Object ต่อ Order พร้อมรายการสินค้าทั้งหมด</li>
+ * </ul>
+ */
+@Getter
+@RequiredArgsConstructor
+public enum OrderExportFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+}
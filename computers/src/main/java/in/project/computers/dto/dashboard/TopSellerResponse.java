@@ -0,0 +1,16 @@
+package in.project.computers.dto.dashboard;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TopSellerResponse {
+    private String componentId;
+    private String name;
+    // ประเภทของ Component (cpu, gpu, ...) หรือ "other" หากไม่พบ Component ในแคตตาล็อก
+    private String category;
+    private long quantity;
+    // true = จำนวนเป็นค่าประมาณจาก Count-Min Sketch (ไม่ต่ำกว่าค่าจริง)
+    private boolean estimated;
+}
@@ -0,0 +1,22 @@
+package in.project.computers.dto.order;
+
+import in.project.computers.entity.order.OrderStatus;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO สำหรับคำสั่งของ Admin ที่ทำกับหลาย Order พร้อมกัน
+ * ({@code reason} ใช้กับการปฏิเสธสลิป, {@code newStatus} ใช้กับการเปลี่ยนสถานะ)
+ */
+@Data
+public class BulkOrderActionRequest {
+
+    @NotEmpty(message = "At least one order ID is required")
+    private List<String> orderIds;
+
+    private String reason;
+
+    private OrderStatus newStatus;
+}
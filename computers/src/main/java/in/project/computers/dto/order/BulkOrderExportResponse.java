@@ -0,0 +1,16 @@
+package in.project.computers.dto.order;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * ผลลัพธ์ของการ Export หลาย Order: รายละเอียดเต็มตามลำดับที่ขอ และ ID ที่ไม่พบ
+ */
+@Data
+@Builder
+public class BulkOrderExportResponse {
+    private List<OrderResponse> orders;
+    private List<String> missingOrderIds;
+}
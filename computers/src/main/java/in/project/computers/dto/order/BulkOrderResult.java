@@ -0,0 +1,30 @@
+package in.project.computers.dto.order;
+
+import in.project.computers.entity.order.OrderStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * ผลลัพธ์ของคำสั่งแบบ Bulk: ผลของแต่ละ Order ตามลำดับที่ส่งมา
+ */
+@Data
+@Builder
+public class BulkOrderResult {
+    private int requested;
+    private int succeeded;
+    private int failed;
+    private List<Item> results;
+
+    @Data
+    @Builder
+    public static class Item {
+        private String orderId;
+        private boolean success;
+        // HTTP Status ที่ Endpoint แบบรายการเดียวจะตอบ (200, 404, 409, ...)
+        private int status;
+        private OrderStatus orderStatus;
+        private String error;
+    }
+}
@@ -0,0 +1,32 @@
+package in.project.computers.dto.order;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO สำหรับจัดส่งหลาย Order ในครั้งเดียว (แต่ละรายการมีข้อมูลขนส่งของตัวเอง)
+ */
+@Data
+public class BulkShipOrderRequest {
+
+    @NotEmpty(message = "At least one order is required")
+    @Valid
+    private List<Item> orders;
+
+    @Data
+    public static class Item {
+
+        @NotBlank(message = "Order ID cannot be blank")
+        private String orderId;
+
+        @NotBlank(message = "Shipping provider cannot be blank")
+        private String shippingProvider;
+
+        @NotBlank(message = "Tracking number cannot be blank")
+        private String trackingNumber;
+    }
+}
@@ -0,0 +1,11 @@
+package in.project.computers.dto.order;
+
+/**
+ * Field ที่ Admin ใช้ค้นหา Order ได้โดยตรง แต่ละค่ามี Index รองรับใน Collection {@code orders}
+ */
+public enum OrderLookupField {
+    EMAIL,
+    TRACKING_NUMBER,
+    TRANSACTION_ID,
+    MPN
+}
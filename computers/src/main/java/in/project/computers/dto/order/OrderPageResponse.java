@@ -0,0 +1,19 @@
+package in.project.computers.dto.order;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * ผลลัพธ์หนึ่งหน้าของรายการ Order แบบ Keyset Pagination
+ * <p>ส่ง {@code nextCursor} กลับมาใน Request ถัดไปเพื่อดึงหน้าถัดไป (null เมื่อไม่มีหน้าถัดไปแล้ว)</p>
+ */
+@Data
+@Builder
+public class OrderPageResponse {
+    private List<OrderSummaryResponse> items;
+    private int limit;
+    private boolean hasMore;
+    private String nextCursor;
+}
@@ -26,6 +26,7 @@ public class OrderResponse {
     private PaymentStatus paymentStatus;
     private PaymentDetails paymentDetails;
     private ShippingDetails shippingDetails;
+    private List<OrderStatusChange> statusHistory;
     private Instant createdAt;
     private Instant updatedAt;
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package in.project.computers.dto.order;
+
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.PaymentMethod;
+import in.project.computers.entity.order.PaymentStatus;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.data.domain.Sort;
+
+import java.time.Instant;
+
+/**
+ * เงื่อนไขการกรองและเรียงลำดับสำหรับรายการ Order ฝั่ง Admin (ทุก Field เป็น Optional)
+ */
+@Data
+@Builder
+public class OrderSearchCriteria {
+    private OrderStatus orderStatus;
+    private PaymentStatus paymentStatus;
+    private PaymentMethod paymentMethod;
+    private Instant from;
+    private Instant to;
+    private String email;
+    @Builder.Default
+    private Sort.Direction direction = Sort.Direction.DESC;
+}
@@ -0,0 +1,30 @@
+package in.project.computers.dto.order;
+
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.PaymentMethod;
+import in.project.computers.entity.order.PaymentStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * DTO แบบย่อของ Order สำหรับหน้ารายการ (ไม่มี lineItems)
+ */
+@Data
+@Builder
+public class OrderSummaryResponse {
+    private String id;
+    private String userId;
+    private String email;
+    private String phoneNumber;
+    private BigDecimal totalAmount;
+    private String currency;
+    private OrderStatus orderStatus;
+    private PaymentStatus paymentStatus;
+    private PaymentMethod paymentMethod;
+    private String trackingNumber;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
@@ -13,6 +13,7 @@ import org.springframework.data.mongodb.core.mapping.Field;
 import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 @Data
 @Builder
@@ -30,4 +31,7 @@ public class Inventory {
     private int quantity;
     @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal price;
+
+    // ID ของการปรับสต็อกจาก Order Outbox ล่าสุด ใช้กันการปรับซ้ำเมื่อ Event ถูกส่งซ้ำ (At-Least-Once)
+    private List<String> appliedOps;
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package in.project.computers.entity.dashboard;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * <h3>Sales Daily Rollup</h3>
+ * <p>
+ * ยอดรวมของ Order ต่อวัน (ตามวันที่สร้าง Order ใน Time Zone ของ Rollup) ถูกอัปเดตด้วย {@code $inc}
+ * ทุกครั้งที่สร้าง Order หรือเปลี่ยนสถานะ เพื่อให้ Dashboard อ่านหนึ่งเอกสารต่อวันแทนการสแกน Order
+ * </p>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "sales_daily")
+public class SalesDaily {
+    // วันที่ในรูปแบบ yyyy-MM-dd
+    @Id
+    private String id;
+
+    // เวลาเริ่มต้นของวัน ใช้ค้นหาเป็นช่วง
+    @Indexed
+    private Instant day;
+
+    // จำนวน Order ที่สร้างในวันนั้น
+    private long orders;
+    // จำนวน Order ที่ชำระเงินแล้ว (paymentStatus = COMPLETED)
+    private long paidOrders;
+    // จำนวน Order ในสถานะที่ Admin ต้องดำเนินการ (PROCESSING, REFUND_REQUESTED)
+    private long pending;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal revenue;
+
+    // จำนวนชิ้นที่ขายได้ต่อ Component (รวมชิ้นส่วนใน Build) Key คือ Component ID
+    private Map<String, ComponentUnits> units;
+
+    private Instant updatedAt;
+
+    // เพิ่มทุกครั้งที่มีการเขียน ใช้เป็นเงื่อนไขของ Rebuild: วันที่ถูก $inc ระหว่างสแกนจะไม่ถูกเขียนทับด้วยผลที่ล้าสมัย
+    private long rev;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ComponentUnits {
+        private String name;
+        private long quantity;
+    }
+}
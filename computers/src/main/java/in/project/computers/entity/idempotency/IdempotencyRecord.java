@@ -0,0 +1,50 @@
+package in.project.computers.entity.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * <h3>Idempotency Record</h3>
+ * <p>
+ * หนึ่งเอกสารต่อหนึ่ง Idempotency Key: ผู้ที่ Insert ได้ก่อนเป็นผู้ประมวลผล (IN_PROGRESS)
+ * เมื่อสำเร็จจะเก็บ Response ไว้ (COMPLETED) เพื่อส่งซ้ำให้ Request ที่ซ้ำกัน จนกว่าจะหมดอายุตาม TTL
+ * หากหมดเวลาโดยไม่รู้ผล (UNKNOWN) Key จะไม่ถูกปล่อย แต่รับช่วงได้หลังหมด Lease เหมือน IN_PROGRESS
+ * </p>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+    @Id
+    private String key;
+
+    // ชื่อการทำงานและเป้าหมาย เช่น "PAYPAL_CAPTURE:<orderId>" ใช้ตรวจจับการนำ Key ไปใช้กับ Request อื่น
+    // และให้ OrderExpiryService หา Capture ที่ค้างอยู่ของ Order
+    @Indexed
+    private String operation;
+
+    private IdempotencyStatus status;
+
+    // Token ของผู้ถือสิทธิ์ประมวลผล ใช้เป็นเงื่อนไขตอนบันทึกผล กันไม่ให้ผู้ที่หมด Lease แล้วเขียนทับ
+    private String ownerToken;
+
+    private Instant lockedUntil;
+
+    private org.bson.Document response;
+
+    private Instant createdAt;
+
+    private Instant completedAt;
+
+    @Indexed(expireAfter = "0s")
+    private Instant expireAt;
+}
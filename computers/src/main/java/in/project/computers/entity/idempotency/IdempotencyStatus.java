@@ -0,0 +1,8 @@
+package in.project.computers.entity.idempotency;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    // การทำงานหมดเวลาโดยไม่รู้ผล: ถือ Key ไว้จนหมด Lease แล้วผู้ที่รับช่วงต้องตรวจสถานะกับปลายทางก่อน
+    UNKNOWN,
+    COMPLETED
+}
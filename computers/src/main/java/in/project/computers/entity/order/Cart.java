@@ -5,6 +5,10 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -17,10 +21,16 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @Document(collection = "carts")
+@CompoundIndexes({
+        // ใช้หาเฉพาะตะกร้าที่มี SKU ที่ราคาเปลี่ยน (ทั้งสินค้าเดี่ยวและชิ้นส่วนใน Build)
+        @CompoundIndex(name = "items_product_idx", def = "{'items.product_id': 1}"),
+        @CompoundIndex(name = "items_build_component_idx", def = "{'items.contained_items_snapshot.componentId': 1}")
+})
 public class Cart {
     @Id
     private String id;
 
+    @Indexed(unique = true)
     @Field("user_id")
     private String userId;
 
@@ -30,6 +40,16 @@ public class Cart {
     @Field("created_at")
     private Instant createdAt;
 
+    @Indexed
     @Field("updated_at")
     private Instant updatedAt;
+
+    // TTL: ตะกร้าว่างจะถูก MongoDB ลบอัตโนมัติเมื่อถึงเวลานี้ (null เมื่อมีสินค้าในตะกร้า)
+    @Indexed(expireAfter = "0s")
+    @Field("expire_at")
+    private Instant expireAt;
+
+    // เพิ่มขึ้นทุกครั้งที่ตะกร้าถูกแก้ไข ใช้เป็น Guard สำหรับการอัปเดตแบบ Optimistic
+    @Version
+    private Long version;
 }
\ No newline at end of file
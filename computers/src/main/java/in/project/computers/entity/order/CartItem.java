@@ -30,6 +30,13 @@ public class CartItem {
     @Field("unit_price")
     private BigDecimal unitPrice;
 
+    // ราคาที่ผู้ใช้เห็นก่อนการเปลี่ยนราคาครั้งล่าสุด (null ถ้าราคาไม่เคยเปลี่ยน)
+    @Field("previous_unit_price")
+    private BigDecimal previousUnitPrice;
+
+    @Field("price_changed")
+    private boolean priceChanged;
+
     @Field("image_url")
     private String imageUrl;
 
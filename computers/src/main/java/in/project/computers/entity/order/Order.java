@@ -3,6 +3,9 @@ package in.project.computers.entity.order;
 import lombok.Builder;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import org.springframework.data.mongodb.core.mapping.FieldType;
@@ -24,6 +27,21 @@ import java.util.List;
  * </p>
  */
 @Document(collection = "orders")
+@CompoundIndexes({
+        // ใช้สำหรับ Keyset Pagination ของรายการ Order ฝั่ง Admin
+        @CompoundIndex(name = "created_at_id_idx", def = "{'createdAt': -1, '_id': -1}"),
+        // ใช้สำหรับค้นหา Order ที่ค้างรอชำระเงินเกินเวลา (OrderExpiryService)
+        @CompoundIndex(name = "status_created_at_idx", def = "{'orderStatus': 1, 'createdAt': 1}"),
+        // ใช้สำหรับ Export แบบ Incremental ตาม Watermark ของ updatedAt (AnalyticsExportService)
+        @CompoundIndex(name = "updated_at_id_idx", def = "{'updatedAt': 1, '_id': 1}"),
+        // Index สำหรับการค้นหาของ Admin (OrderQueryService.searchOrders) ผลลัพธ์เรียงจากใหม่ไปเก่า
+        @CompoundIndex(name = "email_created_at_idx", def = "{'email': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "tracking_number_idx", def = "{'shippingDetails.trackingNumber': 1}", sparse = true),
+        @CompoundIndex(name = "transaction_id_idx", def = "{'paymentDetails.transactionId': 1}", sparse = true),
+        // Multikey: MPN ของสินค้าเดี่ยว และ MPN ของชิ้นส่วนภายใน Build
+        @CompoundIndex(name = "line_item_mpn_idx", def = "{'lineItems.mpn': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "build_part_mpn_idx", def = "{'lineItems.containedItems.mpn': 1, 'createdAt': -1}")
+})
 @Data
 @Builder
 public class Order {
@@ -55,6 +73,18 @@ public class Order {
     // --- [ปรับปรุง] ส่วนรายละเอียดการจัดส่ง ---
     private ShippingDetails shippingDetails;
 
+    // --- ประวัติการเปลี่ยนสถานะ (เพิ่มโดย OrderStateMachine) ---
+    private List<OrderStatusChange> statusHistory;
+
+    // --- Outbox: งานเบื้องหลังที่รอ OrderOutboxService ทำ (เขียนพร้อมการเปลี่ยนสถานะใน Write เดียวกัน) ---
+    private List<OrderOutboxEvent> outbox;
+    // เวลาที่ Worker ควรหยิบไปทำ (null = ไม่มีงานค้าง) ระหว่างถูก Claim จะเป็นเวลาหมด Lease
+    @Indexed(sparse = true)
+    private Instant outboxDueAt;
+    private String outboxClaim;
+    // งานที่ล้มเหลวครบจำนวนครั้งสูงสุด รอตรวจสอบด้วยตนเอง
+    private List<OrderOutboxEvent> outboxDeadLetters;
+
     // --- ส่วนเวลา ---
     private Instant createdAt;
     private Instant updatedAt;
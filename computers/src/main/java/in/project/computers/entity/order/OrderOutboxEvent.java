@@ -0,0 +1,33 @@
+package in.project.computers.entity.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * งานเบื้องหลังหนึ่งรายการใน Outbox ของ {@link Order}
+ * ถูกเพิ่มเข้า {@code outbox} ใน Write เดียวกับการเปลี่ยนสถานะ และถูกลบออกเมื่อ Worker ทำสำเร็จ
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderOutboxEvent {
+    private String eventId;
+    private OrderOutboxEventType type;
+    private int attempts;
+    private String lastError;
+    private Instant createdAt;
+
+    public static OrderOutboxEvent of(OrderOutboxEventType type) {
+        return OrderOutboxEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .type(type)
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,10 @@
+package in.project.computers.entity.order;
+
+/**
+ * ประเภทของงานเบื้องหลังที่ต้องทำหลังการเปลี่ยนสถานะของ {@link Order}
+ */
+public enum OrderOutboxEventType {
+    DECREMENT_STOCK,
+    INCREMENT_STOCK,
+    CLEAR_CART
+}
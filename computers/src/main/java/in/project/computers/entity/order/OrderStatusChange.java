@@ -0,0 +1,28 @@
+package in.project.computers.entity.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * ประวัติการเปลี่ยนสถานะหนึ่งครั้งของ {@link Order}
+ * ถูกเพิ่มเข้า {@code statusHistory} ใน Update เดียวกับการเปลี่ยนสถานะ
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusChange {
+    private String transition;
+    private OrderStatus fromStatus;
+    private OrderStatus toStatus;
+    private PaymentStatus fromPaymentStatus;
+    private PaymentStatus toPaymentStatus;
+    private String note;
+    private Instant changedAt;
+    // Token ของงานแบบ Batch ที่เขียนรายการนี้ ใช้อ่านกลับว่า Order ใดถูกเปลี่ยนโดย Batch นั้นจริง (null = เปลี่ยนทีละรายการ)
+    private String batchId;
+}
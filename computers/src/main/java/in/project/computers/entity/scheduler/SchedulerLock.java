@@ -0,0 +1,31 @@
+package in.project.computers.entity.scheduler;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * <h3>Scheduler Lock</h3>
+ * <p>
+ * หนึ่งเอกสารต่อหนึ่งงานเบื้องหลัง ใช้ให้มีเพียง Instance เดียวที่รันงานนั้นในแต่ละรอบเมื่อมีหลาย Replica
+ * Lock มีอายุ ({@code lockedUntil}) หาก Instance ที่ถืออยู่ล่ม Instance อื่นจะเข้ามาแทนได้เมื่อหมดอายุ
+ * </p>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "scheduler_locks")
+public class SchedulerLock {
+    @Id
+    private String name;
+
+    private String owner;
+    private Instant lockedAt;
+    private Instant lockedUntil;
+}
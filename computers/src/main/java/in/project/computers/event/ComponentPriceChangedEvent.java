@@ -0,0 +1,22 @@
+package in.project.computers.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Event ที่ถูก Publish เมื่อราคาขายของ Component ใน Inventory เปลี่ยน
+ * ใช้สำหรับกระจายการอัปเดตราคาไปยังตะกร้าที่มีสินค้านั้นอยู่
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ComponentPriceChangedEvent {
+    private final String componentId;
+    private final BigDecimal oldPrice;
+    private final BigDecimal newPrice;
+    private final Instant changedAt;
+}
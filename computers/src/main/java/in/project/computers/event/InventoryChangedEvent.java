@@ -0,0 +1,20 @@
+package in.project.computers.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Event ที่ถูก Publish หลังจำนวนสต็อกใน Inventory เปลี่ยน
+ * {@code quantities} คือจำนวนคงเหลือล่าสุดต่อ Component ID
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class InventoryChangedEvent {
+    private final Map<String, Integer> quantities;
+    private final Instant changedAt;
+}
@@ -0,0 +1,25 @@
+package in.project.computers.event;
+
+import in.project.computers.entity.order.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Event ที่ถูก Publish หลังบันทึก Order ใหม่ลงฐานข้อมูล
+ * ใช้สำหรับส่งการเปลี่ยนแปลงแบบ Real-Time ไปยัง Dashboard ของ Admin
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrderCreatedEvent {
+    private final String orderId;
+    private final String userId;
+    private final String email;
+    private final OrderStatus orderStatus;
+    private final BigDecimal totalAmount;
+    private final Instant createdAt;
+}
@@ -0,0 +1,24 @@
+package in.project.computers.event;
+
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Event ที่ถูก Publish หลังการเปลี่ยนสถานะของ Order สำเร็จ (รวมถึงการย้อนสถานะเมื่อ Side Effect ล้มเหลว)
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrderStatusChangedEvent {
+    private final String orderId;
+    private final OrderStatus fromStatus;
+    private final OrderStatus toStatus;
+    private final PaymentStatus fromPaymentStatus;
+    private final PaymentStatus toPaymentStatus;
+    private final Instant changedAt;
+}
@@ -0,0 +1,20 @@
+package in.project.computers.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Event ที่ถูก Publish เมื่อ Order ที่ค้างรอชำระเงินเกินเวลาถูกยกเลิกอัตโนมัติ
+ * ใช้สำหรับปล่อยสิ่งที่ผูกกับ Order เหล่านั้น (เช่น Cache ของสถิติ)
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrdersExpiredEvent {
+    private final List<String> orderIds;
+    private final Instant expiredAt;
+}
@@ -0,0 +1,19 @@
+package in.project.computers.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * Event ที่ถูก Publish เมื่อยอดขายรายวัน ({@code sales_daily}) ของช่วงวันที่เปลี่ยน
+ * (มี Order ใหม่, Order เปลี่ยนสถานะ หรือ Rebuild) ใช้สำหรับ Invalidate Cache ของ Dashboard ที่ครอบคลุมวันเหล่านั้น
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SalesRollupChangedEvent {
+    private final LocalDate from;
+    private final LocalDate to;
+}
@@ -0,0 +1,18 @@
+package in.project.computers.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * การเรียกระบบภายนอกที่มีผลข้างเคียง (เช่น ตัดเงิน, คืนเงิน) หมดเวลารอ โดยไม่รู้ว่าปลายทางทำรายการไปแล้วหรือยัง
+ * <p>
+ * ต่างจากความล้มเหลวทั่วไปตรงที่ห้ามถือว่า "ยังไม่เกิดขึ้น": {@code IdempotencyService} จะไม่ปล่อย Key
+ * และการลองใหม่ต้องตรวจสถานะกับปลายทางก่อนทำรายการซ้ำ
+ * </p>
+ */
+public class OutcomeUnknownException extends ResponseStatusException {
+
+    public OutcomeUnknownException(String reason) {
+        super(HttpStatus.GATEWAY_TIMEOUT, reason);
+    }
+}
@@ -2,6 +2,8 @@ package in.project.computers.service.AWSS3Bucket;
 
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
+
 /**
  * Interface สำหรับบริการจัดการไฟล์ใน Amazon S3
  * กำหนดสัญญาสำหรับการอัปโหลดและลบไฟล์
@@ -14,6 +16,14 @@ public interface S3Service {
      */
     String uploadFile(MultipartFile file);
 
+    /**
+     * อัปโหลดไฟล์บนดิสก์ไปยัง Key ที่กำหนด (ไม่เปิดเป็น Public) ใช้สำหรับไฟล์ภายใน เช่น ไฟล์ Export
+     * @param key Key ของ Object ใน Bucket
+     * @param file ไฟล์ที่ต้องการอัปโหลด
+     * @param contentType Content-Type ของ Object
+     */
+    void uploadPrivateFile(String key, Path file, String contentType);
+
     /**
      * ลบไฟล์ออกจาก S3
      * @param filename ชื่อของไฟล์ที่ต้องการลบ
@@ -14,6 +14,7 @@ import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -54,6 +55,22 @@ public class S3ServiceImpl implements S3Service {
         }
     }
 
+    @Override
+    public void uploadPrivateFile(String key, Path file, String contentType) {
+        try {
+            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .build();
+            s3Client.putObject(putObjectRequest, RequestBody.fromFile(file));
+            log.info("File uploaded successfully to S3 with key: {}", key);
+        } catch (S3Exception e) {
+            log.error("S3 upload failed for key: {}", key, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "File upload failed due to an S3 service error.", e);
+        }
+    }
+
     @Override
     public boolean deleteFile(String filename) {
         if (filename == null || filename.isBlank()) {
@@ -0,0 +1,24 @@
+package in.project.computers.service.analyticsService;
+
+/**
+ * <h3>Analytics Export Service</h3>
+ * <p>
+ * เขียน Order และรายการสินค้าลง S3 แบบ Columnar (gzip ต่อ Column) โดยแบ่ง Partition ตามเดือนที่สร้าง Order
+ * ({@code <prefix>/orders/month=yyyy-MM/part-.../<column>.gz}, {@code <prefix>/order_lines/month=yyyy-MM/part-...})
+ * เพื่อให้การวิเคราะห์ไม่ต้อง Query ฐานข้อมูลจริง และดาวน์โหลดเฉพาะ Column ที่ต้องการ
+ * Part ที่สมบูรณ์มี {@code _schema.json} (อัปโหลดเป็นไฟล์สุดท้าย)
+ * </p>
+ * <p>
+ * แต่ละรอบอ่านเฉพาะ Order ที่ {@code updatedAt} เลย Watermark ของรอบก่อน Order ที่ถูกแก้ไขจะถูกเขียนซ้ำใน Part ใหม่
+ * ผู้อ่านจึงควรเลือกแถวที่ {@code updated_at} ล่าสุดต่อ {@code order_id} (รอบที่ล้มเหลวกลางทางอาจทิ้ง Part ที่ซ้ำไว้ได้เช่นกัน)
+ * </p>
+ */
+public interface AnalyticsExportService {
+
+    /**
+     * Export Order ที่เปลี่ยนตั้งแต่ Watermark ล่าสุด (รอบแรกรวม Order ใน Archive ด้วย)
+     *
+     * @return จำนวน Order ที่ถูกเขียน
+     */
+    long exportIncremental();
+}
@@ -0,0 +1,235 @@
+package in.project.computers.service.analyticsService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ReadPreference;
+import in.project.computers.entity.order.*;
+import in.project.computers.service.AWSS3Bucket.S3Service;
+import in.project.computers.service.orderService.OrderArchiveService;
+import in.project.computers.service.schedulerService.SchedulerLockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsExportServiceImpl implements AnalyticsExportService {
+
+    private static final String LOCK_NAME = "analytics-export";
+    private static final String STATE_COLLECTION = "analytics_exports";
+    private static final String STATE_ID = "orders";
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter RUN_ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private static final List<String> ORDER_COLUMNS = List.of(
+            "order_id", "user_id", "email", "created_at", "updated_at", "order_status", "payment_status", "payment_method",
+            "currency", "total_amount", "tax_amount", "shipping_provider", "tracking_number", "shipped_at", "line_count");
+    private static final List<String> LINE_COLUMNS = List.of(
+            "order_id", "created_at", "updated_at", "line_no", "parent_line", "item_type", "component_id", "build_id",
+            "mpn", "name", "quantity", "unit_price");
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderArchiveService orderArchiveService;
+    private final SchedulerLockService schedulerLockService;
+    private final ObjectMapper objectMapper;
+    private final S3Service s3Service;
+
+    // Prefix ของ Key ใน S3 Bucket เดียวกับไฟล์อื่นของระบบ ทุก Instance จึงเขียนและอ่านที่เดียวกัน
+    @Value("${app.analytics.export.prefix:analytics}")
+    private String prefix;
+
+    // ไม่ Export Order ที่เพิ่งถูกแก้ไขภายในช่วงนี้ กัน Write ที่ updatedAt ถูกกำหนดก่อนแต่ Commit หลังรอบ Export
+    @Value("${app.analytics.export.lag:PT2M}")
+    private Duration lag;
+
+    // จำนวน Partition ที่เปิดเขียนพร้อมกัน (แต่ละ Partition เปิดหนึ่ง gzip Stream ชั่วคราวต่อ Column)
+    @Value("${app.analytics.export.max-open-partitions:6}")
+    private int maxOpenPartitions;
+
+    @Value("${app.analytics.export.cursor-batch-size:1000}")
+    private int cursorBatchSize;
+
+    @Value("${app.analytics.export.lock-lease:PT2H}")
+    private Duration lockLease;
+
+    @Scheduled(cron = "${app.analytics.export.cron:0 0 2 * * *}")
+    public void scheduledExport() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lockLease)) {
+            log.debug("Analytics export skipped: another instance holds the lock.");
+            return;
+        }
+        try {
+            exportIncremental();
+        } catch (RuntimeException e) {
+            log.error("Analytics export failed; the watermark was not advanced and the next run will retry.", e);
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    @Override
+    public long exportIncremental() {
+        Document state = mongoTemplate.findById(STATE_ID, Document.class, STATE_COLLECTION);
+        Instant watermark = state != null && state.getDate("watermark") != null ? state.getDate("watermark").toInstant() : null;
+        Instant upper = Instant.now().minus(lag).truncatedTo(ChronoUnit.MILLIS);
+        if (watermark != null && !upper.isAfter(watermark)) {
+            return 0;
+        }
+        String runId = RUN_ID_FORMAT.format(upper);
+
+        long orders = 0;
+        try {
+            try (Partitions partitions = new Partitions(runId)) {
+                try (Stream<Order> changed = mongoTemplate.stream(changedSince(watermark, upper), Order.class)) {
+                    for (Iterator<Order> it = changed.iterator(); it.hasNext(); ) {
+                        partitions.write(it.next());
+                        orders++;
+                    }
+                }
+                // รอบแรก: Order ที่ถูกย้ายไป Archive แล้วไม่อยู่ใน Collection หลัก
+                if (watermark == null) {
+                    for (String month : orderArchiveService.findArchivedMonths()) {
+                        for (Order order : orderArchiveService.findArchivedOrdersByMonth(month)) {
+                            partitions.write(order);
+                            orders++;
+                        }
+                    }
+                }
+                partitions.commitAll();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Analytics export " + runId + " failed", e);
+        }
+
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(STATE_ID)), new Update()
+                .set("watermark", upper)
+                .set("lastRunId", runId)
+                .set("lastRunAt", Instant.now())
+                .set("lastRunOrders", orders), STATE_COLLECTION);
+        log.info("Analytics export {} wrote {} order(s) changed after {} to s3 prefix {}", runId, orders, watermark, prefix);
+        return orders;
+    }
+
+    private Query changedSince(Instant watermark, Instant upper) {
+        Criteria updatedAt = Criteria.where("updatedAt").lte(upper);
+        if (watermark != null) {
+            updatedAt = updatedAt.gt(watermark);
+        }
+        Query query = Query.query(updatedAt)
+                .with(Sort.by(Sort.Direction.ASC, "updatedAt", "_id"))
+                .cursorBatchSize(cursorBatchSize)
+                .withReadPreference(ReadPreference.secondaryPreferred());
+        query.fields().exclude("statusHistory", "outbox", "outboxDeadLetters", "outboxClaim", "userAddress", "phoneNumber");
+        return query;
+    }
+
+    /**
+     * Writer ที่เปิดอยู่ของแต่ละเดือน (LRU): เมื่อเกิน {@code maxOpenPartitions} Partition ที่ใช้น้อยสุดจะถูก Commit
+     * และหากเดือนนั้นมีข้อมูลอีกจะเปิด Part ใหม่ (ลำดับถัดไป) ของรอบเดียวกัน
+     */
+    private final class Partitions implements AutoCloseable {
+        private final String runId;
+        private final Map<String, MonthWriters> open = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<String, Integer> sequences = new HashMap<>();
+
+        Partitions(String runId) {
+            this.runId = runId;
+        }
+
+        void write(Order order) throws IOException {
+            String month = MONTH_FORMAT.format(order.getCreatedAt() != null ? order.getCreatedAt() : order.getUpdatedAt());
+            MonthWriters writers = open.get(month);
+            if (writers == null) {
+                if (open.size() >= maxOpenPartitions) {
+                    Map.Entry<String, MonthWriters> eldest = open.entrySet().iterator().next();
+                    eldest.getValue().commit();
+                    open.remove(eldest.getKey());
+                }
+                int sequence = sequences.merge(month, 1, Integer::sum);
+                writers = new MonthWriters(month, "part-" + runId + "-" + sequence);
+                open.put(month, writers);
+            }
+            writers.write(order);
+        }
+
+        void commitAll() throws IOException {
+            for (MonthWriters writers : open.values()) {
+                writers.commit();
+            }
+            open.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (MonthWriters writers : open.values()) {
+                writers.abort();
+            }
+            open.clear();
+        }
+    }
+
+    private final class MonthWriters {
+        private final ColumnarPartitionWriter orders;
+        private final ColumnarPartitionWriter lines;
+
+        MonthWriters(String month, String part) throws IOException {
+            this.orders = new ColumnarPartitionWriter(prefix + "/orders/month=" + month + "/" + part, ORDER_COLUMNS);
+            this.lines = new ColumnarPartitionWriter(prefix + "/order_lines/month=" + month + "/" + part, LINE_COLUMNS);
+        }
+
+        void write(Order order) throws IOException {
+            List<OrderLineItem> lineItems = order.getLineItems() != null ? order.getLineItems() : List.of();
+            PaymentDetails payment = order.getPaymentDetails();
+            ShippingDetails shipping = order.getShippingDetails();
+            orders.writeRow(order.getId(), order.getUserId(), order.getEmail(), order.getCreatedAt(), order.getUpdatedAt(),
+                    order.getOrderStatus(), order.getPaymentStatus(), payment != null ? payment.getPaymentMethod() : null,
+                    order.getCurrency(), order.getTotalAmount(), order.getTaxAmount(),
+                    shipping != null ? shipping.getShippingProvider() : null,
+                    shipping != null ? shipping.getTrackingNumber() : null,
+                    shipping != null ? shipping.getShippedAt() : null,
+                    lineItems.size());
+
+            int lineNo = 0;
+            for (OrderLineItem item : lineItems) {
+                int itemLine = ++lineNo;
+                lines.writeRow(order.getId(), order.getCreatedAt(), order.getUpdatedAt(), itemLine, null, item.getItemType(),
+                        item.getComponentId(), item.getBuildId(), item.getMpn(), item.getName(), item.getQuantity(), item.getUnitPrice());
+                if (item.getItemType() == LineItemType.BUILD && item.getContainedItems() != null) {
+                    for (OrderItemSnapshot part : item.getContainedItems()) {
+                        lines.writeRow(order.getId(), order.getCreatedAt(), order.getUpdatedAt(), ++lineNo, itemLine, "BUILD_PART",
+                                part.getComponentId(), item.getBuildId(), part.getMpn(), part.getName(),
+                                part.getQuantity() * item.getQuantity(), part.getPriceAtTimeOfOrder());
+                    }
+                }
+            }
+        }
+
+        void commit() throws IOException {
+            orders.commit(s3Service, objectMapper);
+            lines.commit(s3Service, objectMapper);
+        }
+
+        void abort() throws IOException {
+            orders.close();
+            lines.close();
+        }
+    }
+}
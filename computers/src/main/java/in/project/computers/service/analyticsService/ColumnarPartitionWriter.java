@@ -0,0 +1,157 @@
+package in.project.computers.service.analyticsService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.project.computers.service.AWSS3Bucket.S3Service;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * เขียนหนึ่ง Part ของ Partition แบบ Columnar: หนึ่งไฟล์ gzip ต่อ Column ({@code <part>/<column>.gz}) และ {@code <part>/_schema.json}
+ * <p>
+ * แต่ละไฟล์มีหนึ่งค่าต่อบรรทัดตามลำดับแถว ({@code \N} = null, Escape {@code \\ \n \r \t})
+ * ผู้อ่านจึงดาวน์โหลดเฉพาะ Column ที่ต้องการได้ ไฟล์ถูกพักในไดเรกทอรีชั่วคราวบนเครื่อง แล้วอัปโหลดไปยัง S3 เมื่อ {@link #commit}
+ * โดย {@code _schema.json} ถูกอัปโหลดเป็นไฟล์สุดท้าย: Part ที่ยังไม่มี {@code _schema.json} คือ Part ที่ยังไม่สมบูรณ์และต้องข้าม
+ * </p>
+ */
+final class ColumnarPartitionWriter implements Closeable {
+
+    static final String SCHEMA_FILE = "_schema.json";
+    private static final String COLUMN_CONTENT_TYPE = "application/gzip";
+    private static final String SCHEMA_CONTENT_TYPE = "application/json";
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final String keyPrefix;
+    private final Path tmpDir;
+    private final List<String> columns;
+    private final List<Writer> writers = new ArrayList<>();
+    private long rows;
+    private boolean finished;
+
+    ColumnarPartitionWriter(String keyPrefix, List<String> columns) throws IOException {
+        this.keyPrefix = keyPrefix;
+        this.tmpDir = Files.createTempDirectory("analytics-part-");
+        this.columns = columns;
+        for (String column : columns) {
+            OutputStream file = Files.newOutputStream(tmpDir.resolve(column + ".gz"));
+            writers.add(new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(file, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE));
+        }
+    }
+
+    void writeRow(Object... values) throws IOException {
+        if (values.length != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " values but got " + values.length);
+        }
+        for (int i = 0; i < values.length; i++) {
+            Writer writer = writers.get(i);
+            writer.write(encode(values[i]));
+            writer.write('\n');
+        }
+        rows++;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    /**
+     * ปิดทุก Column อัปโหลดทีละ Column แล้วอัปโหลด Schema เป็นลำดับสุดท้าย จากนั้นลบไดเรกทอรีชั่วคราว
+     */
+    void commit(S3Service s3Service, ObjectMapper objectMapper) throws IOException {
+        try {
+            closeWriters();
+            for (String column : columns) {
+                s3Service.uploadPrivateFile(keyPrefix + "/" + column + ".gz", tmpDir.resolve(column + ".gz"), COLUMN_CONTENT_TYPE);
+            }
+            Map<String, Object> schema = new LinkedHashMap<>();
+            schema.put("columns", columns);
+            schema.put("rows", rows);
+            schema.put("encoding", "gzip text, one value per line, \\N = null, backslash escapes");
+            Path schemaFile = tmpDir.resolve(SCHEMA_FILE);
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(schemaFile.toFile(), schema);
+            s3Service.uploadPrivateFile(keyPrefix + "/" + SCHEMA_FILE, schemaFile, SCHEMA_CONTENT_TYPE);
+        } finally {
+            finished = true;
+            deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * ยกเลิก Part ที่ยังไม่ Commit (ลบไดเรกทอรีชั่วคราว ไม่มีอะไรถูกอัปโหลด)
+     */
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            closeWriters();
+        } finally {
+            deleteRecursively(tmpDir);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (var paths = Files.walk(dir)) {
+            for (Path path : paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private void closeWriters() throws IOException {
+        IOException failure = null;
+        for (Writer writer : writers) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        writers.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static String encode(Object value) {
+        if (value == null) {
+            return "\\N";
+        }
+        String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = switch (c) {
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(text.length() + 8).append(text, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped != null ? escaped.toString() : text;
+    }
+}
@@ -0,0 +1,26 @@
+package in.project.computers.service.cartService;
+
+/**
+ * บริการดูแลวงจรชีวิตของตะกร้า เพื่อให้ Collection {@code carts} มีเฉพาะตะกร้าที่ยังใช้งานอยู่
+ * <p>
+ * ตะกร้าว่างถูกลบโดย TTL index บน {@code expire_at} ส่วนตะกร้าที่มีสินค้าแต่ไม่ถูกแตะต้องนานๆ
+ * จะถูกบีบอัดและย้ายไปเก็บที่ {@code carts_archive} โดยงานเบื้องหลัง
+ * </p>
+ */
+public interface CartLifecycleService {
+
+    /**
+     * บีบอัด Snapshot ของชิ้นส่วนใน Build ของตะกร้าที่ไม่ถูกแก้ไขมานาน: ลบชื่อ, MPN และรูปภาพซึ่งหาได้จาก Component
+     * (เก็บ componentId, จำนวน และราคาไว้) Field ที่ถูกลบจะถูกเติมกลับจาก Component ตอนแสดงตะกร้าและตอน Checkout
+     *
+     * @return จำนวนตะกร้าที่ถูกบีบอัด
+     */
+    long compactStaleSnapshots();
+
+    /**
+     * ย้ายตะกร้าที่ไม่ถูกแก้ไขเกินระยะเวลาที่กำหนดไปยัง {@code carts_archive} ทีละชุด
+     *
+     * @return จำนวนตะกร้าที่ถูกย้าย
+     */
+    long archiveIdleCarts();
+}
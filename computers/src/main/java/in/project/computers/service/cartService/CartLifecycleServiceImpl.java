@@ -0,0 +1,142 @@
+package in.project.computers.service.cartService;
+
+import in.project.computers.entity.order.Cart;
+import in.project.computers.entity.order.LineItemType;
+import in.project.computers.service.schedulerService.SchedulerLockService;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CartLifecycleServiceImpl implements CartLifecycleService {
+
+    private static final String CART_COLLECTION = "carts";
+    private static final String ARCHIVE_COLLECTION = "carts_archive";
+    private static final String LOCK_NAME = "cart-lifecycle";
+
+    private final MongoTemplate mongoTemplate;
+    private final SchedulerLockService schedulerLockService;
+
+    @Value("${app.cart.lifecycle.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.cart.lifecycle.compact-after:P7D}")
+    private Duration compactAfter;
+
+    @Value("${app.cart.lifecycle.archive-after:P30D}")
+    private Duration archiveAfter;
+
+    @Value("${app.cart.lifecycle.archive-retention:P180D}")
+    private Duration archiveRetention;
+
+    @Value("${app.cart.lifecycle.lock-lease:PT1H}")
+    private Duration lockLease;
+
+    @PostConstruct
+    void ensureArchiveIndexes() {
+        // carts_archive ไม่มี Entity ของตัวเอง จึงสร้าง Index เอง: TTL สำหรับลบข้อมูลเก่าและ Index สำหรับค้นหาตามผู้ใช้
+        mongoTemplate.indexOps(ARCHIVE_COLLECTION)
+                .createIndex(new Index().on("archived_at", Sort.Direction.ASC).expire(archiveRetention));
+        mongoTemplate.indexOps(ARCHIVE_COLLECTION)
+                .createIndex(new Index().on("user_id", Sort.Direction.ASC));
+    }
+
+    @Scheduled(cron = "${app.cart.lifecycle.cron:0 0 4 * * *}")
+    public void scheduledLifecycle() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lockLease)) {
+            log.debug("Cart lifecycle job skipped: another instance holds the lock.");
+            return;
+        }
+        try {
+            long compacted = compactStaleSnapshots();
+            long archived = archiveIdleCarts();
+            log.info("Cart lifecycle job finished. Compacted: {}, archived: {}", compacted, archived);
+        } catch (RuntimeException e) {
+            log.error("Cart lifecycle job failed", e);
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    @Override
+    public long compactStaleSnapshots() {
+        Instant cutoff = Instant.now().minus(compactAfter);
+        // Snapshot ของชิ้นส่วนใน Build ที่ไม่ถูกแตะนาน: เก็บเฉพาะ componentId, quantity และราคาที่ตกลงไว้
+        // ชื่อ, MPN และรูปภาพหาได้จาก Component จึงถูกเติมกลับตอนแสดงตะกร้าและตอนสร้าง Order
+        // เลือกเฉพาะตะกร้าที่ยังมี Field เหล่านี้อยู่ ตะกร้าที่บีบอัดแล้วจึงไม่ถูกเขียนซ้ำ
+        Query query = Query.query(Criteria.where("updatedAt").lt(cutoff)
+                .and("items.containedItemsSnapshot.name").exists(true));
+        // ไม่แตะ updatedAt เพื่อไม่ให้การบีบอัดนับเป็นกิจกรรมของผู้ใช้
+        Update update = new Update()
+                .unset("items.$[build].contained_items_snapshot.$[].name")
+                .unset("items.$[build].contained_items_snapshot.$[].mpn")
+                .unset("items.$[build].contained_items_snapshot.$[].imageUrl")
+                .filterArray(Criteria.where("build.item_type").is(LineItemType.BUILD.name())
+                        .and("build.contained_items_snapshot").type(4)); // 4 = BSON array
+        long compacted = mongoTemplate.updateMulti(query, update, Cart.class).getModifiedCount();
+        log.debug("Compacted build snapshots in {} cart(s) idle since {}", compacted, cutoff);
+        return compacted;
+    }
+
+    @Override
+    public long archiveIdleCarts() {
+        Instant cutoff = Instant.now().minus(archiveAfter);
+        long archived = 0;
+        while (true) {
+            Query batchQuery = Query.query(Criteria.where("updated_at").lt(cutoff))
+                    .with(Sort.by(Sort.Direction.ASC, "updated_at"))
+                    .limit(batchSize);
+            List<Document> batch = mongoTemplate.find(batchQuery, Document.class, CART_COLLECTION);
+            if (batch.isEmpty()) {
+                return archived;
+            }
+
+            Instant archivedAt = Instant.now();
+            List<Object> ids = batch.stream().map(doc -> doc.get("_id")).toList();
+            batch.forEach(doc -> doc.put("archived_at", archivedAt));
+
+            // เขียนลง Archive ก่อนแล้วค่อยลบ โดยลบเฉพาะตะกร้าที่ยังไม่ถูกแก้ไขหลังจากอ่านมา
+            // ใช้ Upsert ตาม _id เพื่อให้รันซ้ำได้หากงานรอบก่อนหยุดกลางคันหลังเขียน Archive
+            mongoTemplate.getCollection(ARCHIVE_COLLECTION).bulkWrite(batch.stream()
+                    .map(doc -> new ReplaceOneModel<>(Filters.eq("_id", doc.get("_id")), doc, new ReplaceOptions().upsert(true)))
+                    .toList());
+            long removed = mongoTemplate.remove(
+                    Query.query(Criteria.where("_id").in(ids).and("updated_at").lt(cutoff)), CART_COLLECTION).getDeletedCount();
+
+            if (removed < batch.size()) {
+                // ผู้ใช้กลับมาใช้ตะกร้าระหว่างนั้น: ตะกร้ายังอยู่ใน carts จึงลบสำเนาใน Archive ทิ้ง
+                Query stillActive = Query.query(Criteria.where("_id").in(ids));
+                stillActive.fields().include("_id");
+                List<Object> activeIds = mongoTemplate.find(stillActive, Document.class, CART_COLLECTION).stream()
+                        .map(doc -> doc.get("_id"))
+                        .toList();
+                mongoTemplate.remove(Query.query(Criteria.where("_id").in(activeIds)), ARCHIVE_COLLECTION);
+            }
+            archived += removed;
+            log.debug("Archived {} idle cart(s) in this batch", removed);
+
+            if (batch.size() < batchSize) {
+                return archived;
+            }
+        }
+    }
+}
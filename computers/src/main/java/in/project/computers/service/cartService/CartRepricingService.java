@@ -0,0 +1,22 @@
+package in.project.computers.service.cartService;
+
+import java.math.BigDecimal;
+
+/**
+ * บริการสำหรับอัปเดตราคาในตะกร้าเมื่อราคาของ Component เปลี่ยน
+ * <p>
+ * ราคาในตะกร้าเป็น Snapshot ณ ตอนที่เพิ่มสินค้า จึงต้องถูก Reprice เมื่อราคาต้นทางเปลี่ยน
+ * และทำเครื่องหมาย priceChanged ไว้ให้ UI แจ้งผู้ใช้
+ * </p>
+ */
+public interface CartRepricingService {
+
+    /**
+     * Reprice ทุกตะกร้าที่มี Component นี้อยู่ (ทั้งสินค้าเดี่ยวและชิ้นส่วนใน Build) เป็นชุดๆ
+     *
+     * @param componentId ID ของ Component ที่ราคาเปลี่ยน
+     * @param newPrice    ราคาใหม่
+     * @return จำนวนตะกร้าที่ถูกอัปเดต
+     */
+    int repriceCartsContaining(String componentId, BigDecimal newPrice);
+}
@@ -0,0 +1,197 @@
+package in.project.computers.service.cartService;
+
+import in.project.computers.entity.component.Inventory;
+import in.project.computers.entity.order.Cart;
+import in.project.computers.entity.order.CartItem;
+import in.project.computers.entity.order.LineItemType;
+import in.project.computers.entity.order.OrderItemSnapshot;
+import in.project.computers.event.ComponentPriceChangedEvent;
+import in.project.computers.repository.ComponentRepo.InventoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reprice ตะกร้าแบบ Event-driven: หาเฉพาะตะกร้าที่มี SKU ที่ราคาเปลี่ยนผ่าน Index
+ * ({@code items.product_id} และ {@code items.contained_items_snapshot.componentId})
+ * แล้วเขียนกลับเป็น Bulk ทีละชุด โดยใช้ Version ของตะกร้าเป็น Guard กันการทับการแก้ไขของผู้ใช้
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CartRepricingServiceImpl implements CartRepricingService {
+
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final InventoryRepository inventoryRepository;
+
+    @Value("${app.cart.reprice.batch-size:200}")
+    private int batchSize;
+
+    @Async
+    @EventListener
+    public void onComponentPriceChanged(ComponentPriceChangedEvent event) {
+        try {
+            // ใช้ราคาปัจจุบันใน Inventory แทนราคาใน Event: Event ที่มาช้าหรือสลับลำดับจะไม่ทำให้ตะกร้ากลับไปใช้ราคาเก่า
+            // ตรวจซ้ำหลัง Reprice เพราะ Handler ของการเปลี่ยนราคาก่อนหน้าอาจเขียนทับระหว่างนั้น
+            for (int attempt = 1; attempt <= MAX_BATCH_ATTEMPTS; attempt++) {
+                BigDecimal currentPrice = currentPrice(event.getComponentId());
+                if (currentPrice == null) {
+                    log.warn("Skipped repricing carts for component {}: inventory no longer exists.", event.getComponentId());
+                    return;
+                }
+                int updated = repriceCartsContaining(event.getComponentId(), currentPrice);
+                log.info("Repriced {} cart(s) for component {} to current price {} (event: {} -> {})",
+                        updated, event.getComponentId(), currentPrice, event.getOldPrice(), event.getNewPrice());
+                if (samePrice(currentPrice, currentPrice(event.getComponentId()))) {
+                    return;
+                }
+            }
+            log.warn("Price of component {} kept changing while repricing carts; the next price change will catch up.",
+                    event.getComponentId());
+        } catch (RuntimeException e) {
+            log.error("Failed to reprice carts for component {}", event.getComponentId(), e);
+        }
+    }
+
+    private BigDecimal currentPrice(String componentId) {
+        return inventoryRepository.findByComponentId(componentId).map(Inventory::getPrice).orElse(null);
+    }
+
+    @Override
+    public int repriceCartsContaining(String componentId, BigDecimal newPrice) {
+        Query query = cartsContaining(componentId);
+        query.cursorBatchSize(batchSize);
+
+        int updated = 0;
+        List<Cart> batch = new ArrayList<>(batchSize);
+        try (Stream<Cart> carts = mongoTemplate.stream(query, Cart.class)) {
+            Iterator<Cart> iterator = carts.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() >= batchSize) {
+                    updated += repriceBatch(batch, componentId, newPrice);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            updated += repriceBatch(batch, componentId, newPrice);
+        }
+        return updated;
+    }
+
+    private Query cartsContaining(String componentId) {
+        Query query = Query.query(new Criteria().orOperator(
+                Criteria.where("items.productId").is(componentId),
+                Criteria.where("items.containedItemsSnapshot.componentId").is(componentId)));
+        query.fields().include("items").include("version");
+        return query;
+    }
+
+    private int repriceBatch(List<Cart> carts, String componentId, BigDecimal newPrice) {
+        List<Cart> pending = carts;
+        int updated = 0;
+        for (int attempt = 1; attempt <= MAX_BATCH_ATTEMPTS; attempt++) {
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+            List<String> changedCartIds = new ArrayList<>();
+            for (Cart cart : pending) {
+                if (repriceItems(cart.getItems(), componentId, newPrice)) {
+                    // ไม่แตะ updatedAt เพราะการ Reprice ไม่ใช่กิจกรรมของผู้ใช้
+                    bulkOps.updateOne(
+                            Query.query(Criteria.where("id").is(cart.getId()).and("version").is(cart.getVersion())),
+                            new Update().set("items", cart.getItems()).inc("version", 1));
+                    changedCartIds.add(cart.getId());
+                }
+            }
+            if (changedCartIds.isEmpty()) {
+                return updated;
+            }
+
+            int matched = bulkOps.execute().getMatchedCount();
+            updated += matched;
+            if (matched == changedCartIds.size()) {
+                return updated;
+            }
+
+            // บางตะกร้าถูกผู้ใช้แก้ไขระหว่างนั้น: อ่านใหม่แล้วคำนวณอีกครั้ง ตะกร้าที่อัปเดตแล้วจะไม่มีอะไรเปลี่ยน
+            log.debug("{} cart(s) changed concurrently while repricing component {}, retrying (attempt {}).",
+                    changedCartIds.size() - matched, componentId, attempt);
+            Query reload = Query.query(Criteria.where("id").in(changedCartIds));
+            reload.fields().include("items").include("version");
+            pending = mongoTemplate.find(reload, Cart.class);
+        }
+        log.warn("Gave up repricing some carts for component {} after {} attempts due to concurrent updates.",
+                componentId, MAX_BATCH_ATTEMPTS);
+        return updated;
+    }
+
+    /**
+     * ปรับราคาของรายการในตะกร้าที่เกี่ยวข้องกับ Component นี้ และบันทึก Drift ให้ UI
+     *
+     * @return true หากมีรายการใดเปลี่ยนแปลงและต้องบันทึก
+     */
+    private boolean repriceItems(List<CartItem> items, String componentId, BigDecimal newPrice) {
+        if (items == null) {
+            return false;
+        }
+        boolean changed = false;
+        for (CartItem item : items) {
+            BigDecimal newUnitPrice;
+            if (item.getItemType() == LineItemType.COMPONENT && componentId.equals(item.getProductId())) {
+                newUnitPrice = newPrice;
+            } else if (item.getItemType() == LineItemType.BUILD && item.getContainedItemsSnapshot() != null) {
+                boolean partRepriced = false;
+                BigDecimal buildTotal = BigDecimal.ZERO;
+                for (OrderItemSnapshot part : item.getContainedItemsSnapshot()) {
+                    if (componentId.equals(part.getComponentId()) && !samePrice(part.getPriceAtTimeOfOrder(), newPrice)) {
+                        part.setPriceAtTimeOfOrder(newPrice);
+                        partRepriced = true;
+                    }
+                    buildTotal = buildTotal.add(part.getPriceAtTimeOfOrder().multiply(BigDecimal.valueOf(part.getQuantity())));
+                }
+                if (!partRepriced) {
+                    continue;
+                }
+                changed = true;
+                newUnitPrice = buildTotal;
+            } else {
+                continue;
+            }
+
+            if (samePrice(item.getUnitPrice(), newUnitPrice)) {
+                continue;
+            }
+            if (!item.isPriceChanged()) {
+                item.setPreviousUnitPrice(item.getUnitPrice());
+                item.setPriceChanged(true);
+            } else if (samePrice(item.getPreviousUnitPrice(), newUnitPrice)) {
+                // ราคากลับมาเท่ากับที่ผู้ใช้เคยเห็น จึงไม่ถือว่ามี Drift อีกต่อไป
+                item.setPreviousUnitPrice(null);
+                item.setPriceChanged(false);
+            }
+            item.setUnitPrice(newUnitPrice);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean samePrice(BigDecimal a, BigDecimal b) {
+        return a != null && b != null && a.compareTo(b) == 0;
+    }
+}
@@ -11,5 +11,6 @@ public interface CartService {
     CartResponse updateItemInCart(String cartItemId, UpdateCartItemRequest request);
     CartResponse removeItemFromCart(String cartItemId);
     void clearCart(String userId);
+    CartResponse acknowledgePriceChanges();
     Cart getCartEntityByUserId(String userId);
 }
\ No newline at end of file
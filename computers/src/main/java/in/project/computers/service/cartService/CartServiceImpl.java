@@ -2,6 +2,7 @@ package in.project.computers.service.cartService;
 
 import in.project.computers.dto.cart.*;
 import in.project.computers.entity.component.Component;
+import in.project.computers.entity.component.Inventory;
 import in.project.computers.entity.computerBuild.ComputerBuild;
 import in.project.computers.entity.order.Cart;
 import in.project.computers.entity.order.CartItem;
@@ -11,18 +12,29 @@ import in.project.computers.repository.ComponentRepo.ComponentRepository;
 import in.project.computers.repository.ComponentRepo.InventoryRepository;
 import in.project.computers.repository.generalRepo.CartRepository;
 import in.project.computers.repository.generalRepo.ComputerBuildRepository;
+import in.project.computers.service.componentService.StockAvailabilityService;
 import in.project.computers.service.userAuthenticationService.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
@@ -36,123 +48,205 @@ import java.util.stream.Stream;
 @Slf4j
 public class CartServiceImpl implements CartService {
 
+    private static final String COMPONENT_SHORTAGE_MESSAGE = "Insufficient stock for %s";
+    private static final String BUILD_SHORTAGE_MESSAGE = "Insufficient stock for '%s' required for the build.";
+    private static final String CONCURRENT_MODIFICATION_MESSAGE = "Your cart was modified by another request. Please try again.";
+    private static final int MAX_UPDATE_ATTEMPTS = 3;
+
     private final CartRepository cartRepository;
     private final UserService userService;
     private final ComponentRepository componentRepository;
     private final ComputerBuildRepository buildRepository;
     private final InventoryRepository inventoryRepository;
+    private final StockAvailabilityService stockAvailabilityService;
+    private final MongoTemplate mongoTemplate;
+
+    // ตะกร้าที่ว่างอยู่นานกว่านี้จะถูกลบโดย TTL index
+    @Value("${app.cart.lifecycle.empty-cart-ttl:P7D}")
+    private Duration emptyCartTtl;
 
     @Override
     public CartResponse getCartForCurrentUser() {
         String userId = userService.findByUserId();
-        Cart cart = findOrCreateCartByUserId(userId);
-        return entityToResponse(cart);
+        // การเปิดดูตะกร้าไม่สร้างเอกสารใหม่ ตะกร้าจะถูกสร้างเมื่อเพิ่มสินค้าชิ้นแรกเท่านั้น
+        return cartRepository.findByUserId(userId)
+                .map(this::entityToResponse)
+                .orElseGet(() -> CartResponse.builder()
+                        .userId(userId)
+                        .items(java.util.Collections.emptyList())
+                        .subtotal(BigDecimal.ZERO)
+                        .totalItems(0)
+                        .build());
     }
 
     @Override
-    @Transactional
     public CartResponse addItemToCart(AddItemToCartRequest request) {
         String userId = userService.findByUserId();
-        Cart cart = findOrCreateCartByUserId(userId);
         int requestedQuantity = request.getQuantity();
 
-        Optional<CartItem> existingItemOpt = cart.getItems().stream()
-                .filter(item -> item.getProductId().equals(request.getProductId()))
-                .findFirst();
+        for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+            Cart cart = findOrCreateCartByUserId(userId);
+            Optional<CartItem> existingItemOpt = cart.getItems().stream()
+                    .filter(item -> item.getProductId().equals(request.getProductId()))
+                    .findFirst();
 
-        if (existingItemOpt.isPresent()) {
-            CartItem existingItem = existingItemOpt.get();
-            int newQuantity = existingItem.getQuantity() + requestedQuantity;
-            validateStock(existingItem.getProductId(), existingItem.getItemType(), newQuantity);
-            existingItem.setQuantity(newQuantity);
-            log.info("Updated quantity for item {} in cart for user {}", request.getProductId(), userId);
-        } else {
-            validateStock(request.getProductId(), request.getItemType(), requestedQuantity);
-            CartItem newItem = createNewCartItem(request);
-            cart.getItems().add(newItem);
-            log.info("Added new item {} to cart for user {}", request.getProductId(), userId);
-        }
+            Cart updatedCart;
+            if (existingItemOpt.isPresent()) {
+                CartItem existingItem = existingItemOpt.get();
+                validateStock(existingItem.getProductId(), existingItem.getItemType(), existingItem.getQuantity() + requestedQuantity);
+                // $inc แบบ Positional อิงกับ Version ที่อ่านมา: การตรวจสต็อกด้านบนใช้จำนวนเดิมในตะกร้า
+                // หากมีการเพิ่ม/ลบ/ล้างตะกร้าระหว่างนั้น Version จะเปลี่ยนและต้องอ่านและตรวจใหม่
+                Query query = Query.query(Criteria.where("id").is(cart.getId())
+                        .and("version").is(cart.getVersion())
+                        .and("items.cartItemId").is(existingItem.getCartItemId()));
+                updatedCart = modifyCart(query, new Update().inc("items.$.quantity", requestedQuantity).unset("expireAt"));
+            } else {
+                // createNewCartItem ตรวจสอบสต็อกและดึงราคาจาก Query ชุดเดียวกัน
+                CartItem newItem = createNewCartItem(request);
+                // $push เฉพาะเมื่อยังไม่มีสินค้านี้ในตะกร้า กันรายการซ้ำเมื่อสองแท็บเพิ่มสินค้าเดียวกันพร้อมกัน
+                Query query = Query.query(Criteria.where("id").is(cart.getId())
+                        .and("items.productId").ne(request.getProductId()));
+                updatedCart = modifyCart(query, new Update().push("items", newItem).unset("expireAt"));
+            }
 
-        cart.setUpdatedAt(Instant.now());
-        cartRepository.save(cart);
-        return entityToResponse(cart);
+            if (updatedCart != null) {
+                log.info("Added {} x {} to cart for user {}", requestedQuantity, request.getProductId(), userId);
+                return entityToResponse(updatedCart);
+            }
+            log.debug("Cart for user {} changed while adding item {}, retrying (attempt {}).", userId, request.getProductId(), attempt);
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT, CONCURRENT_MODIFICATION_MESSAGE);
     }
 
     @Override
-    @Transactional
     public CartResponse updateItemInCart(String cartItemId, UpdateCartItemRequest request) {
         String userId = userService.findByUserId();
-        Cart cart = getCartEntityByUserId(userId);
-        CartItem itemToUpdate = cart.getItems().stream()
-                .filter(item -> item.getCartItemId().equals(cartItemId))
-                .findFirst()
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Item not found in cart."));
-
-        validateStock(itemToUpdate.getProductId(), itemToUpdate.getItemType(), request.getQuantity());
-        itemToUpdate.setQuantity(request.getQuantity());
-        cart.setUpdatedAt(Instant.now());
-        cartRepository.save(cart);
-        log.info("Updated quantity for cart item {} for user {}", cartItemId, userId);
-        return entityToResponse(cart);
+
+        for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+            Cart cart = getCartEntityByUserId(userId);
+            CartItem itemToUpdate = cart.getItems().stream()
+                    .filter(item -> item.getCartItemId().equals(cartItemId))
+                    .findFirst()
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Item not found in cart."));
+
+            validateStock(itemToUpdate.getProductId(), itemToUpdate.getItemType(), request.getQuantity());
+
+            // การตั้งค่าจำนวนแบบ Absolute ต้องอิงกับ Version ที่อ่านมา เพื่อไม่ให้ทับการแก้ไขที่เกิดขึ้นระหว่างนั้น
+            Query query = Query.query(Criteria.where("id").is(cart.getId())
+                    .and("version").is(cart.getVersion())
+                    .and("items.cartItemId").is(cartItemId));
+            Cart updatedCart = modifyCart(query, new Update().set("items.$.quantity", request.getQuantity()));
+
+            if (updatedCart != null) {
+                log.info("Updated quantity for cart item {} for user {}", cartItemId, userId);
+                return entityToResponse(updatedCart);
+            }
+            log.debug("Version conflict updating cart item {} for user {}, retrying (attempt {}).", cartItemId, userId, attempt);
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT, CONCURRENT_MODIFICATION_MESSAGE);
     }
 
     @Override
-    @Transactional
     public CartResponse removeItemFromCart(String cartItemId) {
         String userId = userService.findByUserId();
-        Cart cart = getCartEntityByUserId(userId);
-        boolean removed = cart.getItems().removeIf(item -> item.getCartItemId().equals(cartItemId));
-        if (!removed) {
+        Query query = Query.query(Criteria.where("userId").is(userId).and("items.cartItemId").is(cartItemId));
+        Cart updatedCart = modifyCart(query, new Update().pull("items", new Document("cart_item_id", cartItemId)));
+        if (updatedCart == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Item not found in cart.");
         }
-        cart.setUpdatedAt(Instant.now());
-        cartRepository.save(cart);
+        if (updatedCart.getItems().isEmpty()) {
+            scheduleExpiryIfEmpty(updatedCart);
+        }
         log.info("Removed cart item {} for user {}", cartItemId, userId);
-        return entityToResponse(cart);
+        return entityToResponse(updatedCart);
     }
 
     @Override
-    @Transactional
     public void clearCart(String userId) {
-        Cart cart = getCartEntityByUserId(userId);
-        cart.getItems().clear();
-        cart.setUpdatedAt(Instant.now());
-        cartRepository.save(cart);
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        Update update = new Update()
+                .set("items", new ArrayList<CartItem>())
+                .set("expireAt", Instant.now().plus(emptyCartTtl));
+        Cart updatedCart = modifyCart(query, update);
+        if (updatedCart == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart not found for user.");
+        }
         log.info("Cleared all items from the cart for user {}", userId);
     }
 
+    @Override
+    public CartResponse acknowledgePriceChanges() {
+        String userId = userService.findByUserId();
+        Query query = Query.query(Criteria.where("userId").is(userId).and("items.priceChanged").is(true));
+        Update update = new Update()
+                .set("items.$[].price_changed", false)
+                .unset("items.$[].previous_unit_price");
+        Cart updatedCart = modifyCart(query, update);
+        // ไม่มีรายการที่ราคาเปลี่ยน: คืนตะกร้าปัจจุบันตามเดิม
+        return updatedCart != null ? entityToResponse(updatedCart) : getCartForCurrentUser();
+    }
+
     @Override
     public Cart getCartEntityByUserId(String userId) {
         return cartRepository.findByUserId(userId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart not found for user."));
     }
 
+    /**
+     * อัปเดตตะกร้าแบบ Atomic ใน Round-trip เดียว พร้อมเพิ่ม Version และคืนเอกสารหลังอัปเดต
+     * คืนค่า null เมื่อไม่มีเอกสารที่ตรงกับเงื่อนไข (เช่น Version เปลี่ยนไปแล้ว)
+     */
+    private Cart modifyCart(Query query, Update update) {
+        update.set("updatedAt", Instant.now()).inc("version", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Cart.class);
+    }
+
+    /**
+     * ตั้งเวลาหมดอายุ (TTL) ให้ตะกร้าที่ว่างแล้ว โดยมีเงื่อนไขว่ายังว่างอยู่ ณ ตอนเขียน
+     * เพื่อไม่ให้ลบตะกร้าที่มีการเพิ่มสินค้าเข้ามาพร้อมกัน
+     */
+    private void scheduleExpiryIfEmpty(Cart cart) {
+        Instant expireAt = Instant.now().plus(emptyCartTtl);
+        Query query = Query.query(Criteria.where("id").is(cart.getId()).and("items").size(0));
+        if (mongoTemplate.updateFirst(query, new Update().set("expireAt", expireAt), Cart.class).getModifiedCount() > 0) {
+            cart.setExpireAt(expireAt);
+        }
+    }
+
     private Cart findOrCreateCartByUserId(String userId) {
-        return cartRepository.findByUserId(userId).orElseGet(() -> {
-            log.info("No cart found for user {}, creating a new one.", userId);
-            Cart newCart = Cart.builder()
-                    .userId(userId)
-                    .createdAt(Instant.now())
-                    .updatedAt(Instant.now())
-                    .build();
-            return cartRepository.save(newCart);
-        });
+        Instant now = Instant.now();
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        Update update = new Update()
+                .setOnInsert("items", new ArrayList<CartItem>())
+                .setOnInsert("createdAt", now)
+                .setOnInsert("updatedAt", now)
+                .setOnInsert("version", 0L)
+                .setOnInsert("expireAt", now.plus(emptyCartTtl));
+        try {
+            return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true), Cart.class);
+        } catch (DuplicateKeyException e) {
+            // อีก Request สร้างตะกร้าให้ผู้ใช้คนเดียวกันไปก่อนแล้ว (Unique index บน user_id)
+            log.debug("Cart for user {} was created concurrently, re-reading it.", userId);
+            return getCartEntityByUserId(userId);
+        }
     }
 
     private CartItem createNewCartItem(AddItemToCartRequest request) {
         if (request.getItemType() == LineItemType.COMPONENT) {
             Component component = componentRepository.findById(request.getProductId())
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Component not found."));
-            BigDecimal price = inventoryRepository.findByComponentId(component.getId())
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Inventory not found for component."))
-                    .getPrice();
+            Inventory inventory = inventoryRepository.findByComponentId(component.getId())
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Inventory not found for component."));
+            if (inventory.getQuantity() < request.getQuantity()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(COMPONENT_SHORTAGE_MESSAGE, component.getName()));
+            }
             return CartItem.builder()
                     .cartItemId(UUID.randomUUID().toString())
                     .productId(component.getId())
                     .name(component.getName())
                     .quantity(request.getQuantity())
                     .itemType(LineItemType.COMPONENT)
-                    .unitPrice(price)
+                    .unitPrice(inventory.getPrice())
                     .imageUrl(component.getImageUrl()) // A component has its own image URL
                     .containedItemsSnapshot(null)
                     .build();
@@ -160,13 +254,20 @@ public class CartServiceImpl implements CartService {
             ComputerBuild build = buildRepository.findById(request.getProductId())
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Build not found."));
 
+            // ดึง Inventory ของทุกชิ้นส่วนใน Build ด้วย Query เดียว แล้วใช้ทั้งตรวจสต็อกและคำนวณราคา
+            Map<String, Integer> requiredQuantities = requiredQuantitiesForBuild(build, request.getQuantity());
+            Map<String, Inventory> inventories = stockAvailabilityService.findInventoriesByComponentIds(requiredQuantities.keySet());
+            stockAvailabilityService.assertAvailable(requiredQuantities, inventories, BUILD_SHORTAGE_MESSAGE);
+
             List<OrderItemSnapshot> snapshots = new ArrayList<>();
             final BigDecimal[] totalPrice = {BigDecimal.ZERO};
 
             forEachComponentInBuild(build, (component, qty) -> {
-                BigDecimal priceAtTimeOfAdding = inventoryRepository.findByComponentId(component.getId())
-                        .orElseThrow(() -> new IllegalStateException("Inventory missing for component " + component.getId()))
-                        .getPrice();
+                Inventory inventory = inventories.get(component.getId());
+                if (inventory == null) {
+                    throw new IllegalStateException("Inventory missing for component " + component.getId());
+                }
+                BigDecimal priceAtTimeOfAdding = inventory.getPrice();
 
                 snapshots.add(OrderItemSnapshot.builder()
                         .componentId(component.getId())
@@ -198,28 +299,25 @@ public class CartServiceImpl implements CartService {
     private void validateStock(String productId, LineItemType type, int requestedQuantity) {
         log.debug("Validating stock for productId: {}, type: {}, quantity: {}", productId, type, requestedQuantity);
         if (type == LineItemType.COMPONENT) {
-            int availableStock = inventoryRepository.findByComponentId(productId)
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Inventory for component not found."))
-                    .getQuantity();
-            if (availableStock < requestedQuantity) {
-                String componentName = componentRepository.findById(productId).map(Component::getName).orElse(productId);
-                throw new ResponseStatusException(HttpStatus.CONFLICT, "Insufficient stock for " + componentName);
+            Map<String, Inventory> inventories = stockAvailabilityService.findInventoriesByComponentIds(List.of(productId));
+            if (inventories.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Inventory for component not found.");
             }
+            stockAvailabilityService.assertAvailable(Map.of(productId, requestedQuantity), inventories, COMPONENT_SHORTAGE_MESSAGE);
         } else if (type == LineItemType.BUILD) {
             ComputerBuild build = buildRepository.findById(productId)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Build not found."));
-            forEachComponentInBuild(build, (component, qtyInBuild) -> {
-                int totalRequired = qtyInBuild * requestedQuantity;
-                int availableStock = inventoryRepository.findByComponentId(component.getId())
-                        .orElseThrow(() -> new IllegalStateException("Missing inventory for " + component.getId()))
-                        .getQuantity();
-                if (availableStock < totalRequired) {
-                    throw new ResponseStatusException(HttpStatus.CONFLICT, "Insufficient stock for '" + component.getName() + "' required for the build.");
-                }
-            });
+            stockAvailabilityService.assertAvailable(requiredQuantitiesForBuild(build, requestedQuantity), BUILD_SHORTAGE_MESSAGE);
         }
     }
 
+    private Map<String, Integer> requiredQuantitiesForBuild(ComputerBuild build, int buildQuantity) {
+        Map<String, Integer> requiredQuantities = new HashMap<>();
+        forEachComponentInBuild(build, (component, qtyInBuild) ->
+                requiredQuantities.merge(component.getId(), qtyInBuild * buildQuantity, Integer::sum));
+        return requiredQuantities;
+    }
+
     private void forEachComponentInBuild(ComputerBuild build, BiConsumer<Component, Integer> action) {
         Stream.of(build.getCpu(), build.getMotherboard(), build.getPsu(), build.getCaseDetail(), build.getCooler())
                 .filter(Objects::nonNull)
@@ -242,6 +340,7 @@ public class CartServiceImpl implements CartService {
             return CartResponse.builder().id(cart != null ? cart.getId() : null).userId(cart != null ? cart.getUserId() : null).items(java.util.Collections.emptyList()).subtotal(BigDecimal.ZERO).totalItems(0).build();
         }
 
+        Map<String, Component> compactedParts = componentsForCompactedSnapshots(cart);
         List<CartItemResponse> itemResponses = cart.getItems().stream().map(item -> {
             totalItems.addAndGet(item.getQuantity());
             return CartItemResponse.builder()
@@ -253,7 +352,9 @@ public class CartServiceImpl implements CartService {
                     .unitPrice(item.getUnitPrice())
                     .imageUrl(item.getImageUrl())
                     .lineTotal(item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                    .containedItemsSnapshot(item.getContainedItemsSnapshot())
+                    .previousUnitPrice(item.getPreviousUnitPrice())
+                    .priceChanged(item.isPriceChanged())
+                    .containedItemsSnapshot(withDisplayFields(item.getContainedItemsSnapshot(), compactedParts))
                     .build();
         }).collect(Collectors.toList());
 
@@ -267,4 +368,40 @@ public class CartServiceImpl implements CartService {
                 .totalItems(totalItems.get())
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Component ของชิ้นส่วนที่ Snapshot ถูกบีบอัดแล้ว (ไม่มีชื่อ) ดู {@link CartLifecycleService#compactStaleSnapshots()}
+     * ดึงเป็น Query เดียวและเฉพาะเมื่อมีชิ้นส่วนแบบนั้นเท่านั้น
+     */
+    private Map<String, Component> componentsForCompactedSnapshots(Cart cart) {
+        List<String> ids = cart.getItems().stream()
+                .filter(item -> item.getContainedItemsSnapshot() != null)
+                .flatMap(item -> item.getContainedItemsSnapshot().stream())
+                .filter(part -> part.getName() == null)
+                .map(OrderItemSnapshot::getComponentId)
+                .distinct()
+                .toList();
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return componentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Component::getId, component -> component));
+    }
+
+    private List<OrderItemSnapshot> withDisplayFields(List<OrderItemSnapshot> parts, Map<String, Component> components) {
+        if (parts == null || components.isEmpty()) {
+            return parts;
+        }
+        return parts.stream().map(part -> {
+            Component component = components.get(part.getComponentId());
+            if (part.getName() != null || component == null) {
+                return part;
+            }
+            return part.toBuilder()
+                    .name(component.getName())
+                    .mpn(component.getMpn())
+                    .imageUrl(component.getImageUrl())
+                    .build();
+        }).toList();
+    }
+}
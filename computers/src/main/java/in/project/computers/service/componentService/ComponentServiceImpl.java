@@ -7,18 +7,29 @@ import in.project.computers.entity.component.Inventory;
 import in.project.computers.dto.component.componentRequest.ComponentRequest;
 import in.project.computers.dto.component.componentRequest.StockAdjustmentRequest;
 import in.project.computers.dto.component.componentResponse.ComponentResponse;
+import in.project.computers.event.ComponentPriceChangedEvent;
+import in.project.computers.event.InventoryChangedEvent;
 import in.project.computers.repository.ComponentRepo.ComponentRepository;
 import in.project.computers.repository.ComponentRepo.InventoryRepository;
 import in.project.computers.service.AWSS3Bucket.S3Service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 
@@ -31,6 +42,9 @@ public class ComponentServiceImpl implements ComponentService {
     private final InventoryRepository inventoryRepository;
     private final ComponentConverter componentConverter;
     private final S3Service s3Service;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LookupUsageService lookupUsageService;
+    private final MongoTemplate mongoTemplate;
 
     @Override
     @Transactional
@@ -57,14 +71,23 @@ public class ComponentServiceImpl implements ComponentService {
         componentConverter.updateEntityFromRequest(component, request);
 
 
-        Component updatedComponent = componentRepository.save(component);
+        // findAndReplace คืนเอกสารที่ถูกแทนที่จริง ส่วนต่างของตัวนับการใช้งาน Lookup จึงถูกต้องแม้มีการแก้ไขพร้อมกัน
+        Component replaced = mongoTemplate.findAndReplace(byId(componentId), component);
+        if (replaced == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Component not found with ID: " + componentId);
+        }
+        Component updatedComponent = component;
+        lookupUsageService.recordChange(lookupUsageService.referencesOf(replaced), lookupUsageService.referencesOf(updatedComponent));
 
 
         Inventory inventory = findInventoryByComponentId(componentId);
         if (request.getPrice() != null && !request.getPrice().equals(inventory.getPrice())) {
+            BigDecimal oldPrice = inventory.getPrice();
             inventory.setPrice(request.getPrice());
             inventoryRepository.save(inventory);
             log.info("... price for component ID {} updated to: {}", componentId, request.getPrice());
+            // แจ้งให้ระบบ Reprice ตะกร้าที่มีสินค้านี้อยู่ (ทำงานแบบ Async)
+            eventPublisher.publishEvent(new ComponentPriceChangedEvent(componentId, oldPrice, request.getPrice(), Instant.now()));
         }
 
         log.info("Successfully saved updates for component ID: {}", componentId);
@@ -80,7 +103,9 @@ public class ComponentServiceImpl implements ComponentService {
         Inventory inventory = findInventoryByComponentId(componentId);
         performStockAdjustment(component, inventory, request.getQuantity());
         inventoryRepository.save(inventory);
-        componentRepository.save(component);
+        // แก้เฉพาะสถานะ Active: การ save ทั้ง Entity จะเขียนทับการแก้ไข Component ที่เกิดขึ้นระหว่างนั้น
+        mongoTemplate.updateFirst(byId(componentId), Update.update("isActive", component.isActive()), Component.class);
+        eventPublisher.publishEvent(new InventoryChangedEvent(Map.of(componentId, inventory.getQuantity()), Instant.now()));
         return componentConverter.convertEntityToResponse(findComponentById(componentId));
     }
 
@@ -99,7 +124,11 @@ public class ComponentServiceImpl implements ComponentService {
 
         }
         inventoryRepository.delete(inventoryToDelete);
-        componentRepository.delete(componentToDelete);
+        // ลดตัวนับตามเอกสารที่ถูกลบจริง (ไม่ใช่ฉบับที่อ่านไว้ก่อนหน้า)
+        Component removed = mongoTemplate.findAndRemove(byId(componentId), Component.class);
+        if (removed != null) {
+            lookupUsageService.recordChange(lookupUsageService.referencesOf(removed), Set.of());
+        }
         log.info("... component and inventory with ID: {} deleted successfully from DB.", componentId);
 
     }
@@ -174,6 +203,7 @@ public class ComponentServiceImpl implements ComponentService {
         componentEntity.setImageUrl(imageUrl);
         componentEntity.setActive(request.getQuantity() > 0);
         Component savedComponent = componentRepository.save(componentEntity);
+        lookupUsageService.recordChange(Set.of(), lookupUsageService.referencesOf(savedComponent));
         Inventory inventory = Inventory.builder()
                 .componentId(savedComponent.getId())
                 .quantity(request.getQuantity())
@@ -193,6 +223,10 @@ public class ComponentServiceImpl implements ComponentService {
         component.setActive(newQuantity > 0);
     }
 
+    private static Query byId(String componentId) {
+        return Query.query(Criteria.where("id").is(componentId));
+    }
+
     private Component findComponentById(String id) {
         return componentRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Component not found with ID: " + id));
@@ -0,0 +1,21 @@
+package in.project.computers.service.componentService;
+
+import in.project.computers.dto.component.componentResponse.InventoryReconciliationReport;
+
+/**
+ * บริการสำหรับซ่อมแซมข้อมูลที่ไม่สอดคล้องกันระหว่าง {@code Component} และ {@code Inventory}
+ * <p>
+ * สต็อกถูกเก็บใน Inventory ขณะที่สถานะ isActive ถูกเก็บใน Component และทั้งสองถูกบันทึกแยกกัน
+ * จึงอาจเกิดกรณี Inventory ไม่มีเจ้าของ, Component ไม่มี Inventory หรือ isActive ไม่ตรงกับจำนวนสต็อก
+ * </p>
+ */
+public interface InventoryReconciliationService {
+
+    /**
+     * สแกนทั้งสอง Collection แบบ Sorted Merge-Join และแก้ไขความไม่สอดคล้องด้วย Bulk Write
+     *
+     * @param dryRun หากเป็น true จะนับจำนวนปัญหาที่พบเท่านั้น โดยไม่เขียนข้อมูลใดๆ
+     * @return รายงานสรุปผลการทำงาน
+     */
+    InventoryReconciliationReport reconcile(boolean dryRun);
+}
@@ -0,0 +1,310 @@
+package in.project.computers.service.componentService;
+
+import in.project.computers.dto.component.componentResponse.InventoryReconciliationReport;
+import in.project.computers.entity.component.Inventory;
+import in.project.computers.service.schedulerService.SchedulerLockService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * ตรวจสอบ Component และ Inventory ด้วยการอ่านทั้งสอง Collection แบบ Cursor ที่เรียงตาม ID เดียวกัน
+ * (component._id และ inventories.componentId) แล้วเดินคู่กันไปทีละรายการ (Merge-Join)
+ * ทำให้ใช้หน่วยความจำคงที่และอ่านข้อมูลแต่ละ Collection เพียงรอบเดียว
+ * <p>
+ * หมายเหตุ: ObjectId แบบ Hex มีความยาวคงที่ ลำดับของ String จึงตรงกับลำดับของ ObjectId ใน MongoDB
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryReconciliationServiceImpl implements InventoryReconciliationService {
+
+    private static final String COMPONENT_COLLECTION = "component";
+    private static final String INVENTORY_COLLECTION = "inventories";
+    private static final String LOCK_NAME = "inventory-reconcile";
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final SchedulerLockService schedulerLockService;
+
+    @Value("${app.inventory.reconcile.batch-size:1000}")
+    private int batchSize;
+
+    // Component/Inventory ที่เพิ่งถูกสร้างอาจยังบันทึกไม่ครบทั้งสองฝั่ง จึงข้ามรายการที่ใหม่กว่าช่วงเวลานี้
+    @Value("${app.inventory.reconcile.grace-period:PT5M}")
+    private Duration gracePeriod;
+
+    // Lock ร่วมระหว่าง Instance: ทั้งรอบตามเวลาและการสั่งจาก Admin จะรันได้ครั้งละหนึ่ง Instance เท่านั้น
+    @Value("${app.inventory.reconcile.lock-lease:PT30M}")
+    private Duration lockLease;
+
+    @Scheduled(cron = "${app.inventory.reconcile.cron:0 30 3 * * *}")
+    public void scheduledReconcile() {
+        try {
+            reconcile(false);
+        } catch (ResponseStatusException e) {
+            log.warn("Scheduled inventory reconciliation skipped: {}", e.getReason());
+        }
+    }
+
+    @Override
+    public InventoryReconciliationReport reconcile(boolean dryRun) {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lockLease)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Inventory reconciliation is already running.");
+        }
+        try {
+            return runMergeJoin(dryRun);
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    private InventoryReconciliationReport runMergeJoin(boolean dryRun) {
+        Instant startedAt = Instant.now();
+        Instant cutoff = startedAt.minus(gracePeriod);
+        log.info("Starting inventory reconciliation (dryRun={}, batchSize={})", dryRun, batchSize);
+
+        Query componentQuery = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).cursorBatchSize(batchSize).noCursorTimeout();
+        componentQuery.fields().include("isActive");
+        Query inventoryQuery = new Query().with(Sort.by(Sort.Direction.ASC, "componentId")).cursorBatchSize(batchSize).noCursorTimeout();
+        inventoryQuery.fields().include("componentId").include("quantity");
+
+        PendingFixes fixes = new PendingFixes(dryRun);
+        long componentsScanned = 0;
+        long inventoriesScanned = 0;
+        long skipped = 0;
+
+        try (Stream<Document> components = mongoTemplate.stream(componentQuery, Document.class, COMPONENT_COLLECTION);
+             Stream<Document> inventories = mongoTemplate.stream(inventoryQuery, Document.class, INVENTORY_COLLECTION)) {
+
+            Iterator<Document> componentIt = components.iterator();
+            Iterator<Document> inventoryIt = inventories.iterator();
+            Document component = componentIt.hasNext() ? componentIt.next() : null;
+            Document inventory = inventoryIt.hasNext() ? inventoryIt.next() : null;
+            String previousComponentId = null;
+            String previousInventoryKey = null;
+            String lastMatchedComponentId = null;
+
+            while (component != null || inventory != null) {
+                String componentId = component != null ? idAsString(component.get("_id")) : null;
+                String inventoryKey = inventory != null ? inventory.getString("componentId") : null;
+
+                int cmp;
+                if (component == null) {
+                    cmp = 1;
+                } else if (inventory == null) {
+                    cmp = -1;
+                } else if (inventoryKey == null) {
+                    cmp = 1; // Inventory ที่ไม่มี componentId ถูกเรียงไว้ก่อนเสมอ ถือเป็น orphan
+                } else {
+                    cmp = componentId.compareTo(inventoryKey);
+                }
+
+                if (cmp < 0) {
+                    // --- Component ที่ไม่มี Inventory ---
+                    assertAscending(previousComponentId, componentId, COMPONENT_COLLECTION);
+                    previousComponentId = componentId;
+                    componentsScanned++;
+                    if (isRecent(componentId, cutoff)) {
+                        skipped++;
+                    } else {
+                        fixes.createMissingInventory(componentId, component.get("_id"), component.getBoolean("isActive", false));
+                    }
+                    component = componentIt.hasNext() ? componentIt.next() : null;
+                } else if (cmp > 0) {
+                    // --- Inventory ที่ไม่มี Component (หรือเป็นแถวซ้ำของ Component เดิม) ---
+                    if (inventoryKey != null) {
+                        assertAscending(previousInventoryKey, inventoryKey, INVENTORY_COLLECTION);
+                        previousInventoryKey = inventoryKey;
+                    }
+                    inventoriesScanned++;
+                    if (inventoryKey != null && inventoryKey.equals(lastMatchedComponentId)) {
+                        log.warn("Duplicate inventory row {} for component {} left untouched.", inventory.get("_id"), inventoryKey);
+                    } else if (inventoryKey != null && isRecent(inventoryKey, cutoff)) {
+                        skipped++;
+                    } else {
+                        fixes.removeOrphanInventory(inventory.get("_id"));
+                    }
+                    inventory = inventoryIt.hasNext() ? inventoryIt.next() : null;
+                } else {
+                    // --- จับคู่ได้: ตรวจสอบ isActive กับจำนวนสต็อก ---
+                    assertAscending(previousComponentId, componentId, COMPONENT_COLLECTION);
+                    assertAscending(previousInventoryKey, inventoryKey, INVENTORY_COLLECTION);
+                    previousComponentId = componentId;
+                    previousInventoryKey = inventoryKey;
+                    lastMatchedComponentId = componentId;
+                    componentsScanned++;
+                    inventoriesScanned++;
+
+                    Object rawQuantity = inventory.get("quantity");
+                    boolean shouldBeActive = rawQuantity instanceof Number n && n.intValue() > 0;
+                    if (component.getBoolean("isActive", false) != shouldBeActive) {
+                        fixes.correctActiveFlag(component.get("_id"), shouldBeActive);
+                    }
+                    component = componentIt.hasNext() ? componentIt.next() : null;
+                    inventory = inventoryIt.hasNext() ? inventoryIt.next() : null;
+                }
+            }
+        } finally {
+            fixes.flushAll();
+        }
+
+        Instant finishedAt = Instant.now();
+        Duration duration = Duration.between(startedAt, finishedAt);
+        recordMetrics(fixes, componentsScanned, inventoriesScanned, duration);
+
+        InventoryReconciliationReport report = InventoryReconciliationReport.builder()
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .durationMs(duration.toMillis())
+                .dryRun(dryRun)
+                .componentsScanned(componentsScanned)
+                .inventoriesScanned(inventoriesScanned)
+                .orphanInventoriesRemoved(fixes.orphansRemoved)
+                .missingInventoriesCreated(fixes.inventoriesCreated)
+                .activeFlagsCorrected(fixes.flagsCorrected)
+                .skippedRecentlyCreated(skipped)
+                .build();
+        log.info("Inventory reconciliation finished: {}", report);
+        return report;
+    }
+
+    private void recordMetrics(PendingFixes fixes, long componentsScanned, long inventoriesScanned, Duration duration) {
+        meterRegistry.timer("inventory.reconcile.duration").record(duration);
+        meterRegistry.counter("inventory.reconcile.scanned", "collection", COMPONENT_COLLECTION).increment(componentsScanned);
+        meterRegistry.counter("inventory.reconcile.scanned", "collection", INVENTORY_COLLECTION).increment(inventoriesScanned);
+        meterRegistry.counter("inventory.reconcile.fixed", "type", "orphan_inventory").increment(fixes.orphansRemoved);
+        meterRegistry.counter("inventory.reconcile.fixed", "type", "missing_inventory").increment(fixes.inventoriesCreated);
+        meterRegistry.counter("inventory.reconcile.fixed", "type", "active_flag").increment(fixes.flagsCorrected);
+    }
+
+    private static void assertAscending(String previous, String current, String collection) {
+        if (previous != null && previous.compareTo(current) > 0) {
+            // ลำดับไม่ตรงกัน (เช่น มี _id ที่ไม่ใช่ ObjectId) การ Join ต่อไปจะให้ผลผิด จึงหยุดทันที
+            throw new IllegalStateException("Reconciliation aborted: '" + collection + "' is not in ascending id order at " + current);
+        }
+    }
+
+    private static boolean isRecent(String id, Instant cutoff) {
+        return ObjectId.isValid(id) && new ObjectId(id).getDate().toInstant().isAfter(cutoff);
+    }
+
+    private static String idAsString(Object id) {
+        return id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id);
+    }
+
+    /**
+     * รวบรวมรายการที่ต้องแก้ไขแล้วเขียนลงฐานข้อมูลเป็นชุด (Batch) เพื่อลดจำนวน Round Trip
+     */
+    private class PendingFixes {
+        private final boolean dryRun;
+        private final List<Object> orphanInventoryIds = new ArrayList<>();
+        private final List<String> missingInventoryComponentIds = new ArrayList<>();
+        private final List<Object> componentsToDeactivate = new ArrayList<>();
+        private final List<Object> componentsToActivate = new ArrayList<>();
+
+        private long orphansRemoved;
+        private long inventoriesCreated;
+        private long flagsCorrected;
+
+        private PendingFixes(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        void removeOrphanInventory(Object inventoryId) {
+            orphanInventoryIds.add(inventoryId);
+            if (orphanInventoryIds.size() >= batchSize) flushOrphans();
+        }
+
+        void createMissingInventory(String componentId, Object rawComponentId, boolean currentlyActive) {
+            missingInventoryComponentIds.add(componentId);
+            // ไม่มีสต็อก จึงต้องไม่แสดงเป็นสินค้าที่พร้อมขาย
+            if (currentlyActive) correctActiveFlag(rawComponentId, false);
+            if (missingInventoryComponentIds.size() >= batchSize) flushMissing();
+        }
+
+        void correctActiveFlag(Object componentId, boolean active) {
+            List<Object> target = active ? componentsToActivate : componentsToDeactivate;
+            target.add(componentId);
+            if (target.size() >= batchSize) flushFlags();
+        }
+
+        void flushAll() {
+            flushOrphans();
+            flushMissing();
+            flushFlags();
+        }
+
+        private void flushOrphans() {
+            if (orphanInventoryIds.isEmpty()) return;
+            if (dryRun) {
+                orphansRemoved += orphanInventoryIds.size();
+            } else {
+                orphansRemoved += mongoTemplate.remove(
+                        Query.query(Criteria.where("_id").in(orphanInventoryIds)), INVENTORY_COLLECTION).getDeletedCount();
+            }
+            orphanInventoryIds.clear();
+        }
+
+        private void flushMissing() {
+            if (missingInventoryComponentIds.isEmpty()) return;
+            if (dryRun) {
+                inventoriesCreated += missingInventoryComponentIds.size();
+            } else {
+                BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class);
+                for (String componentId : missingInventoryComponentIds) {
+                    // ใช้ upsert + $setOnInsert เพื่อไม่ให้ชนกับ Inventory ที่ถูกสร้างขึ้นระหว่างการสแกน
+                    ops.upsert(Query.query(Criteria.where("componentId").is(componentId)),
+                            new Update()
+                                    .setOnInsert("quantity", 0)
+                                    .setOnInsert("price", new Decimal128(BigDecimal.ZERO)));
+                }
+                inventoriesCreated += ops.execute().getUpserts().size();
+            }
+            missingInventoryComponentIds.clear();
+        }
+
+        private void flushFlags() {
+            flagsCorrected += applyActiveFlag(componentsToActivate, true);
+            flagsCorrected += applyActiveFlag(componentsToDeactivate, false);
+        }
+
+        private long applyActiveFlag(List<Object> componentIds, boolean active) {
+            if (componentIds.isEmpty()) return 0;
+            long modified;
+            if (dryRun) {
+                modified = componentIds.size();
+            } else {
+                modified = mongoTemplate.updateMulti(
+                        Query.query(Criteria.where("_id").in(componentIds).and("isActive").ne(active)),
+                        Update.update("isActive", active),
+                        COMPONENT_COLLECTION).getModifiedCount();
+            }
+            componentIds.clear();
+            return modified;
+        }
+    }
+}
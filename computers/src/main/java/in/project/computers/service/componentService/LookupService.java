@@ -11,6 +11,12 @@ public interface LookupService {
 
     Map<String, Object> getAllLookups();
 
+    /**
+     * Snapshot ของ {@link #getAllLookups()} ที่ Serialize ไว้แล้ว สร้างใหม่เฉพาะเมื่อ Version เปลี่ยน
+     * (ทุก create / update / delete ของ Lookup จะเพิ่ม Version)
+     */
+    LookupSnapshot getLookupSnapshot();
+
     List<Socket> getAllSockets();
     List<RamType> getAllRamTypes();
     List<FormFactor> getAllFormFactors();
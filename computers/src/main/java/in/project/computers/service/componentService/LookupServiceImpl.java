@@ -1,22 +1,37 @@
 package in.project.computers.service.componentService;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import in.project.computers.dto.lookup.*;
 import in.project.computers.entity.lookup.*;
-import in.project.computers.repository.ComponentRepo.ComponentRepository;
 import in.project.computers.repository.lookup.*;
 import in.project.computers.service.AWSS3Bucket.S3Service;
+import in.project.computers.service.componentService.LookupUsageService.LookupKind;
+import in.project.computers.service.concurrency.StructuredFanOut;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,28 +39,97 @@ import java.util.stream.Collectors;
 @Slf4j
 public class LookupServiceImpl implements LookupService {
 
+    private static final String VERSION_COLLECTION = "lookup_versions";
+    private static final String VERSION_ID = "lookups";
+
     private final SocketRepository socketRepository;
     private final RamTypeRepository ramTypeRepository;
     private final FormFactorRepository formFactorRepository;
     private final StorageInterfaceRepository storageInterfaceRepository;
-    private final ComponentRepository componentRepository;
+    private final LookupUsageService lookupUsageService;
     private final ShippingProviderRepository shippingProviderRepository;
     private final BrandRepository brandRepository;
     private final S3Service s3Service;
+    private final StructuredFanOut structuredFanOut;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    // Version ของ Snapshot ใน Instance นี้: เพิ่มเมื่อแก้ไข Lookup ที่นี่ หรือเมื่อ Poll เจอว่า Version ร่วมเปลี่ยน
+    private final AtomicLong lookupVersion = new AtomicLong();
+    // ค่า Version ร่วม (lookup_versions) ที่เห็นล่าสุด
+    private final AtomicLong lastSharedVersion = new AtomicLong(-1);
+    // ReentrantLock แทน synchronized เพราะระหว่างสร้าง Snapshot มี I/O บน Virtual Thread
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private volatile LookupSnapshot snapshot;
+
+    @Value("${app.lookups.fan-out-deadline:PT3S}")
+    private Duration fanOutDeadline;
 
     @Override
     public Map<String, Object> getAllLookups() {
-        Map<String, Object> lookups = new HashMap<>();
-        lookups.put("sockets", socketRepository.findAll());
-        lookups.put("ramTypes", ramTypeRepository.findAll());
-        lookups.put("storageInterfaces", storageInterfaceRepository.findAll());
-        Map<FormFactorType, List<FormFactor>> groupedFormFactors = formFactorRepository.findAll().stream()
-                .collect(Collectors.groupingBy(FormFactor::getType));
-        lookups.put("formFactors", groupedFormFactors);
-        lookups.put("shippingProviders", shippingProviderRepository.findAll());
-        lookups.put("radiatorSizes", List.of(120, 140, 240, 280, 360, 420));
-        lookups.put("brands", brandRepository.findAll());
-        return lookups;
+        // ทุก Collection ไม่ขึ้นต่อกัน: อ่านพร้อมกัน เวลารวมจึงใกล้เคียง Query ที่ช้าที่สุด
+        try (StructuredFanOut.Scope scope = structuredFanOut.open("lookups", fanOutDeadline)) {
+            Supplier<List<Socket>> sockets = scope.fork(socketRepository::findAll);
+            Supplier<List<RamType>> ramTypes = scope.fork(ramTypeRepository::findAll);
+            Supplier<List<StorageInterface>> storageInterfaces = scope.fork(storageInterfaceRepository::findAll);
+            Supplier<List<FormFactor>> formFactors = scope.fork(formFactorRepository::findAll);
+            Supplier<List<ShippingProvider>> shippingProviders = scope.fork(shippingProviderRepository::findAll);
+            Supplier<List<Brand>> brands = scope.fork(brandRepository::findAll);
+            scope.join();
+
+            Map<String, Object> lookups = new HashMap<>();
+            lookups.put("sockets", sockets.get());
+            lookups.put("ramTypes", ramTypes.get());
+            lookups.put("storageInterfaces", storageInterfaces.get());
+            Map<FormFactorType, List<FormFactor>> groupedFormFactors = formFactors.get().stream()
+                    .collect(Collectors.groupingBy(FormFactor::getType));
+            lookups.put("formFactors", groupedFormFactors);
+            lookups.put("shippingProviders", shippingProviders.get());
+            lookups.put("radiatorSizes", List.of(120, 140, 240, 280, 360, 420));
+            lookups.put("brands", brands.get());
+            return lookups;
+        }
+    }
+
+    @Override
+    public LookupSnapshot getLookupSnapshot() {
+        LookupSnapshot current = snapshot;
+        if (current != null && current.version() == lookupVersion.get()) {
+            return current;
+        }
+        snapshotLock.lock();
+        try {
+            // Request อื่นอาจสร้างเสร็จระหว่างรอ Lock
+            long version = lookupVersion.get();
+            current = snapshot;
+            if (current != null && current.version() == version) {
+                return current;
+            }
+            LookupSnapshot rebuilt = LookupSnapshot.of(version, objectMapper.writeValueAsBytes(getAllLookups()));
+            snapshot = rebuilt;
+            log.debug("Rebuilt lookup snapshot: {}", rebuilt);
+            return rebuilt;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize lookup snapshot", e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * ตรวจ Version ร่วมใน {@code lookup_versions} เพื่อให้ Instance อื่นเลิกใช้ Snapshot เก่าหลังมีการแก้ไขที่อื่น
+     */
+    @Scheduled(fixedDelayString = "${app.lookups.snapshot.version-poll:PT30S}")
+    public void pollSharedVersion() {
+        try {
+            Document shared = mongoTemplate.findById(VERSION_ID, Document.class, VERSION_COLLECTION);
+            long version = shared != null && shared.get("version") instanceof Number number ? number.longValue() : 0;
+            if (lastSharedVersion.getAndSet(version) != version) {
+                lookupVersion.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not read shared lookup version; keeping local snapshot: {}", e.getMessage());
+        }
     }
 
     @Override
@@ -67,7 +151,7 @@ public class LookupServiceImpl implements LookupService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Socket with name '" + request.getName() + "' already exists.");
         }
         Socket socket = new Socket(null, request.getName(), request.getBrand());
-        return socketRepository.save(socket);
+        return lookupChanged(socketRepository.save(socket));
     }
 
     @Override
@@ -75,7 +159,7 @@ public class LookupServiceImpl implements LookupService {
         Socket socket = socketRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Socket not found with id: " + id));
 
-        if (!socket.getName().equals(request.getName()) && componentRepository.existsBySocketId(id)) {
+        if (!socket.getName().equals(request.getName()) && lookupUsageService.isInUse(LookupKind.SOCKET, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot change the name of this Socket because it is currently in use. Please create a new Socket instead.");
         }
 
@@ -85,7 +169,7 @@ public class LookupServiceImpl implements LookupService {
         }
         socket.setName(request.getName());
         socket.setBrand(request.getBrand());
-        return socketRepository.save(socket);
+        return lookupChanged(socketRepository.save(socket));
     }
 
     @Override
@@ -93,10 +177,11 @@ public class LookupServiceImpl implements LookupService {
         if (!socketRepository.existsById(id)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Socket not found with id: " + id);
         }
-        if (componentRepository.existsBySocketId(id)) {
+        if (lookupUsageService.isInUse(LookupKind.SOCKET, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot delete Socket. It is currently in use by one or more components.");
         }
         socketRepository.deleteById(id);
+        lookupChanged();
     }
 
     @Override
@@ -105,7 +190,7 @@ public class LookupServiceImpl implements LookupService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "RAM Type with name '" + request.getName() + "' already exists.");
         }
         RamType ramType = new RamType(null, request.getName());
-        return ramTypeRepository.save(ramType);
+        return lookupChanged(ramTypeRepository.save(ramType));
     }
 
     @Override
@@ -113,7 +198,7 @@ public class LookupServiceImpl implements LookupService {
         RamType ramType = ramTypeRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "RAM Type not found with id: " + id));
 
-        if (!ramType.getName().equals(request.getName()) && componentRepository.existsByRamTypeId(id)) {
+        if (!ramType.getName().equals(request.getName()) && lookupUsageService.isInUse(LookupKind.RAM_TYPE, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot change the name of this RAM Type because it is currently in use. Please create a new RAM Type instead.");
         }
 
@@ -122,7 +207,7 @@ public class LookupServiceImpl implements LookupService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Another RAM Type with name '" + request.getName() + "' already exists.");
         }
         ramType.setName(request.getName());
-        return ramTypeRepository.save(ramType);
+        return lookupChanged(ramTypeRepository.save(ramType));
     }
 
     @Override
@@ -130,10 +215,11 @@ public class LookupServiceImpl implements LookupService {
         if (!ramTypeRepository.existsById(id)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "RAM Type not found with id: " + id);
         }
-        if (componentRepository.existsByRamTypeId(id)) {
+        if (lookupUsageService.isInUse(LookupKind.RAM_TYPE, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot delete RAM Type. It is currently in use by one or more components.");
         }
         ramTypeRepository.deleteById(id);
+        lookupChanged();
     }
 
     @Override
@@ -142,7 +228,7 @@ public class LookupServiceImpl implements LookupService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Form Factor with name '" + request.getName() + "' and type '" + request.getType() + "' already exists.");
         }
         FormFactor formFactor = new FormFactor(null, request.getName(), request.getType());
-        return formFactorRepository.save(formFactor);
+        return lookupChanged(formFactorRepository.save(formFactor));
     }
 
     @Override
@@ -151,7 +237,7 @@ public class LookupServiceImpl implements LookupService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Form Factor not found with id: " + id));
 
         // --- FIX: PROTECTION ADDED ---
-        if (!formFactor.getName().equals(request.getName()) && componentRepository.existsByFormFactorId(id)) {
+        if (!formFactor.getName().equals(request.getName()) && lookupUsageService.isInUse(LookupKind.FORM_FACTOR, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot change the name of this Form Factor because it is currently in use. Please create a new Form Factor instead.");
         }
 
@@ -161,7 +247,7 @@ public class LookupServiceImpl implements LookupService {
         }
         formFactor.setName(request.getName());
         formFactor.setType(request.getType());
-        return formFactorRepository.save(formFactor);
+        return lookupChanged(formFactorRepository.save(formFactor));
     }
 
     @Override
@@ -169,10 +255,11 @@ public class LookupServiceImpl implements LookupService {
         if (!formFactorRepository.existsById(id)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Form Factor not found with id: " + id);
         }
-        if (componentRepository.existsByFormFactorId(id)) {
+        if (lookupUsageService.isInUse(LookupKind.FORM_FACTOR, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot delete Form Factor. It is currently in use by one or more components.");
         }
         formFactorRepository.deleteById(id);
+        lookupChanged();
     }
 
     @Override
@@ -181,7 +268,7 @@ public class LookupServiceImpl implements LookupService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Storage Interface with name '" + request.getName() + "' already exists.");
         }
         StorageInterface storageInterface = new StorageInterface(null, request.getName());
-        return storageInterfaceRepository.save(storageInterface);
+        return lookupChanged(storageInterfaceRepository.save(storageInterface));
     }
 
     @Override
@@ -190,7 +277,7 @@ public class LookupServiceImpl implements LookupService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Storage Interface not found with id: " + id));
 
         // --- FIX: PROTECTION ADDED ---
-        if (!storageInterface.getName().equals(request.getName()) && componentRepository.existsByStorageInterfaceId(id)) {
+        if (!storageInterface.getName().equals(request.getName()) && lookupUsageService.isInUse(LookupKind.STORAGE_INTERFACE, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot change the name of this Storage Interface because it is currently in use. Please create a new one instead.");
         }
 
@@ -199,7 +286,7 @@ public class LookupServiceImpl implements LookupService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Another Storage Interface with name '" + request.getName() + "' already exists.");
         }
         storageInterface.setName(request.getName());
-        return storageInterfaceRepository.save(storageInterface);
+        return lookupChanged(storageInterfaceRepository.save(storageInterface));
     }
 
     @Override
@@ -207,10 +294,11 @@ public class LookupServiceImpl implements LookupService {
         if (!storageInterfaceRepository.existsById(id)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Storage Interface not found with id: " + id);
         }
-        if (componentRepository.existsByStorageInterfaceId(id)) {
+        if (lookupUsageService.isInUse(LookupKind.STORAGE_INTERFACE, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot delete Storage Interface. It is currently in use by one or more components.");
         }
         storageInterfaceRepository.deleteById(id);
+        lookupChanged();
     }
 
     @Override
@@ -225,7 +313,7 @@ public class LookupServiceImpl implements LookupService {
             imageUrl = request.getImageUrl();
         }
         ShippingProvider provider = new ShippingProvider(null, request.getName(), imageUrl, request.getTrackingUrl());
-        return shippingProviderRepository.save(provider);
+        return lookupChanged(shippingProviderRepository.save(provider));
     }
 
     @Override
@@ -249,7 +337,7 @@ public class LookupServiceImpl implements LookupService {
         provider.setName(request.getName());
         provider.setImageUrl(imageUrl);
         provider.setTrackingUrl(request.getTrackingUrl());
-        return shippingProviderRepository.save(provider);
+        return lookupChanged(shippingProviderRepository.save(provider));
     }
 
     @Override
@@ -261,6 +349,7 @@ public class LookupServiceImpl implements LookupService {
             if(keyToDelete != null) s3Service.deleteFile(keyToDelete);
         }
         shippingProviderRepository.deleteById(id);
+        lookupChanged();
     }
 
     @Override
@@ -276,14 +365,14 @@ public class LookupServiceImpl implements LookupService {
                 .name(request.getName())
                 .logoUrl(logoUrl)
                 .build();
-        return brandRepository.save(brand);
+        return lookupChanged(brandRepository.save(brand));
     }
 
     @Override
     public Brand updateBrand(String id, BrandRequest request, MultipartFile image) {
         Brand brand = brandRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Brand not found with id: " + id));
-        if (!brand.getName().equals(request.getName()) && componentRepository.existsByBrandId(id)) {
+        if (!brand.getName().equals(request.getName()) && lookupUsageService.isInUse(LookupKind.BRAND, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot change the name of this Brand because it is currently in use. Please create a new Brand instead.");
         }
         Optional<Brand> existingByName = brandRepository.findByName(request.getName());
@@ -300,14 +389,14 @@ public class LookupServiceImpl implements LookupService {
         }
         brand.setName(request.getName());
         brand.setLogoUrl(logoUrl);
-        return brandRepository.save(brand);
+        return lookupChanged(brandRepository.save(brand));
     }
 
     @Override
     public void deleteBrand(String id) {
         Brand brand = brandRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Brand not found with id: " + id));
-        if (componentRepository.existsByBrandId(id)) {
+        if (lookupUsageService.isInUse(LookupKind.BRAND, id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot delete Brand. It is currently in use by one or more components.");
         }
         if (StringUtils.hasText(brand.getLogoUrl()) && brand.getLogoUrl().contains("s3.amazonaws.com")) {
@@ -315,6 +404,28 @@ public class LookupServiceImpl implements LookupService {
             if(keyToDelete != null) s3Service.deleteFile(keyToDelete);
         }
         brandRepository.deleteById(id);
+        lookupChanged();
+    }
+
+    private <T> T lookupChanged(T saved) {
+        lookupChanged();
+        return saved;
+    }
+
+    // เรียกหลังบันทึกสำเร็จ: Snapshot ถัดไปของ Instance นี้ถูกสร้างใหม่ และ Instance อื่นเห็นผ่าน Version ร่วม
+    private void lookupChanged() {
+        lookupVersion.incrementAndGet();
+        try {
+            Document shared = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(VERSION_ID)),
+                    new Update().inc("version", 1),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, VERSION_COLLECTION);
+            // การแก้ไขของตัวเองไม่ต้องทำให้ Poll รอบหน้าสร้าง Snapshot ซ้ำ
+            if (shared != null && shared.get("version") instanceof Number number) {
+                lastSharedVersion.set(number.longValue());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not bump shared lookup version; other instances keep their snapshot until the next change: {}", e.getMessage());
+        }
     }
 
     private String extractKeyFromUrl(String fileUrl) {
@@ -0,0 +1,53 @@
+package in.project.computers.service.componentService;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * ผลลัพธ์ของ {@link LookupService#getAllLookups()} ที่ Serialize เป็น JSON ไว้แล้ว (Immutable)
+ * <p>
+ * {@code etag} เป็น Strong ETag (มีเครื่องหมายคำพูด) ที่คำนวณจาก SHA-256 ของ {@code body}
+ * Instance ที่มีข้อมูลเดียวกันจึงให้ ETag เดียวกันเสมอ
+ * </p>
+ *
+ * @param version เลข Version ของข้อมูล Lookup ตอนที่สร้าง Snapshot
+ * @param body    JSON (UTF-8) ห้ามแก้ไข Array นี้
+ * @param etag    Strong ETag เช่น {@code "3f2a..."}
+ */
+public record LookupSnapshot(long version, byte[] body, String etag) {
+
+    public static LookupSnapshot of(long version, byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return new LookupSnapshot(version, body, '"' + HexFormat.of().formatHex(digest, 0, 16) + '"');
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * ตรวจค่า {@code If-None-Match} ของ Client (รองรับหลายค่าคั่นด้วยจุลภาค และ {@code *})
+     * ใช้ Weak Comparison ตาม RFC 9110 จึงยอมรับ {@code W/} ที่ Proxy บางตัว (เช่น ตอนบีบอัด) เติมให้
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "LookupSnapshot[version=" + version + ", etag=" + etag + ", bytes=" + body.length + "]";
+    }
+}
@@ -0,0 +1,39 @@
+package in.project.computers.service.componentService;
+
+import in.project.computers.dto.component.componentResponse.LookupUsageReport;
+import in.project.computers.entity.component.Component;
+
+import java.util.Set;
+
+/**
+ * ตัวนับจำนวน Component ที่อ้างอิง Lookup แต่ละตัว (Collection {@code lookup_usage})
+ * <p>
+ * การตรวจว่า Lookup ถูกใช้อยู่หรือไม่จึงเป็นการอ่านเอกสารเดียวด้วย {@code _id} แทน Query แบบ {@code $or}
+ * บน Field ซ้อนและ DBRef ที่ต้องสแกน Collection "component" ทั้งหมด
+ * ตัวนับถูกปรับทุกครั้งที่สร้าง แก้ไข หรือลบ Component และมีงานตรวจสอบ ({@link #rebuild(boolean)}) คอยซ่อมค่าที่คลาดเคลื่อน
+ * </p>
+ */
+public interface LookupUsageService {
+
+    enum LookupKind { SOCKET, RAM_TYPE, FORM_FACTOR, STORAGE_INTERFACE, BRAND }
+
+    /**
+     * Lookup ทั้งหมดที่ Component นี้อ้างอิง (นับครั้งเดียวต่อ Component แม้อ้างอิงหลาย Field)
+     * เรียกก่อนแก้ไข Entity เพื่อใช้เป็นค่า {@code before} ของ {@link #recordChange(Set, Set)}
+     */
+    Set<String> referencesOf(Component component);
+
+    /**
+     * ปรับตัวนับตามส่วนต่างของการอ้างอิงก่อนและหลังการเปลี่ยนแปลง (สร้างใหม่ใช้ {@code before} ว่าง ลบใช้ {@code after} ว่าง)
+     */
+    void recordChange(Set<String> before, Set<String> after);
+
+    boolean isInUse(LookupKind kind, String lookupId);
+
+    /**
+     * นับการอ้างอิงใหม่จาก Collection "component" แล้วแก้ไขตัวนับที่ไม่ตรง
+     *
+     * @param dryRun หากเป็น true จะนับจำนวนตัวนับที่ผิดเท่านั้น โดยไม่เขียนข้อมูลใดๆ
+     */
+    LookupUsageReport rebuild(boolean dryRun);
+}
@@ -0,0 +1,275 @@
+package in.project.computers.service.componentService;
+
+import com.mongodb.DBRef;
+import in.project.computers.dto.component.componentResponse.LookupUsageReport;
+import in.project.computers.entity.component.Component;
+import in.project.computers.service.schedulerService.SchedulerLockService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LookupUsageServiceImpl implements LookupUsageService {
+
+    private static final String USAGE_COLLECTION = "lookup_usage";
+    private static final String COMPONENT_COLLECTION = "component";
+    private static final String META_ID = "_meta";
+    private static final String LOCK_NAME = "lookup-usage-rebuild";
+
+    // Field ของ Component ที่อ้างอิง Lookup: แบบฝัง (มี _id) หรือ DBRef (มี $id) ทั้งค่าเดี่ยวและ List
+    private static final Map<String, LookupKind> REFERENCE_FIELDS = Map.of(
+            "socket", LookupKind.SOCKET,
+            "supportedSockets", LookupKind.SOCKET,
+            "ramType", LookupKind.RAM_TYPE,
+            "formFactor", LookupKind.FORM_FACTOR,
+            "supportedFormFactors", LookupKind.FORM_FACTOR,
+            "supportedPsuFormFactors", LookupKind.FORM_FACTOR,
+            "storageInterface", LookupKind.STORAGE_INTERFACE,
+            "brand", LookupKind.BRAND);
+
+    private final MongoTemplate mongoTemplate;
+    private final SchedulerLockService schedulerLockService;
+    private final MeterRegistry meterRegistry;
+
+    // จนกว่าจะมีการนับครบอย่างน้อยหนึ่งรอบ (_meta) ตัวนับยังเชื่อไม่ได้ จึงใช้ Query เดิมแทน
+    private volatile boolean countsReady;
+
+    @Value("${app.lookups.usage.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.lookups.usage.lock-lease:PT30M}")
+    private Duration lockLease;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeCounts() {
+        if (readCountsReady()) {
+            return;
+        }
+        log.info("Lookup usage counters have never been built; building them now.");
+        runLocked();
+    }
+
+    @Scheduled(cron = "${app.lookups.usage.verify-cron:0 45 3 * * *}")
+    public void scheduledVerify() {
+        runLocked();
+    }
+
+    private void runLocked() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lockLease)) {
+            log.debug("Lookup usage rebuild skipped: another instance holds the lock.");
+            return;
+        }
+        try {
+            rebuild(false);
+        } catch (RuntimeException e) {
+            log.error("Lookup usage rebuild failed; in-use checks keep using the current counters.", e);
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    @Override
+    public Set<String> referencesOf(Component component) {
+        if (component == null) {
+            return Set.of();
+        }
+        Document document = new Document();
+        mongoTemplate.getConverter().write(component, document);
+        return referencesIn(document);
+    }
+
+    @Override
+    public void recordChange(Set<String> before, Set<String> after) {
+        List<String> removed = before.stream().filter(key -> !after.contains(key)).toList();
+        List<String> added = after.stream().filter(key -> !before.contains(key)).toList();
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+        try {
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, USAGE_COLLECTION);
+            added.forEach(key -> ops.upsert(byKey(key), increment(key, 1)));
+            removed.forEach(key -> ops.upsert(byKey(key), increment(key, -1)));
+            ops.execute();
+        } catch (RuntimeException e) {
+            // Component ถูกบันทึกไปแล้ว จึงไม่โยนต่อ งานตรวจสอบรอบถัดไปจะซ่อมตัวนับ
+            log.error("Failed to update lookup usage counters (+{} -{}); they will be repaired by the next rebuild.", added, removed, e);
+        }
+    }
+
+    @Override
+    public boolean isInUse(LookupKind kind, String lookupId) {
+        if (!countsReady && !readCountsReady()) {
+            return existsInComponents(kind, lookupId);
+        }
+        // หลังนับครบแล้ว ตัวนับ (รวมค่า 0 หรือไม่มีเอกสาร) เป็นคำตอบเลย: recordChange และงานตรวจสอบดูแลความถูกต้อง
+        Document usage = mongoTemplate.findById(key(kind, lookupId), Document.class, USAGE_COLLECTION);
+        return usage != null && usage.get("count") instanceof Number count && count.longValue() > 0;
+    }
+
+    @Override
+    public LookupUsageReport rebuild(boolean dryRun) {
+        Instant startedAt = Instant.now();
+        // อ่านค่าและ rev ปัจจุบันไว้ก่อนสแกน: ตอนแก้ไขจะเขียนทับเฉพาะเมื่อ rev ยังเท่าเดิม
+        // rev เพิ่มทุกครั้งที่ตัวนับถูกปรับ (แม้ +1 แล้ว -1 จนค่ากลับมาเท่าเดิม) ตัวนับที่ถูกปรับระหว่างสแกน
+        // จึงไม่ถูกเขียนทับด้วยผลที่ล้าสมัย (ข้ามไปซ่อมในรอบถัดไป)
+        Map<String, Long> stored = new HashMap<>();
+        Map<String, Long> storedRevs = new HashMap<>();
+        try (Stream<Document> usages = mongoTemplate.stream(Query.query(Criteria.where("_id").ne(META_ID)), Document.class, USAGE_COLLECTION)) {
+            usages.forEach(usage -> {
+                stored.put(usage.getString("_id"), usage.get("count") instanceof Number count ? count.longValue() : 0L);
+                storedRevs.put(usage.getString("_id"), usage.get("rev") instanceof Number rev ? rev.longValue() : null);
+            });
+        }
+
+        Query componentQuery = new Query().cursorBatchSize(batchSize).noCursorTimeout();
+        REFERENCE_FIELDS.keySet().forEach(field -> componentQuery.fields().include(field));
+        Map<String, Long> actual = new HashMap<>();
+        long componentsScanned = 0;
+        try (Stream<Document> components = mongoTemplate.stream(componentQuery, Document.class, COMPONENT_COLLECTION)) {
+            for (Iterator<Document> it = components.iterator(); it.hasNext(); ) {
+                referencesIn(it.next()).forEach(key -> actual.merge(key, 1L, Long::sum));
+                componentsScanned++;
+            }
+        }
+
+        Set<String> keys = new HashSet<>(stored.keySet());
+        keys.addAll(actual.keySet());
+        long corrected = 0;
+        long skipped = 0;
+        List<String> mismatched = new ArrayList<>();
+        for (String key : keys) {
+            long expected = actual.getOrDefault(key, 0L);
+            Long current = stored.get(key);
+            if (current != null ? current == expected : expected == 0) {
+                continue;
+            }
+            mismatched.add(key);
+            if (dryRun) {
+                corrected++;
+                continue;
+            }
+            if (current != null) {
+                // rev ที่ยังไม่มี (เอกสารก่อนมี Field นี้) ตรงกับ is(null)
+                long modified = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(key).and("rev").is(storedRevs.get(key))),
+                        Update.update("count", expected), USAGE_COLLECTION).getModifiedCount();
+                corrected += modified;
+                skipped += 1 - modified;
+            } else {
+                // ยังไม่มีเอกสาร: สร้างเฉพาะเมื่อไม่มีใครสร้างระหว่างสแกน ($setOnInsert)
+                boolean inserted = mongoTemplate.upsert(byKey(key), new Update()
+                        .setOnInsert("count", expected)
+                        .setOnInsert("rev", 0L)
+                        .setOnInsert("kind", key.substring(0, key.indexOf(':')))
+                        .setOnInsert("lookupId", key.substring(key.indexOf(':') + 1)), USAGE_COLLECTION).getUpsertedId() != null;
+                corrected += inserted ? 1 : 0;
+                skipped += inserted ? 0 : 1;
+            }
+        }
+        if (!mismatched.isEmpty()) {
+            log.warn("Lookup usage counters out of sync (dryRun={}): {}", dryRun, mismatched);
+        }
+
+        if (!dryRun) {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(META_ID)),
+                    Update.update("rebuiltAt", Instant.now()).set("componentsScanned", componentsScanned), USAGE_COLLECTION);
+            countsReady = true;
+        }
+
+        Instant finishedAt = Instant.now();
+        Duration duration = Duration.between(startedAt, finishedAt);
+        meterRegistry.timer("lookup.usage.rebuild.duration").record(duration);
+        meterRegistry.counter("lookup.usage.rebuild.corrected").increment(corrected);
+
+        LookupUsageReport report = LookupUsageReport.builder()
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .durationMs(duration.toMillis())
+                .dryRun(dryRun)
+                .componentsScanned(componentsScanned)
+                .lookupsReferenced(actual.size())
+                .countsCorrected(corrected)
+                .skippedConcurrentlyChanged(skipped)
+                .build();
+        log.info("Lookup usage rebuild finished: {}", report);
+        return report;
+    }
+
+    private boolean readCountsReady() {
+        if (mongoTemplate.exists(Query.query(Criteria.where("_id").is(META_ID)), USAGE_COLLECTION)) {
+            countsReady = true;
+        }
+        return countsReady;
+    }
+
+    /**
+     * Query จาก REFERENCE_FIELDS ชุดเดียวกับที่ใช้นับ: ทุก Field ของ Lookup ประเภทนี้ ทั้งแบบฝัง ({@code _id}) และ DBRef ({@code $id})
+     * โดยเทียบทั้ง ObjectId และ String การตรวจสอบจึงตรงกับตัวนับเสมอ ไม่ขึ้นกับว่า Field นั้นถูกเก็บแบบไหน
+     */
+    private boolean existsInComponents(LookupKind kind, String lookupId) {
+        List<Object> ids = ObjectId.isValid(lookupId) ? List.of(new ObjectId(lookupId), lookupId) : List.of(lookupId);
+        List<Criteria> references = new ArrayList<>();
+        REFERENCE_FIELDS.forEach((field, fieldKind) -> {
+            if (fieldKind == kind) {
+                references.add(Criteria.where(field + "._id").in(ids));
+                references.add(Criteria.where(field + ".$id").in(ids));
+            }
+        });
+        return mongoTemplate.exists(Query.query(new Criteria().orOperator(references)), COMPONENT_COLLECTION);
+    }
+
+    private static Set<String> referencesIn(Document component) {
+        Set<String> keys = new HashSet<>();
+        REFERENCE_FIELDS.forEach((field, kind) -> {
+            Object value = component.get(field);
+            if (value instanceof Collection<?> values) {
+                values.forEach(element -> addReference(keys, kind, element));
+            } else {
+                addReference(keys, kind, value);
+            }
+        });
+        return keys;
+    }
+
+    private static void addReference(Set<String> keys, LookupKind kind, Object value) {
+        Object id = value instanceof DBRef ref ? ref.getId()
+                : value instanceof Document embedded ? embedded.get("_id")
+                : null;
+        if (id != null) {
+            keys.add(key(kind, id instanceof ObjectId objectId ? objectId.toHexString() : id.toString()));
+        }
+    }
+
+    private static String key(LookupKind kind, String lookupId) {
+        return kind.name() + ":" + lookupId;
+    }
+
+    private static Query byKey(String key) {
+        return Query.query(Criteria.where("_id").is(key));
+    }
+
+    private static Update increment(String key, int delta) {
+        int separator = key.indexOf(':');
+        return new Update().inc("count", delta).inc("rev", 1)
+                .setOnInsert("kind", key.substring(0, separator))
+                .setOnInsert("lookupId", key.substring(separator + 1));
+    }
+}
@@ -0,0 +1,37 @@
+package in.project.computers.service.componentService;
+
+import in.project.computers.entity.component.Inventory;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * บริการตรวจสอบสต็อกและราคาของ Component หลายรายการพร้อมกันด้วย Query เดียว ({@code $in})
+ * <p>
+ * ใช้แทนการเรียก {@code inventoryRepository.findByComponentId} ทีละชิ้นในตะกร้าสินค้าและการสร้าง Order
+ * </p>
+ */
+public interface StockAvailabilityService {
+
+    /**
+     * ดึง Inventory ของ Component ทั้งหมดที่ระบุในครั้งเดียว
+     *
+     * @param componentIds ID ของ Component (ซ้ำกันได้)
+     * @return Map จาก componentId ไปยัง {@link Inventory} (Component ที่ไม่มี Inventory จะไม่อยู่ใน Map)
+     */
+    Map<String, Inventory> findInventoriesByComponentIds(Collection<String> componentIds);
+
+    /**
+     * ตรวจสอบว่าสต็อกเพียงพอสำหรับทุกรายการหรือไม่
+     *
+     * @param requiredQuantities    Multiset ของ componentId -> จำนวนที่ต้องการทั้งหมด
+     * @param shortageMessageFormat ข้อความ Error โดย {@code %s} จะถูกแทนด้วยชื่อสินค้าที่สต็อกไม่พอ
+     * @throws org.springframework.web.server.ResponseStatusException (409) หากมีรายการใดสต็อกไม่พอ
+     */
+    void assertAvailable(Map<String, Integer> requiredQuantities, String shortageMessageFormat);
+
+    /**
+     * เหมือน {@link #assertAvailable(Map, String)} แต่ใช้ Inventory ที่ดึงมาแล้ว เพื่อไม่ต้อง Query ซ้ำ
+     */
+    void assertAvailable(Map<String, Integer> requiredQuantities, Map<String, Inventory> inventories, String shortageMessageFormat);
+}
@@ -0,0 +1,69 @@
+package in.project.computers.service.componentService;
+
+import in.project.computers.entity.component.Component;
+import in.project.computers.entity.component.Inventory;
+import in.project.computers.repository.ComponentRepo.ComponentRepository;
+import in.project.computers.repository.ComponentRepo.InventoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockAvailabilityServiceImpl implements StockAvailabilityService {
+
+    private final InventoryRepository inventoryRepository;
+    private final ComponentRepository componentRepository;
+
+    @Override
+    public Map<String, Inventory> findInventoriesByComponentIds(Collection<String> componentIds) {
+        if (componentIds == null || componentIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(componentIds));
+        return inventoryRepository.findAllByComponentIdIn(distinctIds).stream()
+                .collect(Collectors.toMap(Inventory::getComponentId, Function.identity(), (first, duplicate) -> first));
+    }
+
+    @Override
+    public void assertAvailable(Map<String, Integer> requiredQuantities, String shortageMessageFormat) {
+        assertAvailable(requiredQuantities, findInventoriesByComponentIds(requiredQuantities.keySet()), shortageMessageFormat);
+    }
+
+    @Override
+    public void assertAvailable(Map<String, Integer> requiredQuantities, Map<String, Inventory> inventories, String shortageMessageFormat) {
+        List<String> shortages = requiredQuantities.entrySet().stream()
+                .filter(entry -> {
+                    Inventory inventory = inventories.get(entry.getKey());
+                    int available = inventory != null ? inventory.getQuantity() : 0;
+                    return available < entry.getValue();
+                })
+                .map(Map.Entry::getKey)
+                .toList();
+
+        if (shortages.isEmpty()) {
+            return;
+        }
+
+        // ดึงชื่อเฉพาะรายการที่สต็อกไม่พอ ด้วย Query เดียว
+        Map<String, String> names = componentRepository.findAllById(shortages).stream()
+                .collect(Collectors.toMap(Component::getId, Component::getName, (first, duplicate) -> first));
+        String shortageNames = shortages.stream()
+                .map(id -> names.getOrDefault(id, id))
+                .collect(Collectors.joining(", "));
+        log.debug("Stock check failed for components: {}", shortages);
+        throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(shortageMessageFormat, shortageNames));
+    }
+}
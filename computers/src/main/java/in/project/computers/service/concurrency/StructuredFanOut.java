@@ -0,0 +1,139 @@
+package in.project.computers.service.concurrency;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * <h3>Structured Fan-Out</h3>
+ * <p>
+ * รัน Query ที่ไม่ขึ้นต่อกันของ Endpoint แบบรวมหลายส่วนพร้อมกันบน Virtual Thread ภายใต้ขอบเขต ({@link Scope}) เดียว:
+ * <ul>
+ *     <li><b>Deadline ร่วม:</b> ทุกงานใน Scope ต้องเสร็จภายในเวลาเดียวกัน เกินแล้วยกเลิกทั้งหมดและตอบ 504</li>
+ *     <li><b>Cancel-on-Failure:</b> งานแรกที่ล้มเหลวทำให้งานที่เหลือถูกยกเลิก (Interrupt) และข้อผิดพลาดนั้นถูกโยนต่อ</li>
+ *     <li><b>ไม่มีงานค้าง:</b> ปิด Scope (try-with-resources) แล้วงานที่ยังไม่เสร็จถูกยกเลิกเสมอ</li>
+ * </ul>
+ * ใช้แทน {@code StructuredTaskScope} ซึ่งยังเป็น Preview API ใน Java 21
+ * </p>
+ * <pre>{@code
+ * try (StructuredFanOut.Scope scope = fanOut.open("lookups", deadline)) {
+ *     Supplier<List<Socket>> sockets = scope.fork(socketRepository::findAll);
+ *     Supplier<List<Brand>> brands = scope.fork(brandRepository::findAll);
+ *     scope.join();
+ *     ... sockets.get(), brands.get()
+ * }
+ * }</pre>
+ */
+@Component
+@Slf4j
+public class StructuredFanOut {
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("fan-out-", 0).factory());
+
+    public Scope open(String name, Duration deadline) {
+        return new Scope(name, Instant.now().plus(deadline));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public final class Scope implements AutoCloseable {
+
+        private final String name;
+        private final Instant deadline;
+        private final List<Future<?>> running = new ArrayList<>();
+        private final List<CompletableFuture<?>> results = new ArrayList<>();
+        // เสร็จแบบ Exception ทันทีที่งานใดงานหนึ่งล้มเหลว เพื่อให้ join() ไม่ต้องรองานที่ช้ากว่า
+        private final CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        private boolean joined;
+
+        private Scope(String name, Instant deadline) {
+            this.name = name;
+            this.deadline = deadline;
+        }
+
+        /**
+         * เริ่มงานบน Virtual Thread ใหม่
+         *
+         * @return ตัวอ่านผลลัพธ์ ใช้ได้หลัง {@link #join()} สำเร็จแล้วเท่านั้น
+         */
+        public <T> Supplier<T> fork(Callable<T> task) {
+            if (joined) {
+                throw new IllegalStateException("Cannot fork after join().");
+            }
+            CompletableFuture<T> result = new CompletableFuture<>();
+            result.whenComplete((value, error) -> {
+                if (error != null) {
+                    firstFailure.completeExceptionally(error);
+                }
+            });
+            running.add(executor.submit(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }));
+            results.add(result);
+            return () -> {
+                if (!joined) {
+                    throw new IllegalStateException("Subtask result read before join().");
+                }
+                return result.join();
+            };
+        }
+
+        /**
+         * รอทุกงานจนเสร็จ หรือจนงานแรกล้มเหลว หรือจนถึง Deadline
+         */
+        public void join() {
+            joined = true;
+            CompletableFuture<Void> all = CompletableFuture.allOf(results.toArray(CompletableFuture[]::new));
+            long remainingMillis = Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+            try {
+                CompletableFuture.anyOf(all, firstFailure).get(remainingMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                cancelRunning();
+                log.warn("Fan-out '{}' exceeded its deadline with {} of {} task(s) unfinished.",
+                        name, results.stream().filter(result -> !result.isDone()).count(), results.size());
+                throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "The request took too long to complete. Please try again.");
+            } catch (InterruptedException e) {
+                cancelRunning();
+                Thread.currentThread().interrupt();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for " + name + ".");
+            } catch (ExecutionException e) {
+                cancelRunning();
+                Throwable cause = e.getCause() instanceof CompletionException completion && completion.getCause() != null
+                        ? completion.getCause() : e.getCause();
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException("Fan-out '" + name + "' failed.", cause);
+            }
+        }
+
+        @Override
+        public void close() {
+            cancelRunning();
+        }
+
+        private void cancelRunning() {
+            running.forEach(future -> future.cancel(true));
+        }
+    }
+}
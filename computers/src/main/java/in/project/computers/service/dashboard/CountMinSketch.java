@@ -0,0 +1,68 @@
+package in.project.computers.service.dashboard;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Count-Min Sketch สำหรับประมาณยอดรวมต่อ Key ด้วยหน่วยความจำคงที่ ({@code width x depth} ช่อง)
+ * <p>
+ * ค่าประมาณไม่ต่ำกว่าค่าจริงเสมอ และเกินค่าจริงไม่เกิน {@code 2N / width} ด้วยความน่าจะเป็นอย่างน้อย {@code 1 - 2^-depth}
+ * (N = ผลรวมทั้งหมดที่ถูกเพิ่ม) ใช้ Conservative Update เพื่อลดการประมาณเกิน
+ * </p>
+ */
+final class CountMinSketch {
+
+    private final int width;
+    private final long[][] table;
+
+    CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("Sketch width and depth must be positive.");
+        }
+        this.width = width;
+        this.table = new long[depth][width];
+    }
+
+    /**
+     * @return ค่าประมาณของ Key หลังการเพิ่ม
+     */
+    long add(String key, long count) {
+        int[] cells = cells(key);
+        long estimate = estimate(cells);
+        if (count <= 0) {
+            return estimate;
+        }
+        long target = estimate + count;
+        for (int row = 0; row < table.length; row++) {
+            table[row][cells[row]] = Math.max(table[row][cells[row]], target);
+        }
+        return target;
+    }
+
+    long estimate(String key) {
+        return estimate(cells(key));
+    }
+
+    private long estimate(int[] cells) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < table.length; row++) {
+            min = Math.min(min, table[row][cells[row]]);
+        }
+        return min;
+    }
+
+    // Double Hashing (h1 + i * h2) จาก FNV-1a 64 บิตของ Key แทนการใช้ Hash Function แยกต่อแถว
+    private int[] cells(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int[] cells = new int[table.length];
+        for (int row = 0; row < table.length; row++) {
+            cells[row] = Math.floorMod(h1 + row * h2, width);
+        }
+        return cells;
+    }
+}
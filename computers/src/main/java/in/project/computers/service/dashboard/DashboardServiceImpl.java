@@ -1,31 +1,43 @@
 package in.project.computers.service.dashboard;
 
 import in.project.computers.dto.dashboard.DashboardResponse;
+import in.project.computers.entity.dashboard.SalesDaily;
 import in.project.computers.entity.component.Component;
 import in.project.computers.entity.component.Inventory;
-import in.project.computers.entity.order.LineItemType; // <-- IMPORT THIS
 import in.project.computers.entity.order.Order;
-import in.project.computers.entity.order.OrderStatus;
-import in.project.computers.entity.order.PaymentStatus;
+import in.project.computers.event.SalesRollupChangedEvent;
 import in.project.computers.repository.ComponentRepo.ComponentRepository;
-import in.project.computers.repository.ComponentRepo.InventoryRepository;
 import in.project.computers.repository.generalRepo.OrderRepository;
+import in.project.computers.service.concurrency.StructuredFanOut;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,38 +48,192 @@ public class DashboardServiceImpl implements DashboardService {
 
     private final OrderRepository orderRepository;
     private final ComponentRepository componentRepository;
-    private final InventoryRepository inventoryRepository;
-    private static final int LOW_STOCK_THRESHOLD = 10;
+    private final MongoTemplate mongoTemplate;
+    private final SalesRollupService salesRollupService;
+    private final MeterRegistry meterRegistry;
+    private final StructuredFanOut structuredFanOut;
+    static final int LOW_STOCK_THRESHOLD = 10;
+    private static final String GLOBAL_KEY = "global";
+
+    private final ExecutorService refreshExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("dashboard-refresh-", 0).factory());
+    private StaleWhileRevalidateCache<DashboardRange, RangeSection> rangeCache;
+    private StaleWhileRevalidateCache<String, GlobalSection> globalCache;
+
+    @Value("${app.dashboard.fan-out-deadline:PT5S}")
+    private Duration fanOutDeadline;
+
+    @Value("${app.dashboard.top-sellers.k:5}")
+    private int topSellingLimit;
+
+    // ช่วงที่ครอบคลุมวันนี้และส่วนที่ไม่ขึ้นกับช่วงเวลา (Recent Orders, Low Stock) สดอยู่เท่านี้
+    @Value("${app.dashboard.cache.fresh-ttl:PT30S}")
+    private Duration freshTtl;
+
+    // ค่าที่หมดอายุแล้วยังตอบได้ระหว่าง Refresh เบื้องหลัง หากเก่ากว่านี้จะคำนวณใหม่ใน Request
+    @Value("${app.dashboard.cache.max-stale:PT10M}")
+    private Duration maxStale;
+
+    @Value("${app.dashboard.cache.max-entries:200}")
+    private int maxEntries;
+
+    // ช่วงที่จบก่อนวันนี้: ถูก Invalidate เมื่อ Rollup ของวันในช่วงเปลี่ยน (ทั้งจาก Instance นี้และจากการ Poll)
+    // TTL นี้เป็นด่านสุดท้ายกันค่าค้างตลอดไป หากพลาดการเปลี่ยนแปลงที่ Poll ไม่เห็น (เช่น วันที่ถูกลบ)
+    @Value("${app.dashboard.cache.past-ttl:PT1H}")
+    private Duration pastTtl;
+
+    // ย้อนดู updatedAt ของ sales_daily เผื่อนาฬิกาของแต่ละ Instance ไม่ตรงกัน
+    @Value("${app.dashboard.cache.rollup-poll-overlap:PT10S}")
+    private Duration rollupPollOverlap;
+
+    // updatedAt ล่าสุดของ sales_daily ที่เห็นแล้ว (จากข้อมูล ไม่ใช่นาฬิกาของ Instance นี้) และเอกสารในช่วง Overlap ที่เห็นแล้ว
+    private Instant rollupWatermark;
+    private final Map<String, Instant> recentlySeenRollups = new HashMap<>();
+
+    /** ส่วนที่ขึ้นกับช่วงวันที่: ถูก Cache ตาม (startDate, endDate) */
+    private record DashboardRange(Instant start, Instant end) {
+    }
 
-    @Override
-    public DashboardResponse getDashboardData(Instant startDate, Instant endDate) {
-        log.info("Fetching dashboard data from {} to {}", startDate, endDate);
+    private record RangeSection(DashboardResponse.Stats stats,
+                                List<DashboardResponse.ChartData> revenueChartData,
+                                List<DashboardResponse.ChartData> topSellingData) {
+    }
 
-        List<Order> ordersInRange = orderRepository.findByCreatedAtBetween(startDate, endDate);
+    private record GlobalSection(List<DashboardResponse.RecentOrder> recentOrders,
+                                 List<DashboardResponse.LowStockProduct> lowStockProducts,
+                                 long products) {
+    }
 
-        long durationInDays = Math.max(1, ChronoUnit.DAYS.between(startDate, endDate));
-        Instant previousPeriodStartDate = startDate.minus(durationInDays, ChronoUnit.DAYS);
-        List<Order> prevOrdersInRange = orderRepository.findByCreatedAtBetween(previousPeriodStartDate, startDate);
+    @PostConstruct
+    public void initCaches() {
+        rangeCache = new StaleWhileRevalidateCache<>("dashboard-range", refreshExecutor, meterRegistry, maxEntries, maxStale);
+        globalCache = new StaleWhileRevalidateCache<>("dashboard-global", refreshExecutor, meterRegistry, 1, maxStale);
+    }
 
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
 
-        List<Order> recentOrders = orderRepository.findTop5ByOrderByCreatedAtDesc();
-        List<DashboardResponse.LowStockProduct> lowStockProducts = getLowStockProducts();
+    @Override
+    public DashboardResponse getDashboardData(Instant startDate, Instant endDate) {
+        log.info("Fetching dashboard data from {} to {}", startDate, endDate);
 
-        DashboardResponse.Stats stats = calculateStats(ordersInRange, prevOrdersInRange, lowStockProducts);
+        // ช่วงที่จบก่อนวันนี้จะไม่เปลี่ยนจนกว่า Rollup ของวันในช่วงจะเปลี่ยน (ดู onSalesRollupChanged และ pollRollupChanges)
+        boolean coversToday = !salesRollupService.dayOf(endDate).isBefore(salesRollupService.dayOf(Instant.now()));
+        RangeSection range;
+        GlobalSection global;
+        // ส่วนที่ขึ้นกับช่วงวันที่และส่วนรวมไม่ขึ้นต่อกัน: โหลดพร้อมกันเมื่อ Cache ไม่มีค่า
+        try (StructuredFanOut.Scope scope = structuredFanOut.open("dashboard", fanOutDeadline)) {
+            Supplier<RangeSection> rangeTask = scope.fork(() -> rangeCache.get(new DashboardRange(startDate, endDate),
+                    coversToday ? freshTtl : pastTtl, () -> loadRangeSection(startDate, endDate)));
+            Supplier<GlobalSection> globalTask = scope.fork(() -> globalCache.get(GLOBAL_KEY, freshTtl, this::loadGlobalSection));
+            scope.join();
+            range = rangeTask.get();
+            global = globalTask.get();
+        }
 
-        List<DashboardResponse.ChartData> revenueData = processRevenueChartData(ordersInRange);
-        List<DashboardResponse.ChartData> topSellingData = processTopSellingChartData(ordersInRange);
-        List<DashboardResponse.RecentOrder> recentOrdersDto = formatRecentOrders(recentOrders);
+        DashboardResponse.Stats stats = DashboardResponse.Stats.builder()
+                .totalRevenue(range.stats().getTotalRevenue())
+                .revenueChange(range.stats().getRevenueChange())
+                .totalSales(range.stats().getTotalSales())
+                .salesChange(range.stats().getSalesChange())
+                .pendingOrders(range.stats().getPendingOrders())
+                .alerts(global.lowStockProducts().size())
+                .products(global.products())
+                .build();
 
         return DashboardResponse.builder()
                 .stats(stats)
-                .revenueChartData(revenueData)
-                .topSellingData(topSellingData)
-                .recentOrders(recentOrdersDto)
-                .lowStockProducts(lowStockProducts)
+                .revenueChartData(range.revenueChartData())
+                .topSellingData(range.topSellingData())
+                .recentOrders(global.recentOrders())
+                .lowStockProducts(global.lowStockProducts())
                 .build();
     }
 
+    @EventListener
+    public void onSalesRollupChanged(SalesRollupChangedEvent event) {
+        invalidateDays(event.getFrom(), event.getTo());
+    }
+
+    /**
+     * Event ข้างบนเห็นเฉพาะการเปลี่ยนแปลงใน Instance นี้: ตรวจ {@code sales_daily} ที่ถูกเขียนโดย Instance อื่น
+     * (หรือ Rebuild) ตั้งแต่รอบก่อน แล้ว Invalidate ช่วงที่ครอบคลุมวันเหล่านั้น
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.cache.rollup-poll:PT30S}")
+    public synchronized void pollRollupChanges() {
+        try {
+            Query query = new Query();
+            if (rollupWatermark != null) {
+                query.addCriteria(Criteria.where("updatedAt").gt(rollupWatermark.minus(rollupPollOverlap)));
+            }
+            query.fields().include("updatedAt");
+            List<SalesDaily> written = mongoTemplate.find(query, SalesDaily.class);
+            boolean firstPoll = rollupWatermark == null;
+
+            LocalDate from = null;
+            LocalDate to = null;
+            for (SalesDaily day : written) {
+                if (day.getUpdatedAt() == null || day.getUpdatedAt().equals(recentlySeenRollups.put(day.getId(), day.getUpdatedAt()))) {
+                    continue;
+                }
+                if (rollupWatermark == null || day.getUpdatedAt().isAfter(rollupWatermark)) {
+                    rollupWatermark = day.getUpdatedAt();
+                }
+                LocalDate date = dayOf(day);
+                from = from == null || date.isBefore(from) ? date : from;
+                to = to == null || date.isAfter(to) ? date : to;
+            }
+            if (rollupWatermark != null) {
+                Instant overlapStart = rollupWatermark.minus(rollupPollOverlap);
+                recentlySeenRollups.values().removeIf(updatedAt -> !updatedAt.isAfter(overlapStart));
+            }
+            if (from != null && !firstPoll) {
+                log.debug("Sales rollup changed elsewhere for {} to {}; invalidating cached dashboards.", from, to);
+                invalidateDays(from, to);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not poll sales rollup changes; cached past ranges expire after {}: {}", pastTtl, e.getMessage());
+        }
+    }
+
+    /**
+     * ทำให้ช่วงที่ครอบคลุมวันที่ระบุหมดอายุ (รวมช่วงก่อนหน้าที่ใช้คำนวณ % การเปลี่ยนแปลง)
+     */
+    private void invalidateDays(LocalDate from, LocalDate to) {
+        rangeCache.invalidate(key ->
+                !salesRollupService.dayOf(key.end()).isBefore(from)
+                        && !salesRollupService.dayOf(previousPeriodStart(key.start(), key.end())).isAfter(to));
+    }
+
+    private RangeSection loadRangeSection(Instant startDate, Instant endDate) {
+        Instant previousPeriodStartDate = previousPeriodStart(startDate, endDate);
+        // อ่านยอดรายวันจาก sales_daily (หนึ่งเอกสารต่อวัน) ของทั้งสองช่วงใน Query เดียว แทนการสแกน Order
+        LocalDate fromDay = salesRollupService.dayOf(startDate);
+        List<SalesDaily> days = salesRollupService.findDays(salesRollupService.dayOf(previousPeriodStartDate), salesRollupService.dayOf(endDate));
+        List<SalesDaily> currentDays = days.stream().filter(day -> !dayOf(day).isBefore(fromDay)).toList();
+        List<SalesDaily> previousDays = days.stream().filter(day -> dayOf(day).isBefore(fromDay)).toList();
+
+        return new RangeSection(calculateStats(currentDays, previousDays),
+                processRevenueChartData(currentDays), processTopSellingChartData(currentDays));
+    }
+
+    private static Instant previousPeriodStart(Instant startDate, Instant endDate) {
+        long durationInDays = Math.max(1, ChronoUnit.DAYS.between(startDate, endDate));
+        return startDate.minus(durationInDays, ChronoUnit.DAYS);
+    }
+
+    private GlobalSection loadGlobalSection() {
+        try (StructuredFanOut.Scope scope = structuredFanOut.open("dashboard-global", fanOutDeadline)) {
+            Supplier<List<Order>> recentOrders = scope.fork(orderRepository::findTop5ByOrderByCreatedAtDesc);
+            Supplier<List<DashboardResponse.LowStockProduct>> lowStockProducts = scope.fork(this::getLowStockProducts);
+            Supplier<Long> products = scope.fork(componentRepository::count);
+            scope.join();
+            return new GlobalSection(formatRecentOrders(recentOrders.get()), lowStockProducts.get(), products.get());
+        }
+    }
+
     @Override
     public List<DashboardResponse.RecentOrder> getOrdersForExport(Instant startDate, Instant endDate) {
         log.info("Fetching all orders from {} to {} for export", startDate, endDate);
@@ -78,10 +244,8 @@ public class DashboardServiceImpl implements DashboardService {
 
 
     private List<DashboardResponse.LowStockProduct> getLowStockProducts() {
-        List<Inventory> lowStockInventories = inventoryRepository.findAll()
-                .stream()
-                .filter(inv -> inv.getQuantity() < LOW_STOCK_THRESHOLD && inv.getQuantity() > 0)
-                .toList();
+        List<Inventory> lowStockInventories = mongoTemplate.find(
+                Query.query(Criteria.where("quantity").lt(LOW_STOCK_THRESHOLD).gt(0)), Inventory.class);
 
         if (lowStockInventories.isEmpty()) {
             return Collections.emptyList();
@@ -107,7 +271,7 @@ public class DashboardServiceImpl implements DashboardService {
                             .stock(inventory.getQuantity())
                             .build();
                 })
-                .filter(java.util.Objects::nonNull)
+                .filter(Objects::nonNull)
                 .sorted(Comparator.comparingInt(DashboardResponse.LowStockProduct::getStock))
                 .collect(Collectors.toList());
     }
@@ -133,86 +297,58 @@ public class DashboardServiceImpl implements DashboardService {
                 .collect(Collectors.toList());
     }
 
-    private DashboardResponse.Stats calculateStats(List<Order> currentOrders, List<Order> previousOrders, List<DashboardResponse.LowStockProduct> lowStockProducts) {
-        double totalRevenue = currentOrders.stream()
-                .filter(o -> o.getPaymentStatus() == PaymentStatus.COMPLETED)
-                .mapToDouble(o -> o.getTotalAmount().doubleValue()).sum();
-        long totalSales = currentOrders.size();
-
-        double prevTotalRevenue = previousOrders.stream()
-                .filter(o -> o.getPaymentStatus() == PaymentStatus.COMPLETED)
-                .mapToDouble(o -> o.getTotalAmount().doubleValue()).sum();
-        long prevTotalSales = previousOrders.size();
+    private DashboardResponse.Stats calculateStats(List<SalesDaily> currentDays, List<SalesDaily> previousDays) {
+        double totalRevenue = revenueOf(currentDays);
+        long totalSales = currentDays.stream().mapToLong(SalesDaily::getOrders).sum();
+        double prevTotalRevenue = revenueOf(previousDays);
+        long prevTotalSales = previousDays.stream().mapToLong(SalesDaily::getOrders).sum();
 
         double revenueChange = (prevTotalRevenue > 0) ? ((totalRevenue - prevTotalRevenue) / prevTotalRevenue) * 100 : (totalRevenue > 0 ? 100 : 0);
         double salesChange = (prevTotalSales > 0) ? (((double)totalSales - prevTotalSales) / prevTotalSales) * 100 : (totalSales > 0 ? 100 : 0);
 
-        List<OrderStatus> pendingStatuses = List.of(OrderStatus.PROCESSING, OrderStatus.REFUND_REQUESTED);
-
-        long pendingOrdersCount = currentOrders.stream()
-                .filter(o -> pendingStatuses.contains(o.getOrderStatus()))
-                .count();
-
-        long lowStockAlerts = lowStockProducts.size();
-
         return DashboardResponse.Stats.builder()
                 .totalRevenue(totalRevenue)
                 .revenueChange(revenueChange)
                 .totalSales(totalSales)
                 .salesChange(salesChange)
-                .pendingOrders(pendingOrdersCount)
-                .alerts(lowStockAlerts)
-                .products(componentRepository.count())
+                .pendingOrders(currentDays.stream().mapToLong(SalesDaily::getPending).sum())
                 .build();
     }
 
-    private List<DashboardResponse.ChartData> processRevenueChartData(List<Order> orders) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
-        Map<String, BigDecimal> revenueByDate = orders.stream()
-                .filter(o -> o.getPaymentStatus() == PaymentStatus.COMPLETED)
-                .collect(Collectors.groupingBy(
-                        order -> formatter.format(order.getCreatedAt()),
-                        Collectors.reducing(BigDecimal.ZERO, Order::getTotalAmount, BigDecimal::add)
-                ));
-        return revenueByDate.entrySet().stream()
-                .map(entry -> DashboardResponse.ChartData.builder()
-                        .name(entry.getKey())
-                        .value(entry.getValue().doubleValue())
+    private double revenueOf(List<SalesDaily> days) {
+        return days.stream()
+                .map(SalesDaily::getRevenue)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .doubleValue();
+    }
+
+    private List<DashboardResponse.ChartData> processRevenueChartData(List<SalesDaily> days) {
+        return days.stream()
+                .filter(day -> day.getPaidOrders() > 0)
+                .map(day -> DashboardResponse.ChartData.builder()
+                        .name(day.getId())
+                        .value(day.getRevenue() != null ? day.getRevenue().doubleValue() : 0)
                         .build())
-                .sorted(Comparator.comparing(DashboardResponse.ChartData::getName))
                 .collect(Collectors.toList());
     }
 
-
-    private List<DashboardResponse.ChartData> processTopSellingChartData(List<Order> orders) {
-        Map<String, Integer> componentQuantities = new HashMap<>();
-
-
-        orders.stream()
-                .filter(order -> order.getPaymentStatus() == PaymentStatus.COMPLETED)
-                .flatMap(order -> order.getLineItems().stream())
-                .forEach(item -> {
-
-                    if (item.getItemType() == LineItemType.COMPONENT) {
-                        componentQuantities.merge(item.getName(), item.getQuantity(), Integer::sum);
-                    } else if (item.getItemType() == LineItemType.BUILD && item.getContainedItems() != null) {
-
-                        item.getContainedItems().forEach(part -> {
-
-                            int totalPartQuantity = part.getQuantity() * item.getQuantity();
-                            componentQuantities.merge(part.getName(), totalPartQuantity, Integer::sum);
-                        });
-                    }
-                });
-
-
-        return componentQuantities.entrySet().stream()
-                .map(entry -> DashboardResponse.ChartData.builder()
-                        .name(entry.getKey())
-                        .value(entry.getValue())
+    private List<DashboardResponse.ChartData> processTopSellingChartData(List<SalesDaily> days) {
+        // นับตาม Component ID ด้วย Heap ขนาด K แทนการรวมตามชื่อแล้วเรียงทั้งหมด
+        TopKCounter counter = new TopKCounter(topSellingLimit, null);
+        days.stream()
+                .filter(day -> day.getUnits() != null)
+                .forEach(day -> day.getUnits().forEach((key, unit) -> counter.add(key, unit.getName(), unit.getQuantity())));
+
+        return counter.top().stream()
+                .map(candidate -> DashboardResponse.ChartData.builder()
+                        .name(candidate.name())
+                        .value(candidate.count())
                         .build())
-                .sorted(Comparator.comparingDouble(DashboardResponse.ChartData::getValue).reversed())
-                .limit(5)
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    private LocalDate dayOf(SalesDaily day) {
+        return LocalDate.parse(day.getId());
+    }
+}
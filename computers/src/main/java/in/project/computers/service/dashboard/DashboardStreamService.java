@@ -0,0 +1,17 @@
+package in.project.computers.service.dashboard;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * <h3>Dashboard Stream Service</h3>
+ * <p>
+ * ส่งการเปลี่ยนแปลงของ Dashboard (Order ใหม่, การเปลี่ยนสถานะ, สต็อกต่ำ, ยอดขายของวันนี้) ไปยัง Admin
+ * ผ่าน Server-Sent Events โดยอ่านจาก MongoDB Change Stream ของ {@code orders}, {@code inventories} และ {@code sales_daily}
+ * ทุก Replica จึงเห็นการเปลี่ยนแปลงเดียวกัน หาก MongoDB ไม่รองรับ Change Stream (Standalone) จะใช้ Event ภายใน JVM แทน
+ * การเปลี่ยนแปลงที่เกิดขึ้นถี่ ๆ ภายในหนึ่งรอบ Flush ถูกรวมเป็น Frame เดียว
+ * </p>
+ */
+public interface DashboardStreamService {
+
+    SseEmitter subscribe();
+}
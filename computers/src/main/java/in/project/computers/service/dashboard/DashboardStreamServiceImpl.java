@@ -0,0 +1,464 @@
+package in.project.computers.service.dashboard;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import in.project.computers.dto.dashboard.DashboardDeltaFrame;
+import in.project.computers.dto.dashboard.DashboardResponse;
+import in.project.computers.entity.component.Component;
+import in.project.computers.entity.dashboard.SalesDaily;
+import in.project.computers.event.*;
+import in.project.computers.repository.ComponentRepo.ComponentRepository;
+import in.project.computers.service.orderService.OrderTransition;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardStreamServiceImpl implements DashboardStreamService {
+
+    private static final String EVENT_NAME = "dashboard-delta";
+    private static final OrderTransition EXPIRY = OrderTransition.EXPIRE_UNPAID;
+    private static final String ORDERS = "orders";
+    private static final String INVENTORIES = "inventories";
+    private static final String SALES_DAILY = "sales_daily";
+    private static final String STATUS_HISTORY = "statusHistory";
+    // Replica Set ไม่พร้อมใช้ Change Stream (เช่น MongoDB แบบ Standalone)
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+    // Resume Token เก่าเกินกว่าที่ Oplog ยังเก็บไว้
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private final SalesRollupService salesRollupService;
+    private final ComponentRepository componentRepository;
+    private final MongoTemplate mongoTemplate;
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final AtomicLong frameIds = new AtomicLong();
+    private volatile Instant lastSentAt = Instant.now();
+
+    // การเปลี่ยนแปลงที่รอส่งในรอบ Flush ถัดไป (ป้องกันด้วย Lock ของ Object นี้) Key ซ้ำจะถูกรวมเป็นรายการเดียว
+    private Map<String, DashboardResponse.RecentOrder> pendingOrders = new LinkedHashMap<>();
+    private Map<String, DashboardDeltaFrame.StatusChange> pendingStatusChanges = new LinkedHashMap<>();
+    private Map<String, Integer> pendingStock = new LinkedHashMap<>();
+    private boolean revenueChanged;
+
+    // ระหว่างที่ Change Stream ทำงาน การเปลี่ยนแปลงจากทุก Replica (รวมถึง Instance นี้) มาจาก Change Stream
+    // Event ภายใน JVM จะถูกใช้เฉพาะตอนที่ Change Stream ใช้ไม่ได้เท่านั้น
+    private volatile boolean changeStreamActive;
+    private volatile boolean stopping;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeCursor;
+    private Thread changeWatcher;
+
+    @Value("${app.dashboard.stream.timeout:PT30M}")
+    private Duration timeout;
+
+    @Value("${app.dashboard.stream.heartbeat:PT25S}")
+    private Duration heartbeat;
+
+    @Value("${app.dashboard.stream.max-subscribers:50}")
+    private int maxSubscribers;
+
+    @Value("${app.dashboard.stream.change-stream.enabled:true}")
+    private boolean changeStreamEnabled;
+
+    @Value("${app.dashboard.stream.change-stream.retry-delay:PT5S}")
+    private Duration changeStreamRetryDelay;
+
+    @Override
+    public SseEmitter subscribe() {
+        if (emitters.size() >= maxSubscribers) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many dashboard stream subscribers. Please retry later.");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        try {
+            emitter.send(SseEmitter.event().name("ready").data(Map.of("subscribedAt", Instant.now()), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+        log.info("Dashboard stream subscribed ({} active).", emitters.size());
+        return emitter;
+    }
+
+    @EventListener
+    public void onOrderCreated(OrderCreatedEvent event) {
+        if (emitters.isEmpty() || changeStreamActive) {
+            return;
+        }
+        orderCreated(event.getOrderId(), event.getEmail(), event.getUserId(), event.getOrderStatus().name(), event.getTotalAmount());
+    }
+
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (emitters.isEmpty() || changeStreamActive) {
+            return;
+        }
+        statusChanged(event.getOrderId(), event.getFromStatus() != null ? event.getFromStatus().name() : null,
+                event.getToStatus().name(), event.getToPaymentStatus() != null ? event.getToPaymentStatus().name() : null,
+                event.getChangedAt());
+    }
+
+    @EventListener
+    public void onOrdersExpired(OrdersExpiredEvent event) {
+        if (emitters.isEmpty() || changeStreamActive) {
+            return;
+        }
+        event.getOrderIds().forEach(orderId -> statusChanged(orderId, null,
+                EXPIRY.getToStatus().name(), EXPIRY.getToPaymentStatus().name(), event.getExpiredAt()));
+    }
+
+    @EventListener
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        if (emitters.isEmpty() || changeStreamActive) {
+            return;
+        }
+        synchronized (this) {
+            pendingStock.putAll(event.getQuantities());
+        }
+    }
+
+    @EventListener
+    public void onSalesRollupChanged(SalesRollupChangedEvent event) {
+        if (emitters.isEmpty() || changeStreamActive) {
+            return;
+        }
+        LocalDate today = salesRollupService.dayOf(Instant.now());
+        if (!today.isBefore(event.getFrom()) && !today.isAfter(event.getTo())) {
+            synchronized (this) {
+                revenueChanged = true;
+            }
+        }
+    }
+
+    /**
+     * เปิด Change Stream บน {@code orders}, {@code inventories} และ {@code sales_daily}
+     * ทุก Replica จึงเห็นการเปลี่ยนแปลงที่เขียนจาก Instance อื่นด้วย ไม่ใช่เฉพาะ Event ภายใน JVM ของตัวเอง
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startChangeStream() {
+        if (!changeStreamEnabled) {
+            log.warn("Dashboard change stream is disabled; the stream only shows changes written by this instance.");
+            return;
+        }
+        changeWatcher = Thread.ofVirtual().name("dashboard-change-stream").start(this::watchChanges);
+    }
+
+    @PreDestroy
+    public void stopChangeStream() {
+        stopping = true;
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeCursor;
+        if (cursor != null) {
+            cursor.close();
+        }
+        if (changeWatcher != null) {
+            changeWatcher.interrupt();
+        }
+    }
+
+    private void watchChanges() {
+        BsonDocument resumeToken = null;
+        while (!stopping) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openChangeStream(resumeToken)) {
+                changeCursor = cursor;
+                changeStreamActive = true;
+                log.info("Dashboard change stream opened{}.", resumeToken != null ? " (resumed)" : "");
+                while (!stopping) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null && !emitters.isEmpty()) {
+                        applyChange(change);
+                    }
+                    if (cursor.getResumeToken() != null) {
+                        resumeToken = cursor.getResumeToken();
+                    }
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                    changeStreamActive = false;
+                    log.warn("MongoDB does not support change streams (not a replica set); the dashboard stream only shows changes written by this instance.");
+                    return;
+                }
+                if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    resumeToken = null;
+                }
+                retryChangeStream(e);
+            } catch (RuntimeException e) {
+                retryChangeStream(e);
+            } finally {
+                changeCursor = null;
+            }
+        }
+        changeStreamActive = false;
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openChangeStream(BsonDocument resumeToken) {
+        // ตัด fullDocument ให้เหลือเฉพาะ Field ที่ Frame ใช้ (Order มีรายการสินค้าและประวัติสถานะที่ยาว)
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(
+                        Filters.in("ns.coll", ORDERS, INVENTORIES, SALES_DAILY),
+                        Filters.in("operationType", "insert", "update", "replace", "delete"))),
+                Aggregates.project(Projections.include("operationType", "ns", "documentKey", "updateDescription",
+                        "fullDocument.email", "fullDocument.userId", "fullDocument.orderStatus", "fullDocument.totalAmount",
+                        "fullDocument.componentId", "fullDocument.quantity")));
+        var stream = mongoTemplate.getDb().watch(pipeline)
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        return (resumeToken != null ? stream.resumeAfter(resumeToken) : stream).cursor();
+    }
+
+    private void retryChangeStream(RuntimeException e) {
+        // ระหว่างรอเปิดใหม่ ใช้ Event ภายใน JVM ไปก่อน ส่วนที่พลาดจาก Replica อื่นจะได้จาก Resume Token
+        changeStreamActive = false;
+        if (stopping) {
+            return;
+        }
+        log.warn("Dashboard change stream failed; reopening in {}.", changeStreamRetryDelay, e);
+        try {
+            Thread.sleep(changeStreamRetryDelay);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            stopping = true;
+        }
+    }
+
+    private void applyChange(ChangeStreamDocument<Document> change) {
+        String collection = change.getNamespace() != null ? change.getNamespace().getCollectionName() : null;
+        String id = documentId(change.getDocumentKey());
+        Document document = change.getFullDocument();
+        if (collection == null || id == null) {
+            return;
+        }
+        switch (collection) {
+            case ORDERS -> {
+                if ("insert".equals(change.getOperationTypeString()) && document != null) {
+                    orderCreated(id, document.getString("email"), document.getString("userId"),
+                            document.getString("orderStatus"), decimal(document.get("totalAmount")));
+                } else if (change.getUpdateDescription() != null && change.getUpdateDescription().getUpdatedFields() != null) {
+                    // การเปลี่ยนสถานะทุกครั้ง $push รายการลง statusHistory ("statusHistory.<index>" หรือทั้ง Array ถ้ายังไม่มี)
+                    Document updated = new DocumentCodec().decode(
+                            new BsonDocumentReader(change.getUpdateDescription().getUpdatedFields()), DecoderContext.builder().build());
+                    updated.forEach((field, value) -> {
+                        if (field.startsWith(STATUS_HISTORY + ".") && value instanceof Document entry) {
+                            historyEntryAdded(id, entry);
+                        } else if (field.equals(STATUS_HISTORY) && value instanceof List<?> entries
+                                && !entries.isEmpty() && entries.getLast() instanceof Document entry) {
+                            historyEntryAdded(id, entry);
+                        }
+                    });
+                }
+            }
+            case INVENTORIES -> {
+                if (document != null && document.getString("componentId") != null && document.get("quantity") instanceof Number quantity) {
+                    synchronized (this) {
+                        pendingStock.put(document.getString("componentId"), quantity.intValue());
+                    }
+                }
+            }
+            case SALES_DAILY -> {
+                if (id.equals(salesRollupService.dayOf(Instant.now()).toString())) {
+                    synchronized (this) {
+                        revenueChanged = true;
+                    }
+                }
+            }
+            default -> { }
+        }
+    }
+
+    private void historyEntryAdded(String orderId, Document entry) {
+        if (entry.getString("toStatus") == null) {
+            return;
+        }
+        Object changedAt = entry.get("changedAt");
+        statusChanged(orderId, entry.getString("fromStatus"), entry.getString("toStatus"), entry.getString("toPaymentStatus"),
+                changedAt instanceof Date date ? date.toInstant() : Instant.now());
+    }
+
+    /**
+     * ส่งการเปลี่ยนแปลงทั้งหมดที่สะสมไว้เป็นหนึ่ง Frame ต่อรอบ หากไม่มีการเปลี่ยนแปลงจะส่ง Comment เป็น Heartbeat
+     * เพื่อไม่ให้ Proxy ตัดการเชื่อมต่อ
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.stream.flush-interval:PT1S}")
+    public void flush() {
+        Map<String, DashboardResponse.RecentOrder> orders;
+        Map<String, DashboardDeltaFrame.StatusChange> statusChanges;
+        Map<String, Integer> stock;
+        boolean revenue;
+        synchronized (this) {
+            orders = pendingOrders;
+            statusChanges = pendingStatusChanges;
+            stock = pendingStock;
+            revenue = revenueChanged;
+            pendingOrders = new LinkedHashMap<>();
+            pendingStatusChanges = new LinkedHashMap<>();
+            pendingStock = new LinkedHashMap<>();
+            revenueChanged = false;
+        }
+        if (emitters.isEmpty()) {
+            return;
+        }
+
+        List<DashboardResponse.LowStockProduct> lowStockAlerts = lowStockAlerts(stock);
+        if (orders.isEmpty() && statusChanges.isEmpty() && lowStockAlerts.isEmpty() && !revenue) {
+            if (Instant.now().isAfter(lastSentAt.plus(heartbeat))) {
+                send(SseEmitter.event().comment("heartbeat"));
+            }
+            return;
+        }
+
+        DashboardDeltaFrame frame = DashboardDeltaFrame.builder()
+                .sentAt(Instant.now())
+                .newOrders(List.copyOf(orders.values()))
+                .statusChanges(List.copyOf(statusChanges.values()))
+                .lowStockAlerts(lowStockAlerts)
+                .revenue(revenue ? revenueTick() : null)
+                .build();
+        send(SseEmitter.event()
+                .id(String.valueOf(frameIds.incrementAndGet()))
+                .name(EVENT_NAME)
+                .data(frame, MediaType.APPLICATION_JSON));
+    }
+
+    private void orderCreated(String orderId, String email, String userId, String orderStatus, BigDecimal totalAmount) {
+        DashboardResponse.RecentOrder order = DashboardResponse.RecentOrder.builder()
+                .id(orderId)
+                .customerName(customerName(email, userId))
+                .orderStatus(orderStatus)
+                .totalAmount(totalAmount)
+                .build();
+        synchronized (this) {
+            pendingOrders.put(orderId, order);
+        }
+    }
+
+    private void statusChanged(String orderId, String fromStatus, String toStatus, String paymentStatus, Instant changedAt) {
+        synchronized (this) {
+            // หลายการเปลี่ยนแปลงของ Order เดียวกันในรอบเดียว: เก็บสถานะต้นทางแรกสุดและสถานะปลายทางล่าสุด
+            DashboardDeltaFrame.StatusChange previous = pendingStatusChanges.get(orderId);
+            pendingStatusChanges.put(orderId, DashboardDeltaFrame.StatusChange.builder()
+                    .orderId(orderId)
+                    .fromStatus(previous != null ? previous.getFromStatus() : fromStatus)
+                    .toStatus(toStatus)
+                    .paymentStatus(paymentStatus)
+                    .changedAt(changedAt)
+                    .build());
+            DashboardResponse.RecentOrder created = pendingOrders.get(orderId);
+            if (created != null) {
+                created.setOrderStatus(toStatus);
+            }
+        }
+    }
+
+    private List<DashboardResponse.LowStockProduct> lowStockAlerts(Map<String, Integer> stock) {
+        Map<String, Integer> low = stock.entrySet().stream()
+                .filter(entry -> entry.getValue() != null && entry.getValue() < DashboardServiceImpl.LOW_STOCK_THRESHOLD)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        if (low.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Component> components = componentRepository.findAllById(low.keySet()).stream()
+                .collect(Collectors.toMap(Component::getId, Function.identity()));
+        return low.entrySet().stream()
+                .filter(entry -> components.containsKey(entry.getKey()))
+                .map(entry -> {
+                    Component component = components.get(entry.getKey());
+                    return DashboardResponse.LowStockProduct.builder()
+                            .id(component.getId())
+                            .name(component.getName())
+                            .mpn(component.getMpn())
+                            .stock(entry.getValue())
+                            .build();
+                })
+                .sorted(Comparator.comparingInt(DashboardResponse.LowStockProduct::getStock))
+                .toList();
+    }
+
+    private DashboardDeltaFrame.RevenueTick revenueTick() {
+        LocalDate today = salesRollupService.dayOf(Instant.now());
+        SalesDaily day = salesRollupService.findDays(today, today).stream().findFirst().orElse(null);
+        return DashboardDeltaFrame.RevenueTick.builder()
+                .day(today.toString())
+                .revenue(day != null && day.getRevenue() != null ? day.getRevenue() : BigDecimal.ZERO)
+                .orders(day != null ? day.getOrders() : 0)
+                .paidOrders(day != null ? day.getPaidOrders() : 0)
+                .pending(day != null ? day.getPending() : 0)
+                .build();
+    }
+
+    private void send(SseEmitter.SseEventBuilder event) {
+        lastSentAt = Instant.now();
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // Client ปิดการเชื่อมต่อไปแล้ว
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private static String documentId(BsonDocument documentKey) {
+        if (documentKey == null || !documentKey.containsKey("_id")) {
+            return null;
+        }
+        var id = documentKey.get("_id");
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                : id.isString() ? id.asString().getValue()
+                : null;
+    }
+
+    private static BigDecimal decimal(Object value) {
+        return value instanceof Decimal128 decimal ? decimal.bigDecimalValue()
+                : value instanceof Number number ? new BigDecimal(number.toString())
+                : null;
+    }
+
+    private String customerName(String email, String userId) {
+        if (email != null && !email.isBlank()) {
+            return email;
+        }
+        if (userId != null && !userId.isBlank()) {
+            return "User ID: " + userId;
+        }
+        return "Guest Customer";
+    }
+}
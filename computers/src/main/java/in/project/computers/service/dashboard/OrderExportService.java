@@ -0,0 +1,26 @@
+package in.project.computers.service.dashboard;
+
+import in.project.computers.dto.dashboard.OrderExportFormat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+
+/**
+ * <h3>Order Export Service</h3>
+ * <p>
+ * Export Order ในช่วงเวลาที่ระบุแบบ Streaming: อ่านจาก Mongo Cursor ทีละ Batch และเขียนลง Response ทันที
+ * หน่วยความจำจึงไม่ขึ้นกับจำนวน Order (Order ใน Archive ถูกอ่านทีละ Bucket ของผู้ใช้หนึ่งคนต่อเดือน)
+ * จำนวน Export ที่ทำพร้อมกันถูกจำกัด และการอ่านใช้ Secondary เมื่อมี เพื่อไม่ให้กระทบ Latency ของ API
+ * </p>
+ */
+public interface OrderExportService {
+
+    /**
+     * จอง Slot ของการ Export แล้วคืน Body ที่จะเขียนข้อมูลเมื่อ Spring MVC เริ่มส่ง Response
+     * Slot ถูกคืนเมื่อเขียนเสร็จ หรือเมื่อ Async Request จบลง (Timeout, Error, Client ตัดการเชื่อมต่อ) แม้ Body จะไม่ถูกเรียก
+     *
+     * @param gzip true = บีบอัดด้วย gzip
+     * @throws org.springframework.web.server.ResponseStatusException 429 เมื่อมี Export ทำงานอยู่เต็มจำนวน
+     */
+    StreamingResponseBody openExport(Instant startDate, Instant endDate, OrderExportFormat format, boolean gzip);
+}
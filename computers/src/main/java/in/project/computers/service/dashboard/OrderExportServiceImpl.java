@@ -0,0 +1,308 @@
+package in.project.computers.service.dashboard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mongodb.ReadPreference;
+import in.project.computers.dto.dashboard.OrderExportFormat;
+import in.project.computers.entity.order.*;
+import in.project.computers.service.orderService.OrderArchiveService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderExportServiceImpl implements OrderExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PERMIT_INTERCEPTOR_KEY = OrderExportServiceImpl.class.getName() + ".permit";
+    private static final List<String> CSV_HEADER = List.of(
+            "order_id", "created_at", "order_status", "payment_status", "payment_method", "email", "user_id",
+            "currency", "order_total", "tax_amount", "tracking_number",
+            "line_no", "parent_line", "item_type", "component_id", "build_id", "mpn", "name", "quantity", "unit_price", "line_total");
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderArchiveService orderArchiveService;
+    private final ObjectMapper objectMapper;
+
+    private Semaphore permits;
+
+    @Value("${app.orders.export.max-concurrent:2}")
+    private int maxConcurrent;
+
+    @Value("${app.orders.export.cursor-batch-size:500}")
+    private int cursorBatchSize;
+
+    // อ่านจาก Secondary เมื่อมี (Replica Set) เพื่อไม่แย่ง Primary กับ Request ปกติ
+    @Value("${app.orders.export.secondary-reads:true}")
+    private boolean secondaryReads;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    public StreamingResponseBody openExport(Instant startDate, Instant endDate, OrderExportFormat format, boolean gzip) {
+        if (endDate.isBefore(startDate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endDate must not be before startDate.");
+        }
+        if (!permits.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many exports are running. Please retry later.");
+        }
+        // คืน Slot ได้ครั้งเดียว: จากตอนเขียนเสร็จ หรือจาก Callback ของ Async Request (Timeout, Client ตัดการเชื่อมต่อ)
+        // กรณีที่ Body ไม่เคยถูกเรียกเลย Slot จึงไม่ค้าง
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+        releaseOnAsyncCompletion(release);
+        return out -> {
+            try {
+                write(startDate, endDate, format, gzip, out);
+            } finally {
+                release.run();
+            }
+        };
+    }
+
+    private void releaseOnAsyncCompletion(Runnable release) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        WebAsyncUtils.getAsyncManager(attributes.getRequest()).registerCallableInterceptor(PERMIT_INTERCEPTOR_KEY,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                        release.run();
+                    }
+                });
+    }
+
+    private void write(Instant startDate, Instant endDate, OrderExportFormat format, boolean gzip, OutputStream out) throws IOException {
+        long startedAt = System.nanoTime();
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipStream : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        OrderWriter orderWriter = format == OrderExportFormat.CSV ? new CsvOrderWriter(writer) : new NdjsonOrderWriter(writer);
+
+        orderWriter.begin();
+        long exported = 0;
+        // ทีละเดือน (UTC): Order ใน Archive อ่านทีละ Bucket (ผู้ใช้หนึ่งคนต่อเดือน) จาก Cursor แล้วตามด้วย Cursor ของ Order ปัจจุบัน
+        // หน่วยความจำจึงขึ้นกับ Bucket ที่ใหญ่ที่สุด ไม่ใช่จำนวน Order ทั้งเดือน (ลำดับ createdAt เรียงภายในแต่ละ Bucket และภายใน Cursor)
+        YearMonth lastMonth = YearMonth.from(endDate.atZone(ZoneOffset.UTC));
+        for (YearMonth month = YearMonth.from(startDate.atZone(ZoneOffset.UTC)); !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            Instant monthStart = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            Instant monthEnd = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            Instant from = startDate.isAfter(monthStart) ? startDate : monthStart;
+
+            try (Stream<List<Order>> buckets = orderArchiveService.streamArchivedBucketsByMonth(month.toString())) {
+                for (Iterator<List<Order>> it = buckets.iterator(); it.hasNext(); ) {
+                    exported += writeArchivedBucket(it.next(), from, monthEnd, endDate, orderWriter);
+                }
+            }
+            try (Stream<Order> live = mongoTemplate.stream(liveQuery(from, monthEnd, endDate), Order.class)) {
+                for (Iterator<Order> it = live.iterator(); it.hasNext(); ) {
+                    orderWriter.write(it.next());
+                    exported++;
+                }
+            }
+        }
+        orderWriter.end();
+        writer.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        log.info("Exported {} order(s) from {} to {} as {}{} in {} ms", exported, startDate, endDate, format,
+                gzip ? " (gzip)" : "", (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    private Query liveQuery(Instant from, Instant monthEnd, Instant endDate) {
+        Query query = Query.query(Criteria.where("createdAt").gte(from).lt(monthEnd).lte(endDate))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .cursorBatchSize(cursorBatchSize);
+        query.fields().exclude("statusHistory", "outbox", "outboxDeadLetters", "outboxClaim");
+        if (secondaryReads) {
+            query.withReadPreference(ReadPreference.secondaryPreferred());
+        }
+        return query;
+    }
+
+    private long writeArchivedBucket(List<Order> bucket, Instant from, Instant monthEnd, Instant endDate,
+                                     OrderWriter orderWriter) throws IOException {
+        List<Order> inRange = bucket.stream()
+                .filter(order -> !order.getCreatedAt().isBefore(from) && order.getCreatedAt().isBefore(monthEnd)
+                        && !order.getCreatedAt().isAfter(endDate))
+                .sorted(Comparator.comparing(Order::getCreatedAt))
+                .toList();
+        if (inRange.isEmpty()) {
+            return 0;
+        }
+        // Order ที่ถูกคัดลอกลง Archive แล้วแต่ยังไม่ถูกลบจาก Collection หลัก มีอยู่ทั้งสองที่:
+        // ข้ามสำเนาใน Archive เพราะ Cursor ของ Order ปัจจุบันจะเขียนให้ (หนึ่ง Query ตาม _id ต่อ Bucket)
+        Query stillLive = Query.query(Criteria.where("id").in(inRange.stream().map(Order::getId).toList()));
+        stillLive.fields().include("id");
+        if (secondaryReads) {
+            stillLive.withReadPreference(ReadPreference.secondaryPreferred());
+        }
+        Set<String> liveIds = new HashSet<>();
+        mongoTemplate.find(stillLive, Order.class).forEach(order -> liveIds.add(order.getId()));
+
+        long written = 0;
+        for (Order order : inRange) {
+            if (!liveIds.contains(order.getId())) {
+                orderWriter.write(order);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private interface OrderWriter {
+        default void begin() throws IOException {
+        }
+
+        void write(Order order) throws IOException;
+
+        default void end() throws IOException {
+        }
+    }
+
+    /**
+     * หนึ่งแถวต่อรายการสินค้า ชิ้นส่วนใน Build เป็นแถวแยกโดย {@code parent_line} ชี้ไปยังบรรทัดของ Build
+     * และ {@code quantity} เป็นจำนวนชิ้นรวม (ต่อ Build x จำนวน Build)
+     */
+    private static final class CsvOrderWriter implements OrderWriter {
+        private final Writer writer;
+
+        CsvOrderWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            row(new ArrayList<>(CSV_HEADER));
+        }
+
+        @Override
+        public void write(Order order) throws IOException {
+            List<OrderLineItem> lineItems = order.getLineItems() != null ? order.getLineItems() : List.of();
+            if (lineItems.isEmpty()) {
+                row(orderColumns(order));
+                return;
+            }
+            int lineNo = 0;
+            for (OrderLineItem item : lineItems) {
+                int itemLine = ++lineNo;
+                List<Object> columns = orderColumns(order);
+                Collections.addAll(columns, itemLine, null, item.getItemType(), item.getComponentId(), item.getBuildId(),
+                        item.getMpn(), item.getName(), item.getQuantity(), item.getUnitPrice(),
+                        item.getUnitPrice() != null ? item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())) : null);
+                row(columns);
+                if (item.getItemType() == LineItemType.BUILD && item.getContainedItems() != null) {
+                    for (OrderItemSnapshot part : item.getContainedItems()) {
+                        List<Object> partColumns = orderColumns(order);
+                        Collections.addAll(partColumns, ++lineNo, itemLine, "BUILD_PART", part.getComponentId(), item.getBuildId(),
+                                part.getMpn(), part.getName(), part.getQuantity() * item.getQuantity(), part.getPriceAtTimeOfOrder(), null);
+                        row(partColumns);
+                    }
+                }
+            }
+        }
+
+        private List<Object> orderColumns(Order order) {
+            List<Object> columns = new ArrayList<>(CSV_HEADER.size());
+            Collections.addAll(columns, order.getId(), order.getCreatedAt(), order.getOrderStatus(), order.getPaymentStatus(),
+                    order.getPaymentDetails() != null ? order.getPaymentDetails().getPaymentMethod() : null,
+                    order.getEmail(), order.getUserId(), order.getCurrency(), order.getTotalAmount(), order.getTaxAmount(),
+                    order.getShippingDetails() != null ? order.getShippingDetails().getTrackingNumber() : null);
+            return columns;
+        }
+
+        private void row(List<Object> columns) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(columns.get(i)));
+            }
+            writer.write("\r\n");
+        }
+
+        private String escape(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+            // กัน Formula Injection เมื่อเปิดไฟล์ใน Spreadsheet
+            if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0 && !(value instanceof Number)) {
+                text = "'" + text;
+            }
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                return '"' + text.replace("\"", "\"\"") + '"';
+            }
+            return text;
+        }
+    }
+
+    /**
+     * หนึ่งบรรทัด JSON ต่อ Order พร้อมรายการสินค้าทั้งหมด (ไม่รวมประวัติสถานะและข้อมูลภายในของ Outbox)
+     */
+    private final class NdjsonOrderWriter implements OrderWriter {
+        private final Writer writer;
+        private final ObjectWriter json = objectMapper.writer();
+
+        NdjsonOrderWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(Order order) throws IOException {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", order.getId());
+            row.put("createdAt", order.getCreatedAt());
+            row.put("updatedAt", order.getUpdatedAt());
+            row.put("orderStatus", order.getOrderStatus());
+            row.put("paymentStatus", order.getPaymentStatus());
+            row.put("paymentMethod", order.getPaymentDetails() != null ? order.getPaymentDetails().getPaymentMethod() : null);
+            row.put("email", order.getEmail());
+            row.put("userId", order.getUserId());
+            row.put("currency", order.getCurrency());
+            row.put("totalAmount", order.getTotalAmount());
+            row.put("taxAmount", order.getTaxAmount());
+            row.put("shippingDetails", order.getShippingDetails());
+            row.put("lineItems", order.getLineItems());
+            writer.write(json.writeValueAsString(row));
+            writer.write('\n');
+        }
+    }
+}
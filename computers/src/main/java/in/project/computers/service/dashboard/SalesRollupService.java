@@ -0,0 +1,52 @@
+package in.project.computers.service.dashboard;
+
+import in.project.computers.entity.dashboard.SalesDaily;
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.PaymentStatus;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * <h3>Sales Rollup Service</h3>
+ * <p>
+ * ดูแล Collection {@code sales_daily}: แต่ละ Order มีส่วนร่วมกับยอดของวันที่สร้าง (จำนวน Order, รายได้, Pending, จำนวนชิ้น)
+ * เมื่อสถานะเปลี่ยน ส่วนต่างระหว่างสถานะเดิมและสถานะใหม่จะถูก {@code $inc} ลงเอกสารของวันนั้น
+ * การอัปเดตเป็นแบบ Best-Effort หลังการเปลี่ยนสถานะสำเร็จ ความคลาดเคลื่อนถูกแก้โดยงาน Rebuild
+ * </p>
+ */
+public interface SalesRollupService {
+
+    void recordOrderCreated(Order order);
+
+    /**
+     * @param before Order ก่อนเปลี่ยนสถานะ (ต้องมี lineItems, totalAmount และ createdAt)
+     */
+    void recordTransition(Order before, OrderStatus toStatus, PaymentStatus toPaymentStatus);
+
+    /**
+     * คำนวณยอดของช่วงวันที่ใหม่ทั้งหมดจาก Order ใน {@code orders} และ Archive แล้วเขียนทับ
+     * วันที่ถูก {@code $inc} แทรกระหว่างสแกนจะถูกสแกนใหม่ และถูกข้ามหากยังเปลี่ยนอยู่ (ไม่เขียนทับยอดที่ใหม่กว่า)
+     *
+     * @return จำนวนวันในช่วงที่ถูกตรวจและแก้ไขสำเร็จ
+     */
+    int rebuild(LocalDate from, LocalDate to);
+
+    /**
+     * @return Rollup ของวันที่ {@code from} ถึง {@code to} (รวมทั้งสองวัน) เรียงตามวัน
+     */
+    List<SalesDaily> findDays(LocalDate from, LocalDate to);
+
+    /**
+     * อ่าน Rollup ของช่วงวันที่ทีละวันแบบ Cursor (ผู้เรียกต้องปิด Stream)
+     */
+    Stream<SalesDaily> streamDays(LocalDate from, LocalDate to);
+
+    /**
+     * @return วันที่ของเวลาที่ระบุตาม Time Zone ของ Rollup
+     */
+    LocalDate dayOf(Instant instant);
+}
@@ -0,0 +1,312 @@
+package in.project.computers.service.dashboard;
+
+import in.project.computers.entity.dashboard.SalesDaily;
+import in.project.computers.entity.order.*;
+import in.project.computers.event.SalesRollupChangedEvent;
+import in.project.computers.service.orderService.OrderArchiveService;
+import in.project.computers.service.schedulerService.SchedulerLockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * ส่วนร่วมของ Order หนึ่งรายการต่อยอดของวันที่สร้าง: 1 Order, 1 Pending หากอยู่ใน {@link #PENDING_STATUSES},
+ * และรายได้/จำนวนชิ้นหากชำระเงินแล้ว ทั้งการอัปเดตทีละรายการและการ Rebuild ใช้ {@link #contributionOf} เดียวกัน
+ * ผลลัพธ์จึงตรงกันเสมอ
+ * <p>
+ * การเขียนทุกครั้งเพิ่ม {@code rev} ของวันนั้น Rebuild จึงเขียนทับเฉพาะวันที่ไม่มี {@code $inc} แทรกระหว่างสแกน
+ * (Compare-And-Set บน {@code rev}) ยอดที่เกิดระหว่าง Rebuild จึงไม่หาย
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollupServiceImpl implements SalesRollupService {
+
+    private static final Set<OrderStatus> PENDING_STATUSES = EnumSet.of(OrderStatus.PROCESSING, OrderStatus.REFUND_REQUESTED);
+    private static final String LOCK_NAME = "sales-rollup-rebuild";
+    private static final int MAX_REBUILD_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderArchiveService orderArchiveService;
+    private final SchedulerLockService schedulerLockService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // ต้องตรงกับวิธีที่ Dashboard แปลงช่วงวันที่เป็นเวลา (DashboardController ใช้ UTC)
+    @Value("${app.dashboard.rollup.zone:UTC}")
+    private String zoneId;
+
+    @Value("${app.dashboard.rollup.rebuild-days:3}")
+    private int rebuildDays;
+
+    @Value("${app.dashboard.rollup.lock-lease:PT30M}")
+    private Duration lockLease;
+
+    private record Contribution(long paidOrders, long pending, BigDecimal revenue, Map<String, SalesDaily.ComponentUnits> units) {
+        boolean isZero() {
+            return paidOrders == 0 && pending == 0 && revenue.signum() == 0
+                    && units.values().stream().allMatch(unit -> unit.getQuantity() == 0);
+        }
+    }
+
+    @Override
+    public void recordOrderCreated(Order order) {
+        try {
+            Contribution contribution = contributionOf(order, order.getOrderStatus(), order.getPaymentStatus());
+            upsert(dayOf(order.getCreatedAt()), toUpdate(contribution).inc("orders", 1));
+        } catch (RuntimeException e) {
+            log.error("Failed to record order {} in sales rollup; the next rebuild will correct it.", order.getId(), e);
+        }
+    }
+
+    @Override
+    public void recordTransition(Order before, OrderStatus toStatus, PaymentStatus toPaymentStatus) {
+        try {
+            Contribution delta = difference(
+                    contributionOf(before, before.getOrderStatus(), before.getPaymentStatus()),
+                    contributionOf(before, toStatus, toPaymentStatus));
+            if (delta.isZero()) {
+                return;
+            }
+            upsert(dayOf(before.getCreatedAt()), toUpdate(delta));
+        } catch (RuntimeException e) {
+            log.error("Failed to record transition of order {} in sales rollup; the next rebuild will correct it.", before.getId(), e);
+        }
+    }
+
+    @Scheduled(cron = "${app.dashboard.rollup.rebuild-cron:0 15 3 * * *}")
+    public void scheduledRebuild() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lockLease)) {
+            log.debug("Sales rollup rebuild skipped: another instance holds the lock.");
+            return;
+        }
+        try {
+            // วันนี้ยังมีการเขียนอยู่ตลอด จึง Rebuild เฉพาะวันที่ปิดแล้ว (วันนี้จะถูกตรวจในรอบของพรุ่งนี้)
+            LocalDate yesterday = LocalDate.now(zone()).minusDays(1);
+            rebuild(yesterday.minusDays(rebuildDays - 1L), yesterday);
+        } catch (RuntimeException e) {
+            log.error("Sales rollup rebuild failed", e);
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    @Override
+    public int rebuild(LocalDate from, LocalDate to) {
+        Set<LocalDate> skipped = rebuildRange(from, to);
+        // วันที่ถูกเขียนระหว่างสแกน: สแกนใหม่เฉพาะวันนั้น (หน้าต่างสั้นลงมาก) จนกว่าจะไม่มีการเขียนแทรก
+        for (int attempt = 1; attempt < MAX_REBUILD_ATTEMPTS && !skipped.isEmpty(); attempt++) {
+            Set<LocalDate> stillSkipped = new TreeSet<>();
+            skipped.forEach(day -> stillSkipped.addAll(rebuildRange(day, day)));
+            skipped = stillSkipped;
+        }
+        if (!skipped.isEmpty()) {
+            log.warn("Sales rollup days {} kept changing during rebuild; they will be checked again on the next run.", skipped);
+        }
+        eventPublisher.publishEvent(new SalesRollupChangedEvent(from, to));
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        log.info("Rebuilt sales rollup for {} to {}: {} day(s), {} skipped", from, to, days, skipped.size());
+        return (int) days - skipped.size();
+    }
+
+    /**
+     * คำนวณยอดของช่วงวันที่ใหม่แล้วเขียนทับเฉพาะวันที่ {@code rev} ยังเท่ากับก่อนเริ่มสแกน
+     *
+     * @return วันที่ถูก {@code $inc} แทรกระหว่างสแกนจึงไม่ได้เขียนทับ
+     */
+    private Set<LocalDate> rebuildRange(LocalDate from, LocalDate to) {
+        Instant start = from.atStartOfDay(zone()).toInstant();
+        Instant end = to.plusDays(1).atStartOfDay(zone()).toInstant();
+
+        // อ่าน rev ก่อนสแกน Order: การ $inc ใดๆ หลังจากนี้จะทำให้ rev เปลี่ยนและวันนั้นถูกข้าม
+        Map<String, Long> revs = new HashMap<>();
+        Query revQuery = Query.query(Criteria.where("day").gte(start).lt(end));
+        revQuery.fields().include("rev");
+        mongoTemplate.find(revQuery, SalesDaily.class).forEach(day -> revs.put(day.getId(), day.getRev()));
+
+        Map<LocalDate, SalesDaily> days = new TreeMap<>();
+        Set<String> seenOrderIds = new HashSet<>();
+        Query query = Query.query(Criteria.where("createdAt").gte(start).lt(end));
+        query.fields().include("createdAt", "orderStatus", "paymentStatus", "totalAmount", "lineItems");
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            orders.forEach(order -> {
+                seenOrderIds.add(order.getId());
+                accumulate(days, order);
+            });
+        }
+        // Order ที่ถูกย้ายไป Archive แล้ว (Bucket แบ่งตามเดือน UTC ของ createdAt)
+        YearMonth lastMonth = YearMonth.from(end.atZone(ZoneOffset.UTC));
+        for (YearMonth month = YearMonth.from(start.atZone(ZoneOffset.UTC)); !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            orderArchiveService.findArchivedOrdersByMonth(month.toString()).stream()
+                    .filter(order -> !order.getCreatedAt().isBefore(start) && order.getCreatedAt().isBefore(end))
+                    .filter(order -> !seenOrderIds.contains(order.getId()))
+                    .forEach(order -> accumulate(days, order));
+        }
+
+        Set<LocalDate> skipped = new TreeSet<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            String id = date.toString();
+            SalesDaily computed = days.get(date);
+            Long rev = revs.get(id);
+            boolean written;
+            if (rev == null) {
+                // ยังไม่มีเอกสาร: สร้างเฉพาะเมื่อไม่มีใครสร้างระหว่างสแกน
+                written = computed == null || mongoTemplate.upsert(Query.query(Criteria.where("id").is(id)),
+                        replacement(computed, true), SalesDaily.class).getUpsertedId() != null;
+            } else {
+                Query guarded = Query.query(Criteria.where("id").is(id).and("rev").is(rev));
+                written = computed != null
+                        ? mongoTemplate.updateFirst(guarded, replacement(computed, false), SalesDaily.class).getModifiedCount() > 0
+                        : mongoTemplate.remove(guarded, SalesDaily.class).getDeletedCount() > 0;
+            }
+            if (!written) {
+                skipped.add(date);
+            }
+        }
+        return skipped;
+    }
+
+    private Update replacement(SalesDaily computed, boolean onInsert) {
+        Document fields = new Document();
+        mongoTemplate.getConverter().write(computed, fields);
+        fields.remove("_id");
+        fields.remove("rev");
+        Update update = new Update();
+        fields.forEach((key, value) -> {
+            if (onInsert) {
+                update.setOnInsert(key, value);
+            } else {
+                update.set(key, value);
+            }
+        });
+        return update.inc("rev", 1);
+    }
+
+    @Override
+    public List<SalesDaily> findDays(LocalDate from, LocalDate to) {
+        return mongoTemplate.find(daysQuery(from, to), SalesDaily.class);
+    }
+
+    @Override
+    public Stream<SalesDaily> streamDays(LocalDate from, LocalDate to) {
+        return mongoTemplate.stream(daysQuery(from, to), SalesDaily.class);
+    }
+
+    private Query daysQuery(LocalDate from, LocalDate to) {
+        return Query.query(Criteria.where("day")
+                        .gte(from.atStartOfDay(zone()).toInstant())
+                        .lt(to.plusDays(1).atStartOfDay(zone()).toInstant()))
+                .with(Sort.by(Sort.Direction.ASC, "day"));
+    }
+
+    @Override
+    public LocalDate dayOf(Instant instant) {
+        return instant.atZone(zone()).toLocalDate();
+    }
+
+    private ZoneId zone() {
+        return ZoneId.of(zoneId);
+    }
+
+    private Contribution contributionOf(Order order, OrderStatus status, PaymentStatus paymentStatus) {
+        boolean paid = paymentStatus == PaymentStatus.COMPLETED;
+        Map<String, SalesDaily.ComponentUnits> units = new TreeMap<>();
+        if (paid && order.getLineItems() != null) {
+            for (OrderLineItem item : order.getLineItems()) {
+                if (item.getItemType() == LineItemType.COMPONENT) {
+                    addUnits(units, item.getComponentId(), item.getName(), item.getQuantity());
+                } else if (item.getItemType() == LineItemType.BUILD && item.getContainedItems() != null) {
+                    for (OrderItemSnapshot part : item.getContainedItems()) {
+                        addUnits(units, part.getComponentId(), part.getName(), (long) part.getQuantity() * item.getQuantity());
+                    }
+                }
+            }
+        }
+        BigDecimal revenue = paid && order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO;
+        return new Contribution(paid ? 1 : 0, PENDING_STATUSES.contains(status) ? 1 : 0, revenue, units);
+    }
+
+    private void addUnits(Map<String, SalesDaily.ComponentUnits> units, String componentId, String name, long quantity) {
+        // Snapshot เก่าอาจไม่มี Component ID จึงใช้ UUID ที่ได้จากชื่อเป็น Key แทน (Key ต้องไม่มีจุด)
+        String key = componentId != null ? componentId : UUID.nameUUIDFromBytes(String.valueOf(name).getBytes(StandardCharsets.UTF_8)).toString();
+        SalesDaily.ComponentUnits unit = units.computeIfAbsent(key, k -> new SalesDaily.ComponentUnits(name, 0));
+        unit.setQuantity(unit.getQuantity() + quantity);
+    }
+
+    /**
+     * ส่วนต่างจากสถานะเดิมไปสถานะใหม่ (ค่าติดลบคือยอดที่ต้องหักออก)
+     */
+    private Contribution difference(Contribution before, Contribution after) {
+        Map<String, SalesDaily.ComponentUnits> units = new TreeMap<>();
+        before.units().forEach((key, unit) -> units.put(key, new SalesDaily.ComponentUnits(unit.getName(), -unit.getQuantity())));
+        after.units().forEach((key, unit) -> units.merge(key, new SalesDaily.ComponentUnits(unit.getName(), unit.getQuantity()),
+                (a, b) -> new SalesDaily.ComponentUnits(b.getName(), a.getQuantity() + b.getQuantity())));
+        return new Contribution(after.paidOrders() - before.paidOrders(), after.pending() - before.pending(),
+                after.revenue().subtract(before.revenue()), units);
+    }
+
+    private Update toUpdate(Contribution delta) {
+        Update update = new Update();
+        if (delta.paidOrders() != 0) {
+            update.inc("paidOrders", delta.paidOrders());
+        }
+        if (delta.pending() != 0) {
+            update.inc("pending", delta.pending());
+        }
+        if (delta.revenue().signum() != 0) {
+            update.inc("revenue", new Decimal128(delta.revenue()));
+        }
+        delta.units().forEach((key, unit) -> {
+            if (unit.getQuantity() != 0) {
+                update.inc("units." + key + ".quantity", unit.getQuantity());
+                update.set("units." + key + ".name", unit.getName());
+            }
+        });
+        return update;
+    }
+
+    private void upsert(LocalDate day, Update update) {
+        update.setOnInsert("day", day.atStartOfDay(zone()).toInstant())
+                .set("updatedAt", Instant.now());
+        update.inc("rev", 1);
+        mongoTemplate.upsert(Query.query(Criteria.where("id").is(day.toString())), update, SalesDaily.class);
+        eventPublisher.publishEvent(new SalesRollupChangedEvent(day, day));
+    }
+
+    private void accumulate(Map<LocalDate, SalesDaily> days, Order order) {
+        LocalDate date = dayOf(order.getCreatedAt());
+        SalesDaily day = days.computeIfAbsent(date, d -> SalesDaily.builder()
+                .id(d.toString())
+                .day(d.atStartOfDay(zone()).toInstant())
+                .revenue(BigDecimal.ZERO)
+                .units(new LinkedHashMap<>())
+                .updatedAt(Instant.now())
+                .build());
+        Contribution contribution = contributionOf(order, order.getOrderStatus(), order.getPaymentStatus());
+        day.setOrders(day.getOrders() + 1);
+        day.setPaidOrders(day.getPaidOrders() + contribution.paidOrders());
+        day.setPending(day.getPending() + contribution.pending());
+        day.setRevenue(day.getRevenue().add(contribution.revenue()));
+        contribution.units().forEach((key, unit) -> {
+            SalesDaily.ComponentUnits total = day.getUnits().computeIfAbsent(key, k -> new SalesDaily.ComponentUnits(unit.getName(), 0));
+            total.setQuantity(total.getQuantity() + unit.getQuantity());
+        });
+    }
+}
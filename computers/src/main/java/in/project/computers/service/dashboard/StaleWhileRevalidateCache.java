@@ -0,0 +1,143 @@
+package in.project.computers.service.dashboard;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Cache ขนาดเล็กแบบ Stale-While-Revalidate:
+ * <ul>
+ *   <li>ค่ายังสด: ตอบจาก Cache</li>
+ *   <li>ค่าหมดอายุหรือถูก Invalidate แต่ยังไม่เก่าเกิน {@code maxStale}: ตอบค่าเดิมทันที แล้ว Refresh เบื้องหลัง</li>
+ *   <li>ไม่มีค่าหรือเก่าเกิน {@code maxStale}: คำนวณใน Request นั้น</li>
+ * </ul>
+ * ทุกกรณีมีการคำนวณได้เพียงครั้งเดียวต่อ Key ในเวลาเดียวกัน (Request อื่นรอผลเดียวกัน)
+ */
+@Slf4j
+final class StaleWhileRevalidateCache<K, V> {
+
+    /**
+     * @param freshUntil null = ไม่หมดอายุจนกว่าจะถูก Invalidate
+     */
+    private record Entry<V>(V value, Instant computedAt, Instant freshUntil) {
+        boolean isFresh(Instant now) {
+            return freshUntil == null || now.isBefore(freshUntil);
+        }
+    }
+
+    private final String name;
+    private final Executor refreshExecutor;
+    private final MeterRegistry meterRegistry;
+    private final int maxEntries;
+    private final Duration maxStale;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    // เพิ่มขึ้นทุกครั้งที่ Invalidate: ผลที่เริ่มคำนวณก่อนการ Invalidate จะถูกเก็บเป็นค่าที่หมดอายุแล้ว
+    private final AtomicLong invalidations = new AtomicLong();
+
+    StaleWhileRevalidateCache(String name, Executor refreshExecutor, MeterRegistry meterRegistry, int maxEntries, Duration maxStale) {
+        this.name = name;
+        this.refreshExecutor = refreshExecutor;
+        this.meterRegistry = meterRegistry;
+        this.maxEntries = maxEntries;
+        this.maxStale = maxStale;
+        meterRegistry.gaugeMapSize("dashboard.cache.size", Tags.of("cache", name), entries);
+    }
+
+    /**
+     * @param ttl ระยะเวลาที่ค่ายังสด (null = จนกว่าจะถูก Invalidate)
+     */
+    V get(K key, Duration ttl, Supplier<V> loader) {
+        Instant now = Instant.now();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.isFresh(now)) {
+            record("hit");
+            return entry.value();
+        }
+        if (entry != null && now.isBefore(entry.computedAt().plus(maxStale))) {
+            record("stale");
+            load(key, ttl, loader, true);
+            return entry.value();
+        }
+        record("miss");
+        try {
+            return load(key, ttl, loader, false).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * ทำให้ Entry ที่ตรงเงื่อนไขหมดอายุ (ยังใช้ตอบแบบ Stale ได้ระหว่าง Refresh)
+     */
+    void invalidate(Predicate<K> affected) {
+        invalidations.incrementAndGet();
+        Instant now = Instant.now();
+        entries.replaceAll((key, entry) -> affected.test(key) && entry.isFresh(now)
+                ? new Entry<>(entry.value(), entry.computedAt(), now)
+                : entry);
+    }
+
+    private CompletableFuture<V> load(K key, Duration ttl, Supplier<V> loader, boolean async) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        Runnable task = () -> {
+            long generation = invalidations.get();
+            Instant startedAt = Instant.now();
+            try {
+                V value = meterRegistry.timer("dashboard.cache.load", "cache", name).record(loader);
+                Instant freshUntil = generation != invalidations.get()
+                        ? startedAt
+                        : (ttl == null ? null : startedAt.plus(ttl));
+                entries.put(key, new Entry<>(value, startedAt, freshUntil));
+                evictIfFull();
+                meterRegistry.counter("dashboard.cache.refresh", "cache", name, "outcome", "success").increment();
+                created.complete(value);
+            } catch (RuntimeException e) {
+                meterRegistry.counter("dashboard.cache.refresh", "cache", name, "outcome", "failure").increment();
+                if (async) {
+                    log.warn("Background refresh of {} cache entry {} failed; serving stale value.", name, key, e);
+                }
+                created.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, created);
+            }
+        };
+        if (async) {
+            refreshExecutor.execute(task);
+        } else {
+            task.run();
+        }
+        return created;
+    }
+
+    private void evictIfFull() {
+        while (entries.size() > maxEntries) {
+            entries.entrySet().stream()
+                    .min(Comparator.comparing(e -> e.getValue().computedAt()))
+                    .ifPresent(oldest -> entries.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("dashboard.cache.requests", "cache", name, "result", result).increment();
+    }
+}
@@ -0,0 +1,96 @@
+package in.project.computers.service.dashboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * นับยอดต่อ Key แบบ Streaming แล้วเก็บเฉพาะ K อันดับแรกใน Min-Heap ขนาด K
+ * <ul>
+ *   <li>แบบแม่นยำ (ไม่มี Sketch): เก็บยอดรวมของทุก Key ที่พบ แล้วคัด K อันดับด้วย Heap ตอนท้าย (O(n log K) แทนการเรียงทั้งหมด)</li>
+ *   <li>แบบประมาณ (มี Sketch): ยอดรวมอยู่ใน {@link CountMinSketch} และเก็บเฉพาะ K ผู้สมัครพร้อมค่าประมาณ หน่วยความจำคงที่ไม่ว่าช่วงจะยาวแค่ไหน</li>
+ * </ul>
+ * ไม่ Thread-Safe: ใช้ภายในการคำนวณครั้งเดียว
+ */
+final class TopKCounter {
+
+    record Candidate(String key, String name, long count) {
+    }
+
+    // มากไปน้อยตามยอด เสมอกันเรียงตามชื่อ (เหมือนกราฟ Top Selling เดิม)
+    static final Comparator<Candidate> RANKING = Comparator.comparingLong(Candidate::count).reversed()
+            .thenComparing(Candidate::name, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Candidate::key);
+
+    private final int k;
+    private final CountMinSketch sketch;
+    private final Map<String, Candidate> exact;
+    // Heap ของผู้สมัคร (แบบประมาณ): หัว Heap คืออันดับที่แย่ที่สุด
+    private final PriorityQueue<Candidate> heap;
+    private final Map<String, Candidate> members;
+
+    /**
+     * @param sketch null = นับแบบแม่นยำ
+     */
+    TopKCounter(int k, CountMinSketch sketch) {
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be positive.");
+        }
+        this.k = k;
+        this.sketch = sketch;
+        this.exact = sketch == null ? new HashMap<>() : null;
+        this.heap = sketch == null ? null : new PriorityQueue<>(k + 1, RANKING.reversed());
+        this.members = sketch == null ? null : new HashMap<>();
+    }
+
+    void add(String key, String name, long count) {
+        if (sketch == null) {
+            exact.merge(key, new Candidate(key, name, count),
+                    (current, added) -> new Candidate(key, added.name() != null ? added.name() : current.name(),
+                            current.count() + added.count()));
+            return;
+        }
+        long estimate = sketch.add(key, count);
+        Candidate existing = members.get(key);
+        if (existing != null) {
+            heap.remove(existing);
+            admit(new Candidate(key, name != null ? name : existing.name(), estimate));
+        } else if (members.size() < k) {
+            admit(new Candidate(key, name, estimate));
+        } else if (RANKING.compare(new Candidate(key, name, estimate), heap.peek()) < 0) {
+            members.remove(heap.poll().key());
+            admit(new Candidate(key, name, estimate));
+        }
+    }
+
+    /**
+     * @return K อันดับแรกเรียงจากมากไปน้อย ไม่รวม Key ที่ยอดไม่เป็นบวก
+     */
+    List<Candidate> top() {
+        PriorityQueue<Candidate> best = new PriorityQueue<>(k + 1, RANKING.reversed());
+        for (Candidate candidate : sketch == null ? exact.values() : heap) {
+            if (candidate.count() <= 0) {
+                continue;
+            }
+            best.offer(candidate);
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        List<Candidate> result = new ArrayList<>(best);
+        result.sort(RANKING);
+        return result;
+    }
+
+    boolean isEstimated() {
+        return sketch != null;
+    }
+
+    private void admit(Candidate candidate) {
+        heap.offer(candidate);
+        members.put(candidate.key(), candidate);
+    }
+}
@@ -0,0 +1,28 @@
+package in.project.computers.service.dashboard;
+
+import in.project.computers.dto.dashboard.TopSellerResponse;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h3>Top Sellers Service</h3>
+ * <p>
+ * หาสินค้าขายดี K อันดับแรกตาม Component ID จากจำนวนชิ้นใน Rollup รายวัน ({@code sales_daily})
+ * โดยอ่านทีละวันแบบ Streaming และเก็บเฉพาะ K อันดับใน Heap ช่วงที่ยาวเกินกำหนดจะใช้ Count-Min Sketch
+ * แทนการเก็บยอดของทุก Component (จำนวนที่ได้เป็นค่าประมาณ)
+ * </p>
+ */
+public interface TopSellersService {
+
+    /**
+     * @param k จำนวนอันดับ (null = ค่าเริ่มต้นจาก {@code app.dashboard.top-sellers.k})
+     */
+    List<TopSellerResponse> topSellers(LocalDate from, LocalDate to, Integer k);
+
+    /**
+     * @return K อันดับแรกแยกตามประเภท Component (cpu, gpu, ...) เรียงตามชื่อประเภท
+     */
+    Map<String, List<TopSellerResponse>> topSellersByCategory(LocalDate from, LocalDate to, Integer k);
+}
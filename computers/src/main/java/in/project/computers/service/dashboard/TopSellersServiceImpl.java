@@ -0,0 +1,137 @@
+package in.project.computers.service.dashboard;
+
+import in.project.computers.dto.dashboard.TopSellerResponse;
+import in.project.computers.entity.component.Component;
+import in.project.computers.entity.dashboard.SalesDaily;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TopSellersServiceImpl implements TopSellersService {
+
+    private static final String OTHER_CATEGORY = "other";
+
+    private final MongoTemplate mongoTemplate;
+    private final SalesRollupService salesRollupService;
+
+    @Value("${app.dashboard.top-sellers.k:5}")
+    private int defaultK;
+
+    @Value("${app.dashboard.top-sellers.max-k:50}")
+    private int maxK;
+
+    // ช่วงที่ยาวกว่านี้ (จำนวนวัน) ใช้ Count-Min Sketch แทนการนับแบบแม่นยำ
+    @Value("${app.dashboard.top-sellers.sketch-after-days:366}")
+    private int sketchAfterDays;
+
+    @Value("${app.dashboard.top-sellers.sketch-width:4096}")
+    private int sketchWidth;
+
+    @Value("${app.dashboard.top-sellers.sketch-depth:5}")
+    private int sketchDepth;
+
+    @Override
+    public List<TopSellerResponse> topSellers(LocalDate from, LocalDate to, Integer k) {
+        TopKCounter counter = newCounter(from, to, resolveK(k));
+        streamDays(from, to, units -> units.forEach((key, unit) -> counter.add(key, unit.getName(), unit.getQuantity())));
+        List<TopKCounter.Candidate> top = counter.top();
+        Map<String, String> categories = findCategories(top.stream().map(TopKCounter.Candidate::key).toList());
+        return top.stream()
+                .map(candidate -> toResponse(candidate, categories.getOrDefault(candidate.key(), OTHER_CATEGORY), counter.isEstimated()))
+                .toList();
+    }
+
+    @Override
+    public Map<String, List<TopSellerResponse>> topSellersByCategory(LocalDate from, LocalDate to, Integer k) {
+        int resolvedK = resolveK(k);
+        // ประเภทของ Component ที่พบแล้ว (ขนาดไม่เกินแคตตาล็อก) และ Counter หนึ่งตัวต่อประเภท
+        Map<String, String> categories = new HashMap<>();
+        Map<String, TopKCounter> counters = new TreeMap<>();
+        streamDays(from, to, units -> {
+            // Resolve ประเภทของ Component ที่ยังไม่รู้จักของวันนั้นใน Query เดียว
+            List<String> unknown = units.keySet().stream().filter(key -> !categories.containsKey(key)).toList();
+            Map<String, String> found = findCategories(unknown);
+            unknown.forEach(key -> categories.put(key, found.getOrDefault(key, OTHER_CATEGORY)));
+            units.forEach((key, unit) -> counters
+                    .computeIfAbsent(categories.get(key), category -> newCounter(from, to, resolvedK))
+                    .add(key, unit.getName(), unit.getQuantity()));
+        });
+
+        Map<String, List<TopSellerResponse>> result = new LinkedHashMap<>();
+        counters.forEach((category, counter) -> {
+            List<TopSellerResponse> top = counter.top().stream()
+                    .map(candidate -> toResponse(candidate, category, counter.isEstimated()))
+                    .toList();
+            if (!top.isEmpty()) {
+                result.put(category, top);
+            }
+        });
+        return result;
+    }
+
+    private void streamDays(LocalDate from, LocalDate to, Consumer<Map<String, SalesDaily.ComponentUnits>> perDay) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endDate must not be before startDate.");
+        }
+        try (Stream<SalesDaily> days = salesRollupService.streamDays(from, to)) {
+            days.filter(day -> day.getUnits() != null && !day.getUnits().isEmpty())
+                    .forEach(day -> perDay.accept(day.getUnits()));
+        }
+    }
+
+    private TopKCounter newCounter(LocalDate from, LocalDate to, int k) {
+        boolean longRange = ChronoUnit.DAYS.between(from, to) + 1 > sketchAfterDays;
+        return new TopKCounter(k, longRange ? new CountMinSketch(sketchWidth, sketchDepth) : null);
+    }
+
+    private int resolveK(Integer k) {
+        if (k == null) {
+            return defaultK;
+        }
+        if (k < 1 || k > maxK) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and " + maxK + ".");
+        }
+        return k;
+    }
+
+    private Map<String, String> findCategories(Collection<String> componentIds) {
+        if (componentIds.isEmpty()) {
+            return Map.of();
+        }
+        Query query = Query.query(Criteria.where("id").in(componentIds));
+        // _class: Component เป็น Abstract ต้องใช้ Type Key เพื่อสร้าง Subclass
+        query.fields().include("type").include("_class");
+        Map<String, String> categories = new HashMap<>();
+        mongoTemplate.find(query, Component.class).forEach(component -> {
+            if (component.getType() != null) {
+                categories.put(component.getId(), component.getType());
+            }
+        });
+        return categories;
+    }
+
+    private TopSellerResponse toResponse(TopKCounter.Candidate candidate, String category, boolean estimated) {
+        return TopSellerResponse.builder()
+                .componentId(candidate.key())
+                .name(candidate.name())
+                .category(category)
+                .quantity(candidate.count())
+                .estimated(estimated)
+                .build();
+    }
+}
@@ -0,0 +1,33 @@
+package in.project.computers.service.idempotencyService;
+
+import java.time.Duration;
+
+/**
+ * บริการสำหรับทำให้การทำงานที่มีผลข้างเคียง (เช่น ตัดเงิน, คืนเงิน) ทำงานเพียงครั้งเดียวต่อหนึ่ง Key
+ * <p>
+ * Request ที่ซ้ำกันระหว่างที่ครั้งแรกยังทำงานอยู่จะรอผลลัพธ์ และเมื่อเสร็จแล้วจะได้รับ Response เดิมซ้ำ
+ * หากการทำงานครั้งแรกล้มเหลว Key จะถูกปล่อยเพื่อให้ Request ถัดไปลองใหม่ได้
+ * ยกเว้นเมื่อล้มเหลวด้วย {@link in.project.computers.exception.OutcomeUnknownException}: Key ถูกถือไว้จนหมด Lease
+ * และการทำงานที่รับช่วงต่อต้องตรวจสถานะกับปลายทางก่อนทำรายการซ้ำ
+ * </p>
+ */
+public interface IdempotencyService {
+
+    @FunctionalInterface
+    interface IdempotentCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * @param key          Idempotency Key
+     * @param operation    ชื่อการทำงานและเป้าหมาย (Key เดียวกันต้องใช้กับ operation เดียวกันเท่านั้น)
+     * @param ttl          ระยะเวลาที่เก็บ Response ไว้ส่งซ้ำ
+     * @param responseType ชนิดของ Response สำหรับแปลงกลับตอนส่งซ้ำ
+     * @param call         การทำงานจริง
+     * @return ผลลัพธ์ของการทำงาน หรือ Response ที่บันทึกไว้ของ Request ก่อนหน้า
+     * @throws org.springframework.web.server.ResponseStatusException (409) หาก Request เดิมยังทำงานไม่เสร็จภายในเวลาที่รอ
+     *         หรือ (422) หาก Key ถูกใช้กับการทำงานอื่นไปแล้ว
+     */
+    <T, E extends Exception> T execute(String key, String operation, Duration ttl, Class<T> responseType,
+                                       IdempotentCall<T, E> call) throws E;
+}
@@ -0,0 +1,185 @@
+package in.project.computers.service.idempotencyService;
+
+import in.project.computers.entity.idempotency.IdempotencyRecord;
+import in.project.computers.entity.idempotency.IdempotencyStatus;
+import in.project.computers.exception.OutcomeUnknownException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private final MongoTemplate mongoTemplate;
+
+    // ระยะเวลาที่ผู้ประมวลผลถือสิทธิ์ไว้ หากเกินนี้ (เช่น Instance ล่ม) Request อื่นจะเข้ามาทำแทนได้
+    @Value("${app.idempotency.lease:PT1M}")
+    private Duration lease;
+
+    // ระยะที่ถือ Key ไว้หลังการทำงานหมดเวลาโดยไม่รู้ผล ต้องนานพอให้ Request ที่ค้างอยู่กับปลายทางจบก่อนมีผู้รับช่วง
+    @Value("${app.idempotency.unknown-outcome-lease:PT2M}")
+    private Duration unknownOutcomeLease;
+
+    @Value("${app.idempotency.wait-timeout:PT15S}")
+    private Duration waitTimeout;
+
+    @Value("${app.idempotency.poll-interval:PT0.1S}")
+    private Duration pollInterval;
+
+    @Override
+    public <T, E extends Exception> T execute(String key, String operation, Duration ttl, Class<T> responseType,
+                                              IdempotentCall<T, E> call) throws E {
+        Instant deadline = Instant.now().plus(waitTimeout);
+        while (true) {
+            IdempotencyRecord acquired = tryAcquire(key, operation, ttl);
+            if (acquired != null) {
+                return runAndStore(acquired, ttl, call);
+            }
+
+            IdempotencyRecord existing = mongoTemplate.findById(key, IdempotencyRecord.class);
+            if (existing == null) {
+                // การทำงานครั้งก่อนล้มเหลวและปล่อย Key แล้ว: ลองใหม่
+                continue;
+            }
+            if (!operation.equals(existing.getOperation())) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency key was already used for a different request.");
+            }
+            if (existing.getStatus() == IdempotencyStatus.COMPLETED) {
+                log.info("Replaying stored response for idempotency key {} ({})", key, operation);
+                return mongoTemplate.getConverter().read(responseType, existing.getResponse());
+            }
+            if (existing.getLockedUntil() != null && existing.getLockedUntil().isBefore(Instant.now())) {
+                IdempotencyRecord takenOver = takeOver(existing);
+                if (takenOver != null) {
+                    log.warn("Lease for idempotency key {} ({}) expired, taking over processing.", key, existing.getStatus());
+                    return runAndStore(takenOver, ttl, call);
+                }
+                continue;
+            }
+            if (Instant.now().isAfter(deadline)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "A request with the same idempotency key is still being processed. Please try again shortly.");
+            }
+            sleep();
+        }
+    }
+
+    private IdempotencyRecord tryAcquire(String key, String operation, Duration ttl) {
+        Instant now = Instant.now();
+        IdempotencyRecord record = IdempotencyRecord.builder()
+                .key(key)
+                .operation(operation)
+                .status(IdempotencyStatus.IN_PROGRESS)
+                .ownerToken(UUID.randomUUID().toString())
+                .lockedUntil(now.plus(lease))
+                .createdAt(now)
+                .expireAt(now.plus(ttl))
+                .build();
+        try {
+            return mongoTemplate.insert(record);
+        } catch (DuplicateKeyException e) {
+            return null;
+        }
+    }
+
+    private IdempotencyRecord takeOver(IdempotencyRecord expired) {
+        Query query = Query.query(Criteria.where("key").is(expired.getKey())
+                .and("status").in(IdempotencyStatus.IN_PROGRESS, IdempotencyStatus.UNKNOWN)
+                .and("ownerToken").is(expired.getOwnerToken()));
+        Update update = new Update()
+                .set("status", IdempotencyStatus.IN_PROGRESS)
+                .set("ownerToken", UUID.randomUUID().toString())
+                .set("lockedUntil", Instant.now().plus(lease));
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), IdempotencyRecord.class);
+    }
+
+    private <T, E extends Exception> T runAndStore(IdempotencyRecord record, Duration ttl, IdempotentCall<T, E> call) throws E {
+        boolean keepKey = false;
+        try {
+            T result = call.call();
+            keepKey = true;
+            storeResponse(record, ttl, result);
+            return result;
+        } catch (OutcomeUnknownException e) {
+            // ปลายทางอาจทำรายการไปแล้ว: ห้ามปล่อย Key ให้ Request ถัดไปทำซ้ำทันที
+            keepKey = true;
+            markUnknown(record);
+            throw e;
+        } finally {
+            if (!keepKey) {
+                release(record);
+            }
+        }
+    }
+
+    private void markUnknown(IdempotencyRecord record) {
+        try {
+            Query query = Query.query(Criteria.where("key").is(record.getKey()).and("ownerToken").is(record.getOwnerToken()));
+            Update update = new Update()
+                    .set("status", IdempotencyStatus.UNKNOWN)
+                    .set("lockedUntil", Instant.now().plus(unknownOutcomeLease));
+            mongoTemplate.updateFirst(query, update, IdempotencyRecord.class);
+            log.warn("Outcome of idempotency key {} is unknown; holding it for {}.", record.getKey(), unknownOutcomeLease);
+        } catch (RuntimeException e) {
+            // เขียนไม่ได้ Key ยังเป็น IN_PROGRESS และรับช่วงได้เมื่อหมด Lease เดิม จึงไม่ปล่อย Key เช่นกัน
+            log.error("Failed to mark idempotency key {} as unknown.", record.getKey(), e);
+        }
+    }
+
+    private void storeResponse(IdempotencyRecord record, Duration ttl, Object result) {
+        try {
+            Document response = new Document();
+            mongoTemplate.getConverter().write(result, response);
+            Instant now = Instant.now();
+            Query query = Query.query(Criteria.where("key").is(record.getKey()).and("ownerToken").is(record.getOwnerToken()));
+            Update update = new Update()
+                    .set("status", IdempotencyStatus.COMPLETED)
+                    .set("response", response)
+                    .set("completedAt", now)
+                    .set("expireAt", now.plus(ttl))
+                    .unset("lockedUntil");
+            if (mongoTemplate.updateFirst(query, update, IdempotencyRecord.class).getMatchedCount() == 0) {
+                log.warn("Idempotency key {} was taken over before its response could be stored.", record.getKey());
+            }
+        } catch (RuntimeException e) {
+            // การทำงานสำเร็จไปแล้ว จึงไม่โยน Exception ต่อ แต่ปล่อย Key ให้ Request ถัดไปประเมินสถานะใหม่
+            log.error("Failed to store response for idempotency key {}", record.getKey(), e);
+            release(record);
+        }
+    }
+
+    private void release(IdempotencyRecord record) {
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("key").is(record.getKey())
+                    .and("ownerToken").is(record.getOwnerToken())), IdempotencyRecord.class);
+        } catch (RuntimeException e) {
+            log.error("Failed to release idempotency key {}; it will be reclaimable after its lease expires.", record.getKey(), e);
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pollInterval.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for a duplicate request to finish.");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.entity.order.Order;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * <h3>Order Archive Service</h3>
+ * <p>
+ * ย้าย Order ที่จบแล้ว ({@code COMPLETED}, {@code REFUNDED}, {@code CANCELLED}) และเก่ากว่า
+ * {@code app.orders.archive.after} ออกจาก Collection {@code orders} ไปเก็บใน {@code orders_archive}
+ * แบบบีบอัด หนึ่งเอกสารต่อผู้ใช้ต่อเดือน เพื่อให้ Query และการสแกนของ Dashboard เบาลง
+ * </p>
+ */
+public interface OrderArchiveService {
+
+    /**
+     * ย้าย Order ที่เข้าเงื่อนไขทั้งหมดไปยัง Archive ทีละ Batch
+     *
+     * @return จำนวน Order ที่ถูกย้าย
+     */
+    int archiveColdOrders();
+
+    /**
+     * ค้นหา Order จาก Archive (ใช้เมื่อไม่พบใน Collection หลัก)
+     */
+    Optional<Order> findArchivedOrder(String orderId);
+
+    /**
+     * ดึง Order ทั้งหมดของผู้ใช้จาก Archive เรียงจากใหม่ไปเก่า
+     */
+    List<Order> findArchivedOrdersByUser(String userId);
+
+    /**
+     * ดึง Order ทั้งหมดใน Archive ที่สร้างในเดือนที่ระบุ (รูปแบบ {@code yyyy-MM} ตาม UTC) ใช้โดยงาน Rebuild ยอดขาย
+     */
+    List<Order> findArchivedOrdersByMonth(String month);
+
+    /**
+     * อ่าน Archive ของเดือนที่ระบุทีละ Bucket ผ่าน Cursor (หนึ่ง List ต่อ Bucket คือ Order ของผู้ใช้หนึ่งคนในเดือนนั้น)
+     * หน่วยความจำจึงขึ้นกับ Bucket ที่ใหญ่ที่สุด ไม่ใช่จำนวน Order ทั้งเดือน ผู้เรียกต้องปิด Stream เมื่อใช้เสร็จ
+     */
+    Stream<List<Order>> streamArchivedBucketsByMonth(String month);
+
+    /**
+     * @return เดือนทั้งหมดที่มี Order ใน Archive (รูปแบบ {@code yyyy-MM}) เรียงจากเก่าไปใหม่
+     */
+    List<String> findArchivedMonths();
+}
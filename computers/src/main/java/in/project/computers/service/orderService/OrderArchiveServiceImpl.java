@@ -0,0 +1,294 @@
+package in.project.computers.service.orderService;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.service.schedulerService.SchedulerLockService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.ByteBuf;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * เก็บ Order เก่าเป็น Bucket ละหนึ่งผู้ใช้ต่อหนึ่งเดือน ({@code _id = userId:yyyy-MM})
+ * โดย Order ทั้งหมดใน Bucket ถูกเข้ารหัสเป็น BSON แล้วบีบอัดด้วย Deflate เป็น Blob เดียว
+ * และเก็บ {@code order_ids} แยกไว้เพื่อค้นหาด้วย Order ID ผ่าน Index
+ * <p>
+ * เขียน Archive ก่อนแล้วค่อยลบจาก {@code orders} แบบมีเงื่อนไข หากงานหยุดกลางคันจึงรันซ้ำได้
+ * (Order ที่ยังอยู่ใน Collection หลักจะถูกใช้ก่อนเสมอ)
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderArchiveServiceImpl implements OrderArchiveService {
+
+    private static final String ORDER_COLLECTION = "orders";
+    private static final String ARCHIVE_COLLECTION = "orders_archive";
+    private static final String LOCK_NAME = "order-archive";
+    private static final String CODEC = "deflate+bson";
+    private static final List<String> ARCHIVABLE_STATUSES = List.of(
+            OrderStatus.COMPLETED.name(), OrderStatus.REFUNDED.name(), OrderStatus.CANCELLED.name());
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneOffset.UTC);
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+    // Bucket เป็น Blob ขนาดใหญ่ จึงดึงจาก Cursor ทีละไม่กี่ Bucket
+    private static final int BUCKET_CURSOR_BATCH_SIZE = 8;
+
+    private final MongoTemplate mongoTemplate;
+    private final SchedulerLockService schedulerLockService;
+
+    @Value("${app.orders.archive.after:P6M}")
+    private Period archiveAfter;
+
+    @Value("${app.orders.archive.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.orders.archive.lock-lease:PT30M}")
+    private Duration lockLease;
+
+    @Value("${app.orders.archive.compression-level:9}")
+    private int compressionLevel;
+
+    @PostConstruct
+    void ensureArchiveIndexes() {
+        // orders_archive ไม่มี Entity ของตัวเอง จึงสร้าง Index เอง: ค้นหาด้วย Order ID, ตามผู้ใช้ และตามเดือน
+        mongoTemplate.indexOps(ARCHIVE_COLLECTION)
+                .createIndex(new Index().on("order_ids", Sort.Direction.ASC));
+        mongoTemplate.indexOps(ARCHIVE_COLLECTION)
+                .createIndex(new Index().on("user_id", Sort.Direction.ASC).on("month", Sort.Direction.DESC));
+        mongoTemplate.indexOps(ARCHIVE_COLLECTION)
+                .createIndex(new Index().on("month", Sort.Direction.ASC));
+    }
+
+    @Scheduled(cron = "${app.orders.archive.cron:0 30 4 * * *}")
+    public void scheduledArchive() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lockLease)) {
+            log.debug("Order archival skipped: another instance holds the lock.");
+            return;
+        }
+        try {
+            int archived = archiveColdOrders();
+            log.info("Order archival finished. Archived: {}", archived);
+        } catch (RuntimeException e) {
+            log.error("Order archival failed", e);
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    @Override
+    public int archiveColdOrders() {
+        Instant cutoff = ZonedDateTime.now(ZoneOffset.UTC).minus(archiveAfter).toInstant();
+        int archived = 0;
+        while (true) {
+            // Order ที่ยังมีงานค้างใน Outbox จะยังไม่ถูกย้าย
+            Query batchQuery = Query.query(Criteria.where("orderStatus").in(ARCHIVABLE_STATUSES)
+                            .and("createdAt").lt(cutoff)
+                            .and("updatedAt").lt(cutoff)
+                            .and("outboxDueAt").exists(false))
+                    .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                    .limit(batchSize);
+            List<Document> batch = mongoTemplate.find(batchQuery, Document.class, ORDER_COLLECTION);
+            if (batch.isEmpty()) {
+                return archived;
+            }
+
+            Map<String, List<Document>> buckets = new LinkedHashMap<>();
+            batch.forEach(order -> buckets.computeIfAbsent(bucketId(order), id -> new ArrayList<>()).add(order));
+            buckets.forEach(this::mergeIntoBucket);
+
+            List<Object> ids = batch.stream().map(order -> order.get("_id")).toList();
+            long removed = mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)
+                    .and("orderStatus").in(ARCHIVABLE_STATUSES)
+                    .and("updatedAt").lt(cutoff)), ORDER_COLLECTION).getDeletedCount();
+
+            if (removed < batch.size()) {
+                // Order ถูกแก้ไขระหว่างนั้น: ยังอยู่ใน orders จึงเอาสำเนาออกจาก Archive
+                Query stillLive = Query.query(Criteria.where("_id").in(ids));
+                stillLive.fields().include("_id");
+                List<Object> liveIds = mongoTemplate.find(stillLive, Document.class, ORDER_COLLECTION).stream()
+                        .map(order -> order.get("_id"))
+                        .toList();
+                removeFromArchive(liveIds);
+            }
+            archived += (int) removed;
+            log.debug("Archived {} order(s) in this batch", removed);
+
+            if (batch.size() < batchSize) {
+                return archived;
+            }
+        }
+    }
+
+    @Override
+    public Optional<Order> findArchivedOrder(String orderId) {
+        Object rawId = toRawId(orderId);
+        Document bucket = mongoTemplate.findOne(Query.query(Criteria.where("order_ids").is(rawId)), Document.class, ARCHIVE_COLLECTION);
+        if (bucket == null) {
+            return Optional.empty();
+        }
+        return decompress(bucket).stream()
+                .filter(order -> rawId.equals(order.get("_id")))
+                .findFirst()
+                .map(this::toOrder);
+    }
+
+    @Override
+    public List<Order> findArchivedOrdersByUser(String userId) {
+        Query query = Query.query(Criteria.where("user_id").is(userId)).with(Sort.by(Sort.Direction.DESC, "month"));
+        return mongoTemplate.find(query, Document.class, ARCHIVE_COLLECTION).stream()
+                .flatMap(bucket -> decompress(bucket).stream())
+                .map(this::toOrder)
+                .sorted(Comparator.comparing(Order::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())))
+                .toList();
+    }
+
+    @Override
+    public List<Order> findArchivedOrdersByMonth(String month) {
+        return mongoTemplate.find(Query.query(Criteria.where("month").is(month)), Document.class, ARCHIVE_COLLECTION).stream()
+                .flatMap(bucket -> decompress(bucket).stream())
+                .map(this::toOrder)
+                .toList();
+    }
+
+    @Override
+    public Stream<List<Order>> streamArchivedBucketsByMonth(String month) {
+        Query query = Query.query(Criteria.where("month").is(month)).cursorBatchSize(BUCKET_CURSOR_BATCH_SIZE);
+        return mongoTemplate.stream(query, Document.class, ARCHIVE_COLLECTION)
+                .map(bucket -> decompress(bucket).stream().map(this::toOrder).toList());
+    }
+
+    @Override
+    public List<String> findArchivedMonths() {
+        return mongoTemplate.findDistinct(new Query(), "month", ARCHIVE_COLLECTION, String.class).stream()
+                .sorted()
+                .toList();
+    }
+
+    private void mergeIntoBucket(String bucketId, List<Document> orders) {
+        Map<Object, Document> merged = new LinkedHashMap<>();
+        Document existing = mongoTemplate.findById(bucketId, Document.class, ARCHIVE_COLLECTION);
+        if (existing != null) {
+            decompress(existing).forEach(order -> merged.put(order.get("_id"), order));
+        }
+        orders.forEach(order -> merged.put(order.get("_id"), order));
+        Document first = orders.getFirst();
+        writeBucket(bucketId, first.getString("userId"), monthOf(first), new ArrayList<>(merged.values()));
+    }
+
+    private void removeFromArchive(List<Object> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        Set<Object> toRemove = new HashSet<>(orderIds);
+        List<Document> buckets = mongoTemplate.find(
+                Query.query(Criteria.where("order_ids").in(orderIds)), Document.class, ARCHIVE_COLLECTION);
+        for (Document bucket : buckets) {
+            List<Document> remaining = decompress(bucket).stream()
+                    .filter(order -> !toRemove.contains(order.get("_id")))
+                    .toList();
+            writeBucket(bucket.getString("_id"), bucket.getString("user_id"), bucket.getString("month"), remaining);
+        }
+    }
+
+    private void writeBucket(String bucketId, String userId, String month, List<Document> orders) {
+        if (orders.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(bucketId)), ARCHIVE_COLLECTION);
+            return;
+        }
+        byte[] raw = encode(orders);
+        byte[] compressed = compress(raw);
+        Document bucket = new Document("_id", bucketId)
+                .append("user_id", userId)
+                .append("month", month)
+                .append("order_ids", orders.stream().map(order -> order.get("_id")).toList())
+                .append("order_count", orders.size())
+                .append("codec", CODEC)
+                .append("raw_bytes", raw.length)
+                .append("compressed_bytes", compressed.length)
+                .append("payload", new Binary(compressed))
+                .append("archived_at", new Date());
+        mongoTemplate.getCollection(ARCHIVE_COLLECTION)
+                .replaceOne(Filters.eq("_id", bucketId), bucket, new ReplaceOptions().upsert(true));
+    }
+
+    private byte[] encode(List<Document> orders) {
+        ByteBuf buffer = new RawBsonDocument(new Document("orders", orders), DOCUMENT_CODEC).getByteBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(compressionLevel);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            try (DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater)) {
+                deflated.write(raw);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compress archived orders", e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private List<Document> decompress(Document bucket) {
+        byte[] compressed = bucket.get("payload", Binary.class).getData();
+        try (InputStream inflated = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            Document payload = new RawBsonDocument(inflated.readAllBytes()).decode(DOCUMENT_CODEC);
+            return payload.getList("orders", Document.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decompress archive bucket " + bucket.get("_id"), e);
+        }
+    }
+
+    private Order toOrder(Document document) {
+        return mongoTemplate.getConverter().read(Order.class, document);
+    }
+
+    private String bucketId(Document order) {
+        return order.getString("userId") + ":" + monthOf(order);
+    }
+
+    private String monthOf(Document order) {
+        return MONTH_FORMAT.format(order.getDate("createdAt").toInstant());
+    }
+
+    private Object toRawId(String orderId) {
+        // Order ID ที่เป็น ObjectId ถูกเก็บใน MongoDB เป็น ObjectId ไม่ใช่ String
+        return ObjectId.isValid(orderId) ? new ObjectId(orderId) : orderId;
+    }
+}
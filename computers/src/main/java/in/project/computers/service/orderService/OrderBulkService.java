@@ -0,0 +1,35 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.dto.order.BulkOrderExportResponse;
+import in.project.computers.dto.order.BulkOrderResult;
+import in.project.computers.dto.order.BulkShipOrderRequest;
+import in.project.computers.entity.order.OrderStatus;
+
+import java.util.List;
+
+/**
+ * <h3>Order Bulk Service</h3>
+ * <p>
+ * คำสั่งของ Admin ที่ทำกับหลาย Order พร้อมกัน: ตรวจสอบแต่ละรายการตามกติกาเดียวกับ Endpoint แบบรายการเดียว
+ * แล้วเปลี่ยนสถานะทั้งหมดผ่าน {@link OrderStateMachine#applyAll(List)} ใน Bulk Write เดียว
+ * ผลลัพธ์รายงานแยกต่อ Order (รายการที่ล้มเหลวไม่ทำให้รายการอื่นล้มเหลว)
+ * </p>
+ */
+public interface OrderBulkService {
+
+    BulkOrderResult shipOrders(BulkShipOrderRequest request);
+
+    BulkOrderResult approvePaymentSlips(List<String> orderIds);
+
+    /**
+     * @throws org.springframework.web.server.ResponseStatusException (400) หากไม่ระบุเหตุผล
+     */
+    BulkOrderResult rejectPaymentSlips(List<String> orderIds, String reason);
+
+    /**
+     * @throws org.springframework.web.server.ResponseStatusException (400) หากไม่ระบุสถานะใหม่
+     */
+    BulkOrderResult updateOrderStatuses(List<String> orderIds, OrderStatus newStatus);
+
+    BulkOrderExportResponse exportOrders(List<String> orderIds);
+}
@@ -0,0 +1,190 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.dto.order.BulkOrderExportResponse;
+import in.project.computers.dto.order.BulkOrderResult;
+import in.project.computers.dto.order.BulkShipOrderRequest;
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.PaymentStatus;
+import in.project.computers.entity.order.ShippingDetails;
+import in.project.computers.repository.generalRepo.OrderRepository;
+import in.project.computers.service.orderService.OrderStateMachine.TransitionRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderBulkServiceImpl implements OrderBulkService {
+
+    private final OrderRepository orderRepository;
+    private final OrderStateMachine orderStateMachine;
+    private final OrderHelperService orderHelper;
+
+    @Value("${app.orders.bulk.max-size:500}")
+    private int maxBatchSize;
+
+    /**
+     * แปลงคำสั่งของหนึ่ง Order เป็น TransitionRequest หรือโยน ResponseStatusException หากทำไม่ได้
+     */
+    @FunctionalInterface
+    private interface TransitionPlanner {
+        TransitionRequest plan(Order order);
+    }
+
+    @Override
+    public BulkOrderResult shipOrders(BulkShipOrderRequest request) {
+        Map<String, BulkShipOrderRequest.Item> items = new LinkedHashMap<>();
+        request.getOrders().forEach(item -> items.putIfAbsent(item.getOrderId(), item));
+        Instant shippedAt = Instant.now();
+        return applyBulk(new ArrayList<>(items.keySet()), order -> {
+            if (!OrderTransition.SHIP.isAllowedFrom(order)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Order cannot be shipped. Current status is: " + order.getOrderStatus());
+            }
+            BulkShipOrderRequest.Item item = items.get(order.getId());
+            ShippingDetails shippingDetails = ShippingDetails.builder()
+                    .shippingProvider(item.getShippingProvider())
+                    .trackingNumber(item.getTrackingNumber())
+                    .shippedAt(shippedAt)
+                    .build();
+            return new TransitionRequest(order, OrderTransition.SHIP,
+                    new Update().set("shippingDetails", shippingDetails),
+                    "Shipped via " + item.getShippingProvider());
+        });
+    }
+
+    @Override
+    public BulkOrderResult approvePaymentSlips(List<String> orderIds) {
+        return applyBulk(orderIds, order -> {
+            requirePendingApproval(order, OrderTransition.APPROVE_SLIP);
+            return new TransitionRequest(order, OrderTransition.APPROVE_SLIP,
+                    new Update().set("paymentDetails.providerStatus", "APPROVED_BY_ADMIN"),
+                    "Payment slip approved by admin");
+        });
+    }
+
+    @Override
+    public BulkOrderResult rejectPaymentSlips(List<String> orderIds, String reason) {
+        if (reason == null || reason.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A reason for rejection is required.");
+        }
+        return applyBulk(orderIds, order -> {
+            requirePendingApproval(order, OrderTransition.REJECT_SLIP);
+            return new TransitionRequest(order, OrderTransition.REJECT_SLIP,
+                    new Update().set("paymentDetails.providerStatus", "REJECTED_BY_ADMIN: " + reason),
+                    reason);
+        });
+    }
+
+    @Override
+    public BulkOrderResult updateOrderStatuses(List<String> orderIds, OrderStatus newStatus) {
+        if (newStatus == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "New status cannot be null.");
+        }
+        return applyBulk(orderIds, order -> new TransitionRequest(order,
+                orderStateMachine.findManualTransition(order.getOrderStatus(), newStatus),
+                null, "Manual status change by admin"));
+    }
+
+    @Override
+    public BulkOrderExportResponse exportOrders(List<String> orderIds) {
+        List<String> ids = distinctIds(orderIds);
+        Map<String, Order> orders = loadOrders(ids);
+        return BulkOrderExportResponse.builder()
+                .orders(ids.stream().filter(orders::containsKey).map(id -> orderHelper.entityToResponse(orders.get(id))).toList())
+                .missingOrderIds(ids.stream().filter(id -> !orders.containsKey(id)).toList())
+                .build();
+    }
+
+    /**
+     * อ่านทุก Order ใน Query เดียว ตรวจสอบทีละรายการ แล้วเปลี่ยนสถานะรายการที่ผ่านใน Bulk Write เดียว
+     */
+    private BulkOrderResult applyBulk(List<String> orderIds, TransitionPlanner planner) {
+        List<String> ids = distinctIds(orderIds);
+        Map<String, Order> orders = loadOrders(ids);
+
+        Map<String, BulkOrderResult.Item> results = new LinkedHashMap<>();
+        Map<String, TransitionRequest> planned = new LinkedHashMap<>();
+        for (String id : ids) {
+            Order order = orders.get(id);
+            if (order == null) {
+                results.put(id, failure(id, HttpStatus.NOT_FOUND.value(), null, "Order not found with ID: " + id));
+                continue;
+            }
+            try {
+                planned.put(id, planner.plan(order));
+                results.put(id, null);
+            } catch (ResponseStatusException e) {
+                results.put(id, failure(id, e.getStatusCode().value(), order.getOrderStatus(), e.getReason()));
+            }
+        }
+
+        Set<String> applied = orderStateMachine.applyAll(new ArrayList<>(planned.values()));
+        planned.forEach((id, request) -> results.put(id, applied.contains(id)
+                ? BulkOrderResult.Item.builder()
+                        .orderId(id)
+                        .success(true)
+                        .status(HttpStatus.OK.value())
+                        .orderStatus(request.transition().getToStatus())
+                        .build()
+                : failure(id, HttpStatus.CONFLICT.value(), request.current().getOrderStatus(),
+                        "Order " + id + " was modified by another request. Please reload and try again.")));
+
+        int succeeded = applied.size();
+        log.info("Admin bulk action: {} of {} order(s) succeeded", succeeded, ids.size());
+        return BulkOrderResult.builder()
+                .requested(ids.size())
+                .succeeded(succeeded)
+                .failed(ids.size() - succeeded)
+                .results(new ArrayList<>(results.values()))
+                .build();
+    }
+
+    private List<String> distinctIds(List<String> orderIds) {
+        List<String> ids = orderIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one order ID is required.");
+        }
+        if (ids.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch may contain at most " + maxBatchSize + " orders.");
+        }
+        return ids;
+    }
+
+    private Map<String, Order> loadOrders(List<String> ids) {
+        return StreamSupport.stream(orderRepository.findAllById(ids).spliterator(), false)
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+    }
+
+    private void requirePendingApproval(Order order, OrderTransition transition) {
+        if (order.getPaymentStatus() != PaymentStatus.PENDING_APPROVAL) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "This order is not awaiting payment slip approval. Current status: " + order.getPaymentStatus());
+        }
+        if (!transition.isAllowedFrom(order)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Payment slip cannot be processed for an order in status " + order.getOrderStatus() + ".");
+        }
+    }
+
+    private BulkOrderResult.Item failure(String orderId, int status, OrderStatus orderStatus, String error) {
+        return BulkOrderResult.Item.builder()
+                .orderId(orderId)
+                .success(false)
+                .status(status)
+                .orderStatus(orderStatus)
+                .error(error)
+                .build();
+    }
+}
@@ -0,0 +1,18 @@
+package in.project.computers.service.orderService;
+
+/**
+ * <h3>Order Expiry Service</h3>
+ * <p>
+ * ยกเลิก Order ที่ค้างรอชำระเงินนานเกินระยะผ่อนผันของแต่ละวิธีชำระเงิน
+ * ({@code app.orders.expiry.grace.*}) เพื่อไม่ให้ Order ค้างสะสมและบิดเบือนสถิติ
+ * </p>
+ */
+public interface OrderExpiryService {
+
+    /**
+     * ยกเลิก Order ที่หมดเวลาทั้งหมดแบบเป็น Batch
+     *
+     * @return จำนวน Order ที่ถูกยกเลิก
+     */
+    int expireStaleOrders();
+}
@@ -0,0 +1,190 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.entity.idempotency.IdempotencyRecord;
+import in.project.computers.entity.idempotency.IdempotencyStatus;
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.OrderStatusChange;
+import in.project.computers.entity.order.PaymentMethod;
+import in.project.computers.entity.order.PaymentStatus;
+import in.project.computers.event.OrdersExpiredEvent;
+import in.project.computers.service.schedulerService.SchedulerLockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * กวาด Order ที่ค้างรอชำระเงินด้วย Range บน Index {@code (orderStatus, createdAt)} แยกตามวิธีชำระเงิน
+ * แล้วยกเลิกทีละ Batch ด้วย {@code updateMulti} แบบมีเงื่อนไขบนสถานะเดิม
+ * <p>
+ * ปลอดภัยเมื่อรันหลาย Replica: รอบการทำงานถูกกันด้วย Scheduler Lock และทุก Update มีเงื่อนไข
+ * จึงไม่ทับ Order ที่เพิ่งถูกชำระเงินหรือเปลี่ยนสถานะไปแล้ว และข้าม Order ที่ Capture กับ PayPal ค้างอยู่
+ * (หาก Capture สำเร็จหลังถูกยกเลิกไปแล้ว ฝั่ง Capture จะคืนเงินเอง ดู OrderTransition.REFUND_LATE_CAPTURE)
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderExpiryServiceImpl implements OrderExpiryService {
+
+    private static final String LOCK_NAME = "order-expiry";
+    private static final OrderTransition TRANSITION = OrderTransition.EXPIRE_UNPAID;
+    // ต้องตรงกับ operation ที่ OrderServiceImpl.capturePaypalOrder ใช้กับ IdempotencyService
+    private static final String CAPTURE_OPERATION_PREFIX = "PAYPAL_CAPTURE:";
+
+    private final MongoTemplate mongoTemplate;
+    private final SchedulerLockService schedulerLockService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.orders.expiry.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.orders.expiry.lock-lease:PT10M}")
+    private Duration lockLease;
+
+    // PayPal: ผู้ใช้ต้องกลับมาจากหน้า PayPal ภายในไม่กี่ชั่วโมง, โอนเงิน: ให้เวลาโอนและอัปโหลดสลิป
+    @Value("${app.orders.expiry.grace.paypal:PT3H}")
+    private Duration paypalGrace;
+
+    @Value("${app.orders.expiry.grace.bank-transfer:P3D}")
+    private Duration bankTransferGrace;
+
+    @Scheduled(cron = "${app.orders.expiry.cron:0 */10 * * * *}")
+    public void scheduledExpiry() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lockLease)) {
+            log.debug("Order expiry skipped: another instance holds the lock.");
+            return;
+        }
+        try {
+            expireStaleOrders();
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    @Override
+    public int expireStaleOrders() {
+        int expired = 0;
+        for (PaymentMethod method : PaymentMethod.values()) {
+            Instant cutoff = Instant.now().minus(gracePeriodFor(method));
+            Set<String> skipped = new HashSet<>();
+            List<Order> candidates;
+            do {
+                candidates = findCandidates(method, cutoff, skipped);
+                if (!candidates.isEmpty()) {
+                    expired += expireBatch(candidates, method, cutoff, skipped);
+                }
+            } while (candidates.size() >= batchSize);
+        }
+        if (expired > 0) {
+            log.info("Expired {} unpaid orders.", expired);
+        }
+        return expired;
+    }
+
+    private Duration gracePeriodFor(PaymentMethod method) {
+        return switch (method) {
+            case PAYPAL -> paypalGrace;
+            case BANK_TRANSFER -> bankTransferGrace;
+        };
+    }
+
+    private List<Order> findCandidates(PaymentMethod method, Instant cutoff, Set<String> skipped) {
+        // orderStatus $in + createdAt < cutoff เป็น Range บน Index (orderStatus, createdAt) โดยตรง
+        Criteria criteria = Criteria.where("orderStatus").in(TRANSITION.getFromStatuses())
+                .and("createdAt").lt(cutoff)
+                .and("paymentStatus").in(TRANSITION.getFromPaymentStatuses())
+                .and("paymentDetails.paymentMethod").is(method);
+        if (!skipped.isEmpty()) {
+            criteria.and("id").nin(skipped);
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(batchSize);
+        query.fields().include("orderStatus").include("paymentStatus");
+        return mongoTemplate.find(query, Order.class);
+    }
+
+    /**
+     * Order ที่กำลัง Capture กับ PayPal อยู่ (มี Idempotency Key ของการ Capture ที่ยังไม่เสร็จ รวมถึงที่ไม่รู้ผล)
+     * ห้ามยกเลิก เพราะลูกค้าอาจจ่ายเงินไปแล้ว Key จะหายไปเองเมื่อหมด TTL หาก Capture ไม่เคยกลับมาทำต่อ
+     */
+    private Set<String> capturesInFlight(List<Order> candidates, PaymentMethod method) {
+        if (method != PaymentMethod.PAYPAL) {
+            return Set.of();
+        }
+        List<String> operations = candidates.stream().map(order -> CAPTURE_OPERATION_PREFIX + order.getId()).toList();
+        Query query = Query.query(Criteria.where("operation").in(operations)
+                .and("status").in(IdempotencyStatus.IN_PROGRESS, IdempotencyStatus.UNKNOWN));
+        query.fields().include("operation");
+        Set<String> orderIds = new HashSet<>();
+        mongoTemplate.find(query, IdempotencyRecord.class)
+                .forEach(record -> orderIds.add(record.getOperation().substring(CAPTURE_OPERATION_PREFIX.length())));
+        return orderIds;
+    }
+
+    /**
+     * ยกเลิก Order หนึ่ง Batch: หนึ่ง {@code updateMulti} ต่อคู่สถานะเดิม (ใช้เป็นเงื่อนไขและบันทึกในประวัติ)
+     * แล้วอ่านกลับเฉพาะ Order ที่ถูกเปลี่ยนโดยรอบนี้ (ประวัติมี batchId ของรอบ) เพื่อ Publish Event
+     */
+    private int expireBatch(List<Order> candidates, PaymentMethod method, Instant cutoff, Set<String> skipped) {
+        Set<String> capturing = capturesInFlight(candidates, method);
+        if (!capturing.isEmpty()) {
+            log.info("Skipping expiry of {} order(s) with a PayPal capture in flight: {}", capturing.size(), capturing);
+            skipped.addAll(capturing);
+        }
+        Instant expiredAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        String batchId = UUID.randomUUID().toString();
+        Map<OrderStatus, Map<PaymentStatus, List<String>>> groups = new EnumMap<>(OrderStatus.class);
+        candidates.stream().filter(order -> !capturing.contains(order.getId())).forEach(order -> groups
+                .computeIfAbsent(order.getOrderStatus(), status -> new EnumMap<>(PaymentStatus.class))
+                .computeIfAbsent(order.getPaymentStatus(), status -> new ArrayList<>())
+                .add(order.getId()));
+
+        List<String> candidateIds = new ArrayList<>();
+        groups.forEach((orderStatus, byPaymentStatus) -> byPaymentStatus.forEach((paymentStatus, ids) -> {
+            candidateIds.addAll(ids);
+            Query query = Query.query(Criteria.where("id").in(ids)
+                    .and("orderStatus").is(orderStatus)
+                    .and("paymentStatus").is(paymentStatus)
+                    .and("createdAt").lt(cutoff));
+            Update update = new Update()
+                    .set("orderStatus", TRANSITION.getToStatus())
+                    .set("paymentStatus", TRANSITION.getToPaymentStatus())
+                    .set("updatedAt", expiredAt)
+                    .push("statusHistory", OrderStatusChange.builder()
+                            .transition(TRANSITION.name())
+                            .fromStatus(orderStatus)
+                            .toStatus(TRANSITION.getToStatus())
+                            .fromPaymentStatus(paymentStatus)
+                            .toPaymentStatus(TRANSITION.getToPaymentStatus())
+                            .note("Expired after " + gracePeriodFor(method) + " without payment")
+                            .changedAt(expiredAt)
+                            .batchId(batchId)
+                            .build());
+            mongoTemplate.updateMulti(query, update, Order.class);
+        }));
+
+        Query expiredQuery = Query.query(Criteria.where("id").in(candidateIds)
+                .and("statusHistory.batchId").is(batchId));
+        expiredQuery.fields().include("id");
+        List<String> expiredIds = mongoTemplate.find(expiredQuery, Order.class).stream().map(Order::getId).toList();
+        if (!expiredIds.isEmpty()) {
+            eventPublisher.publishEvent(new OrdersExpiredEvent(expiredIds, expiredAt));
+        }
+        return expiredIds.size();
+    }
+}
@@ -10,6 +10,7 @@ import in.project.computers.entity.order.PaymentDetails;
 import in.project.computers.entity.order.PaymentMethod;
 import in.project.computers.entity.user.UserEntity;
 
+import java.util.Map;
 
 public interface OrderHelperService {
 
@@ -27,27 +28,20 @@ public interface OrderHelperService {
     Order createAndValidateBaseOrder(CreateOrderRequest request, UserEntity currentUser);
 
     /**
-     * ลดจำนวนสต็อกสินค้าตามรายการใน Order
+     * รวมจำนวน Component ทั้งหมดที่ Order ใช้ (รวมชิ้นส่วนภายใน Build แล้ว)
      * <p>
-     * มักจะถูกเรียกใช้หลังจากยืนยันการชำระเงินสำเร็จแล้ว
+     * ใช้โดย Order Outbox เพื่อตัดหรือคืนสต็อกหลังการเปลี่ยนสถานะ
      * </p>
-     * @param order ออเดอร์ที่ต้องการตัดสต็อก
+     * @param order ออเดอร์ที่ต้องการคำนวณ
+     * @return Map ของ Component ID กับจำนวนรวม
      */
-    void decrementStockForOrder(Order order);
-
-    /**
-     * เพิ่มจำนวนสต็อกสินค้าคืนตามรายการใน Order
-     * <p>
-     * มักจะถูกเรียกใช้เมื่อมีการยกเลิกหรือคืนเงินออเดอร์ที่เคยชำระเงินไปแล้ว
-     * </p>
-     * @param order ออเดอร์ที่ต้องการคืนสต็อก
-     */
-    void incrementStockForOrder(Order order);
+    Map<String, Integer> getComponentQuantities(Order order);
 
     /**
      * ประมวลผลการคืนเงินผ่าน PayPal API
      * <p>
      * จะดึงข้อมูลการชำระเงินเดิมและเรียกใช้ API เพื่อทำการคืนเงิน
+     * หาก Payment มี Refund ที่สำเร็จหรือรอดำเนินการอยู่แล้ว จะใช้รายการนั้นแทนการคืนเงินซ้ำ (เรียกซ้ำได้อย่างปลอดภัย)
      * </p>
      *
      * @param order          ออเดอร์ที่ต้องการคืนเงิน
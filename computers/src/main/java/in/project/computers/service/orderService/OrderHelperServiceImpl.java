@@ -2,8 +2,8 @@ package in.project.computers.service.orderService;
 
 import com.paypal.api.payments.Payment;
 import com.paypal.api.payments.Refund;
+import com.paypal.api.payments.RelatedResources;
 import com.paypal.api.payments.Sale;
-import com.paypal.base.rest.APIContext;
 import com.paypal.base.rest.PayPalRESTException;
 import in.project.computers.dto.order.CreateOrderRequest;
 import in.project.computers.dto.order.OrderResponse;
@@ -11,9 +11,8 @@ import in.project.computers.entity.component.*;
 import in.project.computers.entity.order.*;
 import in.project.computers.entity.user.UserEntity;
 import in.project.computers.repository.ComponentRepo.ComponentRepository;
-import in.project.computers.repository.ComponentRepo.InventoryRepository;
 import in.project.computers.repository.generalRepo.OrderRepository;
-
+import in.project.computers.service.componentService.StockAvailabilityService;
 import in.project.computers.service.paypalService.PaypalService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,9 +24,11 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @org.springframework.stereotype.Component
 @RequiredArgsConstructor
@@ -35,10 +36,9 @@ import java.util.Map;
 public class OrderHelperServiceImpl implements OrderHelperService {
 
     private final ComponentRepository componentRepository;
-    private final InventoryRepository inventoryRepository;
     private final OrderRepository orderRepository;
     private final PaypalService paypalService;
-    private final APIContext apiContext;
+    private final StockAvailabilityService stockAvailabilityService;
 
     @Value("${app.currency:THB}")
     private String currency;
@@ -61,8 +61,26 @@ public class OrderHelperServiceImpl implements OrderHelperService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Order cannot be created from an empty cart.");
         }
 
-        validateOverallStockFromCart(cart);
+        // รอบที่ 1: รวมจำนวนที่ต้องใช้ของทุก Component (รวมชิ้นส่วนใน Build) โดยไม่แตะฐานข้อมูล
+        Map<String, Integer> requiredStock = new LinkedHashMap<>();
+        for (CartItem item : cart.getItems()) {
+            if (item.getItemType() == LineItemType.BUILD) {
+                for (OrderItemSnapshot part : item.getContainedItemsSnapshot()) {
+                    requiredStock.merge(part.getComponentId(), part.getQuantity() * item.getQuantity(), Integer::sum);
+                }
+            } else if (item.getItemType() == LineItemType.COMPONENT) {
+                requiredStock.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+        }
+
+        // ดึง Component และ Inventory ของทุก ID ในตะกร้าอย่างละหนึ่ง Query ไม่ว่าตะกร้าจะใหญ่แค่ไหน
+        Map<String, Component> components = componentRepository.findAllById(requiredStock.keySet()).stream()
+                .collect(Collectors.toMap(Component::getId, Function.identity()));
+        Map<String, Inventory> inventories = stockAvailabilityService.findInventoriesByComponentIds(requiredStock.keySet());
 
+        validateOverallStockFromCart(cart, requiredStock, components, inventories);
+
+        // รอบที่ 2: สร้างรายการสินค้าจากข้อมูลที่ดึงมาแล้ว
         List<OrderLineItem> lineItems = new ArrayList<>();
         BigDecimal subtotal = BigDecimal.ZERO;
 
@@ -75,12 +93,11 @@ public class OrderHelperServiceImpl implements OrderHelperService {
                         .quantity(cartItem.getQuantity())
                         .unitPrice(cartItem.getUnitPrice())
                         .buildId(cartItem.getProductId())
-                        .containedItems(cartItem.getContainedItemsSnapshot())
+                        .containedItems(withDisplayFields(cartItem.getContainedItemsSnapshot(), components))
                         .imageUrl(null)
                         .build();
             } else { // COMPONENT
-                Component component = componentRepository.findById(cartItem.getProductId())
-                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Component with ID " + cartItem.getProductId() + " not found."));
+                Component component = components.get(cartItem.getProductId());
 
                 lineItem = OrderLineItem.builder()
                         .itemType(LineItemType.COMPONENT)
@@ -119,83 +136,48 @@ public class OrderHelperServiceImpl implements OrderHelperService {
         return order;
     }
 
-    private void validateOverallStockFromCart(Cart cart) {
-        Map<String, Integer> requiredStock = new HashMap<>();
+    private void validateOverallStockFromCart(Cart cart, Map<String, Integer> requiredStock,
+                                              Map<String, Component> components, Map<String, Inventory> inventories) {
         for (CartItem item : cart.getItems()) {
-            if (item.getItemType() == LineItemType.BUILD) {
-
-                for (OrderItemSnapshot part : item.getContainedItemsSnapshot()) {
-                    int totalRequiredForBuild = part.getQuantity() * item.getQuantity();
-                    requiredStock.merge(part.getComponentId(), totalRequiredForBuild, Integer::sum);
-                }
-            } else if (item.getItemType() == LineItemType.COMPONENT) {
-                requiredStock.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            if (item.getItemType() == LineItemType.COMPONENT && !components.containsKey(item.getProductId())) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Component with ID " + item.getProductId() + " not found.");
             }
         }
 
-        for (Map.Entry<String, Integer> entry : requiredStock.entrySet()) {
-            String componentId = entry.getKey();
-            int required = entry.getValue();
-            int availableStock = inventoryRepository.findByComponentId(componentId)
-                    .map(Inventory::getQuantity)
-                    .orElse(0);
-
-            if (availableStock < required) {
-                String componentName = componentRepository.findById(componentId).map(Component::getName).orElse(componentId);
-                throw new ResponseStatusException(HttpStatus.CONFLICT, "Insufficient stock for: " + componentName + ". Please remove it from your cart or reduce the quantity.");
-            }
-        }
+        // ใช้ Inventory ที่ดึงมาแล้ว ไม่ต้อง Query สต็อกซ้ำ
+        stockAvailabilityService.assertAvailable(requiredStock, inventories,
+                "Insufficient stock for: %s. Please remove it from your cart or reduce the quantity.");
     }
 
-
-    @Override
-    public void decrementStockForOrder(Order order) {
-        for (OrderLineItem lineItem : order.getLineItems()) {
-            if (lineItem.getItemType() == LineItemType.COMPONENT) {
-                updateStock(lineItem.getComponentId(), -lineItem.getQuantity());
-            } else if (lineItem.getItemType() == LineItemType.BUILD) {
-                for (OrderItemSnapshot part : lineItem.getContainedItems()) {
-                    int totalQuantityToRemove = part.getQuantity() * lineItem.getQuantity();
-                    updateStock(part.getComponentId(), -totalQuantityToRemove);
-                }
+    // Snapshot ในตะกร้าที่ถูกบีบอัดไม่มีชื่อ, MPN และรูปภาพ: เติมจาก Component ที่ดึงมาแล้ว Order จึงมีข้อมูลครบเสมอ
+    private List<OrderItemSnapshot> withDisplayFields(List<OrderItemSnapshot> parts, Map<String, Component> components) {
+        return parts.stream().map(part -> {
+            Component component = components.get(part.getComponentId());
+            if (part.getName() != null || component == null) {
+                return part;
             }
-        }
-        log.info("Stock successfully decremented for order ID: {}", order.getId());
+            return part.toBuilder()
+                    .name(component.getName())
+                    .mpn(component.getMpn())
+                    .imageUrl(component.getImageUrl())
+                    .build();
+        }).toList();
     }
 
+
     @Override
-    public void incrementStockForOrder(Order order) {
+    public Map<String, Integer> getComponentQuantities(Order order) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
         for (OrderLineItem lineItem : order.getLineItems()) {
             if (lineItem.getItemType() == LineItemType.COMPONENT) {
-                updateStock(lineItem.getComponentId(), lineItem.getQuantity());
+                quantities.merge(lineItem.getComponentId(), lineItem.getQuantity(), Integer::sum);
             } else if (lineItem.getItemType() == LineItemType.BUILD) {
                 for (OrderItemSnapshot part : lineItem.getContainedItems()) {
-                    int totalQuantityToAdd = part.getQuantity() * lineItem.getQuantity();
-                    updateStock(part.getComponentId(), totalQuantityToAdd);
+                    quantities.merge(part.getComponentId(), part.getQuantity() * lineItem.getQuantity(), Integer::sum);
                 }
             }
         }
-        log.info("Stock successfully incremented for order ID: {}", order.getId());
-    }
-
-    private void updateStock(String componentId, int quantityChange) {
-        Inventory inventory = inventoryRepository.findByComponentId(componentId)
-                .orElseThrow(() -> new IllegalStateException("Data Inconsistency: Inventory not found for component ID " + componentId));
-
-        int newQuantity = inventory.getQuantity() + quantityChange;
-        if (newQuantity < 0) {
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "Stock for component ID " + componentId + " was depleted.");
-        }
-        inventory.setQuantity(newQuantity);
-        inventoryRepository.save(inventory);
-
-        componentRepository.findById(componentId).ifPresent(component -> {
-            boolean shouldBeActive = newQuantity > 0;
-            if (component.isActive() != shouldBeActive) {
-                component.setActive(shouldBeActive);
-                componentRepository.save(component);
-            }
-        });
+        return quantities;
     }
 
     @Override
@@ -203,9 +185,15 @@ public class OrderHelperServiceImpl implements OrderHelperService {
         if (paymentDetails.getTransactionId() == null || paymentDetails.getTransactionId().isBlank()) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Original PayPal Transaction ID not found for this order.");
         }
-        Payment originalPayment = Payment.get(this.apiContext, paymentDetails.getTransactionId());
+        Payment originalPayment = paypalService.getPayment(paymentDetails.getTransactionId());
         String saleId = extractSaleIdFromPaypalPayment(originalPayment, order.getId());
-        Refund refund = paypalService.refundPayment(saleId, null, order.getCurrency());
+        // ถ้าเคยคืนเงินสำเร็จแล้ว (เช่น Instance ล่มก่อนบันทึกผล หรือ Timeout หลัง PayPal ทำรายการไปแล้ว) ใช้รายการเดิม ไม่คืนซ้ำ
+        Refund refund = findExistingRefund(originalPayment);
+        if (refund != null) {
+            log.warn("PayPal refund {} already exists for order {}; reusing it instead of refunding again.", refund.getId(), order.getId());
+        } else {
+            refund = paypalService.refundPayment(saleId, null, order.getCurrency());
+        }
         if ("completed".equalsIgnoreCase(refund.getState()) || "pending".equalsIgnoreCase(refund.getState())) {
             paymentDetails.setProviderStatus(refund.getState());
             paymentDetails.setTransactionId(refund.getId());
@@ -214,6 +202,15 @@ public class OrderHelperServiceImpl implements OrderHelperService {
         }
     }
 
+    private Refund findExistingRefund(Payment payment) {
+        return payment.getTransactions().getFirst().getRelatedResources().stream()
+                .map(RelatedResources::getRefund)
+                .filter(refund -> refund != null && refund.getId() != null)
+                .filter(refund -> "completed".equalsIgnoreCase(refund.getState()) || "pending".equalsIgnoreCase(refund.getState()))
+                .findFirst()
+                .orElse(null);
+    }
+
     @Override
     public String extractSaleIdFromPaypalPayment(Payment originalPaypalPayment, String orderIdForLog) {
         if (originalPaypalPayment == null || originalPaypalPayment.getTransactions() == null || originalPaypalPayment.getTransactions().isEmpty() ||
@@ -260,6 +257,7 @@ public class OrderHelperServiceImpl implements OrderHelperService {
                 .shippingDetails(order.getShippingDetails())
                 .paymentStatus(order.getPaymentStatus())
                 .paymentDetails(order.getPaymentDetails())
+                .statusHistory(order.getStatusHistory())
                 .createdAt(order.getCreatedAt())
                 .updatedAt(order.getUpdatedAt())
                 .build();
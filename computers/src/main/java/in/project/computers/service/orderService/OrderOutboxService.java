@@ -0,0 +1,40 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderOutboxEvent;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+/**
+ * <h3>Order Outbox</h3>
+ * <p>
+ * งานเบื้องหลังของ Order (ตัด/คืนสต็อก, ล้างตะกร้า) ถูกเก็บเป็น Array {@code outbox} ภายในเอกสาร Order เอง
+ * จึงถูกเขียนใน Write เดียวกับการเปลี่ยนสถานะโดยไม่ต้องใช้ Multi-Document Transaction
+ * Worker จะ Claim Order ที่มีงานค้างเป็น Batch แล้วทำงานแบบ At-Least-Once (ทุกงานต้องทำซ้ำได้อย่างปลอดภัย)
+ * </p>
+ */
+public interface OrderOutboxService {
+
+    /**
+     * เพิ่ม Event ลงใน Update ที่จะเปลี่ยนสถานะของ Order (ต้องเป็น Update เดียวกันเพื่อให้ Atomic)
+     */
+    void enqueue(Update update, List<OrderOutboxEvent> events);
+
+    /**
+     * เพิ่ม Event ให้ Order ที่ยังไม่ถูกบันทึก (ใช้ตอนสร้าง Order ใหม่)
+     */
+    void attach(Order order, List<OrderOutboxEvent> events);
+
+    /**
+     * ปลุก Worker ให้ทำงานทันทีแทนการรอรอบถัดไป (ไม่บล็อกผู้เรียก)
+     */
+    void drainSoon();
+
+    /**
+     * ทำงานที่ค้างอยู่จนหมด (หรือจนเหลือแต่งานที่ยังไม่ถึงเวลา Retry)
+     *
+     * @return จำนวน Event ที่ทำสำเร็จ
+     */
+    int drain();
+}
@@ -0,0 +1,370 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.entity.component.Component;
+import in.project.computers.entity.component.Inventory;
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderOutboxEvent;
+import in.project.computers.entity.order.OrderOutboxEventType;
+import in.project.computers.event.InventoryChangedEvent;
+import in.project.computers.service.cartService.CartService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Worker ของ Order Outbox: Claim Order ที่ถึงเวลา ({@code outboxDueAt <= now}) ทีละ Batch ด้วย Lease
+ * แล้วทำงานทั้ง Batch พร้อมกัน การปรับสต็อกทั้งหมดของ Batch ถูกส่งเป็น Bulk Write ครั้งเดียว
+ * และกันการปรับซ้ำด้วย Op ID ที่บันทึกไว้ใน {@code inventories.appliedOps}
+ * <p>
+ * งานที่ล้มเหลวจะถูก Retry แบบ Backoff และถูกย้ายไป {@code outboxDeadLetters} เมื่อครบจำนวนครั้งสูงสุด
+ * หาก Worker ตายระหว่างทำงาน Lease จะหมดอายุและ Order จะถูก Claim ใหม่ (At-Least-Once)
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderOutboxServiceImpl implements OrderOutboxService {
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderHelperService orderHelper;
+    private final CartService cartService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("order-outbox-", 0).factory());
+    private Semaphore workerPermits;
+
+    @Value("${app.orders.outbox.workers:4}")
+    private int workerCount;
+
+    @Value("${app.orders.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.orders.outbox.lease:PT1M}")
+    private Duration lease;
+
+    @Value("${app.orders.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.orders.outbox.retry-backoff:PT5S}")
+    private Duration retryBackoff;
+
+    @Value("${app.orders.outbox.max-backoff:PT10M}")
+    private Duration maxBackoff;
+
+    // ต้องมากกว่าจำนวน Op ต่อ Component ใน Batch เดียว เพื่อให้ตรวจสอบผลหลัง Bulk Write ได้
+    @Value("${app.orders.outbox.applied-ops-retained:1000}")
+    private int appliedOpsRetained;
+
+    @PostConstruct
+    public void init() {
+        workerPermits = new Semaphore(workerCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Override
+    public void enqueue(Update update, List<OrderOutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        update.push("outbox").each(events.toArray());
+        // $min: หาก Order ถูก Claim อยู่ (outboxDueAt = เวลาหมด Lease) จะถูกดึงกลับมาเป็นตอนนี้
+        update.min("outboxDueAt", Instant.now());
+    }
+
+    @Override
+    public void attach(Order order, List<OrderOutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<OrderOutboxEvent> outbox = order.getOutbox() != null ? new ArrayList<>(order.getOutbox()) : new ArrayList<>();
+        outbox.addAll(events);
+        order.setOutbox(outbox);
+        order.setOutboxDueAt(Instant.now());
+    }
+
+    @Override
+    public void drainSoon() {
+        if (!workerPermits.tryAcquire()) {
+            return; // Worker ทุกตัวกำลังทำงานอยู่แล้ว งานใหม่จะถูกหยิบในรอบถัดไปของ Worker เหล่านั้น
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    drain();
+                } catch (RuntimeException e) {
+                    log.error("Order outbox worker failed; pending events will be retried after their lease expires.", e);
+                } finally {
+                    workerPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            workerPermits.release();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.outbox.poll-interval:PT1S}")
+    public void scheduledDrain() {
+        drainSoon();
+    }
+
+    @Override
+    public int drain() {
+        int completed = 0;
+        BatchResult result;
+        do {
+            result = drainBatch();
+            completed += result.completed();
+        } while (result.claimed() >= batchSize);
+        return completed;
+    }
+
+    private BatchResult drainBatch() {
+        Instant now = Instant.now();
+        Query dueQuery = Query.query(Criteria.where("outboxDueAt").lte(now))
+                .with(Sort.by(Sort.Direction.ASC, "outboxDueAt"))
+                .limit(batchSize);
+        dueQuery.fields().include("id");
+        List<String> dueIds = mongoTemplate.find(dueQuery, Order.class).stream().map(Order::getId).toList();
+        if (dueIds.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+
+        // Claim ด้วย Lease: Worker อื่นจะไม่เห็น Order เหล่านี้จนกว่า Lease จะหมด
+        String claim = UUID.randomUUID().toString();
+        // ตัดให้เหลือระดับ Millisecond ตามความละเอียดของ Date ใน MongoDB เพื่อใช้เทียบค่าภายหลังได้
+        Instant leaseUntil = now.plus(lease).truncatedTo(ChronoUnit.MILLIS);
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("id").in(dueIds).and("outboxDueAt").lte(now)),
+                new Update().set("outboxDueAt", leaseUntil).set("outboxClaim", claim),
+                Order.class);
+        Query claimedQuery = Query.query(Criteria.where("outboxClaim").is(claim));
+        claimedQuery.fields().include("userId").include("lineItems").include("outbox");
+        List<Order> claimed = mongoTemplate.find(claimedQuery, Order.class);
+        claimed.stream().filter(order -> order.getOutbox() == null).forEach(order -> order.setOutbox(new ArrayList<>()));
+
+        // Batch เต็ม: ปลุก Worker อีกตัวให้ช่วยทำ Batch ถัดไปพร้อมกัน
+        if (dueIds.size() >= batchSize) {
+            drainSoon();
+        }
+
+        Map<String, String> failures = new HashMap<>();
+        failures.putAll(applyStockChanges(claimed));
+        failures.putAll(clearCarts(claimed));
+
+        int completed = 0;
+        for (Order order : claimed) {
+            completed += finish(order, claim, leaseUntil, failures);
+        }
+        return new BatchResult(dueIds.size(), completed);
+    }
+
+    /**
+     * รวมการปรับสต็อกของทุก Event ใน Batch เป็น Bulk Write เดียว แต่ละ Op มี ID ของตัวเอง
+     * ({@code eventId:componentId}) จึงส่งซ้ำได้โดยไม่ปรับสต็อกซ้ำ
+     *
+     * @return Event ID ที่ล้มเหลว พร้อมสาเหตุ
+     */
+    private Map<String, String> applyStockChanges(List<Order> orders) {
+        List<StockOp> ops = new ArrayList<>();
+        for (Order order : orders) {
+            for (OrderOutboxEvent event : order.getOutbox()) {
+                int direction = switch (event.getType()) {
+                    case DECREMENT_STOCK -> -1;
+                    case INCREMENT_STOCK -> 1;
+                    default -> 0;
+                };
+                if (direction == 0) {
+                    continue;
+                }
+                orderHelper.getComponentQuantities(order).forEach((componentId, quantity) ->
+                        ops.add(new StockOp(event.getEventId(), event.getEventId() + ":" + componentId, componentId, direction * quantity)));
+            }
+        }
+        if (ops.isEmpty()) {
+            return Map.of();
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class);
+        for (StockOp op : ops) {
+            Query query = Query.query(Criteria.where("componentId").is(op.componentId()).and("appliedOps").ne(op.opId()));
+            if (op.change() < 0) {
+                query.addCriteria(Criteria.where("quantity").gte(-op.change()));
+            }
+            Update update = new Update().inc("quantity", op.change());
+            update.push("appliedOps").slice(-appliedOpsRetained).each(op.opId());
+            bulk.updateOne(query, update);
+        }
+        bulk.execute();
+
+        // Bulk Write ไม่บอกผลราย Op: อ่าน appliedOps กลับมาเพื่อแยก "ทำแล้ว" ออกจาก "สต็อกไม่พอ"
+        Set<String> componentIds = new HashSet<>();
+        ops.forEach(op -> componentIds.add(op.componentId()));
+        Query verifyQuery = Query.query(Criteria.where("componentId").in(componentIds));
+        verifyQuery.fields().include("componentId").include("quantity").include("appliedOps");
+        Map<String, Inventory> inventories = new HashMap<>();
+        mongoTemplate.find(verifyQuery, Inventory.class).forEach(inventory -> inventories.put(inventory.getComponentId(), inventory));
+
+        Map<String, String> failures = new HashMap<>();
+        for (StockOp op : ops) {
+            Inventory inventory = inventories.get(op.componentId());
+            if (inventory == null) {
+                failures.putIfAbsent(op.eventId(), "Inventory not found for component ID " + op.componentId());
+            } else if (inventory.getAppliedOps() == null || !inventory.getAppliedOps().contains(op.opId())) {
+                failures.putIfAbsent(op.eventId(), "Insufficient stock for component ID " + op.componentId());
+            }
+        }
+        syncActiveFlags(inventories.values());
+        Map<String, Integer> quantities = new HashMap<>();
+        inventories.values().forEach(inventory -> quantities.put(inventory.getComponentId(), inventory.getQuantity()));
+        eventPublisher.publishEvent(new InventoryChangedEvent(quantities, Instant.now()));
+        return failures;
+    }
+
+    private void syncActiveFlags(Collection<Inventory> inventories) {
+        List<String> inStock = new ArrayList<>();
+        List<String> outOfStock = new ArrayList<>();
+        inventories.forEach(inventory -> (inventory.getQuantity() > 0 ? inStock : outOfStock).add(inventory.getComponentId()));
+        if (!inStock.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("id").in(inStock).and("isActive").is(false)),
+                    Update.update("isActive", true), Component.class);
+        }
+        if (!outOfStock.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("id").in(outOfStock).and("isActive").is(true)),
+                    Update.update("isActive", false), Component.class);
+        }
+    }
+
+    private Map<String, String> clearCarts(List<Order> orders) {
+        Map<String, String> failures = new HashMap<>();
+        Map<String, String> failedUsers = new HashMap<>();
+        Set<String> clearedUsers = new HashSet<>();
+        for (Order order : orders) {
+            for (OrderOutboxEvent event : order.getOutbox()) {
+                if (event.getType() != OrderOutboxEventType.CLEAR_CART) {
+                    continue;
+                }
+                String userId = order.getUserId();
+                if (!clearedUsers.contains(userId) && !failedUsers.containsKey(userId)) {
+                    try {
+                        cartService.clearCart(userId);
+                        clearedUsers.add(userId);
+                    } catch (ResponseStatusException e) {
+                        if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                            clearedUsers.add(userId); // ไม่มีตะกร้า: ไม่มีอะไรต้องล้าง
+                        } else {
+                            failedUsers.put(userId, e.getReason());
+                        }
+                    } catch (RuntimeException e) {
+                        failedUsers.put(userId, e.getMessage());
+                    }
+                }
+                if (failedUsers.containsKey(userId)) {
+                    failures.put(event.getEventId(), "Could not clear cart: " + failedUsers.get(userId));
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * ลบ Event ที่สำเร็จออกจาก Outbox, บันทึกความล้มเหลว แล้วปล่อย Claim
+     *
+     * @return จำนวน Event ที่สำเร็จ
+     */
+    private int finish(Order order, String claim, Instant leaseUntil, Map<String, String> failures) {
+        List<String> removedIds = new ArrayList<>();
+        List<OrderOutboxEvent> deadLetters = new ArrayList<>();
+        List<OrderOutboxEvent> retries = new ArrayList<>();
+        int completed = 0;
+        for (OrderOutboxEvent event : order.getOutbox()) {
+            String error = failures.get(event.getEventId());
+            if (error == null) {
+                removedIds.add(event.getEventId());
+                completed++;
+                continue;
+            }
+            event.setAttempts(event.getAttempts() + 1);
+            event.setLastError(error);
+            if (event.getAttempts() >= maxAttempts) {
+                removedIds.add(event.getEventId());
+                deadLetters.add(event);
+                log.error("Order {} outbox event {} ({}) failed {} times and was moved to dead letters: {}",
+                        order.getId(), event.getEventId(), event.getType(), event.getAttempts(), error);
+            } else {
+                retries.add(event);
+                log.warn("Order {} outbox event {} ({}) failed (attempt {}): {}",
+                        order.getId(), event.getEventId(), event.getType(), event.getAttempts(), error);
+            }
+        }
+
+        if (!removedIds.isEmpty()) {
+            Update update = new Update().pull("outbox", new Document("eventId", new Document("$in", removedIds)));
+            if (!deadLetters.isEmpty()) {
+                update.push("outboxDeadLetters").each(deadLetters.toArray());
+            }
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(order.getId())), update, Order.class);
+        }
+        for (OrderOutboxEvent retry : retries) {
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("id").is(order.getId()).and("outbox.eventId").is(retry.getEventId())),
+                    new Update().set("outbox.$.attempts", retry.getAttempts()).set("outbox.$.lastError", retry.getLastError()),
+                    Order.class);
+        }
+
+        Query claimedByUs = Query.query(Criteria.where("id").is(order.getId()).and("outboxClaim").is(claim));
+        if (!retries.isEmpty()) {
+            int attempts = retries.stream().mapToInt(OrderOutboxEvent::getAttempts).max().orElse(1);
+            // เลื่อนเวลาเฉพาะเมื่อไม่มี Event ใหม่เข้ามาระหว่างทำงาน (ซึ่งจะดึง outboxDueAt กลับมาเป็นตอนนี้)
+            Query unchanged = Query.query(Criteria.where("id").is(order.getId())
+                    .and("outboxClaim").is(claim).and("outboxDueAt").is(leaseUntil));
+            mongoTemplate.updateFirst(unchanged, Update.update("outboxDueAt", Instant.now().plus(backoff(attempts))), Order.class);
+            mongoTemplate.updateFirst(claimedByUs, new Update().unset("outboxClaim"), Order.class);
+        } else {
+            Query drained = Query.query(Criteria.where("id").is(order.getId())
+                    .and("outboxClaim").is(claim).and("outbox").size(0));
+            if (mongoTemplate.updateFirst(drained, new Update().unset("outboxDueAt").unset("outboxClaim"), Order.class).getMatchedCount() == 0) {
+                mongoTemplate.updateFirst(claimedByUs, new Update().unset("outboxClaim"), Order.class);
+            }
+        }
+        return completed;
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private record StockOp(String eventId, String opId, String componentId, int change) {
+    }
+
+    private record BatchResult(int claimed, int completed) {
+    }
+}
@@ -0,0 +1,36 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.dto.order.OrderLookupField;
+import in.project.computers.dto.order.OrderPageResponse;
+import in.project.computers.dto.order.OrderSearchCriteria;
+import in.project.computers.dto.order.OrderSummaryResponse;
+
+import java.util.List;
+
+/**
+ * บริการสำหรับอ่านรายการ Order ฝั่ง Admin แบบแบ่งหน้า โดยกรองข้อมูลที่ฐานข้อมูล
+ */
+public interface OrderQueryService {
+
+    /**
+     * ดึงรายการ Order หนึ่งหน้าแบบ Keyset Pagination บน ({@code createdAt}, {@code _id})
+     *
+     * @param criteria เงื่อนไขการกรองและทิศทางการเรียง
+     * @param cursor   Cursor จาก {@code nextCursor} ของหน้าก่อนหน้า (null สำหรับหน้าแรก)
+     * @param limit    จำนวนรายการต่อหน้า
+     * @return หน้าของ Order แบบย่อ พร้อม Cursor สำหรับหน้าถัดไป
+     * @throws org.springframework.web.server.ResponseStatusException (400) หาก Cursor ไม่ถูกต้อง
+     */
+    OrderPageResponse findOrders(OrderSearchCriteria criteria, String cursor, int limit);
+
+    /**
+     * ค้นหา Order จาก Field เดียวด้วยการจับคู่แบบตรงตัว (หนึ่ง Query ที่ใช้ Index ของ Field นั้น)
+     *
+     * @param field Field ที่ใช้ค้นหา
+     * @param value ค่าที่ต้องการค้นหา
+     * @param limit จำนวนรายการสูงสุด
+     * @return Order แบบย่อเรียงจากใหม่ไปเก่า
+     * @throws org.springframework.web.server.ResponseStatusException (400) หากไม่ระบุค่าที่ค้นหา
+     */
+    List<OrderSummaryResponse> searchOrders(OrderLookupField field, String value, int limit);
+}
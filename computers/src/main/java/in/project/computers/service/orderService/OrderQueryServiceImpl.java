@@ -0,0 +1,200 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.dto.order.OrderLookupField;
+import in.project.computers.dto.order.OrderPageResponse;
+import in.project.computers.dto.order.OrderSearchCriteria;
+import in.project.computers.dto.order.OrderSummaryResponse;
+import in.project.computers.entity.order.Order;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * อ่านรายการ Order แบบ Keyset Pagination: แต่ละหน้าเริ่มต่อจาก (createdAt, _id) ของรายการสุดท้ายในหน้าก่อน
+ * จึงใช้ Index {@code {createdAt, _id}} ได้ตรงๆ โดยไม่ต้อง skip ข้อมูล ไม่ว่าจะอยู่หน้าที่เท่าไร
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderQueryServiceImpl implements OrderQueryService {
+
+    private static final String CURSOR_SEPARATOR = ":";
+    // ค่าแทน createdAt ที่เป็น null ใน Cursor
+    private static final String NULL_CREATED_AT = "-";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.orders.page.max-limit:100}")
+    private int maxLimit;
+
+    @Override
+    public OrderPageResponse findOrders(OrderSearchCriteria criteria, String cursor, int limit) {
+        int pageSize = Math.clamp(limit, 1, maxLimit);
+        boolean ascending = criteria.getDirection() == Sort.Direction.ASC;
+
+        List<Criteria> conditions = filterConditions(criteria);
+        if (cursor != null && !cursor.isBlank()) {
+            conditions.add(afterCursor(decodeCursor(cursor), ascending));
+        }
+
+        Query query = new Query();
+        if (!conditions.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(conditions));
+        }
+        query.with(Sort.by(criteria.getDirection(), "createdAt", "_id"));
+        // ดึงเกินมาหนึ่งรายการเพื่อรู้ว่ายังมีหน้าถัดไปหรือไม่
+        query.limit(pageSize + 1);
+        includeSummaryFields(query);
+
+        List<Order> orders = mongoTemplate.find(query, Order.class);
+        boolean hasMore = orders.size() > pageSize;
+        if (hasMore) {
+            orders = orders.subList(0, pageSize);
+        }
+
+        String nextCursor = hasMore ? encodeCursor(orders.getLast()) : null;
+        return OrderPageResponse.builder()
+                .items(orders.stream().map(this::toSummary).toList())
+                .limit(pageSize)
+                .hasMore(hasMore)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    @Override
+    public List<OrderSummaryResponse> searchOrders(OrderLookupField field, String value, int limit) {
+        if (field == null || value == null || value.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Both a search field and a value are required.");
+        }
+        String term = value.trim();
+        Criteria criteria = switch (field) {
+            case EMAIL -> Criteria.where("email").is(term);
+            case TRACKING_NUMBER -> Criteria.where("shippingDetails.trackingNumber").is(term);
+            case TRANSACTION_ID -> Criteria.where("paymentDetails.transactionId").is(term);
+            // แต่ละฝั่งของ $or ใช้ Multikey Index ของตัวเอง
+            case MPN -> new Criteria().orOperator(
+                    Criteria.where("lineItems.mpn").is(term),
+                    Criteria.where("lineItems.containedItems.mpn").is(term));
+        };
+
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+                .limit(Math.clamp(limit, 1, maxLimit));
+        includeSummaryFields(query);
+        List<Order> orders = mongoTemplate.find(query, Order.class);
+        log.debug("Order search by {} returned {} result(s)", field, orders.size());
+        return orders.stream().map(this::toSummary).toList();
+    }
+
+    /**
+     * หน้ารายการไม่ต้องใช้ lineItems ซึ่งเป็นส่วนที่ใหญ่ที่สุดของเอกสาร
+     */
+    private void includeSummaryFields(Query query) {
+        query.fields()
+                .include("userId", "email", "phoneNumber", "totalAmount", "currency", "orderStatus", "paymentStatus",
+                        "paymentDetails.paymentMethod", "shippingDetails.trackingNumber", "createdAt", "updatedAt");
+    }
+
+    private List<Criteria> filterConditions(OrderSearchCriteria criteria) {
+        List<Criteria> conditions = new ArrayList<>();
+        if (criteria.getOrderStatus() != null) {
+            conditions.add(Criteria.where("orderStatus").is(criteria.getOrderStatus()));
+        }
+        if (criteria.getPaymentStatus() != null) {
+            conditions.add(Criteria.where("paymentStatus").is(criteria.getPaymentStatus()));
+        }
+        if (criteria.getPaymentMethod() != null) {
+            conditions.add(Criteria.where("paymentDetails.paymentMethod").is(criteria.getPaymentMethod()));
+        }
+        if (criteria.getFrom() != null) {
+            conditions.add(Criteria.where("createdAt").gte(criteria.getFrom()));
+        }
+        if (criteria.getTo() != null) {
+            conditions.add(Criteria.where("createdAt").lt(criteria.getTo()));
+        }
+        if (criteria.getEmail() != null && !criteria.getEmail().isBlank()) {
+            conditions.add(Criteria.where("email").is(criteria.getEmail().trim()));
+        }
+        return conditions;
+    }
+
+    /**
+     * เงื่อนไข "อยู่หลัง Cursor" ตามทิศทางการเรียง: createdAt ถัดไป หรือ createdAt เท่ากันแต่ _id ถัดไป
+     * <p>
+     * Order เก่าหรือที่นำเข้ามาบางรายการไม่มี createdAt: MongoDB เรียงค่า null/ไม่มี Field ไว้ก่อนวันที่ทุกค่า
+     * จึงอยู่ต้นรายการเมื่อเรียงจากน้อยไปมาก และท้ายรายการเมื่อเรียงจากมากไปน้อย
+     * </p>
+     */
+    private Criteria afterCursor(PageCursor cursor, boolean ascending) {
+        if (cursor.createdAt() == null) {
+            Criteria sameNullIdAfter = ascending
+                    ? Criteria.where("createdAt").is(null).and("_id").gt(cursor.id())
+                    : Criteria.where("createdAt").is(null).and("_id").lt(cursor.id());
+            return ascending
+                    ? new Criteria().orOperator(sameNullIdAfter, Criteria.where("createdAt").ne(null))
+                    : sameNullIdAfter;
+        }
+        Criteria createdAfter = ascending
+                ? Criteria.where("createdAt").gt(cursor.createdAt())
+                : Criteria.where("createdAt").lt(cursor.createdAt());
+        Criteria sameTimeIdAfter = ascending
+                ? Criteria.where("createdAt").is(cursor.createdAt()).and("_id").gt(cursor.id())
+                : Criteria.where("createdAt").is(cursor.createdAt()).and("_id").lt(cursor.id());
+        return ascending
+                ? new Criteria().orOperator(createdAfter, sameTimeIdAfter)
+                : new Criteria().orOperator(createdAfter, sameTimeIdAfter, Criteria.where("createdAt").is(null));
+    }
+
+    private String encodeCursor(Order last) {
+        String createdAt = last.getCreatedAt() != null ? String.valueOf(last.getCreatedAt().toEpochMilli()) : NULL_CREATED_AT;
+        String raw = createdAt + CURSOR_SEPARATOR + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PageCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(CURSOR_SEPARATOR);
+            String createdAtPart = raw.substring(0, separator);
+            Instant createdAt = NULL_CREATED_AT.equals(createdAtPart) ? null : Instant.ofEpochMilli(Long.parseLong(createdAtPart));
+            ObjectId id = new ObjectId(raw.substring(separator + 1));
+            return new PageCursor(createdAt, id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page cursor.");
+        }
+    }
+
+    private OrderSummaryResponse toSummary(Order order) {
+        return OrderSummaryResponse.builder()
+                .id(order.getId())
+                .userId(order.getUserId())
+                .email(order.getEmail())
+                .phoneNumber(order.getPhoneNumber())
+                .totalAmount(order.getTotalAmount())
+                .currency(order.getCurrency())
+                .orderStatus(order.getOrderStatus())
+                .paymentStatus(order.getPaymentStatus())
+                .paymentMethod(order.getPaymentDetails() != null ? order.getPaymentDetails().getPaymentMethod() : null)
+                .trackingNumber(order.getShippingDetails() != null ? order.getShippingDetails().getTrackingNumber() : null)
+                .createdAt(order.getCreatedAt())
+                .updatedAt(order.getUpdatedAt())
+                .build();
+    }
+
+    private record PageCursor(Instant createdAt, ObjectId id) {
+    }
+}
@@ -9,23 +9,36 @@ import in.project.computers.dto.order.OrderResponse;
 import in.project.computers.dto.order.ShipOrderRequest;
 import in.project.computers.entity.order.*;
 import in.project.computers.entity.user.UserEntity;
+import in.project.computers.event.OrderCreatedEvent;
 import in.project.computers.repository.generalRepo.OrderRepository;
 import in.project.computers.repository.generalRepo.UserRepository;
 import in.project.computers.service.AWSS3Bucket.S3Service;
 import in.project.computers.service.cartService.CartService;
+import in.project.computers.service.dashboard.SalesRollupService;
+import in.project.computers.service.idempotencyService.IdempotencyService;
 import in.project.computers.service.paypalService.PaypalService;
 import in.project.computers.service.userAuthenticationService.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -42,11 +55,22 @@ public class OrderServiceImpl implements OrderService {
     private final S3Service s3Service;
     private final PaypalService paypalService;
     private final CartService cartService;
+    private final OrderStateMachine orderStateMachine;
+    private final MongoTemplate mongoTemplate;
+    private final IdempotencyService idempotencyService;
+    private final OrderOutboxService orderOutboxService;
+    private final OrderArchiveService orderArchiveService;
+    private final SalesRollupService salesRollupService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${paypal.payment.cancelUrl}")
     private String cancelUrl;
     @Value("${paypal.payment.successUrl}")
     private String successUrl;
+    @Value("${app.idempotency.ttl:P1D}")
+    private Duration idempotencyTtl;
+    @Value("${app.idempotency.retry-ttl:PT10M}")
+    private Duration retryIdempotencyTtl;
 
     @Override
     @Transactional
@@ -70,13 +94,17 @@ public class OrderServiceImpl implements OrderService {
                 .build());
 
         // [CO-5] Handle payment initiation
+        // การล้างตะกร้าถูกเขียนลง Outbox พร้อมกับ Write ที่ยืนยันการสร้าง Order แล้วให้ Worker ทำต่อ
+        List<OrderOutboxEvent> checkoutEvents = List.of(OrderOutboxEvent.of(OrderOutboxEventType.CLEAR_CART));
         CreateOrderResponse response;
         switch (request.getPaymentMethod()) {
             case PAYPAL:
-                response = initiatePaypalPayment(order);
+                response = initiatePaypalPayment(order, checkoutEvents);
                 break;
             case BANK_TRANSFER:
+                orderOutboxService.attach(order, checkoutEvents);
                 orderRepository.save(order);
+                recordOrderCreated(order);
                 log.info("Saved new BANK_TRANSFER order with ID: {}", order.getId());
                 response = new CreateOrderResponse(order.getId());
                 break;
@@ -85,9 +113,9 @@ public class OrderServiceImpl implements OrderService {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported payment method.");
         }
 
-        // [CO-6-NEW] IMPORTANT: Clear the user's cart after the order is successfully initiated.
-        cartService.clearCart(currentUser.getId());
-        log.info("Successfully created order {} and cleared the cart for user {}", order.getId(), currentUser.getId());
+        // [CO-6-NEW] ปลุก Outbox Worker ให้ล้างตะกร้าทันที แทนการล้างใน Request นี้
+        orderOutboxService.drainSoon();
+        log.info("Successfully created order {} and queued cart clearing for user {}", order.getId(), currentUser.getId());
 
         return response;
     }
@@ -96,6 +124,12 @@ public class OrderServiceImpl implements OrderService {
     @Override
     @Transactional
     public OrderResponse capturePaypalOrder(String orderId, String paymentId, String payerId) throws PayPalRESTException {
+        // Callback จาก Browser อาจถูก Refresh หรือส่งซ้ำ: หนึ่ง PayPal Payment ID ถูก Capture ได้เพียงครั้งเดียว
+        return idempotencyService.execute("paypal-capture:" + paymentId, "PAYPAL_CAPTURE:" + orderId, idempotencyTtl,
+                OrderResponse.class, () -> doCapturePaypalOrder(orderId, paymentId, payerId));
+    }
+
+    private OrderResponse doCapturePaypalOrder(String orderId, String paymentId, String payerId) throws PayPalRESTException {
         // === [PPC-1] เริ่มกระบวนการ Capture: ค้นหาออเดอร์จาก ID ที่ได้จาก Callback ===
         log.info("Attempting to capture PayPal payment for order ID: {}", orderId);
         Order order = orderRepository.findById(orderId)
@@ -115,30 +149,88 @@ public class OrderServiceImpl implements OrderService {
         }
 
         // === [PPC-3] ยืนยันการชำระเงินกับ PayPal ===
-        Payment payment = paypalService.executePayment(paymentId, payerId);
+        Payment payment = executeOrReconcile(paymentId, payerId, orderId);
 
         // === [PPC-4] ประมวลผลหลังจากการยืนยันสำเร็จ ===
         if ("approved".equals(payment.getState())) {
-            orderHelper.decrementStockForOrder(order);
-
-            PaymentDetails details = order.getPaymentDetails();
-            details.setTransactionId(payment.getId());
-            details.setPayerId(payment.getPayer().getPayerInfo().getPayerId());
-            details.setPayerEmail(payment.getPayer().getPayerInfo().getEmail());
-            details.setProviderStatus(payment.getState());
-
-            updateOrderStatusToPaid(order);
+            Update paymentChanges = new Update()
+                    .set("paymentDetails.transactionId", payment.getId())
+                    .set("paymentDetails.payerId", payment.getPayer().getPayerInfo().getPayerId())
+                    .set("paymentDetails.payerEmail", payment.getPayer().getPayerInfo().getEmail())
+                    .set("paymentDetails.providerStatus", payment.getState());
+
+            // การตัดสต็อกถูกเขียนลง Outbox ใน Write เดียวกับการเปลี่ยนสถานะ (ดู OrderTransition.CAPTURE_PAYPAL)
+            Order paidOrder;
+            try {
+                paidOrder = orderStateMachine.apply(order, OrderTransition.CAPTURE_PAYPAL, paymentChanges,
+                        "PayPal payment " + payment.getId() + " captured");
+            } catch (ResponseStatusException e) {
+                if (e.getStatusCode() != HttpStatus.CONFLICT) {
+                    throw e;
+                }
+                // ลูกค้าจ่ายเงินแล้วแต่ Order ถูกเปลี่ยนไปก่อน (เช่น ถูกยกเลิกเพราะหมดเวลา) ต้องไม่ปล่อยเงินค้างไว้
+                return reconcileLostCapture(orderId, payment);
+            }
             log.info("Successfully captured PayPal payment for order ID: {}", orderId);
-            return orderHelper.entityToResponse(orderRepository.save(order));
+            return orderHelper.entityToResponse(paidOrder);
         } else {
             // === [PPC-5] กรณีการยืนยันล้มเหลว ===
-            order.setPaymentStatus(PaymentStatus.FAILED);
-            orderRepository.save(order);
+            orderStateMachine.apply(order, OrderTransition.FAIL_PAYPAL_CAPTURE, null, "PayPal state: " + payment.getState());
             log.error("PayPal payment capture failed for order ID: {}. State: {}", orderId, payment.getState());
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Payment could not be approved by PayPal. State: " + payment.getState());
         }
     }
 
+    /**
+     * CAS ของการ Capture แพ้ Request อื่น: หาก Order ถูกยกเลิกไปแล้ว คืนเงินของ Payment นี้ทันที
+     * (คืนเงินผ่าน processPaypalRefund จึงไม่คืนซ้ำหากเคยคืนไปแล้ว)
+     */
+    private OrderResponse reconcileLostCapture(String orderId, Payment payment) throws PayPalRESTException {
+        Order current = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found with ID: " + orderId));
+        if (current.getPaymentStatus() == PaymentStatus.COMPLETED && payment.getId().equals(current.getPaymentDetails().getTransactionId())) {
+            // Capture เดียวกันถูกบันทึกไปแล้ว
+            return orderHelper.entityToResponse(current);
+        }
+        if (!OrderTransition.REFUND_LATE_CAPTURE.isAllowedFrom(current)) {
+            log.error("PayPal payment {} was captured but order {} moved to {}/{}; manual reconciliation required.",
+                    payment.getId(), orderId, current.getOrderStatus(), current.getPaymentStatus());
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "The order changed while the payment was being confirmed. Please contact support.");
+        }
+        log.warn("PayPal payment {} was captured after order {} was cancelled; refunding it.", payment.getId(), orderId);
+        PaymentDetails capturedPayment = PaymentDetails.builder()
+                .paymentMethod(PaymentMethod.PAYPAL)
+                .transactionId(payment.getId())
+                .build();
+        Order refundedOrder = orderStateMachine.apply(current, OrderTransition.REFUND_LATE_CAPTURE, null,
+                "PayPal payment " + payment.getId() + " captured after cancellation; refunded",
+                cancelled -> orderHelper.processPaypalRefund(cancelled, capturedPayment));
+        // บันทึกผลการคืนเงินเหมือน processRefund (transactionId เป็นของ Refund)
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(orderId)), new Update()
+                        .set("paymentDetails.providerStatus", capturedPayment.getProviderStatus())
+                        .set("paymentDetails.transactionId", capturedPayment.getTransactionId()),
+                Order.class);
+        refundedOrder.getPaymentDetails().setProviderStatus(capturedPayment.getProviderStatus());
+        refundedOrder.getPaymentDetails().setTransactionId(capturedPayment.getTransactionId());
+        return orderHelper.entityToResponse(refundedOrder);
+    }
+
+    /**
+     * หากการ Execute ครั้งก่อนหมดเวลาแต่สำเร็จที่ PayPal ไปแล้ว การ Execute ซ้ำจะได้ PAYMENT_ALREADY_DONE
+     * ซึ่งไม่ใช่ความล้มเหลว: ดึงสถานะจริงจาก PayPal มาใช้แทน
+     */
+    private Payment executeOrReconcile(String paymentId, String payerId, String orderId) throws PayPalRESTException {
+        try {
+            return paypalService.executePayment(paymentId, payerId);
+        } catch (PayPalRESTException e) {
+            if (e.getDetails() == null || !"PAYMENT_ALREADY_DONE".equals(e.getDetails().getName())) {
+                throw e;
+            }
+            log.warn("PayPal payment {} for order {} was already executed; reconciling from its current state.", paymentId, orderId);
+            return paypalService.getPayment(paymentId);
+        }
+    }
+
     // --- METHOD UPDATED ---
     @Override
     @Transactional
@@ -175,49 +267,39 @@ public class OrderServiceImpl implements OrderService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Incorrect payment method for this action.");
         }
 
-        // === [SLIP-3] จัดการ PaymentDetails ===
-        PaymentDetails details = order.getPaymentDetails();
-
-        // === [SLIP-4] [ปรับปรุง] ลบสลิปเก่า (ถ้ามี) ===
-        String oldSlipUrl = details.getTransactionId();
-        if (oldSlipUrl != null && !oldSlipUrl.isBlank() && oldSlipUrl.contains("s3.amazonaws.com")) {
-            try {
-                String oldFilename = oldSlipUrl.substring(oldSlipUrl.lastIndexOf("/") + 1);
-                log.info("Order {} has an existing slip. Attempting to delete file: {} from S3.", orderId, oldFilename);
-                s3Service.deleteFile(oldFilename);
-            } catch (Exception e) {
-                log.error("Error processing or deleting old slip URL '{}' for order {}: {}", oldSlipUrl, orderId, e.getMessage());
-            }
-        }
-
-        // === [SLIP-5] อัปโหลดสลิปใหม่ไปที่ S3 ===
+        // === [SLIP-3] อัปโหลดสลิปใหม่ไปที่ S3 ===
+        String oldSlipUrl = order.getPaymentDetails().getTransactionId();
         String newSlipImageUrl = s3Service.uploadFile(slipImage);
         log.info("New payment slip uploaded for order {}. URL: {}", orderId, newSlipImageUrl);
 
-        // === [SLIP-6] อัปเดตข้อมูลในออเดอร์ ===
-        details.setTransactionId(newSlipImageUrl);
-        details.setProviderStatus("SUBMITTED");
+        // === [SLIP-4] [ปรับปรุง] เปลี่ยนสถานะเพื่อเข้าสู่กระบวนการอนุมัติ ===
+        // ไม่ว่าจะส่งครั้งแรกหรือส่งซ้ำ ออเดอร์จะกลับเข้าสู่ PENDING_PAYMENT / PENDING_APPROVAL
+        Update slipChanges = new Update()
+                .set("paymentDetails.transactionId", newSlipImageUrl)
+                .set("paymentDetails.providerStatus", "SUBMITTED");
+        Order updatedOrder;
+        try {
+            updatedOrder = orderStateMachine.apply(order, OrderTransition.SUBMIT_SLIP, slipChanges, "Payment slip submitted");
+        } catch (ResponseStatusException e) {
+            // สถานะเปลี่ยนไประหว่างอัปโหลด: ลบไฟล์ที่เพิ่งอัปโหลดทิ้ง
+            deleteSlipQuietly(newSlipImageUrl, orderId);
+            throw e;
+        }
 
-        // --- NEW COMMENT: Explaining the status reset ---
-        // === [SLIP-7] [ปรับปรุง] รีเซ็ตสถานะเพื่อเข้าสู่กระบวนการอนุมัติ ===
-        // This brings the order back into the standard approval flow, whether it's the first submission or a re-submission.
-        // การตั้งค่าสถานะนี้จะทำให้ออเดอร์กลับเข้าสู่ Flow การตรวจสอบตามปกติ ไม่ว่าจะส่งครั้งแรกหรือส่งซ้ำ
-        order.setPaymentStatus(PaymentStatus.PENDING_APPROVAL);
-        order.setOrderStatus(OrderStatus.PENDING_PAYMENT); // Reset order status for consistency
-        order.setUpdatedAt(Instant.now());
+        // === [SLIP-5] [ปรับปรุง] ลบสลิปเก่า (ถ้ามี) หลังจากบันทึกสลิปใหม่สำเร็จแล้ว ===
+        deleteSlipQuietly(oldSlipUrl, orderId);
 
-        // === [SLIP-8] บันทึกและส่งคืนข้อมูล ===
-        orderRepository.save(order);
         log.info("Payment slip submitted/re-submitted and order {} updated. Awaiting admin approval.", orderId);
-        return orderHelper.entityToResponse(order);
+        return orderHelper.entityToResponse(updatedOrder);
     }
 
     @Override
     public OrderResponse getOrderById(String orderId) {
         // === [GET-1] ดึง ID ผู้ใช้ปัจจุบัน ===
         String currentUserId = userService.findByUserId();
-        // === [GET-2] ค้นหาออเดอร์ ===
+        // === [GET-2] ค้นหาออเดอร์ (ถ้าไม่พบใน orders ให้ค้นใน Archive) ===
         Order order = orderRepository.findById(orderId)
+                .or(() -> orderArchiveService.findArchivedOrder(orderId))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found with ID: " + orderId));
 
         // === [GET-3] ตรวจสอบความเป็นเจ้าของออเดอร์ ===
@@ -233,7 +315,14 @@ public class OrderServiceImpl implements OrderService {
         // === [GET-ALL-USER-1] ดึง ID ผู้ใช้ปัจจุบัน ===
         String userId = userService.findByUserId();
         // === [GET-ALL-USER-2] ค้นหาออเดอร์ทั้งหมดของผู้ใช้และเรียงจากใหม่ไปเก่า ===
-        return orderRepository.findByUserIdOrderByCreatedAtDesc(userId).stream()
+        // Archive เลือกจาก updatedAt ไม่ใช่ createdAt: ออเดอร์เก่าที่เพิ่งถูกแก้ไขยังอยู่ใน orders ขณะที่ออเดอร์ที่ใหม่กว่าอาจถูก Archive แล้ว
+        // จึงต้องรวมแล้วเรียงตาม createdAt ใหม่ และตัดรายการซ้ำที่อาจเห็นทั้งสองที่ระหว่างการย้าย (ใช้ฉบับใน orders)
+        Map<String, Order> orders = new LinkedHashMap<>();
+        Stream.concat(orderRepository.findByUserIdOrderByCreatedAtDesc(userId).stream(),
+                        orderArchiveService.findArchivedOrdersByUser(userId).stream())
+                .forEach(order -> orders.putIfAbsent(order.getId(), order));
+        return orders.values().stream()
+                .sorted(Comparator.comparing(Order::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())))
                 .map(orderHelper::entityToResponse)
                 .collect(Collectors.toList());
     }
@@ -256,20 +345,23 @@ public class OrderServiceImpl implements OrderService {
         }
 
         // === [CANCEL-3] อัปเดตสถานะเป็น "ยกเลิก" ===
-        order.setOrderStatus(OrderStatus.CANCELLED);
-        order.setPaymentStatus(PaymentStatus.FAILED);
-        order.setUpdatedAt(Instant.now());
-        orderRepository.save(order);
+        Order cancelledOrder = orderStateMachine.apply(order, OrderTransition.CANCEL_BY_USER, null, "Cancelled by user");
         log.info("Order ID {} has been cancelled by user {}.", orderId, userId);
 
-        return orderHelper.entityToResponse(order);
+        return orderHelper.entityToResponse(cancelledOrder);
     }
 
     @Override
     @Transactional
     public CreateOrderResponse retryPayment(String orderId) throws PayPalRESTException {
-        // === [RETRY-1] ดึงข้อมูลผู้ใช้และออเดอร์ ===
+        // การกดซ้ำภายในช่วงเวลาสั้นๆ จะได้ลิงก์ชำระเงินเดิม แทนการสร้าง PayPal Payment ใหม่ทุกครั้ง
         String userId = userService.findByUserId();
+        return idempotencyService.execute("paypal-retry:" + userId + ":" + orderId, "PAYPAL_RETRY:" + orderId, retryIdempotencyTtl,
+                CreateOrderResponse.class, () -> doRetryPayment(userId, orderId));
+    }
+
+    private CreateOrderResponse doRetryPayment(String userId, String orderId) throws PayPalRESTException {
+        // === [RETRY-1] ดึงข้อมูลออเดอร์ ===
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found with ID: " + orderId));
 
@@ -285,16 +377,26 @@ public class OrderServiceImpl implements OrderService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot retry payment for this order. Current status: " + order.getPaymentStatus());
         }
 
-        // === [RETRY-3] เรียกใช้กระบวนการสร้างลิงก์ PayPal ใหม่อีกครั้ง ===
+        // === [RETRY-3] ออเดอร์ที่ชำระเงินล้มเหลวต้องกลับมาเป็น PENDING ก่อน เพื่อให้ Capture ครั้งใหม่ทำงานได้ ===
+        if (order.getPaymentStatus() == PaymentStatus.FAILED) {
+            order = orderStateMachine.apply(order, OrderTransition.RETRY_PAYPAL, null, "PayPal payment retried by user");
+        }
+
+        // === [RETRY-4] เรียกใช้กระบวนการสร้างลิงก์ PayPal ใหม่อีกครั้ง ===
         log.info("Retrying PayPal payment for order ID: {}", orderId);
-        return initiatePaypalPayment(order);
+        return initiatePaypalPayment(order, List.of());
     }
 
     @Override
     @Transactional
     public OrderResponse requestRefund(String orderId) {
-        // === [REFUND-REQ-1] ดึงข้อมูลผู้ใช้และออเดอร์ ===
         String userId = userService.findByUserId();
+        return idempotencyService.execute("refund-request:" + userId + ":" + orderId, "REFUND_REQUEST:" + orderId, idempotencyTtl,
+                OrderResponse.class, () -> doRequestRefund(userId, orderId));
+    }
+
+    private OrderResponse doRequestRefund(String userId, String orderId) {
+        // === [REFUND-REQ-1] ดึงข้อมูลออเดอร์ ===
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found with ID: " + orderId));
 
@@ -304,25 +406,25 @@ public class OrderServiceImpl implements OrderService {
         }
 
         // === [REFUND-REQ-3] ตรวจสอบสถานะที่สามารถขอคืนเงินได้ ===
-        List<OrderStatus> validStatusesForRefundRequest = List.of(OrderStatus.PROCESSING, OrderStatus.SHIPPED, OrderStatus.COMPLETED);
-        if (!validStatusesForRefundRequest.contains(order.getOrderStatus())) {
+        if (!OrderTransition.REQUEST_REFUND.isAllowedFrom(order)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot request refund for an order with status: " + order.getOrderStatus());
         }
-        if (order.getOrderStatus() == OrderStatus.REFUND_REQUESTED || order.getOrderStatus() == OrderStatus.REFUNDED || order.getOrderStatus() == OrderStatus.REFUND_REJECTED) {
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "A refund request for this order already exists or has been processed.");
-        }
 
         // === [REFUND-REQ-4] อัปเดตสถานะเป็น "ส่งคำขอคืนเงิน" ===
-        order.setOrderStatus(OrderStatus.REFUND_REQUESTED);
-        order.setUpdatedAt(Instant.now());
-        orderRepository.save(order);
+        Order updatedOrder = orderStateMachine.apply(order, OrderTransition.REQUEST_REFUND, null, "Refund requested by user");
         log.info("User {} successfully requested a refund for order ID: {}", userId, orderId);
-        return orderHelper.entityToResponse(order);
+        return orderHelper.entityToResponse(updatedOrder);
     }
 
     @Override
     @Transactional
     public OrderResponse approveRefund(String orderId) throws PayPalRESTException {
+        // การคืนเงินเกิดได้ครั้งเดียวต่อออเดอร์ การอนุมัติและการบังคับคืนเงินจึงใช้ Key เดียวกัน
+        return idempotencyService.execute(refundIdempotencyKey(orderId), "REFUND:" + orderId, idempotencyTtl,
+                OrderResponse.class, () -> doApproveRefund(orderId));
+    }
+
+    private OrderResponse doApproveRefund(String orderId) throws PayPalRESTException {
         // === [REFUND-APP-1] ค้นหาออเดอร์ (Admin action, ไม่ต้องเช็คเจ้าของ) ===
         log.info("Admin is approving a user's refund request for order ID: {}", orderId);
         Order order = orderRepository.findById(orderId)
@@ -333,33 +435,29 @@ public class OrderServiceImpl implements OrderService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "This order is not awaiting a refund approval. Use 'force refund' for other statuses.");
         }
         // === [REFUND-APP-3] มอบหมายให้ Helper Method กลางจัดการ ===
-        return processRefund(order);
+        return processRefund(order, OrderTransition.APPROVE_REFUND);
     }
 
     @Override
     @Transactional
     public OrderResponse forceRefundByAdmin(String orderId) throws PayPalRESTException {
+        return idempotencyService.execute(refundIdempotencyKey(orderId), "REFUND:" + orderId, idempotencyTtl,
+                OrderResponse.class, () -> doForceRefundByAdmin(orderId));
+    }
+
+    private OrderResponse doForceRefundByAdmin(String orderId) throws PayPalRESTException {
         // === [FORCE-REFUND-1] ค้นหาออเดอร์และบันทึก Log การกระทำของ Admin ===
         log.info("Admin is forcing a refund for order ID: {}", orderId);
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found with ID: " + orderId));
 
         // === [FORCE-REFUND-2] ตรวจสอบว่า Order อยู่ในสถานะที่สามารถบังคับคืนเงินได้หรือไม่ ===
-        List<OrderStatus> validStatusesForForceRefund = List.of(
-                OrderStatus.PROCESSING,
-                OrderStatus.SHIPPED,
-                OrderStatus.COMPLETED,
-                OrderStatus.DELIVERY_FAILED,
-                OrderStatus.RETURNED_TO_SENDER,
-                OrderStatus.REFUND_REJECTED
-        );
-
-        if (!validStatusesForForceRefund.contains(order.getOrderStatus())) {
+        if (!OrderTransition.FORCE_REFUND.isAllowedFrom(order)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot force a refund on an order with status: " + order.getOrderStatus());
         }
 
         // === [FORCE-REFUND-3] มอบหมายให้ Helper Method กลางจัดการ ===
-        return processRefund(order);
+        return processRefund(order, OrderTransition.FORCE_REFUND);
     }
 
     @Override
@@ -371,8 +469,7 @@ public class OrderServiceImpl implements OrderService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found with ID: " + orderId));
 
         // === [SHIP-2] ตรวจสอบสถานะของออเดอร์ (แก้ไข) ===
-        List<OrderStatus> shippableStatuses = List.of(OrderStatus.PROCESSING, OrderStatus.RETURNED_TO_SENDER);
-        if (!shippableStatuses.contains(order.getOrderStatus())) {
+        if (!OrderTransition.SHIP.isAllowedFrom(order)) {
             log.warn("Attempted to ship an order with invalid status. Order ID: {}, Status: {}", orderId, order.getOrderStatus());
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Order cannot be shipped. Current status is: " + order.getOrderStatus());
         }
@@ -384,18 +481,15 @@ public class OrderServiceImpl implements OrderService {
                 .shippedAt(Instant.now())
                 .build();
 
-        // === [SHIP-4] อัปเดตข้อมูลในออเดอร์ ===
-        order.setShippingDetails(shippingDetails);
-        order.setOrderStatus(OrderStatus.SHIPPED);
-        order.setUpdatedAt(Instant.now());
-
-        // === [SHIP-5] บันทึกออเดอร์ที่อัปเดตแล้วลงฐานข้อมูล ===
-        orderRepository.save(order);
+        // === [SHIP-4] เปลี่ยนสถานะเป็น SHIPPED พร้อมบันทึกข้อมูลการจัดส่งใน Update เดียวกัน ===
+        Order shippedOrder = orderStateMachine.apply(order, OrderTransition.SHIP,
+                new Update().set("shippingDetails", shippingDetails),
+                "Shipped via " + request.getShippingProvider());
         log.info("Order ID {} has been marked as SHIPPED via {} with tracking number: {}",
                 orderId, request.getShippingProvider(), request.getTrackingNumber());
 
-        // === [SHIP-6] ส่งคืนข้อมูลออเดอร์ที่อัปเดตแล้ว ===
-        return orderHelper.entityToResponse(order);
+        // === [SHIP-5] ส่งคืนข้อมูลออเดอร์ที่อัปเดตแล้ว ===
+        return orderHelper.entityToResponse(shippedOrder);
     }
 
     @Override
@@ -421,18 +515,23 @@ public class OrderServiceImpl implements OrderService {
                     "Cannot update shipping details because they were never set in the first place.");
         }
 
-        // === [SHIP-UPDATE-4] อัปเดตข้อมูลการจัดส่ง ===
-        ShippingDetails shippingDetails = order.getShippingDetails();
-        shippingDetails.setShippingProvider(request.getShippingProvider());
-        shippingDetails.setTrackingNumber(request.getTrackingNumber());
-        order.setUpdatedAt(Instant.now());
+        // === [SHIP-UPDATE-4] อัปเดตเฉพาะข้อมูลการจัดส่ง โดยมีเงื่อนไขว่าออเดอร์ยังอยู่ในสถานะที่จัดส่งแล้ว ===
+        Query query = Query.query(Criteria.where("id").is(orderId)
+                .and("orderStatus").in(OrderStatus.SHIPPED, OrderStatus.COMPLETED));
+        Update update = new Update()
+                .set("shippingDetails.shippingProvider", request.getShippingProvider())
+                .set("shippingDetails.trackingNumber", request.getTrackingNumber())
+                .set("updatedAt", Instant.now());
+        Order updatedOrder = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Order.class);
+        if (updatedOrder == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Order " + orderId + " was modified by another request. Please reload and try again.");
+        }
 
-        // === [SHIP-UPDATE-5] บันทึกและส่งคืนข้อมูล ===
-        orderRepository.save(order);
+        // === [SHIP-UPDATE-5] ส่งคืนข้อมูล ===
         log.info("Successfully updated shipping details for order ID {}. New provider: {}, New tracking: {}",
                 orderId, request.getShippingProvider(), request.getTrackingNumber());
 
-        return orderHelper.entityToResponse(order);
+        return orderHelper.entityToResponse(updatedOrder);
     }
 
     @Override
@@ -446,24 +545,14 @@ public class OrderServiceImpl implements OrderService {
         OrderStatus currentStatus = order.getOrderStatus();
         log.info("Admin request to transition order {} from [{}] to [{}]", orderId, currentStatus, newStatus);
 
-        // === [STATUS-UPDATE-2] ตรวจสอบว่าการเปลี่ยนสถานะถูกต้องตาม Flow หรือไม่ ===
-        List<OrderStatus> validTransitions = getValidManualTransitionsFor(currentStatus);
-        if (!validTransitions.contains(newStatus)) {
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "Invalid status transition from '" + currentStatus + "' to '" + newStatus + "'.");
-        }
+        // === [STATUS-UPDATE-2] หา Transition ที่ตรงกันจากตารางกลาง (409 หากไม่ถูกต้องตาม Flow) ===
+        OrderTransition transition = orderStateMachine.findManualTransition(currentStatus, newStatus);
 
-        // === [STATUS-UPDATE-3] จัดการ Logic พิเศษบางกรณี ===
-        if (currentStatus == OrderStatus.PENDING_PAYMENT && newStatus == OrderStatus.CANCELLED && order.getPaymentStatus() != PaymentStatus.COMPLETED) {
-            order.setPaymentStatus(PaymentStatus.FAILED);
-        }
-
-        // === [STATUS-UPDATE-4] อัปเดตสถานะและบันทึก ===
-        order.setOrderStatus(newStatus);
-        order.setUpdatedAt(Instant.now());
-        orderRepository.save(order);
+        // === [STATUS-UPDATE-3] เปลี่ยนสถานะแบบ Atomic ===
+        Order updatedOrder = orderStateMachine.apply(order, transition, null, "Manual status change by admin");
         log.info("Successfully updated status for order ID {} to {}", orderId, newStatus);
 
-        return orderHelper.entityToResponse(order);
+        return orderHelper.entityToResponse(updatedOrder);
     }
 
     @Override
@@ -472,7 +561,7 @@ public class OrderServiceImpl implements OrderService {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found with ID: " + orderId));
         // === [GET-STATUS-2] เรียกใช้ Logic กลางเพื่อดูสถานะถัดไปที่เป็นไปได้ ===
-        return getValidManualTransitionsFor(order.getOrderStatus());
+        return orderStateMachine.getManualTargets(order.getOrderStatus());
     }
 
     @Override
@@ -488,26 +577,33 @@ public class OrderServiceImpl implements OrderService {
         }
 
         // === [REFUND-REJ-3] อัปเดตสถานะเป็น "ปฏิเสธการคืนเงิน" ===
-        order.setOrderStatus(OrderStatus.REFUND_REJECTED);
+        Update changes = new Update();
         if (order.getPaymentDetails() != null) {
-            order.getPaymentDetails().setProviderStatus("REFUND_REJECTED_BY_ADMIN");
+            changes.set("paymentDetails.providerStatus", "REFUND_REJECTED_BY_ADMIN");
         }
-        order.setUpdatedAt(Instant.now());
+        Order updatedOrder = orderStateMachine.apply(order, OrderTransition.REJECT_REFUND, changes, "Refund rejected by admin");
 
-        // === [REFUND-REJ-4] บันทึกและส่งคืนข้อมูล ===
-        orderRepository.save(order);
+        // === [REFUND-REJ-4] ส่งคืนข้อมูล ===
         log.info("Refund request for order ID: {} has been rejected by an admin.", orderId);
-        return orderHelper.entityToResponse(order);
+        return orderHelper.entityToResponse(updatedOrder);
     }
 
     // --- Private Helper Methods ---
 
+    private void recordOrderCreated(Order order) {
+        salesRollupService.recordOrderCreated(order);
+        eventPublisher.publishEvent(new OrderCreatedEvent(order.getId(), order.getUserId(), order.getEmail(),
+                order.getOrderStatus(), order.getTotalAmount(), order.getCreatedAt()));
+    }
+
     /**
      * เมธอดภายในสำหรับจัดการกระบวนการสร้าง Payment กับ PayPal
+     * {@code outboxEvents} จะถูกเขียนลง Outbox ใน Update เดียวกับที่บันทึก PayPal Payment ID
      */
-    private CreateOrderResponse initiatePaypalPayment(Order order) throws PayPalRESTException {
+    private CreateOrderResponse initiatePaypalPayment(Order order, List<OrderOutboxEvent> outboxEvents) throws PayPalRESTException {
         if (order.getId() == null) {
             orderRepository.save(order);
+            recordOrderCreated(order);
             log.info("Order ID {} generated and saved before initiating PayPal payment.", order.getId());
         }
 
@@ -536,10 +632,21 @@ public class OrderServiceImpl implements OrderService {
             throw new PayPalRESTException("Could not get approval link or payment ID from PayPal.");
         }
 
+        // อัปเดตเฉพาะข้อมูลการชำระเงิน โดยมีเงื่อนไขว่าออเดอร์ยังรอการชำระเงินอยู่
+        Query query = Query.query(Criteria.where("id").is(order.getId())
+                .and("orderStatus").is(OrderStatus.PENDING_PAYMENT)
+                .and("paymentStatus").is(PaymentStatus.PENDING));
+        Update update = new Update()
+                .set("paymentDetails.transactionId", paypalPaymentId)
+                .set("paymentDetails.providerStatus", "CREATED_IN_PAYPAL")
+                .set("updatedAt", Instant.now());
+        orderOutboxService.enqueue(update, outboxEvents);
+        if (mongoTemplate.updateFirst(query, update, Order.class).getMatchedCount() == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Order " + order.getId() + " is no longer awaiting payment.");
+        }
         PaymentDetails details = order.getPaymentDetails();
         details.setTransactionId(paypalPaymentId);
         details.setProviderStatus("CREATED_IN_PAYPAL");
-        orderRepository.save(order);
         log.info("Updated order ID {} with PayPal Payment ID: {}", order.getId(), paypalPaymentId);
 
         return CreateOrderResponse.builder()
@@ -573,20 +680,15 @@ public class OrderServiceImpl implements OrderService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "This order is not awaiting payment slip approval. Current status: " + order.getPaymentStatus());
         }
 
-        // === [APPROVE-SLIP-3] ตัดสต็อกสินค้า ===
-        orderHelper.decrementStockForOrder(order);
-        // === [APPROVE-SLIP-4] อัปเดตสถานะเป็น "ชำระเงินแล้ว" และ "กำลังดำเนินการ" ===
-        updateOrderStatusToPaid(order);
-
-        if (order.getPaymentDetails() != null) {
-            order.getPaymentDetails().setProviderStatus("APPROVED_BY_ADMIN");
-        }
-
-        // === [APPROVE-SLIP-5] บันทึกและส่งคืนข้อมูล ===
-        orderRepository.save(order);
-        log.info("Payment slip for order ID {} has been approved. Stock decremented and status updated to PROCESSING.", orderId);
+        // === [APPROVE-SLIP-3] อัปเดตสถานะเป็น "ชำระเงินแล้ว" และ "กำลังดำเนินการ" ===
+        // การตัดสต็อกถูกเขียนลง Outbox พร้อมการเปลี่ยนสถานะ แล้ว Worker จะทำต่อ
+        Order approvedOrder = orderStateMachine.apply(order, OrderTransition.APPROVE_SLIP,
+                new Update().set("paymentDetails.providerStatus", "APPROVED_BY_ADMIN"),
+                "Payment slip approved by admin");
 
-        return orderHelper.entityToResponse(order);
+        // === [APPROVE-SLIP-4] ส่งคืนข้อมูล ===
+        log.info("Payment slip for order ID {} has been approved. Status updated to PROCESSING and stock decrement queued.", orderId);
+        return orderHelper.entityToResponse(approvedOrder);
     }
 
     // --- METHOD ---
@@ -604,20 +706,14 @@ public class OrderServiceImpl implements OrderService {
         }
 
         // === [REJECT-SLIP-2] [ปรับปรุง] เปลี่ยนสถานะเพื่อให้ผู้ใช้สามารถอัปโหลดสลิปใหม่ได้ ===
-        // This puts the order in a state where the user can re-upload a slip.
-        order.setOrderStatus(OrderStatus.REJECTED_SLIP);    // Set the specific new status.
-        order.setPaymentStatus(PaymentStatus.PENDING);      // **Crucial:** Set payment back to PENDING to unlock user action.
-        order.setUpdatedAt(Instant.now());
+        // REJECTED_SLIP / PENDING: payment กลับเป็น PENDING เพื่อปลดล็อกให้ผู้ใช้ส่งสลิปใหม่
+        // === [REJECT-SLIP-3] บันทึกเหตุผลที่ปฏิเสธใน Update เดียวกัน ===
+        Order rejectedOrder = orderStateMachine.apply(order, OrderTransition.REJECT_SLIP,
+                new Update().set("paymentDetails.providerStatus", "REJECTED_BY_ADMIN: " + reason),
+                reason);
 
-        // === [REJECT-SLIP-3] บันทึกเหตุผลที่ปฏิเสธ ===
-        // Store the rejection reason
-        if (order.getPaymentDetails() != null) {
-            order.getPaymentDetails().setProviderStatus("REJECTED_BY_ADMIN: " + reason);
-        }
-
-        orderRepository.save(order);
         log.info("Payment slip for order ID {} has been rejected. Awaiting user action.", orderId);
-        return orderHelper.entityToResponse(order);
+        return orderHelper.entityToResponse(rejectedOrder);
     }
 
 
@@ -633,20 +729,14 @@ public class OrderServiceImpl implements OrderService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot revert approval. Order is not in a valid state for this action.");
         }
 
-        // === [REVERT-2] คืนสต็อกสินค้าเข้าระบบ ===
-        orderHelper.incrementStockForOrder(order);
+        // === [REVERT-2] เปลี่ยนสถานะกลับไปรอให้ผู้ใช้อัปโหลดสลิปใหม่ พร้อมบันทึกเหตุผล ===
+        // === [REVERT-3] การคืนสต็อกถูกเขียนลง Outbox พร้อมการเปลี่ยนสถานะ ===
+        Order revertedOrder = orderStateMachine.apply(order, OrderTransition.REVERT_SLIP_APPROVAL,
+                new Update().set("paymentDetails.providerStatus", "APPROVAL_REVERTED_BY_ADMIN: " + reason),
+                reason);
 
-        // === [REVERT-3] เปลี่ยนสถานะกลับไปรอให้ผู้ใช้อัปโหลดสลิปใหม่ ===1
-        order.setOrderStatus(OrderStatus.REJECTED_SLIP);
-        order.setPaymentStatus(PaymentStatus.PENDING);
-        order.setUpdatedAt(Instant.now());
-
-        // === [REVERT-4] บันทึกเหตุผลที่ย้อนกลับ ===
-        order.getPaymentDetails().setProviderStatus("APPROVAL_REVERTED_BY_ADMIN: " + reason);
-
-        orderRepository.save(order);
-        log.info("Approval for order {} reverted. Stock has been incremented back. Awaiting user action.", orderId);
-        return orderHelper.entityToResponse(order);
+        log.info("Approval for order {} reverted. Stock restock queued. Awaiting user action.", orderId);
+        return orderHelper.entityToResponse(revertedOrder);
     }
 
     @Override
@@ -655,75 +745,59 @@ public class OrderServiceImpl implements OrderService {
         log.info("Admin action: Fetching order details for ID: {} without ownership check.", orderId);
 
         Order order = orderRepository.findById(orderId)
+                .or(() -> orderArchiveService.findArchivedOrder(orderId))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found with ID: " + orderId));
         return orderHelper.entityToResponse(order);
     }
 
     /**
-     * เมธอดภายในสำหรับเปลี่ยนสถานะออเดอร์เป็นสถานะที่หมายถึง "ชำระเงินเรียบร้อยแล้ว"
+     * เมธอดภายในสำหรับคืนเงิน: เข้าสู่ REFUND_APPROVED ก่อน (กันการคืนเงินซ้ำจาก Request ที่ซ้อนกัน)
+     * แล้วจึงเรียก Payment Provider หากล้มเหลวสถานะจะถูกย้อนกลับ สุดท้ายเปลี่ยนเป็น REFUNDED (คืนสต็อกผ่าน Outbox)
      */
-    private void updateOrderStatusToPaid(Order order) {
-        order.setPaymentStatus(PaymentStatus.COMPLETED);
-        order.setOrderStatus(OrderStatus.PROCESSING);
-        order.setUpdatedAt(Instant.now());
-    }
-
-    private OrderResponse processRefund(Order order) throws PayPalRESTException {
+    private OrderResponse processRefund(Order order, OrderTransition startTransition) throws PayPalRESTException {
         PaymentDetails paymentDetails = order.getPaymentDetails();
         if (paymentDetails == null) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Payment details are missing for this order.");
         }
-
-        if (paymentDetails.getPaymentMethod() == PaymentMethod.PAYPAL) {
-            orderHelper.processPaypalRefund(order, paymentDetails);
-        } else if (paymentDetails.getPaymentMethod() == PaymentMethod.BANK_TRANSFER) {
-
-            if (order.getOrderStatus() == OrderStatus.REFUND_REQUESTED) {
-                paymentDetails.setProviderStatus("MANUALLY_REFUNDED_APPROVED");
-            } else {
-                paymentDetails.setProviderStatus("MANUALLY_REFUNDED_BY_ADMIN");
-            }
-        } else {
+        PaymentMethod paymentMethod = paymentDetails.getPaymentMethod();
+        if (paymentMethod != PaymentMethod.PAYPAL && paymentMethod != PaymentMethod.BANK_TRANSFER) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Unsupported payment method for refund.");
         }
+        boolean requestedByUser = order.getOrderStatus() == OrderStatus.REFUND_REQUESTED;
 
+        Order claimedOrder = orderStateMachine.apply(order, startTransition, null, "Refund started", claimed -> {
+            if (paymentMethod == PaymentMethod.PAYPAL) {
+                orderHelper.processPaypalRefund(claimed, claimed.getPaymentDetails());
+            } else {
+                claimed.getPaymentDetails().setProviderStatus(requestedByUser ? "MANUALLY_REFUNDED_APPROVED" : "MANUALLY_REFUNDED_BY_ADMIN");
+            }
+        });
 
-        orderHelper.incrementStockForOrder(order);
-
-        order.setPaymentStatus(PaymentStatus.REFUNDED);
-        order.setOrderStatus(OrderStatus.REFUNDED);
-        order.setUpdatedAt(Instant.now());
+        PaymentDetails refundDetails = claimedOrder.getPaymentDetails();
+        Update refundChanges = new Update()
+                .set("paymentDetails.providerStatus", refundDetails.getProviderStatus())
+                .set("paymentDetails.transactionId", refundDetails.getTransactionId());
+        Order refundedOrder = orderStateMachine.apply(claimedOrder, OrderTransition.COMPLETE_REFUND, refundChanges,
+                "Refund completed");
 
-        orderRepository.save(order);
         log.info("Refund for order ID: {} has been successfully processed.", order.getId());
-        return orderHelper.entityToResponse(order);
+        return orderHelper.entityToResponse(refundedOrder);
     }
 
-    /**
-     * กำหนด Logic ของการเปลี่ยนสถานะด้วยตนเองโดย Admin ว่าจากสถานะปัจจุบัน
-     * สามารถเปลี่ยนไปเป็นสถานะใดได้บ้าง
-     */
-    private List<OrderStatus> getValidManualTransitionsFor(OrderStatus currentStatus) {
-        return switch (currentStatus) {
-            case PENDING_PAYMENT, REJECTED_SLIP -> List.of(OrderStatus.CANCELLED);
-            case PROCESSING, SHIPPED, DELIVERY_FAILED -> Stream.of(
-                            OrderStatus.COMPLETED,
-                            OrderStatus.DELIVERY_FAILED,
-                            OrderStatus.RETURNED_TO_SENDER
-
-                    )
-                    .filter(status -> status != currentStatus)
-                    .toList();
-
-            case RETURNED_TO_SENDER -> List.of(
-                    OrderStatus.PROCESSING
-            );
-
-            case REFUND_REJECTED -> List.of(
-                    OrderStatus.COMPLETED,
-                    OrderStatus.PROCESSING
-            );
-            default -> List.of();
-        };
-    }
-}
\ No newline at end of file
+    private String refundIdempotencyKey(String orderId) {
+        return "refund:" + orderId;
+    }
+
+    private void deleteSlipQuietly(String slipUrl, String orderId) {
+        if (slipUrl == null || slipUrl.isBlank() || !slipUrl.contains("s3.amazonaws.com")) {
+            return;
+        }
+        try {
+            String filename = slipUrl.substring(slipUrl.lastIndexOf("/") + 1);
+            log.info("Deleting slip file {} of order {} from S3.", filename, orderId);
+            s3Service.deleteFile(filename);
+        } catch (Exception e) {
+            log.error("Error deleting slip URL '{}' for order {}: {}", slipUrl, orderId, e.getMessage());
+        }
+    }
+}
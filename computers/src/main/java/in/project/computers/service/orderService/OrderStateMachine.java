@@ -0,0 +1,73 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderStatus;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h3>Order State Machine</h3>
+ * <p>
+ * จุดเดียวสำหรับเปลี่ยนสถานะ Order ตามตาราง {@link OrderTransition}
+ * ทุกการเปลี่ยนสถานะเป็น {@code findAndModify} แบบมีเงื่อนไข (Compare-And-Set) บนสถานะที่อ่านมา
+ * และบันทึกประวัติลง {@code statusHistory} ใน Update เดียวกัน
+ * </p>
+ */
+public interface OrderStateMachine {
+
+    /**
+     * Side Effect ที่จะทำงานหลังจาก CAS สำเร็จเท่านั้น (เช่น เรียก Payment Provider)
+     * งานที่ทำซ้ำได้และไม่ต้องรอผล (ตัด/คืนสต็อก) ใช้ {@link OrderTransition#getOutboxEvent()} แทน
+     */
+    @FunctionalInterface
+    interface OrderSideEffect<E extends Exception> {
+        void run(Order order) throws E;
+    }
+
+    /**
+     * เปลี่ยนสถานะของ Order แบบ Atomic
+     *
+     * @param current    Order ที่อ่านมา (ใช้สถานะปัจจุบันเป็นเงื่อนไขของ CAS)
+     * @param transition การเปลี่ยนสถานะที่ต้องการ
+     * @param changes    Field อื่นที่ต้องอัปเดตพร้อมกัน (null ได้)
+     * @param note       หมายเหตุที่จะบันทึกในประวัติ
+     * @return Order หลังการเปลี่ยนสถานะ
+     * @throws org.springframework.web.server.ResponseStatusException (409) หากไม่อนุญาตจากสถานะปัจจุบัน
+     *         หรือ Order ถูกเปลี่ยนโดย Request อื่นไปก่อน
+     */
+    Order apply(Order current, OrderTransition transition, Update changes, String note);
+
+    /**
+     * เหมือน {@link #apply(Order, OrderTransition, Update, String)} แต่รัน Side Effect หลัง CAS สำเร็จ
+     * หาก Side Effect ล้มเหลว สถานะจะถูกย้อนกลับ (Compensate) ด้วย CAS อีกครั้ง แล้วโยน Exception เดิมต่อ
+     */
+    <E extends Exception> Order apply(Order current, OrderTransition transition, Update changes, String note,
+                                      OrderSideEffect<E> sideEffect) throws E;
+
+    /**
+     * คำสั่งเปลี่ยนสถานะหนึ่งรายการสำหรับ {@link #applyAll(List)}
+     */
+    record TransitionRequest(Order current, OrderTransition transition, Update changes, String note) {
+    }
+
+    /**
+     * เปลี่ยนสถานะหลาย Order ใน Bulk Write เดียว (Unordered) โดยแต่ละรายการยังเป็น CAS บนสถานะที่อ่านมา
+     * งาน Outbox ของทุกรายการถูกเขียนพร้อมกัน และปลุก Worker เพียงครั้งเดียวต่อ Batch
+     *
+     * @return ID ของ Order ที่เปลี่ยนสถานะสำเร็จ (รายการที่ไม่อยู่ในชุดนี้ถูก Request อื่นเปลี่ยนไปก่อน
+     *         หรือไม่อนุญาตจากสถานะปัจจุบัน)
+     */
+    Set<String> applyAll(List<TransitionRequest> requests);
+
+    /**
+     * @return สถานะที่ Admin สามารถเปลี่ยนไปได้เองจากสถานะปัจจุบัน
+     */
+    List<OrderStatus> getManualTargets(OrderStatus currentStatus);
+
+    /**
+     * @throws org.springframework.web.server.ResponseStatusException (409) หากไม่มีการเปลี่ยนสถานะด้วยตนเองที่ตรงกัน
+     */
+    OrderTransition findManualTransition(OrderStatus currentStatus, OrderStatus newStatus);
+}
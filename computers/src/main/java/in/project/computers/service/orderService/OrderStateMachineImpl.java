@@ -0,0 +1,240 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderOutboxEvent;
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.OrderStatusChange;
+import in.project.computers.entity.order.PaymentStatus;
+import in.project.computers.event.OrderStatusChangedEvent;
+import in.project.computers.service.dashboard.SalesRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderStateMachineImpl implements OrderStateMachine {
+
+    private static final String COMPENSATED_SUFFIX = "_COMPENSATED";
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderOutboxService orderOutboxService;
+    private final SalesRollupService salesRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public Order apply(Order current, OrderTransition transition, Update changes, String note) {
+        return apply(current, transition, changes, note, order -> { });
+    }
+
+    @Override
+    public <E extends Exception> Order apply(Order current, OrderTransition transition, Update changes, String note,
+                                             OrderSideEffect<E> sideEffect) throws E {
+        if (!transition.isAllowedFrom(current)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(
+                    "Cannot apply %s to an order in status %s (payment %s).",
+                    transition, current.getOrderStatus(), current.getPaymentStatus()));
+        }
+
+        Update update = transitionUpdate(current, transition, changes, note, Instant.now(), null);
+        // งานเบื้องหลังของ Transition (เช่น ตัด/คืนสต็อก) ถูกเขียนลง Outbox ใน Write เดียวกับการเปลี่ยนสถานะ
+        OrderOutboxEvent outboxEvent = transition.getOutboxEvent() != null ? OrderOutboxEvent.of(transition.getOutboxEvent()) : null;
+        if (outboxEvent != null) {
+            orderOutboxService.enqueue(update, List.of(outboxEvent));
+        }
+
+        Order updated = compareAndSet(current.getId(), current.getOrderStatus(), current.getPaymentStatus(), update);
+        if (updated == null) {
+            log.warn("CAS failed for order {}: expected {} / {} for transition {}",
+                    current.getId(), current.getOrderStatus(), current.getPaymentStatus(), transition);
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Order " + current.getId() + " was modified by another request. Please reload and try again.");
+        }
+        log.info("Order {} transitioned {} -> {} via {}", updated.getId(), current.getOrderStatus(), updated.getOrderStatus(), transition);
+        recordTransition(current, updated.getOrderStatus(), updated.getPaymentStatus());
+
+        boolean sideEffectSucceeded = false;
+        try {
+            sideEffect.run(updated);
+            sideEffectSucceeded = true;
+        } finally {
+            if (!sideEffectSucceeded) {
+                compensate(updated, transition, current.getOrderStatus(), current.getPaymentStatus(), outboxEvent);
+            }
+        }
+        if (outboxEvent != null) {
+            orderOutboxService.drainSoon();
+        }
+        return updated;
+    }
+
+    @Override
+    public Set<String> applyAll(List<TransitionRequest> requests) {
+        // ทุกรายการใน Batch บันทึก batchId เดียวกันในประวัติ จึงอ่านกลับได้ว่ารายการใดถูกเปลี่ยนโดย Batch นี้จริง
+        // (updatedAt ระดับมิลลิวินาทีอาจตรงกับการ apply เดี่ยวที่เกิดพร้อมกัน)
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        String batchId = UUID.randomUUID().toString();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+        List<String> orderIds = new ArrayList<>();
+        boolean hasOutboxEvents = false;
+        for (TransitionRequest request : requests) {
+            Order current = request.current();
+            OrderTransition transition = request.transition();
+            if (!transition.isAllowedFrom(current)) {
+                continue;
+            }
+            Update update = transitionUpdate(current, transition, request.changes(), request.note(), now, batchId);
+            if (transition.getOutboxEvent() != null) {
+                orderOutboxService.enqueue(update, List.of(OrderOutboxEvent.of(transition.getOutboxEvent())));
+                hasOutboxEvents = true;
+            }
+            bulk.updateOne(casQuery(current.getId(), current.getOrderStatus(), current.getPaymentStatus()), update);
+            orderIds.add(current.getId());
+        }
+        if (orderIds.isEmpty()) {
+            return Set.of();
+        }
+
+        int modified = bulk.execute().getModifiedCount();
+        Query appliedQuery = Query.query(Criteria.where("id").in(orderIds)
+                .and("statusHistory.batchId").is(batchId));
+        appliedQuery.fields().include("id");
+        Set<String> applied = mongoTemplate.find(appliedQuery, Order.class).stream()
+                .map(Order::getId)
+                .collect(Collectors.toSet());
+        log.info("Bulk transition applied to {} of {} order(s) ({} modified)", applied.size(), requests.size(), modified);
+        requests.stream()
+                .filter(request -> applied.contains(request.current().getId()))
+                .forEach(request -> recordTransition(request.current(), request.transition().getToStatus(),
+                        request.transition().getToPaymentStatus() != null
+                                ? request.transition().getToPaymentStatus()
+                                : request.current().getPaymentStatus()));
+
+        if (hasOutboxEvents && !applied.isEmpty()) {
+            orderOutboxService.drainSoon();
+        }
+        return applied;
+    }
+
+    @Override
+    public List<OrderStatus> getManualTargets(OrderStatus currentStatus) {
+        return Arrays.stream(OrderTransition.values())
+                .filter(transition -> transition.isManual() && transition.getFromStatuses().contains(currentStatus))
+                .map(OrderTransition::getToStatus)
+                .distinct()
+                .toList();
+    }
+
+    @Override
+    public OrderTransition findManualTransition(OrderStatus currentStatus, OrderStatus newStatus) {
+        return Arrays.stream(OrderTransition.values())
+                .filter(transition -> transition.isManual()
+                        && transition.getFromStatuses().contains(currentStatus)
+                        && transition.getToStatus() == newStatus)
+                .findFirst()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Invalid status transition from '" + currentStatus + "' to '" + newStatus + "'."));
+    }
+
+    /**
+     * สร้าง Update ของ Transition: สถานะใหม่, updatedAt และประวัติ (ต่อท้าย {@code changes} ถ้ามี)
+     */
+    private Update transitionUpdate(Order current, OrderTransition transition, Update changes, String note, Instant now,
+                                    String batchId) {
+        PaymentStatus toPaymentStatus = transition.getToPaymentStatus() != null
+                ? transition.getToPaymentStatus()
+                : current.getPaymentStatus();
+        Update update = changes != null ? changes : new Update();
+        return update.set("orderStatus", transition.getToStatus())
+                .set("paymentStatus", toPaymentStatus)
+                .set("updatedAt", now)
+                .push("statusHistory", OrderStatusChange.builder()
+                        .transition(transition.name())
+                        .fromStatus(current.getOrderStatus())
+                        .toStatus(transition.getToStatus())
+                        .fromPaymentStatus(current.getPaymentStatus())
+                        .toPaymentStatus(toPaymentStatus)
+                        .note(note)
+                        .changedAt(now)
+                        .batchId(batchId)
+                        .build());
+    }
+
+    private Query casQuery(String orderId, OrderStatus expectedStatus, PaymentStatus expectedPaymentStatus) {
+        return Query.query(Criteria.where("id").is(orderId)
+                .and("orderStatus").is(expectedStatus)
+                .and("paymentStatus").is(expectedPaymentStatus));
+    }
+
+    /**
+     * อัปเดต Rollup ของ Dashboard และแจ้งผู้ฟัง (เช่น Dashboard แบบ Real-Time) หลังการเปลี่ยนสถานะสำเร็จ
+     */
+    private void recordTransition(Order before, OrderStatus toStatus, PaymentStatus toPaymentStatus) {
+        salesRollupService.recordTransition(before, toStatus, toPaymentStatus);
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(before.getId(), before.getOrderStatus(), toStatus,
+                before.getPaymentStatus(), toPaymentStatus, Instant.now()));
+    }
+
+    private Order compareAndSet(String orderId, OrderStatus expectedStatus, PaymentStatus expectedPaymentStatus, Update update) {
+        return mongoTemplate.findAndModify(casQuery(orderId, expectedStatus, expectedPaymentStatus), update,
+                FindAndModifyOptions.options().returnNew(true), Order.class);
+    }
+
+    /**
+     * ย้อนสถานะกลับเมื่อ Side Effect ล้มเหลว โดยมีเงื่อนไขว่า Order ยังอยู่ในสถานะที่เพิ่งเปลี่ยนไป
+     * และถอน Outbox Event ของ Transition นั้นออก (หาก Worker ยังไม่ได้หยิบไปทำ)
+     */
+    private void compensate(Order updated, OrderTransition transition, OrderStatus originalStatus, PaymentStatus originalPaymentStatus,
+                            OrderOutboxEvent outboxEvent) {
+        try {
+            Instant now = Instant.now();
+            Update revert = new Update()
+                    .set("orderStatus", originalStatus)
+                    .set("paymentStatus", originalPaymentStatus)
+                    .set("updatedAt", now)
+                    .push("statusHistory", OrderStatusChange.builder()
+                            .transition(transition.name() + COMPENSATED_SUFFIX)
+                            .fromStatus(updated.getOrderStatus())
+                            .toStatus(originalStatus)
+                            .fromPaymentStatus(updated.getPaymentStatus())
+                            .toPaymentStatus(originalPaymentStatus)
+                            .note("Side effect failed; transition reverted.")
+                            .changedAt(now)
+                            .build());
+            if (outboxEvent != null) {
+                revert.pull("outbox", new Document("eventId", outboxEvent.getEventId()));
+            }
+            Order reverted = compareAndSet(updated.getId(), updated.getOrderStatus(), updated.getPaymentStatus(), revert);
+            if (reverted == null) {
+                log.error("Could not revert order {} after failed {}: it was modified concurrently. Manual review required.",
+                        updated.getId(), transition);
+            } else {
+                recordTransition(updated, originalStatus, originalPaymentStatus);
+                log.warn("Reverted order {} to {} / {} after failed side effect of {}",
+                        updated.getId(), originalStatus, originalPaymentStatus, transition);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to revert order {} after failed {}. Manual review required.", updated.getId(), transition, e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderOutboxEventType;
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.PaymentMethod;
+import in.project.computers.entity.order.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static in.project.computers.entity.order.OrderStatus.*;
+
+/**
+ * <h3>ตารางการเปลี่ยนสถานะของ Order</h3>
+ * <p>
+ * แหล่งข้อมูลเดียวของ Flow ทั้งหมด: แต่ละรายการระบุสถานะต้นทางที่อนุญาต, สถานะปลายทาง,
+ * สถานะการชำระเงินที่ต้องเป็นและจะถูกตั้งค่า, และวิธีชำระเงินที่จำเป็น (ถ้ามี)
+ * รายการที่ {@code manual = true} คือสถานะที่ Admin เลือกเปลี่ยนเองได้จากหน้าจัดการ Order
+ * และ {@code outboxEvent} คืองานเบื้องหลัง (เช่น ตัด/คืนสต็อก) ที่ถูกเขียนลง Outbox พร้อมการเปลี่ยนสถานะ
+ * </p>
+ */
+@Getter
+@AllArgsConstructor
+public enum OrderTransition {
+
+    // --- การชำระเงิน ---
+    CAPTURE_PAYPAL(EnumSet.of(PENDING_PAYMENT), EnumSet.of(PaymentStatus.PENDING),
+            PROCESSING, PaymentStatus.COMPLETED, PaymentMethod.PAYPAL, false, OrderOutboxEventType.DECREMENT_STOCK),
+    FAIL_PAYPAL_CAPTURE(EnumSet.of(PENDING_PAYMENT), EnumSet.of(PaymentStatus.PENDING),
+            PENDING_PAYMENT, PaymentStatus.FAILED, PaymentMethod.PAYPAL, false, null),
+    RETRY_PAYPAL(EnumSet.of(PENDING_PAYMENT), EnumSet.of(PaymentStatus.FAILED),
+            PENDING_PAYMENT, PaymentStatus.PENDING, PaymentMethod.PAYPAL, false, null),
+    SUBMIT_SLIP(EnumSet.of(PENDING_PAYMENT, REJECTED_SLIP), EnumSet.of(PaymentStatus.PENDING),
+            PENDING_PAYMENT, PaymentStatus.PENDING_APPROVAL, PaymentMethod.BANK_TRANSFER, false, null),
+    APPROVE_SLIP(EnumSet.of(PENDING_PAYMENT), EnumSet.of(PaymentStatus.PENDING_APPROVAL),
+            PROCESSING, PaymentStatus.COMPLETED, PaymentMethod.BANK_TRANSFER, false, OrderOutboxEventType.DECREMENT_STOCK),
+    REJECT_SLIP(EnumSet.of(PENDING_PAYMENT), EnumSet.of(PaymentStatus.PENDING_APPROVAL),
+            REJECTED_SLIP, PaymentStatus.PENDING, PaymentMethod.BANK_TRANSFER, false, null),
+    REVERT_SLIP_APPROVAL(EnumSet.of(PROCESSING), EnumSet.of(PaymentStatus.COMPLETED),
+            REJECTED_SLIP, PaymentStatus.PENDING, PaymentMethod.BANK_TRANSFER, false, OrderOutboxEventType.INCREMENT_STOCK),
+
+    // --- การยกเลิก ---
+    CANCEL_BY_USER(EnumSet.of(PENDING_PAYMENT), EnumSet.of(PaymentStatus.PENDING),
+            CANCELLED, PaymentStatus.FAILED, null, false, null),
+    // ใช้โดย OrderExpiryService: Order ที่ไม่ได้ชำระเงินเกินเวลาที่กำหนด (ไม่รวมสลิปที่รอ Admin ตรวจ)
+    EXPIRE_UNPAID(EnumSet.of(PENDING_PAYMENT, REJECTED_SLIP), EnumSet.of(PaymentStatus.PENDING, PaymentStatus.FAILED),
+            CANCELLED, PaymentStatus.FAILED, null, false, null),
+    // PayPal ยืนยันการชำระเงินหลังจาก Order ถูกยกเลิกไปแล้ว (เช่น หมดเวลาระหว่าง Capture): คืนเงินทันที สต็อกยังไม่เคยถูกตัด
+    REFUND_LATE_CAPTURE(EnumSet.of(CANCELLED), EnumSet.of(PaymentStatus.FAILED),
+            CANCELLED, PaymentStatus.REFUNDED, PaymentMethod.PAYPAL, false, null),
+
+    // --- การคืนเงิน: เข้าสู่ REFUND_APPROVED ก่อนเรียก Payment Provider เพื่อกันการคืนเงินซ้ำ ---
+    REQUEST_REFUND(EnumSet.of(PROCESSING, SHIPPED, COMPLETED), null,
+            REFUND_REQUESTED, null, null, false, null),
+    REJECT_REFUND(EnumSet.of(REFUND_REQUESTED), null,
+            REFUND_REJECTED, null, null, false, null),
+    APPROVE_REFUND(EnumSet.of(REFUND_REQUESTED), null,
+            REFUND_APPROVED, null, null, false, null),
+    FORCE_REFUND(EnumSet.of(PROCESSING, SHIPPED, COMPLETED, DELIVERY_FAILED, RETURNED_TO_SENDER, REFUND_REJECTED), null,
+            REFUND_APPROVED, null, null, false, null),
+    COMPLETE_REFUND(EnumSet.of(REFUND_APPROVED), null,
+            REFUNDED, PaymentStatus.REFUNDED, null, false, OrderOutboxEventType.INCREMENT_STOCK),
+
+    // --- การจัดส่ง ---
+    SHIP(EnumSet.of(PROCESSING, RETURNED_TO_SENDER), null,
+            SHIPPED, null, null, false, null),
+
+    // --- การเปลี่ยนสถานะด้วยตนเองโดย Admin ---
+    MARK_COMPLETED(EnumSet.of(PROCESSING, SHIPPED, DELIVERY_FAILED, REFUND_REJECTED), null,
+            COMPLETED, null, null, true, null),
+    MARK_DELIVERY_FAILED(EnumSet.of(PROCESSING, SHIPPED), null,
+            DELIVERY_FAILED, null, null, true, null),
+    MARK_RETURNED_TO_SENDER(EnumSet.of(PROCESSING, SHIPPED, DELIVERY_FAILED), null,
+            RETURNED_TO_SENDER, null, null, true, null),
+    REOPEN_PROCESSING(EnumSet.of(RETURNED_TO_SENDER, REFUND_REJECTED), null,
+            PROCESSING, null, null, true, null),
+    CANCEL_BY_ADMIN(EnumSet.of(PENDING_PAYMENT, REJECTED_SLIP),
+            EnumSet.of(PaymentStatus.PENDING, PaymentStatus.PENDING_APPROVAL, PaymentStatus.FAILED),
+            CANCELLED, PaymentStatus.FAILED, null, true, null);
+
+    private final Set<OrderStatus> fromStatuses;
+    // null = ไม่ตรวจสอบสถานะการชำระเงิน
+    private final Set<PaymentStatus> fromPaymentStatuses;
+    private final OrderStatus toStatus;
+    // null = ไม่เปลี่ยนสถานะการชำระเงิน
+    private final PaymentStatus toPaymentStatus;
+    private final PaymentMethod requiredPaymentMethod;
+    private final boolean manual;
+    // null = ไม่มีงานเบื้องหลัง
+    private final OrderOutboxEventType outboxEvent;
+
+    /**
+     * ตรวจสอบว่า Order ในสถานะปัจจุบันสามารถใช้ Transition นี้ได้หรือไม่
+     */
+    public boolean isAllowedFrom(Order order) {
+        if (!fromStatuses.contains(order.getOrderStatus())) {
+            return false;
+        }
+        if (fromPaymentStatuses != null && !fromPaymentStatuses.contains(order.getPaymentStatus())) {
+            return false;
+        }
+        return requiredPaymentMethod == null
+                || (order.getPaymentDetails() != null && order.getPaymentDetails().getPaymentMethod() == requiredPaymentMethod);
+    }
+}
@@ -0,0 +1,18 @@
+package in.project.computers.service.orderService;
+
+/**
+ * <h3>Refund Recovery Service</h3>
+ * <p>
+ * ปิดงานคืนเงินที่ค้างอยู่ในสถานะ REFUND_APPROVED (เช่น Instance ล่มหลังเข้าสู่สถานะนี้แต่ก่อนเปลี่ยนเป็น REFUNDED)
+ * การคืนเงินผ่าน PayPal จะใช้ Refund เดิมหากมีอยู่แล้ว จึงรันซ้ำได้โดยไม่คืนเงินซ้ำ
+ * </p>
+ */
+public interface RefundRecoveryService {
+
+    /**
+     * ปิดงานคืนเงินของ Order ที่อยู่ใน REFUND_APPROVED นานเกิน {@code app.orders.refund-recovery.grace}
+     *
+     * @return จำนวน Order ที่เปลี่ยนเป็น REFUNDED
+     */
+    int recoverStuckRefunds();
+}
@@ -0,0 +1,130 @@
+package in.project.computers.service.orderService;
+
+import in.project.computers.dto.order.OrderResponse;
+import in.project.computers.entity.order.Order;
+import in.project.computers.entity.order.OrderStatus;
+import in.project.computers.entity.order.OrderStatusChange;
+import in.project.computers.entity.order.PaymentDetails;
+import in.project.computers.entity.order.PaymentMethod;
+import in.project.computers.repository.generalRepo.OrderRepository;
+import in.project.computers.service.idempotencyService.IdempotencyService;
+import in.project.computers.service.schedulerService.SchedulerLockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * กวาด Order ที่ค้างใน REFUND_APPROVED นานเกินระยะผ่อนผัน แล้วทำขั้นตอนที่เหลือของ {@code processRefund}
+ * <p>
+ * แต่ละ Order ทำงานภายใต้ Idempotency Key เดียวกับการอนุมัติ/บังคับคืนเงิน ({@code refund:<orderId>})
+ * จึงไม่ซ้อนกับ Request ของ Admin ที่ยังทำงานอยู่ และการเปลี่ยนเป็น REFUNDED ยังเป็น CAS ผ่าน State Machine
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RefundRecoveryServiceImpl implements RefundRecoveryService {
+
+    private static final String LOCK_NAME = "refund-recovery";
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderRepository orderRepository;
+    private final OrderStateMachine orderStateMachine;
+    private final OrderHelperService orderHelper;
+    private final IdempotencyService idempotencyService;
+    private final SchedulerLockService schedulerLockService;
+
+    @Value("${app.orders.refund-recovery.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.orders.refund-recovery.lock-lease:PT10M}")
+    private Duration lockLease;
+
+    // ต้องนานกว่าเวลาที่ Request คืนเงินปกติใช้ (Deadline ของ PayPal + Idempotency Lease) เพื่อไม่แย่งงานที่ยังทำอยู่
+    @Value("${app.orders.refund-recovery.grace:PT15M}")
+    private Duration grace;
+
+    @Value("${app.idempotency.ttl:P1D}")
+    private Duration idempotencyTtl;
+
+    @Scheduled(cron = "${app.orders.refund-recovery.cron:0 */5 * * * *}")
+    public void scheduledRecovery() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lockLease)) {
+            log.debug("Refund recovery skipped: another instance holds the lock.");
+            return;
+        }
+        try {
+            recoverStuckRefunds();
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    @Override
+    public int recoverStuckRefunds() {
+        Query query = Query.query(Criteria.where("orderStatus").is(OrderStatus.REFUND_APPROVED)
+                        .and("updatedAt").lt(Instant.now().minus(grace)))
+                .with(Sort.by(Sort.Direction.ASC, "updatedAt"))
+                .limit(batchSize);
+        query.fields().include("id");
+        List<String> orderIds = mongoTemplate.find(query, Order.class).stream().map(Order::getId).toList();
+
+        int recovered = 0;
+        for (String orderId : orderIds) {
+            try {
+                OrderResponse response = idempotencyService.execute("refund:" + orderId, "REFUND:" + orderId, idempotencyTtl,
+                        OrderResponse.class, () -> completeRefund(orderId));
+                if (response.getOrderStatus() == OrderStatus.REFUNDED) {
+                    recovered++;
+                }
+            } catch (Exception e) {
+                // ปล่อยไว้ให้รอบถัดไปลองใหม่ Order ยังอยู่ใน REFUND_APPROVED
+                log.error("Failed to recover refund for order {}; will retry on the next run.", orderId, e);
+            }
+        }
+        if (recovered > 0) {
+            log.warn("Recovered {} refunds stuck in REFUND_APPROVED.", recovered);
+        }
+        return recovered;
+    }
+
+    private OrderResponse completeRefund(String orderId) throws Exception {
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        if (order.getOrderStatus() != OrderStatus.REFUND_APPROVED) {
+            // Request อื่นปิดงานไปแล้วระหว่างที่รอ Key
+            return orderHelper.entityToResponse(order);
+        }
+        PaymentDetails paymentDetails = order.getPaymentDetails();
+        if (paymentDetails.getPaymentMethod() == PaymentMethod.PAYPAL) {
+            orderHelper.processPaypalRefund(order, paymentDetails);
+        } else {
+            paymentDetails.setProviderStatus(wasForced(order) ? "MANUALLY_REFUNDED_BY_ADMIN" : "MANUALLY_REFUNDED_APPROVED");
+        }
+        Update refundChanges = new Update()
+                .set("paymentDetails.providerStatus", paymentDetails.getProviderStatus())
+                .set("paymentDetails.transactionId", paymentDetails.getTransactionId());
+        Order refundedOrder = orderStateMachine.apply(order, OrderTransition.COMPLETE_REFUND, refundChanges,
+                "Refund completed by recovery job");
+        log.info("Refund for order {} completed by recovery job.", orderId);
+        return orderHelper.entityToResponse(refundedOrder);
+    }
+
+    private static boolean wasForced(Order order) {
+        List<OrderStatusChange> history = order.getStatusHistory();
+        return history != null && history.stream()
+                .reduce((first, second) -> second)
+                .map(change -> OrderTransition.FORCE_REFUND.name().equals(change.getTransition()))
+                .orElse(false);
+    }
+}
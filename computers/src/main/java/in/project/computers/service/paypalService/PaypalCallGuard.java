@@ -0,0 +1,198 @@
+package in.project.computers.service.paypalService;
+
+import com.paypal.base.rest.PayPalRESTException;
+import in.project.computers.exception.OutcomeUnknownException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.*;
+
+/**
+ * <h3>PayPal Call Guard</h3>
+ * <p>
+ * ห่อการเรียก {@link PaypalGateway} ทุกครั้งด้วย:
+ * <ul>
+ *     <li><b>Virtual Thread:</b> HTTP Call ที่ Block ถูกย้ายไปรันบน Virtual Thread ไม่กิน Platform Thread</li>
+ *     <li><b>Deadline:</b> รอผลไม่เกินเวลาที่กำหนดต่อประเภท Call เกินแล้วยกเลิกและตอบ 504 ({@link OutcomeUnknownException})</li>
+ *     <li><b>Bulkhead:</b> จำกัดจำนวน Call ที่ค้างอยู่กับ PayPal พร้อมกัน ({@code Semaphore})</li>
+ *     <li><b>Circuit Breaker:</b> ล้มเหลวติดกันครบเกณฑ์จะตัดวงจรและตอบ 503 ทันทีจนครบเวลาพัก แล้วปล่อย Probe หนึ่ง Call</li>
+ * </ul>
+ * ข้อผิดพลาดฝั่งธุรกิจ (4xx จาก PayPal) ไม่นับเป็นความล้มเหลวของ Gateway
+ * </p>
+ */
+@Component
+@Slf4j
+public class PaypalCallGuard {
+
+    @FunctionalInterface
+    public interface PaypalCall<T> {
+        T call() throws PayPalRESTException;
+    }
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("paypal-call-", 0).factory());
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+    private final CircuitBreaker circuitBreaker;
+
+    public PaypalCallGuard(@Value("${app.paypal.gateway.max-concurrent-calls:32}") int maxConcurrentCalls,
+                           @Value("${app.paypal.gateway.acquire-timeout:PT2S}") Duration acquireTimeout,
+                           @Value("${app.paypal.gateway.circuit.failure-threshold:5}") int failureThreshold,
+                           @Value("${app.paypal.gateway.circuit.open-duration:PT30S}") Duration openDuration) {
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.acquireTimeout = acquireTimeout;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+    }
+
+    public <T> T call(String operation, Duration deadline, PaypalCall<T> call) throws PayPalRESTException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "PayPal is temporarily unavailable. Please try again shortly.");
+        }
+        if (!acquirePermit()) {
+            circuitBreaker.releasePermission();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many pending PayPal requests. Please try again shortly.");
+        }
+
+        Future<T> future;
+        try {
+            // Permit ถูกคืนเมื่อ Call จบจริง ไม่ใช่เมื่อผู้เรียกเลิกรอ เพื่อให้จำนวน Call ที่ค้างกับ PayPal ถูกจำกัดจริง
+            future = executor.submit(() -> {
+                try {
+                    return call.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            circuitBreaker.releasePermission();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "PayPal client is shutting down.");
+        }
+
+        try {
+            T result = future.get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            circuitBreaker.onFailure();
+            log.error("PayPal call '{}' exceeded its deadline of {}.", operation, deadline);
+            // Request อาจถึง PayPal และสำเร็จไปแล้ว จึงไม่ใช่ความล้มเหลวธรรมดา (ดู OutcomeUnknownException)
+            throw new OutcomeUnknownException(
+                    "PayPal did not respond in time. Please check the payment status before retrying.");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            circuitBreaker.releasePermission();
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for PayPal.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof PayPalRESTException paypalException) {
+                if (isGatewayFailure(paypalException)) {
+                    circuitBreaker.onFailure();
+                } else {
+                    circuitBreaker.onSuccess();
+                }
+                throw paypalException;
+            }
+            circuitBreaker.onFailure();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("PayPal call '" + operation + "' failed.", cause);
+        }
+    }
+
+    private boolean acquirePermit() {
+        try {
+            return permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * ไม่มี Response Code (ต่อไม่ติด/IO) หรือ 429/5xx ถือว่า Gateway มีปัญหา
+     */
+    private boolean isGatewayFailure(PayPalRESTException e) {
+        int code = e.getResponsecode();
+        return code == 0 || code == 429 || code >= 500;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class CircuitBreaker {
+
+        private enum State { CLOSED, OPEN, HALF_OPEN }
+
+        private final int failureThreshold;
+        private final Duration openDuration;
+
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private Instant openedAt;
+        private boolean probeInFlight;
+
+        private CircuitBreaker(int failureThreshold, Duration openDuration) {
+            this.failureThreshold = failureThreshold;
+            this.openDuration = openDuration;
+        }
+
+        synchronized boolean tryAcquirePermission() {
+            if (state == State.OPEN) {
+                if (Instant.now().isBefore(openedAt.plus(openDuration))) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = false;
+                log.info("PayPal circuit breaker half-open; allowing a probe call.");
+            }
+            if (state == State.HALF_OPEN) {
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+            }
+            return true;
+        }
+
+        synchronized void releasePermission() {
+            if (state == State.HALF_OPEN) {
+                probeInFlight = false;
+            }
+        }
+
+        synchronized void onSuccess() {
+            if (state != State.CLOSED) {
+                log.info("PayPal circuit breaker closed.");
+            }
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            probeInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                if (state != State.OPEN) {
+                    log.warn("PayPal circuit breaker opened after {} consecutive failures.", consecutiveFailures);
+                }
+                state = State.OPEN;
+                openedAt = Instant.now();
+                probeInFlight = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package in.project.computers.service.paypalService;
+
+import com.paypal.api.payments.Payment;
+import com.paypal.api.payments.Refund;
+import com.paypal.api.payments.RefundRequest;
+import com.paypal.base.rest.PayPalRESTException;
+
+/**
+ * <h3>PaypalGateway Interface</h3>
+ * <p>
+ * ชั้นล่างสุดที่คุยกับ PayPal จริง (หนึ่งเมธอดต่อหนึ่ง HTTP Call) แยกออกจาก {@link PaypalService}
+ * เพื่อให้สลับเป็นตัวจำลองได้ด้วย {@code paypal.stub.enabled=true} ในการทดสอบโหลดแบบออฟไลน์
+ * </p>
+ */
+public interface PaypalGateway {
+
+    Payment create(Payment payment) throws PayPalRESTException;
+
+    Payment execute(String paymentId, String payerId) throws PayPalRESTException;
+
+    Payment get(String paymentId) throws PayPalRESTException;
+
+    Refund refund(String saleId, RefundRequest refundRequest) throws PayPalRESTException;
+}
@@ -0,0 +1,51 @@
+package in.project.computers.service.paypalService;
+
+import com.paypal.api.payments.Payment;
+import com.paypal.api.payments.PaymentExecution;
+import com.paypal.api.payments.Refund;
+import com.paypal.api.payments.RefundRequest;
+import com.paypal.api.payments.Sale;
+import com.paypal.base.rest.APIContext;
+import com.paypal.base.rest.PayPalRESTException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * เรียก PayPal REST SDK โดยตรง (Blocking HTTP) ใช้เมื่อไม่ได้เปิดตัวจำลอง
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "paypal.stub.enabled", havingValue = "false", matchIfMissing = true)
+public class PaypalSdkGateway implements PaypalGateway {
+
+    private final APIContext apiContext;
+
+    @Override
+    public Payment create(Payment payment) throws PayPalRESTException {
+        return payment.create(apiContext);
+    }
+
+    @Override
+    public Payment execute(String paymentId, String payerId) throws PayPalRESTException {
+        Payment payment = new Payment();
+        payment.setId(paymentId);
+
+        PaymentExecution paymentExecute = new PaymentExecution();
+        paymentExecute.setPayerId(payerId);
+
+        return payment.execute(apiContext, paymentExecute);
+    }
+
+    @Override
+    public Payment get(String paymentId) throws PayPalRESTException {
+        return Payment.get(apiContext, paymentId);
+    }
+
+    @Override
+    public Refund refund(String saleId, RefundRequest refundRequest) throws PayPalRESTException {
+        Sale sale = new Sale();
+        sale.setId(saleId);
+        return sale.refund(apiContext, refundRequest);
+    }
+}
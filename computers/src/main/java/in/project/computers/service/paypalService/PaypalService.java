@@ -14,6 +14,10 @@ import java.math.BigDecimal;
  * เพื่อแยก Logic การจ่ายเงินออกจาก Business Logic หลักของแอปพลิเคชัน
  * ทำให้โค้ดสะอาดและง่ายต่อการทดสอบหรือเปลี่ยนแปลงในอนาคต
  * </p>
+ * <p>
+ * ทุกเมธอดเรียก PayPal ผ่าน {@link PaypalCallGuard} จึงอาจโยน {@code ResponseStatusException}
+ * 503 (Circuit เปิด/คิวเต็ม) หรือ 504 (เกิน Deadline) นอกเหนือจาก {@link PayPalRESTException}
+ * </p>
  */
 public interface PaypalService {
 
@@ -21,5 +25,7 @@ public interface PaypalService {
 
     Payment executePayment(String paymentId, String payerId) throws PayPalRESTException;
 
+    Payment getPayment(String paymentId) throws PayPalRESTException;
+
     Refund refundPayment(String saleId, BigDecimal amount, String currency) throws PayPalRESTException;
 }
\ No newline at end of file
@@ -1,7 +1,6 @@
 package in.project.computers.service.paypalService;
 
 import com.paypal.api.payments.*;
-import com.paypal.base.rest.APIContext;
 import com.paypal.base.rest.PayPalRESTException;
 import in.project.computers.entity.order.LineItemType;
 import in.project.computers.entity.order.Order;
@@ -9,10 +8,12 @@ import in.project.computers.entity.order.OrderLineItem;
 import in.project.computers.entity.order.OrderItemSnapshot;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,7 +22,21 @@ import java.util.List;
 @Slf4j
 public class PaypalServiceImpl implements PaypalService {
 
-    private final APIContext apiContext;
+    private final PaypalGateway paypalGateway;
+    private final PaypalCallGuard callGuard;
+
+    // Deadline ต่อประเภท Call: Execute/Refund ให้เวลามากกว่าเพราะเป็นการเคลื่อนย้ายเงินจริง
+    @Value("${app.paypal.gateway.timeout.create:PT10S}")
+    private Duration createTimeout;
+
+    @Value("${app.paypal.gateway.timeout.execute:PT20S}")
+    private Duration executeTimeout;
+
+    @Value("${app.paypal.gateway.timeout.lookup:PT10S}")
+    private Duration lookupTimeout;
+
+    @Value("${app.paypal.gateway.timeout.refund:PT20S}")
+    private Duration refundTimeout;
 
     @Override
     public Payment createPayment(Order order, String intent, String description, String cancelUrl, String successUrl) throws PayPalRESTException {
@@ -41,7 +56,7 @@ public class PaypalServiceImpl implements PaypalService {
         redirectUrls.setReturnUrl(successUrl);
         payment.setRedirectUrls(redirectUrls);
 
-        return payment.create(apiContext);
+        return callGuard.call("createPayment", createTimeout, () -> paypalGateway.create(payment));
     }
 
 
@@ -141,20 +156,16 @@ public class PaypalServiceImpl implements PaypalService {
 
     @Override
     public Payment executePayment(String paymentId, String payerId) throws PayPalRESTException {
-        Payment payment = new Payment();
-        payment.setId(paymentId);
-
-        PaymentExecution paymentExecute = new PaymentExecution();
-        paymentExecute.setPayerId(payerId);
+        return callGuard.call("executePayment", executeTimeout, () -> paypalGateway.execute(paymentId, payerId));
+    }
 
-        return payment.execute(apiContext, paymentExecute);
+    @Override
+    public Payment getPayment(String paymentId) throws PayPalRESTException {
+        return callGuard.call("getPayment", lookupTimeout, () -> paypalGateway.get(paymentId));
     }
 
     @Override
     public Refund refundPayment(String saleId, BigDecimal amount, String currency) throws PayPalRESTException {
-        Sale sale = new Sale();
-        sale.setId(saleId);
-
         RefundRequest refundRequest = new RefundRequest();
 
         if (amount != null) {
@@ -168,7 +179,7 @@ public class PaypalServiceImpl implements PaypalService {
         }
 
         try {
-            Refund refund = sale.refund(apiContext, refundRequest);
+            Refund refund = callGuard.call("refundPayment", refundTimeout, () -> paypalGateway.refund(saleId, refundRequest));
             log.info("PayPal refund API call successful for Sale ID: {}. Refund ID: {}, State: {}",
                     saleId, refund.getId(), refund.getState());
             return refund;
@@ -0,0 +1,147 @@
+package in.project.computers.service.paypalService;
+
+import com.paypal.api.payments.*;
+import com.paypal.base.rest.PayPalRESTException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <h3>Stub PayPal Gateway</h3>
+ * <p>
+ * ตัวจำลอง PayPal ในหน่วยความจำ เปิดใช้ด้วย {@code paypal.stub.enabled=true}
+ * ใส่ความหน่วง ({@code paypal.stub.latency} + สุ่ม {@code paypal.stub.jitter}) และอัตราความล้มเหลวแบบ 5xx
+ * เพื่อทดสอบ Timeout / Circuit Breaker / Bulkhead ของ {@link PaypalCallGuard} ได้โดยไม่ต้องต่อ Sandbox
+ * </p>
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "paypal.stub.enabled", havingValue = "true")
+public class StubPaypalGateway implements PaypalGateway {
+
+    private final Map<String, Payment> payments = new ConcurrentHashMap<>();
+
+    @Value("${paypal.stub.latency:PT0.2S}")
+    private Duration latency;
+
+    @Value("${paypal.stub.jitter:PT0.1S}")
+    private Duration jitter;
+
+    @Value("${paypal.stub.failure-rate:0.0}")
+    private double failureRate;
+
+    @Override
+    public Payment create(Payment payment) throws PayPalRESTException {
+        simulateNetwork("create");
+        String paymentId = "PAYID-STUB-" + UUID.randomUUID();
+        payment.setId(paymentId);
+        payment.setState("created");
+
+        // จำลองการกลับมาจากหน้า PayPal: Return URL พร้อม paymentId และ PayerID
+        String approvalUrl = UriComponentsBuilder.fromUriString(payment.getRedirectUrls().getReturnUrl())
+                .queryParam("paymentId", paymentId)
+                .queryParam("PayerID", "STUB-PAYER")
+                .toUriString();
+        Links approvalLink = new Links();
+        approvalLink.setHref(approvalUrl);
+        approvalLink.setRel("approval_url");
+        payment.setLinks(List.of(approvalLink));
+
+        payments.put(paymentId, payment);
+        return payment;
+    }
+
+    @Override
+    public Payment execute(String paymentId, String payerId) throws PayPalRESTException {
+        simulateNetwork("execute");
+        Payment payment = payments.computeIfAbsent(paymentId, id -> {
+            Payment unknown = new Payment();
+            unknown.setId(id);
+            return unknown;
+        });
+
+        PayerInfo payerInfo = new PayerInfo();
+        payerInfo.setPayerId(payerId);
+        payerInfo.setEmail("stub-buyer@example.com");
+        Payer payer = new Payer();
+        payer.setPaymentMethod("paypal");
+        payer.setPayerInfo(payerInfo);
+
+        Sale sale = new Sale();
+        sale.setId("SALE-STUB-" + UUID.randomUUID());
+        sale.setState("completed");
+        RelatedResources relatedResources = new RelatedResources();
+        relatedResources.setSale(sale);
+        Transaction transaction = new Transaction();
+        transaction.setRelatedResources(List.of(relatedResources));
+
+        payment.setPayer(payer);
+        payment.setTransactions(List.of(transaction));
+        payment.setState("approved");
+        return payment;
+    }
+
+    @Override
+    public Payment get(String paymentId) throws PayPalRESTException {
+        simulateNetwork("get");
+        Payment payment = payments.get(paymentId);
+        if (payment == null) {
+            PayPalRESTException notFound = new PayPalRESTException("Stub payment not found: " + paymentId);
+            notFound.setResponsecode(404);
+            throw notFound;
+        }
+        return payment;
+    }
+
+    @Override
+    public Refund refund(String saleId, RefundRequest refundRequest) throws PayPalRESTException {
+        simulateNetwork("refund");
+        Refund refund = new Refund();
+        refund.setId("REFUND-STUB-" + UUID.randomUUID());
+        refund.setSaleId(saleId);
+        refund.setState("completed");
+
+        // บันทึก Refund ลง Related Resources ของ Payment เหมือน PayPal จริง เพื่อให้ get() เห็นรายการคืนเงินที่ทำไปแล้ว
+        payments.values().stream()
+                .filter(payment -> payment.getTransactions() != null && !payment.getTransactions().isEmpty())
+                .map(payment -> payment.getTransactions().getFirst())
+                .filter(transaction -> transaction.getRelatedResources().stream()
+                        .anyMatch(resources -> resources.getSale() != null && saleId.equals(resources.getSale().getId())))
+                .findFirst()
+                .ifPresent(transaction -> {
+                    RelatedResources refundResource = new RelatedResources();
+                    refundResource.setRefund(refund);
+                    List<RelatedResources> resources = new ArrayList<>(transaction.getRelatedResources());
+                    resources.add(refundResource);
+                    transaction.setRelatedResources(resources);
+                });
+        return refund;
+    }
+
+    private void simulateNetwork(String operation) throws PayPalRESTException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delayMillis = latency.toMillis() + (jitter.isZero() ? 0 : random.nextLong(jitter.toMillis() + 1));
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PayPalRESTException("Stub PayPal call interrupted: " + operation, e);
+        }
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            log.debug("Stub PayPal injecting failure for operation '{}'.", operation);
+            PayPalRESTException failure = new PayPalRESTException("Stub PayPal injected failure: " + operation);
+            failure.setResponsecode(503);
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package in.project.computers.service.schedulerService;
+
+import java.time.Duration;
+
+/**
+ * <h3>Scheduler Lock Service</h3>
+ * <p>
+ * Lock แบบมีอายุบน MongoDB สำหรับงาน {@code @Scheduled} ที่ต้องรันเพียง Instance เดียวต่อรอบ
+ * </p>
+ */
+public interface SchedulerLockService {
+
+    /**
+     * พยายามถือ Lock ของงาน
+     *
+     * @param name  ชื่องาน
+     * @param lease อายุของ Lock (ควรนานกว่าเวลาที่งานใช้ตามปกติ)
+     * @return {@code true} หากได้ Lock
+     */
+    boolean tryAcquire(String name, Duration lease);
+
+    /**
+     * ปล่อย Lock ที่ Instance นี้ถืออยู่ (ไม่มีผลหาก Lock ถูก Instance อื่นถือไปแล้ว)
+     */
+    void release(String name);
+}
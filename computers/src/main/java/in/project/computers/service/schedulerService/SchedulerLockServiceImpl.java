@@ -0,0 +1,54 @@
+package in.project.computers.service.schedulerService;
+
+import in.project.computers.entity.scheduler.SchedulerLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SchedulerLockServiceImpl implements SchedulerLockService {
+
+    private final MongoTemplate mongoTemplate;
+
+    // ระบุตัวตนของ Instance นี้ เพื่อให้ปล่อยได้เฉพาะ Lock ของตัวเอง
+    private final String owner = UUID.randomUUID().toString();
+
+    @Override
+    public boolean tryAcquire(String name, Duration lease) {
+        Instant now = Instant.now();
+        // Upsert ได้เฉพาะเมื่อ Lock หมดอายุแล้วหรือยังไม่เคยมี หากยังถูกถืออยู่ การ Insert จะชน _id
+        Query query = Query.query(Criteria.where("name").is(name).and("lockedUntil").lte(now));
+        Update update = new Update()
+                .set("owner", owner)
+                .set("lockedAt", now)
+                .set("lockedUntil", now.plus(lease));
+        try {
+            SchedulerLock lock = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), SchedulerLock.class);
+            return lock != null && owner.equals(lock.getOwner());
+        } catch (DuplicateKeyException e) {
+            log.debug("Scheduler lock '{}' is held by another instance.", name);
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String name) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("name").is(name).and("owner").is(owner)),
+                Update.update("lockedUntil", Instant.now()),
+                SchedulerLock.class);
+    }
+}
@@ -0,0 +1,231 @@
+package in.project.computers.service.cartService;
+
+import com.paypal.base.rest.APIContext;
+import in.project.computers.dto.cart.AddItemToCartRequest;
+import in.project.computers.dto.cart.CartResponse;
+import in.project.computers.dto.cart.UpdateCartItemRequest;
+import in.project.computers.entity.component.Gpu;
+import in.project.computers.entity.component.Inventory;
+import in.project.computers.entity.order.Cart;
+import in.project.computers.entity.order.LineItemType;
+import in.project.computers.repository.ComponentRepo.ComponentRepository;
+import in.project.computers.repository.ComponentRepo.InventoryRepository;
+import in.project.computers.repository.generalRepo.CartRepository;
+import in.project.computers.service.userAuthenticationService.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * ตรวจสอบว่าการแก้ไขตะกร้าพร้อมกันหลาย Request (เช่น หลายแท็บ) ไม่ทำให้รายการหายหรือจำนวนผิด
+ */
+@SpringBootTest
+class CartServiceContentionTest {
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private ComponentRepository componentRepository;
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @MockitoBean
+    private UserService userService;
+    @MockitoBean
+    private APIContext apiContext;
+
+    private final String userId = "contention-test-" + UUID.randomUUID();
+    private final List<String> componentIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(userService.findByUserId()).thenReturn(userId);
+        for (int i = 0; i < THREADS; i++) {
+            Gpu gpu = componentRepository.save(Gpu.builder()
+                    .mpn("TEST-GPU-" + UUID.randomUUID())
+                    .name("Contention Test GPU " + i)
+                    .type("gpu")
+                    .isActive(true)
+                    .build());
+            inventoryRepository.save(Inventory.builder()
+                    .componentId(gpu.getId())
+                    .quantity(10_000)
+                    .price(new BigDecimal("100.00"))
+                    .build());
+            componentIds.add(gpu.getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartRepository.findByUserId(userId).ifPresent(cartRepository::delete);
+        componentIds.forEach(id -> inventoryRepository.findByComponentId(id).ifPresent(inventoryRepository::delete));
+        componentRepository.deleteAllById(componentIds);
+    }
+
+    @Test
+    void concurrentAddsOfSameProductAreNotLost() throws Exception {
+        String productId = componentIds.getFirst();
+        AtomicInteger applied = new AtomicInteger();
+
+        runConcurrently(THREADS, threadIndex -> {
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                if (addIgnoringConflict(addRequest(productId, 1))) {
+                    applied.incrementAndGet();
+                }
+            }
+        });
+
+        Cart cart = cartRepository.findByUserId(userId).orElseThrow();
+        assertThat(cart.getItems()).hasSize(1);
+        // ทุกการเพิ่มที่สำเร็จถูกนับ และที่แพ้ Version guard ได้ 409 โดยไม่เปลี่ยนจำนวน
+        assertThat(applied.get()).isPositive();
+        assertThat(cart.getItems().getFirst().getQuantity()).isEqualTo(applied.get());
+    }
+
+    @Test
+    void concurrentIncrementsOfExistingItemDoNotExceedStock() throws Exception {
+        String productId = componentIds.getFirst();
+        Inventory inventory = inventoryRepository.findByComponentId(productId).orElseThrow();
+        inventory.setQuantity(10);
+        inventoryRepository.save(inventory);
+        cartService.addItemToCart(addRequest(productId, 1));
+        AtomicInteger applied = new AtomicInteger();
+
+        // ทุก Thread เข้า Branch $inc ของรายการที่มีอยู่แล้ว
+        runConcurrently(THREADS, threadIndex -> {
+            if (addIgnoringConflict(addRequest(productId, 2))) {
+                applied.incrementAndGet();
+            }
+        });
+
+        Cart cart = cartRepository.findByUserId(userId).orElseThrow();
+        int quantity = cart.getItems().getFirst().getQuantity();
+        assertThat(quantity).isEqualTo(1 + 2 * applied.get());
+        assertThat(quantity).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void concurrentAddsOfDifferentProductsAreAllKept() throws Exception {
+        runConcurrently(THREADS, threadIndex -> cartService.addItemToCart(addRequest(componentIds.get(threadIndex), 2)));
+
+        Cart cart = cartRepository.findByUserId(userId).orElseThrow();
+        assertThat(cart.getItems()).hasSize(THREADS);
+        assertThat(cart.getItems()).allSatisfy(item -> assertThat(item.getQuantity()).isEqualTo(2));
+    }
+
+    @Test
+    void concurrentRemoveAndAddKeepTheNewItem() throws Exception {
+        CartResponse initial = cartService.addItemToCart(addRequest(componentIds.get(0), 1));
+        String itemToRemove = initial.getItems().getFirst().getCartItemId();
+
+        runConcurrently(2, threadIndex -> {
+            if (threadIndex == 0) {
+                cartService.removeItemFromCart(itemToRemove);
+            } else {
+                cartService.addItemToCart(addRequest(componentIds.get(1), 1));
+            }
+        });
+
+        Cart cart = cartRepository.findByUserId(userId).orElseThrow();
+        assertThat(cart.getItems()).extracting("productId").containsExactly(componentIds.get(1));
+    }
+
+    @Test
+    void absoluteQuantityUpdateDoesNotOverwriteConcurrentAdds() throws Exception {
+        CartResponse initial = cartService.addItemToCart(addRequest(componentIds.get(0), 1));
+        String cartItemId = initial.getItems().getFirst().getCartItemId();
+        UpdateCartItemRequest update = new UpdateCartItemRequest();
+        update.setQuantity(5);
+
+        AtomicBoolean updateApplied = new AtomicBoolean(false);
+
+        runConcurrently(THREADS, threadIndex -> {
+            if (threadIndex == 0) {
+                try {
+                    cartService.updateItemInCart(cartItemId, update);
+                    updateApplied.set(true);
+                } catch (ResponseStatusException e) {
+                    // แพ้ Version guard ครบทุกครั้ง: ได้ 409 แทนการเขียนทับ
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+                }
+            } else {
+                cartService.addItemToCart(addRequest(componentIds.get(threadIndex), 1));
+            }
+        });
+
+        Cart cart = cartRepository.findByUserId(userId).orElseThrow();
+        assertThat(cart.getItems()).hasSize(THREADS);
+        assertThat(cart.getItems().getFirst().getQuantity()).isEqualTo(updateApplied.get() ? 5 : 1);
+    }
+
+    // 409 = แพ้ Version guard ครบทุกรอบ หรือสต็อกไม่พอ (ทั้งสองกรณีต้องไม่มีการเขียน)
+    private boolean addIgnoringConflict(AddItemToCartRequest request) {
+        try {
+            cartService.addItemToCart(request);
+            return true;
+        } catch (ResponseStatusException e) {
+            assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+            return false;
+        }
+    }
+
+    private AddItemToCartRequest addRequest(String productId, int quantity) {
+        AddItemToCartRequest request = new AddItemToCartRequest();
+        request.setProductId(productId);
+        request.setItemType(LineItemType.COMPONENT);
+        request.setQuantity(quantity);
+        return request;
+    }
+
+    private void runConcurrently(int threads, ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int threadIndex = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(threadIndex);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int threadIndex) throws Exception;
+    }
+}
@@ -0,0 +1,73 @@
+package in.project.computers.service.concurrency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StructuredFanOutTest {
+
+    private final StructuredFanOut fanOut = new StructuredFanOut();
+
+    @AfterEach
+    void tearDown() {
+        fanOut.shutdown();
+    }
+
+    @Test
+    void runsTasksInParallel() {
+        long startedAt = System.nanoTime();
+        try (StructuredFanOut.Scope scope = fanOut.open("test", Duration.ofSeconds(5))) {
+            Supplier<String> first = scope.fork(() -> sleepAndReturn(300, "a"));
+            Supplier<String> second = scope.fork(() -> sleepAndReturn(300, "b"));
+            Supplier<String> third = scope.fork(() -> sleepAndReturn(300, "c"));
+            scope.join();
+            assertThat(first.get() + second.get() + third.get()).isEqualTo("abc");
+        }
+        // ใกล้เคียงงานที่ช้าที่สุด (300 ms) ไม่ใช่ผลรวม (900 ms)
+        assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(Duration.ofMillis(800));
+    }
+
+    @Test
+    void failureCancelsRemainingTasks() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try (StructuredFanOut.Scope scope = fanOut.open("test", Duration.ofSeconds(5))) {
+            scope.fork(() -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            });
+            scope.fork(() -> {
+                throw new IllegalArgumentException("boom");
+            });
+            assertThatThrownBy(scope::join).isInstanceOf(IllegalArgumentException.class).hasMessage("boom");
+        }
+        assertThat(interrupted.await(2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void deadlineExceededRespondsWithGatewayTimeout() {
+        try (StructuredFanOut.Scope scope = fanOut.open("test", Duration.ofMillis(100))) {
+            scope.fork(() -> sleepAndReturn(5_000, "late"));
+            assertThatThrownBy(scope::join)
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+        }
+    }
+
+    private static String sleepAndReturn(long millis, String value) throws InterruptedException {
+        Thread.sleep(millis);
+        return value;
+    }
+}
@@ -0,0 +1,297 @@
+package in.project.computers.service.dashboard;
+
+import in.project.computers.dto.dashboard.DashboardResponse;
+import in.project.computers.entity.component.Component;
+import in.project.computers.entity.dashboard.SalesDaily;
+import in.project.computers.entity.order.*;
+import in.project.computers.repository.ComponentRepo.ComponentRepository;
+import in.project.computers.repository.ComponentRepo.InventoryRepository;
+import in.project.computers.repository.generalRepo.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * ตรวจสอบว่า Dashboard ที่อ่านจาก Rollup รายวัน ({@code sales_daily}) ให้ตัวเลขเดียวกับการคำนวณด้วย Java Stream แบบเดิม
+ * (โหลด Order ทั้งช่วงเข้ามาแล้วคำนวณใน JVM) และการอัปเดตทีละรายการให้ผลเท่ากับการ Rebuild
+ * <p>
+ * ใช้ Database แยกต่อการรัน (ลบทิ้งหลังแต่ละ Test) จึงไม่ปะปนหรือทิ้งข้อมูลไว้ใน Database ของ SPRING_DATA_MONGODB_URI
+ * </p>
+ */
+@SpringBootTest
+class DashboardRollupEquivalenceTest {
+
+    private static final Instant START = Instant.parse("2001-03-01T00:00:00Z");
+    private static final Instant END = Instant.parse("2001-03-15T23:59:59.999Z");
+    private static final LocalDate FIXTURE_FROM = LocalDate.parse("2001-02-01");
+    private static final LocalDate FIXTURE_TO = LocalDate.parse("2001-03-31");
+    private static final double TOLERANCE = 1e-6;
+
+    @DynamicPropertySource
+    static void isolatedDatabase(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.database", () -> "dashboard_rollup_test_" + UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    @Autowired
+    private DashboardService dashboardService;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private ComponentRepository componentRepository;
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        // บางรายการมี Component ID (Key ของ Rollup) บางรายการไม่มี (Snapshot เก่า ใช้ Key จากชื่อ)
+        OrderItemSnapshot cpu = part("cpu-" + suffix, "Test CPU " + suffix, 1);
+        OrderItemSnapshot ram = part("Test RAM " + suffix, 3);
+
+        // ช่วงปัจจุบัน: ชำระแล้วหลายวัน, มี Build, มีสถานะที่นับเป็น Pending และที่ยังไม่ชำระ
+        save(START.plus(1, ChronoUnit.HOURS), "1250.50", PaymentStatus.COMPLETED, OrderStatus.PROCESSING,
+                component("gpu-" + suffix, "Test GPU " + suffix, 3));
+        save(START.plus(1, ChronoUnit.DAYS).plus(5, ChronoUnit.HOURS), "899.99", PaymentStatus.COMPLETED, OrderStatus.COMPLETED,
+                component("ssd-" + suffix, "Test SSD " + suffix, 7), build("Test Build " + suffix, 2, cpu, ram));
+        save(START.plus(1, ChronoUnit.DAYS).plus(9, ChronoUnit.HOURS), "100.01", PaymentStatus.COMPLETED, OrderStatus.REFUND_REQUESTED,
+                component("gpu-" + suffix, "Test GPU " + suffix, 1));
+        save(START.plus(4, ChronoUnit.DAYS), "4321.00", PaymentStatus.COMPLETED, OrderStatus.SHIPPED,
+                component("Test PSU " + suffix, 11), component("Test Case " + suffix, 5));
+        save(START.plus(6, ChronoUnit.DAYS), "55.55", PaymentStatus.PENDING, OrderStatus.PENDING_PAYMENT,
+                component("Test Fan " + suffix, 20));
+        save(START.plus(7, ChronoUnit.DAYS), "77.70", PaymentStatus.FAILED, OrderStatus.CANCELLED,
+                component("Test Fan " + suffix, 30));
+        save(START.plus(9, ChronoUnit.DAYS), "600.00", PaymentStatus.PENDING_APPROVAL, OrderStatus.PENDING_PAYMENT,
+                component("Test Cooler " + suffix, 6));
+
+        // ช่วงก่อนหน้า (2001-02-15 ถึง 2001-03-01)
+        save(START.minus(3, ChronoUnit.DAYS), "999.00", PaymentStatus.COMPLETED, OrderStatus.COMPLETED,
+                component("gpu-" + suffix, "Test GPU " + suffix, 2));
+        save(START.minus(10, ChronoUnit.DAYS), "10.00", PaymentStatus.REFUNDED, OrderStatus.REFUNDED,
+                component("ssd-" + suffix, "Test SSD " + suffix, 1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.getDb().drop();
+    }
+
+    @Test
+    void rollupDashboardMatchesInMemoryCalculation() {
+        salesRollupService.rebuild(FIXTURE_FROM, FIXTURE_TO);
+        DashboardResponse expected = legacyDashboard(START, END);
+        DashboardResponse actual = dashboardService.getDashboardData(START, END);
+
+        DashboardResponse.Stats expectedStats = expected.getStats();
+        DashboardResponse.Stats actualStats = actual.getStats();
+        assertThat(actualStats.getTotalRevenue()).isCloseTo(expectedStats.getTotalRevenue(), within(TOLERANCE));
+        assertThat(actualStats.getRevenueChange()).isCloseTo(expectedStats.getRevenueChange(), within(TOLERANCE));
+        assertThat(actualStats.getTotalSales()).isEqualTo(expectedStats.getTotalSales());
+        assertThat(actualStats.getSalesChange()).isCloseTo(expectedStats.getSalesChange(), within(TOLERANCE));
+        assertThat(actualStats.getPendingOrders()).isEqualTo(expectedStats.getPendingOrders());
+        assertThat(actualStats.getAlerts()).isEqualTo(expectedStats.getAlerts());
+        assertThat(actualStats.getProducts()).isEqualTo(expectedStats.getProducts());
+
+        assertChartEquals(actual.getRevenueChartData(), expected.getRevenueChartData());
+        assertChartEquals(actual.getTopSellingData(), expected.getTopSellingData());
+
+        assertThat(actualStats.getTotalSales()).isEqualTo(7);
+        assertThat(actualStats.getPendingOrders()).isEqualTo(2);
+        assertThat(actual.getTopSellingData()).hasSize(5);
+    }
+
+    @Test
+    void incrementalUpdatesMatchRebuild() {
+        Instant createdAt = START.plus(12, ChronoUnit.DAYS);
+        LocalDate day = salesRollupService.dayOf(createdAt);
+        salesRollupService.rebuild(day, day);
+
+        Order order = orderRepository.findById(save(createdAt, "321.09", PaymentStatus.PENDING, OrderStatus.PENDING_PAYMENT,
+                component("incremental-gpu", "Incremental GPU", 2), build("Incremental Build", 3, part("Incremental CPU", 1)))).orElseThrow();
+        salesRollupService.recordOrderCreated(order);
+        // ชำระเงิน -> ขอคืนเงิน (Pending) -> คืนเงินแล้ว: รายได้และจำนวนชิ้นต้องถูกหักกลับ
+        salesRollupService.recordTransition(order, OrderStatus.PROCESSING, PaymentStatus.COMPLETED);
+        order.setOrderStatus(OrderStatus.PROCESSING);
+        order.setPaymentStatus(PaymentStatus.COMPLETED);
+        salesRollupService.recordTransition(order, OrderStatus.REFUND_REQUESTED, PaymentStatus.COMPLETED);
+        SalesDaily whilePending = salesRollupService.findDays(day, day).getFirst();
+        assertThat(whilePending.getPending()).isEqualTo(1);
+        assertThat(whilePending.getRevenue()).isEqualByComparingTo("321.09");
+        assertThat(whilePending.getUnits()).containsKey("incremental-gpu");
+        assertThat(whilePending.getUnits().get("incremental-gpu").getQuantity()).isEqualTo(2);
+
+        order.setOrderStatus(OrderStatus.REFUND_REQUESTED);
+        salesRollupService.recordTransition(order, OrderStatus.REFUNDED, PaymentStatus.REFUNDED);
+        order.setOrderStatus(OrderStatus.REFUNDED);
+        order.setPaymentStatus(PaymentStatus.REFUNDED);
+        orderRepository.save(order);
+
+        SalesDaily incremental = salesRollupService.findDays(day, day).getFirst();
+        salesRollupService.rebuild(day, day);
+        SalesDaily rebuilt = salesRollupService.findDays(day, day).getFirst();
+
+        assertThat(incremental.getOrders()).isEqualTo(rebuilt.getOrders()).isEqualTo(1);
+        assertThat(incremental.getPaidOrders()).isEqualTo(rebuilt.getPaidOrders()).isZero();
+        assertThat(incremental.getPending()).isEqualTo(rebuilt.getPending()).isZero();
+        assertThat(incremental.getRevenue()).isEqualByComparingTo(rebuilt.getRevenue()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(incremental.getUnits().values()).allMatch(unit -> unit.getQuantity() == 0);
+    }
+
+    private void assertChartEquals(List<DashboardResponse.ChartData> actual, List<DashboardResponse.ChartData> expected) {
+        assertThat(actual).extracting(DashboardResponse.ChartData::getName)
+                .containsExactlyElementsOf(expected.stream().map(DashboardResponse.ChartData::getName).toList());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getValue()).isCloseTo(expected.get(i).getValue(), within(TOLERANCE));
+        }
+    }
+
+    // --- การคำนวณแบบเดิม (โหลด Order ทั้งหมดในช่วงแล้วคำนวณด้วย Java Stream) ใช้เป็นค่าอ้างอิง ---
+
+    private DashboardResponse legacyDashboard(Instant startDate, Instant endDate) {
+        List<Order> ordersInRange = orderRepository.findByCreatedAtBetween(startDate, endDate);
+        long durationInDays = Math.max(1, ChronoUnit.DAYS.between(startDate, endDate));
+        List<Order> prevOrdersInRange = orderRepository.findByCreatedAtBetween(startDate.minus(durationInDays, ChronoUnit.DAYS), startDate);
+
+        double totalRevenue = revenue(ordersInRange);
+        long totalSales = ordersInRange.size();
+        double prevTotalRevenue = revenue(prevOrdersInRange);
+        long prevTotalSales = prevOrdersInRange.size();
+        double revenueChange = (prevTotalRevenue > 0) ? ((totalRevenue - prevTotalRevenue) / prevTotalRevenue) * 100 : (totalRevenue > 0 ? 100 : 0);
+        double salesChange = (prevTotalSales > 0) ? (((double) totalSales - prevTotalSales) / prevTotalSales) * 100 : (totalSales > 0 ? 100 : 0);
+        List<OrderStatus> pendingStatuses = List.of(OrderStatus.PROCESSING, OrderStatus.REFUND_REQUESTED);
+
+        Set<String> componentIds = componentRepository.findAll().stream().map(Component::getId).collect(Collectors.toSet());
+        long lowStockAlerts = inventoryRepository.findAll().stream()
+                .filter(inv -> inv.getQuantity() < 10 && inv.getQuantity() > 0)
+                .filter(inv -> componentIds.contains(inv.getComponentId()))
+                .count();
+        return DashboardResponse.builder()
+                .stats(DashboardResponse.Stats.builder()
+                        .totalRevenue(totalRevenue)
+                        .revenueChange(revenueChange)
+                        .totalSales(totalSales)
+                        .salesChange(salesChange)
+                        .pendingOrders(ordersInRange.stream().filter(o -> pendingStatuses.contains(o.getOrderStatus())).count())
+                        .alerts(lowStockAlerts)
+                        .products(componentIds.size())
+                        .build())
+                .revenueChartData(legacyRevenueChart(ordersInRange))
+                .topSellingData(legacyTopSelling(ordersInRange))
+                .build();
+    }
+
+    private double revenue(List<Order> orders) {
+        return orders.stream()
+                .filter(o -> o.getPaymentStatus() == PaymentStatus.COMPLETED)
+                .mapToDouble(o -> o.getTotalAmount().doubleValue()).sum();
+    }
+
+    private List<DashboardResponse.ChartData> legacyRevenueChart(List<Order> orders) {
+        // Rollup แบ่งวันตาม app.dashboard.rollup.zone (UTC) ให้ตรงกับช่วงวันที่ที่ DashboardController ส่งมา
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+        Map<String, BigDecimal> revenueByDate = orders.stream()
+                .filter(o -> o.getPaymentStatus() == PaymentStatus.COMPLETED)
+                .collect(Collectors.groupingBy(
+                        order -> formatter.format(order.getCreatedAt()),
+                        Collectors.reducing(BigDecimal.ZERO, Order::getTotalAmount, BigDecimal::add)));
+        return revenueByDate.entrySet().stream()
+                .map(entry -> DashboardResponse.ChartData.builder().name(entry.getKey()).value(entry.getValue().doubleValue()).build())
+                .sorted(Comparator.comparing(DashboardResponse.ChartData::getName))
+                .toList();
+    }
+
+    private List<DashboardResponse.ChartData> legacyTopSelling(List<Order> orders) {
+        Map<String, Integer> componentQuantities = new HashMap<>();
+        orders.stream()
+                .filter(order -> order.getPaymentStatus() == PaymentStatus.COMPLETED)
+                .flatMap(order -> order.getLineItems().stream())
+                .forEach(item -> {
+                    if (item.getItemType() == LineItemType.COMPONENT) {
+                        componentQuantities.merge(item.getName(), item.getQuantity(), Integer::sum);
+                    } else if (item.getItemType() == LineItemType.BUILD && item.getContainedItems() != null) {
+                        item.getContainedItems().forEach(part ->
+                                componentQuantities.merge(part.getName(), part.getQuantity() * item.getQuantity(), Integer::sum));
+                    }
+                });
+        return componentQuantities.entrySet().stream()
+                .map(entry -> DashboardResponse.ChartData.builder().name(entry.getKey()).value(entry.getValue()).build())
+                .sorted(Comparator.comparingDouble(DashboardResponse.ChartData::getValue).reversed())
+                .limit(5)
+                .toList();
+    }
+
+    // --- Fixtures ---
+
+    private String save(Instant createdAt, String total, PaymentStatus paymentStatus, OrderStatus orderStatus, OrderLineItem... items) {
+        Order order = orderRepository.save(Order.builder()
+                .userId("dashboard-test")
+                .email("dashboard-test@example.com")
+                .lineItems(List.of(items))
+                .totalAmount(new BigDecimal(total))
+                .taxAmount(BigDecimal.ZERO)
+                .currency("THB")
+                .orderStatus(orderStatus)
+                .paymentStatus(paymentStatus)
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .build());
+        return order.getId();
+    }
+
+    private OrderLineItem component(String name, int quantity) {
+        return component(null, name, quantity);
+    }
+
+    private OrderLineItem component(String componentId, String name, int quantity) {
+        return OrderLineItem.builder()
+                .itemType(LineItemType.COMPONENT)
+                .componentId(componentId)
+                .name(name)
+                .quantity(quantity)
+                .unitPrice(BigDecimal.TEN)
+                .build();
+    }
+
+    private OrderLineItem build(String name, int quantity, OrderItemSnapshot... parts) {
+        return OrderLineItem.builder()
+                .itemType(LineItemType.BUILD)
+                .name(name)
+                .quantity(quantity)
+                .unitPrice(BigDecimal.TEN)
+                .containedItems(List.of(parts))
+                .build();
+    }
+
+    private OrderItemSnapshot part(String name, int quantity) {
+        return part(null, name, quantity);
+    }
+
+    private OrderItemSnapshot part(String componentId, String name, int quantity) {
+        return OrderItemSnapshot.builder()
+                .componentId(componentId)
+                .name(name)
+                .quantity(quantity)
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package in.project.computers.service.dashboard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ตรวจสอบว่า Top-K แบบแม่นยำให้ผลเท่ากับการรวมทั้งหมดแล้วเรียง และแบบ Count-Min Sketch
+ * ยังหาสินค้าขายดีจริงเจอในข้อมูลที่เบ้ (ยอดเป็นค่าประมาณที่ไม่ต่ำกว่าค่าจริง)
+ */
+class TopKCounterTest {
+
+    @Test
+    void exactCounterMatchesFullSort() {
+        Random random = new Random(42);
+        Map<String, Long> totals = new HashMap<>();
+        TopKCounter counter = new TopKCounter(5, null);
+        for (int i = 0; i < 5_000; i++) {
+            String key = "c" + random.nextInt(300);
+            long quantity = 1 + random.nextInt(4);
+            totals.merge(key, quantity, Long::sum);
+            counter.add(key, "Component " + key, quantity);
+        }
+
+        List<TopKCounter.Candidate> expected = totals.entrySet().stream()
+                .map(entry -> new TopKCounter.Candidate(entry.getKey(), "Component " + entry.getKey(), entry.getValue()))
+                .sorted(TopKCounter.RANKING)
+                .limit(5)
+                .toList();
+        assertThat(counter.top()).containsExactlyElementsOf(expected);
+        assertThat(counter.isEstimated()).isFalse();
+    }
+
+    @Test
+    void sketchCounterFindsHeavyHitters() {
+        Random random = new Random(7);
+        Map<String, Long> totals = new HashMap<>();
+        TopKCounter counter = new TopKCounter(3, new CountMinSketch(1024, 5));
+        for (int i = 0; i < 20_000; i++) {
+            // สามรายการแรกขายดีกว่ารายการอื่นมาก รายการที่เหลือกระจายแบบสุ่ม
+            String key = i % 4 == 0 ? "hot" + (i % 3) : "c" + random.nextInt(5_000);
+            totals.merge(key, 1L, Long::sum);
+            counter.add(key, key, 1);
+        }
+
+        List<TopKCounter.Candidate> top = counter.top();
+        assertThat(top).extracting(TopKCounter.Candidate::key).containsExactlyInAnyOrder("hot0", "hot1", "hot2");
+        top.forEach(candidate -> assertThat(candidate.count()).isGreaterThanOrEqualTo(totals.get(candidate.key())));
+        assertThat(counter.isEstimated()).isTrue();
+    }
+}
@@ -0,0 +1,319 @@
+package in.project.computers.service.orderService;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import in.project.computers.dto.order.OrderResponse;
+import in.project.computers.entity.component.Gpu;
+import in.project.computers.entity.component.Inventory;
+import in.project.computers.entity.idempotency.IdempotencyRecord;
+import in.project.computers.entity.idempotency.IdempotencyStatus;
+import in.project.computers.entity.order.*;
+import in.project.computers.exception.OutcomeUnknownException;
+import in.project.computers.repository.ComponentRepo.ComponentRepository;
+import in.project.computers.repository.ComponentRepo.InventoryRepository;
+import in.project.computers.repository.generalRepo.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ตรวจสอบว่า Callback การ Capture ของ PayPal ที่ถูกส่งซ้ำพร้อมกันหลายครั้ง
+ * เรียก PayPal และตัดสต็อกเพียงครั้งเดียว และทุก Request ได้ Response เดียวกัน
+ * <p>
+ * PayPal ถูกจำลองด้วย HTTP Server ภายในเครื่อง ({@code paypal.endpoint}) การเรียกจึงผ่าน SDK, PaypalCallGuard
+ * และการแปลง Error ของ SDK จริงทั้งหมด รวมถึงกรณี Timeout ที่ PayPal ทำรายการสำเร็จหลัง Client เลิกรอ
+ * </p>
+ */
+@SpringBootTest
+class PaypalCaptureIdempotencyTest {
+
+    private static final int CONCURRENT_CALLBACKS = 8;
+    private static final int INITIAL_STOCK = 10;
+    private static final int ORDERED_QUANTITY = 2;
+    private static final PaypalHttpStub PAYPAL = PaypalHttpStub.start();
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private ComponentRepository componentRepository;
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+
+    @DynamicPropertySource
+    static void paypalProperties(DynamicPropertyRegistry registry) {
+        registry.add("paypal.stub.enabled", () -> "false");
+        registry.add("paypal.endpoint", PAYPAL::baseUrl);
+        registry.add("paypal.client.id", () -> "test-client");
+        registry.add("paypal.client.secret", () -> "test-secret");
+        registry.add("app.paypal.gateway.timeout.execute", () -> "PT1S");
+        registry.add("app.idempotency.unknown-outcome-lease", () -> "PT2S");
+    }
+
+    private final String paymentId = "PAYID-TEST-" + UUID.randomUUID();
+    private String componentId;
+    private String orderId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Gpu gpu = componentRepository.save(Gpu.builder()
+                .mpn("TEST-GPU-" + UUID.randomUUID())
+                .name("Idempotency Test GPU")
+                .type("gpu")
+                .isActive(true)
+                .build());
+        componentId = gpu.getId();
+        inventoryRepository.save(Inventory.builder()
+                .componentId(componentId)
+                .quantity(INITIAL_STOCK)
+                .price(new BigDecimal("100.00"))
+                .build());
+
+        Order order = orderRepository.save(Order.builder()
+                .userId("idempotency-test-user")
+                .email("idempotency-test@example.com")
+                .lineItems(List.of(OrderLineItem.builder()
+                        .itemType(LineItemType.COMPONENT)
+                        .componentId(componentId)
+                        .name(gpu.getName())
+                        .quantity(ORDERED_QUANTITY)
+                        .unitPrice(new BigDecimal("100.00"))
+                        .build()))
+                .totalAmount(new BigDecimal("200.00"))
+                .taxAmount(BigDecimal.ZERO)
+                .currency("THB")
+                .paymentDetails(PaymentDetails.builder()
+                        .paymentMethod(PaymentMethod.PAYPAL)
+                        .transactionId(paymentId)
+                        .build())
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build());
+        orderId = order.getId();
+
+        // จำลองความหน่วงของ execute เพื่อให้ Request ซ้อนกันจริง
+        PAYPAL.reset(300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteById(orderId);
+        inventoryRepository.findByComponentId(componentId).ifPresent(inventoryRepository::delete);
+        componentRepository.deleteById(componentId);
+        mongoTemplate.remove(Query.query(Criteria.where("key").is("paypal-capture:" + paymentId)), IdempotencyRecord.class);
+    }
+
+    @Test
+    void duplicateConcurrentCapturesExecuteOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_CALLBACKS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OrderResponse>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < CONCURRENT_CALLBACKS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return orderService.capturePaypalOrder(orderId, paymentId, "PAYER-TEST");
+                }));
+            }
+            start.countDown();
+
+            for (Future<OrderResponse> future : futures) {
+                OrderResponse response = future.get();
+                assertThat(response.getId()).isEqualTo(orderId);
+                assertThat(response.getPaymentStatus()).isEqualTo(PaymentStatus.COMPLETED);
+                assertThat(response.getOrderStatus()).isEqualTo(OrderStatus.PROCESSING);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(PAYPAL.executions(paymentId)).isEqualTo(1);
+        // การตัดสต็อกทำผ่าน Order Outbox: ระบายงานที่ค้างก่อนตรวจสอบ
+        orderOutboxService.drain();
+        assertThat(inventoryRepository.findByComponentId(componentId).orElseThrow().getQuantity())
+                .isEqualTo(INITIAL_STOCK - ORDERED_QUANTITY);
+        Order captured = orderRepository.findById(orderId).orElseThrow();
+        assertThat(captured.getStatusHistory())
+                .filteredOn(change -> OrderTransition.CAPTURE_PAYPAL.name().equals(change.getTransition()))
+                .hasSize(1);
+    }
+
+    @Test
+    void captureAfterCompletionReplaysStoredResponse() throws Exception {
+        OrderResponse first = orderService.capturePaypalOrder(orderId, paymentId, "PAYER-TEST");
+        OrderResponse replay = orderService.capturePaypalOrder(orderId, paymentId, "PAYER-TEST");
+
+        assertThat(PAYPAL.executions(paymentId)).isEqualTo(1);
+        assertThat(replay.getId()).isEqualTo(first.getId());
+        assertThat(replay.getPaymentStatus()).isEqualTo(first.getPaymentStatus());
+        assertThat(replay.getOrderStatus()).isEqualTo(first.getOrderStatus());
+    }
+
+    @Test
+    void captureThatTimesOutButSucceedsAtPaypalIsReconciledOnRetry() throws Exception {
+        // PayPal ตอบช้ากว่า Deadline (1 วินาที) แต่ยังทำรายการสำเร็จ
+        PAYPAL.reset(1500);
+        assertThatThrownBy(() -> orderService.capturePaypalOrder(orderId, paymentId, "PAYER-TEST"))
+                .isInstanceOf(OutcomeUnknownException.class);
+        assertThat(mongoTemplate.findById("paypal-capture:" + paymentId, IdempotencyRecord.class).getStatus())
+                .isEqualTo(IdempotencyStatus.UNKNOWN);
+
+        Instant waitUntil = Instant.now().plusSeconds(5);
+        while (!PAYPAL.completed(paymentId) && Instant.now().isBefore(waitUntil)) {
+            Thread.sleep(50);
+        }
+        assertThat(PAYPAL.completed(paymentId)).isTrue();
+
+        // Retry รอจนหมด Lease ของผลที่ไม่รู้ แล้วได้ PAYMENT_ALREADY_DONE และปรับตามสถานะจริงแทนการทำให้ Order ล้มเหลว
+        PAYPAL.executeDelay(0);
+        OrderResponse retried = orderService.capturePaypalOrder(orderId, paymentId, "PAYER-TEST");
+
+        assertThat(retried.getPaymentStatus()).isEqualTo(PaymentStatus.COMPLETED);
+        assertThat(retried.getOrderStatus()).isEqualTo(OrderStatus.PROCESSING);
+        assertThat(PAYPAL.executions(paymentId)).isEqualTo(2);
+        orderOutboxService.drain();
+        assertThat(inventoryRepository.findByComponentId(componentId).orElseThrow().getQuantity())
+                .isEqualTo(INITIAL_STOCK - ORDERED_QUANTITY);
+        assertThat(orderRepository.findById(orderId).orElseThrow().getStatusHistory())
+                .filteredOn(change -> OrderTransition.CAPTURE_PAYPAL.name().equals(change.getTransition()))
+                .hasSize(1);
+    }
+
+    /**
+     * HTTP Stub ของ PayPal REST API v1 เฉพาะ Endpoint ที่ระบบใช้: OAuth Token, Execute, Get Payment และ Refund Sale
+     */
+    static final class PaypalHttpStub {
+
+        private final HttpServer server;
+        private final Map<String, AtomicInteger> executions = new ConcurrentHashMap<>();
+        private final Set<String> executed = ConcurrentHashMap.newKeySet();
+        private volatile long executeDelayMillis;
+
+        private PaypalHttpStub(HttpServer server) {
+            this.server = server;
+        }
+
+        static PaypalHttpStub start() {
+            try {
+                HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+                PaypalHttpStub stub = new PaypalHttpStub(server);
+                server.createContext("/v1/oauth2/token", exchange -> respond(exchange, 200,
+                        "{\"access_token\":\"A21-TEST-TOKEN\",\"token_type\":\"Bearer\",\"expires_in\":32400}"));
+                server.createContext("/v1/payments/payment/", stub::handlePayment);
+                server.createContext("/v1/payments/sale/", stub::handleSale);
+                server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+                server.start();
+                return stub;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void reset(long executeDelayMillis) {
+            executeDelay(executeDelayMillis);
+            executions.clear();
+            executed.clear();
+        }
+
+        void executeDelay(long executeDelayMillis) {
+            this.executeDelayMillis = executeDelayMillis;
+        }
+
+        boolean completed(String paymentId) {
+            return executed.contains(paymentId);
+        }
+
+        int executions(String paymentId) {
+            AtomicInteger count = executions.get(paymentId);
+            return count == null ? 0 : count.get();
+        }
+
+        private void handlePayment(HttpExchange exchange) throws IOException {
+            exchange.getRequestBody().readAllBytes();
+            String path = exchange.getRequestURI().getPath().substring("/v1/payments/payment/".length());
+            if (path.endsWith("/execute")) {
+                String paymentId = path.substring(0, path.length() - "/execute".length());
+                executions.computeIfAbsent(paymentId, id -> new AtomicInteger()).incrementAndGet();
+                sleep(executeDelayMillis);
+                // PayPal ทำรายการเสร็จแม้ Client จะเลิกรอไปแล้ว
+                if (!executed.add(paymentId)) {
+                    respond(exchange, 400, "{\"name\":\"PAYMENT_ALREADY_DONE\",\"message\":\"Payment has been done already for this cart.\"}");
+                    return;
+                }
+                respond(exchange, 200, paymentJson(paymentId, "approved"));
+            } else {
+                respond(exchange, 200, paymentJson(path, executed.contains(path) ? "approved" : "created"));
+            }
+        }
+
+        private void handleSale(HttpExchange exchange) throws IOException {
+            exchange.getRequestBody().readAllBytes();
+            String saleId = exchange.getRequestURI().getPath().split("/")[4];
+            respond(exchange, 201, "{\"id\":\"REFUND-" + saleId + "\",\"state\":\"completed\",\"sale_id\":\"" + saleId + "\"}");
+        }
+
+        private static String paymentJson(String paymentId, String state) {
+            String transactions = "approved".equals(state)
+                    ? ",\"transactions\":[{\"related_resources\":[{\"sale\":{\"id\":\"SALE-" + paymentId + "\",\"state\":\"completed\"}}]}]"
+                    : "";
+            return "{\"id\":\"" + paymentId + "\",\"intent\":\"sale\",\"state\":\"" + state + "\","
+                    + "\"payer\":{\"payment_method\":\"paypal\",\"payer_info\":{\"payer_id\":\"PAYER-TEST\",\"email\":\"buyer@example.com\"}}"
+                    + transactions + "}";
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}